@@ -0,0 +1,349 @@
+package com.spacecode.smartserver;
+
+import com.spacecode.sdk.network.communication.EventCode;
+import com.spacecode.sdk.network.communication.MessageHandler;
+import com.spacecode.smartserver.helper.ConfManager;
+import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last handler of each client pipeline (one instance per client): applies the outbound policy of the client to the
+ * events written in its channel (broadcasts, see {@link SmartServer#sendAllClients(String...)}). Responses to the
+ * requests are written from the request handler, before this one, and are never dropped.
+ *
+ * As long as the outbound buffer of the client is under its high watermark, events are written. Otherwise:
+ * <ul>
+ *     <li>DROP: events are dropped until the buffer is back under the low watermark.</li>
+ *     <li>COALESCE: only the last status event of each kind is kept, and written once the buffer is back under the
+ *     low watermark. Other events are written until the buffer reaches the byte limit, then dropped.</li>
+ *     <li>DISCONNECT: events are written until the buffer reaches the byte limit, then the client is disconnected.</li>
+ * </ul>
+ */
+final class OutboundPolicyHandler extends ChannelDuplexHandler
+{
+    static final int DEFAULT_HIGH_WATERMARK = 64 * 1024;
+    static final int DEFAULT_LOW_WATERMARK = 32 * 1024;
+    static final int DEFAULT_LIMIT = 1024 * 1024;
+
+    /** Events only providing the current state of something: the last one is enough. */
+    static final Set<String> STATUS_EVENTS = new HashSet<>(Arrays.asList(
+            EventCode.STATUS_CHANGED,
+            EventCode.TEMPERATURE_MEASURE,
+            EventCode.FLASHING_PROGRESS,
+            EventCode.DOOR_OPEN_DELAY
+    ));
+
+    static final String METRIC_DROPPED = "events.dropped";
+    static final String METRIC_COALESCED = "events.coalesced";
+    static final String METRIC_DISCONNECTED = "clients.disconnected.slow";
+
+    // longest event code looked for at the beginning of an event
+    private static final int MAX_EVENT_CODE_LENGTH = 64;
+
+    private static final Exception EVENT_DROPPED = new IllegalStateException("Event dropped: slow client");
+
+    static
+    {
+        EVENT_DROPPED.setStackTrace(new StackTraceElement[0]);
+    }
+
+    enum Policy
+    {
+        DROP,
+        COALESCE,
+        DISCONNECT;
+
+        /**
+         * @param name Name of the policy (case insensitive).
+         *
+         * @return Matching policy, or DROP if the name is unknown.
+         */
+        static Policy fromName(String name)
+        {
+            for(Policy policy : values())
+            {
+                if(policy.name().equalsIgnoreCase(name == null ? "" : name.trim()))
+                {
+                    return policy;
+                }
+            }
+
+            return DROP;
+        }
+    }
+
+    private final Policy _policy;
+    private final int _lowWatermark;
+    private final int _highWatermark;
+    private final long _limit;
+
+    // last status event of each kind (and its promise), waiting for the channel to be writable
+    private final Map<String, PendingEvent> _coalescedEvents = new LinkedHashMap<>();
+    private final AtomicLong _droppedEvents = new AtomicLong();
+    private volatile ChannelOutboundBuffer _outboundBuffer;
+    private String _metricsPrefix;
+
+    OutboundPolicyHandler(Policy policy, int lowWatermark, int highWatermark, long limit)
+    {
+        _policy = policy;
+        _lowWatermark = lowWatermark;
+        _highWatermark = highWatermark;
+        _limit = limit;
+    }
+
+    /**
+     * @return A new handler, using the settings of the configuration file (or the default ones).
+     */
+    static OutboundPolicyHandler fromConfiguration()
+    {
+        int highWatermark = ConfManager.getAppWriteHighWatermark();
+        int lowWatermark = ConfManager.getAppWriteLowWatermark();
+        int limit = ConfManager.getAppSlowClientLimit();
+
+        highWatermark = highWatermark > 0 ? highWatermark : DEFAULT_HIGH_WATERMARK;
+        lowWatermark = lowWatermark > 0 && lowWatermark <= highWatermark ?
+                lowWatermark : Math.min(DEFAULT_LOW_WATERMARK, highWatermark / 2);
+        limit = limit > highWatermark ? limit : Math.max(DEFAULT_LIMIT, highWatermark);
+
+        return new OutboundPolicyHandler(Policy.fromName(ConfManager.getAppSlowClientPolicy()),
+                lowWatermark, highWatermark, limit);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx)
+    {
+        ChannelConfig config = ctx.channel().config();
+
+        // the low watermark can't be greater than the high one: update them in the right order
+        if(_highWatermark < config.getWriteBufferLowWaterMark())
+        {
+            config.setWriteBufferLowWaterMark(_lowWatermark);
+            config.setWriteBufferHighWaterMark(_highWatermark);
+        }
+
+        else
+        {
+            config.setWriteBufferHighWaterMark(_highWatermark);
+            config.setWriteBufferLowWaterMark(_lowWatermark);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception
+    {
+        _outboundBuffer = ctx.channel().unsafe().outboundBuffer();
+        _metricsPrefix = "client." + ctx.channel().remoteAddress();
+
+        SmartMetrics.registerGauge(_metricsPrefix + ".queued_bytes", new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return getQueuedBytes();
+            }
+        });
+
+        SmartMetrics.registerGauge(_metricsPrefix + ".dropped", new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return _droppedEvents.get();
+            }
+        });
+
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception
+    {
+        discardCoalescedEvents();
+
+        if(_metricsPrefix != null)
+        {
+            SmartMetrics.unregister(_metricsPrefix + ".queued_bytes");
+            SmartMetrics.unregister(_metricsPrefix + ".dropped");
+        }
+
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception
+    {
+        Channel channel = ctx.channel();
+
+        if(channel.isWritable() || !(msg instanceof ByteBuf || msg instanceof ByteBufHolder))
+        {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        switch(_policy)
+        {
+            case DISCONNECT:
+                if(getQueuedBytes() < _limit)
+                {
+                    ctx.write(msg, promise);
+                    return;
+                }
+
+                SmartLogger.getLogger().warning("Client " + channel.remoteAddress() + " is too slow: disconnected.");
+                SmartMetrics.increment(METRIC_DISCONNECTED);
+                drop(msg, promise);
+                ctx.close();
+                return;
+
+            case COALESCE:
+                String eventCode = getEventCode(channel, msg);
+
+                if(STATUS_EVENTS.contains(eventCode))
+                {
+                    PendingEvent previous = _coalescedEvents.put(eventCode, new PendingEvent(msg, promise));
+
+                    if(previous != null)
+                    {
+                        SmartMetrics.increment(METRIC_COALESCED);
+                        previous.discard();
+                    }
+                    return;
+                }
+
+                if(getQueuedBytes() < _limit)
+                {
+                    ctx.write(msg, promise);
+                    return;
+                }
+
+                drop(msg, promise);
+                return;
+
+            default:
+                drop(msg, promise);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception
+    {
+        if(ctx.channel().isWritable() && !_coalescedEvents.isEmpty())
+        {
+            Iterator<PendingEvent> iterator = _coalescedEvents.values().iterator();
+
+            while(iterator.hasNext())
+            {
+                PendingEvent event = iterator.next();
+                iterator.remove();
+                ctx.write(event._msg, event._promise);
+            }
+
+            ctx.flush();
+        }
+
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * @return Number of bytes waiting to be sent to the client.
+     */
+    long getQueuedBytes()
+    {
+        ChannelOutboundBuffer outboundBuffer = _outboundBuffer;
+        return outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes();
+    }
+
+    /**
+     * @return Number of events dropped (or replaced by a more recent one) for this client.
+     */
+    long getDroppedEvents()
+    {
+        return _droppedEvents.get();
+    }
+
+    private void drop(Object msg, ChannelPromise promise)
+    {
+        _droppedEvents.incrementAndGet();
+        SmartMetrics.increment(METRIC_DROPPED);
+        ReferenceCountUtil.release(msg);
+        promise.tryFailure(EVENT_DROPPED);
+    }
+
+    private void discardCoalescedEvents()
+    {
+        for(PendingEvent event : _coalescedEvents.values())
+        {
+            event.discard();
+        }
+
+        _coalescedEvents.clear();
+    }
+
+    /**
+     * @param channel Channel of the client.
+     * @param msg     Encoded event (buffer or WebSocket frame).
+     *
+     * @return Code of the event (first packet of the message).
+     */
+    private static String getEventCode(Channel channel, Object msg)
+    {
+        ByteBuf content = msg instanceof ByteBufHolder ? ((ByteBufHolder) msg).content() : (ByteBuf) msg;
+
+        if(TcpFraming.isBinary(channel) && msg instanceof ByteBuf)
+        {
+            content = TcpFraming.firstPacket(content);
+        }
+
+        int length = Math.min(content.readableBytes(), MAX_EVENT_CODE_LENGTH);
+
+        for(int i = 0; i < length; ++i)
+        {
+            byte b = content.getByte(content.readerIndex() + i);
+
+            if(b == MessageHandler.DELIMITER || b == MessageHandler.END_OF_MESSAGE)
+            {
+                length = i;
+                break;
+            }
+        }
+
+        return content.toString(content.readerIndex(), length, CharsetUtil.UTF_8);
+    }
+
+    /** Event waiting for the channel to be writable. */
+    private static class PendingEvent
+    {
+        private final Object _msg;
+        private final ChannelPromise _promise;
+
+        private PendingEvent(Object msg, ChannelPromise promise)
+        {
+            _msg = msg;
+            _promise = promise;
+        }
+
+        private void discard()
+        {
+            ReferenceCountUtil.release(_msg);
+            _promise.tryFailure(EVENT_DROPPED);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.spacecode.smartserver.React;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * (De)serialization of the Socket.IO payloads.
+ *
+ * One mapper is shared, with one reader/writer per DTO class, built once: the serializers are not looked up (nor
+ * created, for anonymous subclasses) for each payload. A payload is serialized to Jackson tokens and turned into the
+ * JSONObject expected by the Socket.IO client, without being encoded to a String and parsed back.
+ */
+public final class JsonPayloads
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final ConcurrentMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    /** Must not be instantiated. */
+    private JsonPayloads()
+    {
+    }
+
+    /**
+     * @param payload   Payload received by the Socket.IO client (a JSONObject, or its String form).
+     * @param type      DTO class of the payload.
+     * @param <T>       Type of the DTO.
+     *
+     * @return The DTO.
+     *
+     * @throws JsonProcessingException If the payload does not match the DTO.
+     */
+    public static <T> T read(Object payload, Class<T> type) throws JsonProcessingException
+    {
+        ObjectReader reader = READERS.get(type);
+
+        if(reader == null)
+        {
+            reader = MAPPER.readerFor(type);
+            READERS.putIfAbsent(type, reader);
+        }
+
+        return reader.readValue(payload.toString());
+    }
+
+    /**
+     * @param type  DTO class of the payload (serialized as such, even for a subclass instance).
+     * @param dto   DTO to be sent.
+     * @param <T>   Type of the DTO.
+     *
+     * @return The payload, as expected by the Socket.IO client.
+     *
+     * @throws IOException If the DTO could not be serialized.
+     */
+    public static <T> JSONObject write(Class<T> type, T dto) throws IOException
+    {
+        ObjectWriter writer = WRITERS.get(type);
+
+        if(writer == null)
+        {
+            writer = MAPPER.writerFor(type);
+            WRITERS.putIfAbsent(type, writer);
+        }
+
+        TokenBuffer tokens = new TokenBuffer(MAPPER, false);
+        writer.writeValue(tokens, dto);
+
+        try(JsonParser parser = tokens.asParser())
+        {
+            if(parser.nextToken() != JsonToken.START_OBJECT)
+            {
+                throw new IOException("Payload is not an object: " + type.getSimpleName());
+            }
+
+            return (JSONObject) toJson(parser);
+        } catch(JSONException je)
+        {
+            throw new IOException(je);
+        }
+    }
+
+    /**
+     * @param parser Tokens, positioned on the first token of the value.
+     *
+     * @return The value, as the org.json parser would have built it (JSONObject.NULL for null).
+     */
+    private static Object toJson(JsonParser parser) throws IOException, JSONException
+    {
+        switch(parser.currentToken())
+        {
+            case START_OBJECT:
+                JSONObject object = new JSONObject();
+
+                while(parser.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    object.put(name, toJson(parser));
+                }
+
+                return object;
+
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+
+                while(parser.nextToken() != JsonToken.END_ARRAY)
+                {
+                    array.put(toJson(parser));
+                }
+
+                return array;
+
+            case VALUE_STRING:
+                return parser.getText();
+
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+
+            case VALUE_NULL:
+                return JSONObject.NULL;
+
+            default:
+                throw new IOException("Unexpected token: " + parser.currentToken());
+        }
+    }
+}
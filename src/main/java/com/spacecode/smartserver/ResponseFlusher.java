@@ -0,0 +1,70 @@
+package com.spacecode.smartserver;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Consolidated flushes of the responses to pipelined requests (with a correlation ID): responses are written as soon
+ * as they are ready, but the channel is flushed once for all the responses written before the event loop of the
+ * channel runs the flush (instead of one flush, i.e. one system call, per response).
+ */
+final class ResponseFlusher
+{
+    private static final AttributeKey<AtomicBoolean> FLUSH_PENDING =
+            AttributeKey.valueOf("smartserver.responses.flush_pending");
+
+    /** Must not be instantiated. */
+    private ResponseFlusher()
+    {
+    }
+
+    /**
+     * Write a response, and make sure that the channel will be flushed.
+     *
+     * @param ctx Channel of the client.
+     * @param msg Encoded response.
+     *
+     * @return Future of the write.
+     */
+    static ChannelFuture write(final ChannelHandlerContext ctx, Object msg)
+    {
+        ChannelFuture future = ctx.write(msg);
+        final AtomicBoolean flushPending = getFlushPending(ctx.channel());
+
+        // the write is queued before the flush, even when called outside of the event loop
+        if(flushPending.compareAndSet(false, true))
+        {
+            ctx.channel().eventLoop().execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    flushPending.set(false);
+                    ctx.flush();
+                }
+            });
+        }
+
+        return future;
+    }
+
+    private static AtomicBoolean getFlushPending(Channel channel)
+    {
+        Attribute<AtomicBoolean> attribute = channel.attr(FLUSH_PENDING);
+        AtomicBoolean flushPending = attribute.get();
+
+        if(flushPending == null)
+        {
+            AtomicBoolean newFlag = new AtomicBoolean();
+            flushPending = attribute.setIfAbsent(newFlag);
+            flushPending = flushPending == null ? newFlag : flushPending;
+        }
+
+        return flushPending;
+    }
+}
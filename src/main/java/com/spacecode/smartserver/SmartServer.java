@@ -1,49 +1,43 @@
 package com.spacecode.smartserver;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spacecode.sdk.device.Device;
-import com.spacecode.sdk.device.data.DeviceStatus;
-import com.spacecode.sdk.device.data.Inventory;
 import com.spacecode.sdk.network.communication.MessageHandler;
-import com.spacecode.smartserver.React.*;
+import com.spacecode.smartserver.command.CommandExecutors;
+import com.spacecode.smartserver.command.RequestContext;
 import com.spacecode.smartserver.database.DbManager;
-import com.spacecode.smartserver.database.dao.DaoInventory;
-import com.spacecode.smartserver.database.entity.InventoryEntity;
 import com.spacecode.smartserver.helper.ConfManager;
+import com.spacecode.smartserver.helper.DeviceEventBus;
 import com.spacecode.smartserver.helper.DeviceHandler;
+import com.spacecode.smartserver.helper.EventJournal;
+import com.spacecode.smartserver.helper.EventSubscriptions;
+import com.spacecode.smartserver.helper.InventoryRecorder;
 import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SocketIoBridge;
+import com.spacecode.smartserver.helper.TagEventBatcher;
 import com.spacecode.smartserver.helper.TemperatureCenter;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.ChannelGroupFuture;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.channel.group.ChannelMatchers;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
+import io.netty.util.CharsetUtil;
 import io.netty.util.concurrent.GlobalEventExecutor;
-import io.socket.client.Ack;
-import io.socket.client.IO;
-import io.socket.client.Socket;
-import io.socket.emitter.Emitter;
-import javafx.util.Pair;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.*;
 import java.net.SocketAddress;
-import java.net.URI;
 import java.sql.SQLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -65,6 +59,8 @@ public final class SmartServer
 
     private static final ChannelGroup TCP_IP_CHAN_GROUP = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
     private static final ChannelGroup WS_CHAN_GROUP = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    // held while an event is numbered and written (see EventJournal)
+    private static final Object EVENTS_LOCK = new Object();
     private static final int TCP_IP_PORT = 8080;
     private static final ChannelHandler TCP_IP_HANDLER = new SmartServerHandler();
     private static final int WS_PORT = 8081;
@@ -83,18 +79,11 @@ public final class SmartServer
     // default is 65536 (2^16), most of the time. Increase this value to 2^22. Max supported is Integer limit: 2^31-1
     public static final int MAX_FRAME_LENGTH = 4194304;
 
-    // SocketIO
-    private static  io.socket.client.Socket socket = null;
+    // SocketIO (see SocketIoBridge)
     //public static RegisterDeviceData _lastRegistrationDeviceData = null;
     //public static UserConnectData _lastUserConnectData = null;
-    public static boolean IsLicenseValidated = false;
-    public static boolean IsContinuousMode = false;
-    private static boolean scanFlag = false;
-    private static boolean forLed = false;
-    private static boolean ledLighting = false;
-    private static boolean bFirstConnection = true;
-
     //private static boolean InOneTImeSessionScanned = false;
+
     /** Must not be instantiated. */
     private SmartServer()
     {
@@ -156,6 +145,15 @@ public final class SmartServer
             return;
         }
 
+        // write the new inventories in the background
+        InventoryRecorder.start();
+        // execute the device/database commands out of the network threads
+        CommandExecutors.start();
+        // send the batches of "tag added" events to the clients which asked for them
+        TagEventBatcher.start();
+        // deliver the device events to the subscribers on their own threads
+        DeviceEventBus.start();
+
         if (!DeviceHandler.connectDevice()) {
             SmartLogger.getLogger().severe("Unable to connect a device. SmartServer will not start");
             return;
@@ -391,7 +389,11 @@ public final class SmartServer
             public void run()
             {
                 TemperatureCenter.stop();
+                TagEventBatcher.stop();
+                CommandExecutors.stop();
                 DeviceHandler.disconnectDevice();
+                DeviceEventBus.stop();
+                InventoryRecorder.stop();
                 DbManager.close();
                 stop();
             }
@@ -470,15 +472,18 @@ public final class SmartServer
                         .childHandler(new ChannelInitializer<SocketChannel>() {
                             @Override
                             public void initChannel(SocketChannel ch) {
-                                // Define character EOT (0x04) as an end-of-frame character.
-                                ch.pipeline().addLast(new DelimiterBasedFrameDecoder(MAX_FRAME_LENGTH,
-                                        Unpooled.wrappedBuffer(new byte[]{MessageHandler.END_OF_MESSAGE})));
+                                // Choose the framing (EOT-delimited or length-prefixed) from the first bytes
+                                // received, and add the matching decoders.
+                                ch.pipeline().addLast("framing", new TcpFraming.Negotiator());
 
-                                // Allow sending/receiving string instead of byte buffers.
-                                ch.pipeline().addLast(new StringDecoder(), new StringEncoder());
+                                // Allow sending string instead of byte buffers.
+                                ch.pipeline().addLast(new StringEncoder(CharsetUtil.UTF_8));
 
                                 // Add a SmartServerHandler instance to the channel pipeline.
                                 ch.pipeline().addLast(TCP_IP_HANDLER);
+
+                                // Watermarks and policy applied to the events sent to a slow client.
+                                ch.pipeline().addLast(OutboundPolicyHandler.fromConfiguration());
                             }
                         })
                         .option(ChannelOption.SO_BACKLOG, 128)
@@ -508,6 +513,7 @@ public final class SmartServer
                                     ch.pipeline().addLast(new HttpServerCodec());
                                     ch.pipeline().addLast(new HttpObjectAggregator(MAX_FRAME_LENGTH));
                                     ch.pipeline().addLast(WS_HANDLER);
+                                    ch.pipeline().addLast(OutboundPolicyHandler.fromConfiguration());
                                 }
                             });
                 if (portWs != 0) {
@@ -531,583 +537,8 @@ public final class SmartServer
             // Before the main thread got stuck waiting, load the module g_serial, if required
             SmartLogger.getLogger().info("Loading module g_serial (if necessary)...");
             loadModuleGSerial();
-            //SOCKET IO Middleware
-            //String SocketIOurl = "http://192.168.1.144:3000";
-            String SocketIOurl = ConfManager.getAppUrlSocketIO();
-
-            if (!SocketIOurl.isEmpty()) {
-                SmartLogger.getLogger().info("Try Initialize socketIO on  : " + SocketIOurl);
-
-                SmartLogger.getLogger().info("Version 1.0.1");
-                SmartLogger.getLogger().info("Try Initialize socketIO on  : " + SocketIOurl);
-
-                IO.Options options = IO.Options.builder()
-                        .setQuery("token : v3")
-                        .setQuery("EIO=4")
-                        .build();
-                socket = IO.socket((URI.create(SocketIOurl)), options);
-
-
-                socket.on(Socket.EVENT_CONNECT, new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("Socket  Event CONNECT");
-                        if (!bFirstConnection) {
-                            connectionString connectionString = new connectionString() {{
-                                deviceType = "service";
-                            }};
-                            ObjectMapper om = new ObjectMapper();
-                            String dataJson = null;
-                            try {
-                                dataJson = om.writeValueAsString(connectionString);
-                            } catch (JsonProcessingException e) {
-                                e.printStackTrace();
-                            }
-                            JSONObject jsonObj = null;
-                            try {
-                                jsonObj = new JSONObject(dataJson);
-                            } catch (JSONException e) {
-                                e.printStackTrace();
-                            }
-                            SmartLogger.getLogger().info("send  : " + dataJson);
-                            socket.emit("connection", jsonObj, new Ack() {
-                                @Override
-                                public void call(Object... objects) {
-                                    SmartLogger.getLogger().info("Socket connected");
-                                }
-                            });
-                        } else bFirstConnection = false;
-                    }
-                });
-
-                socket.on(Socket.EVENT_CONNECT_ERROR, new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("Socket  Event ERROR");
-                    }
-                });
-
-                socket.on(Socket.EVENT_DISCONNECT, new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("Socket  Event DISCONNECT");
-                        IsLicenseValidated = false;
-                    }
-                });
-
-                socket.on("connectToRoom", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("Connect to Room");
-                    }
-                });
-                socket.on("getConnectedDevices", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("getConnectedDevices: " + objects[0]);
-                    }
-                });
-                socket.on("getDevices", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("payload: " + objects[0]);
-                        SmartLogger.getLogger().info("Fetching devices : ");
-                        ObjectMapper om = new ObjectMapper();
-                        String socketId = objects[0].toString();
-
-                        List<DeviceModel> deviceList = new ArrayList<>();
-                        DeviceModel dm = new DeviceModel() {{
-                            socketId = socket.id().toString();
-                            deviceId = DeviceHandler.getDevice().getSerialNumber();
-                        }};
-                        deviceList.add(dm);
-                        ackGetDevices output = new ackGetDevices() {{
-                            status = true;
-                            message = "Device found";
-                            devices = deviceList.toArray();
-                        }};
-
-
-                        ObjectMapper om2 = new ObjectMapper();
-
-                        String dataJson = null;
-                        try {
-                            dataJson = om2.writeValueAsString(output);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                        try {
-                            JSONObject jsonObj = new JSONObject(dataJson);
-                            SmartLogger.getLogger().info("send  : " + dataJson);
-                            Ack fn = (Ack) objects[1];
-                            fn.call(jsonObj);
-                        } catch (JSONException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                });
-                socket.on("connectDevice", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("connectDevice payload: " + objects[0]);
-                        ObjectMapper om = new ObjectMapper();
-                        IsLicenseValidated = false;
-                        try {
-                            connectDeviceData cdd = om.readValue(objects[0].toString(), connectDeviceData.class);
-                            if (!cdd.deviceId.contains(":"))  //not an IP
-                            {
-                                SmartLogger.getLogger().info("Checking for serial number");
-                                if (Arrays.stream(cdd.deviceLisences).count() > 0) {
-                                    boolean bFoundLic = false;
-                                    for (Devicelisence licInfo : cdd.deviceLisences) {
-                                        if (cdd.deviceId.equals(licInfo.serialNumber)) {
-                                            bFoundLic = true;
-                                            SimpleDateFormat parser = new SimpleDateFormat("MM/dd/yyyy");
-                                            try {
-                                                Date start = parser.parse(licInfo.startLicenseDate);
-                                                Date end = parser.parse(licInfo.endLicenseDate);
-                                                Date today = new Date();
-                                                if (today.after(start) && today.before(end)) {
-                                                    IsLicenseValidated = true;
-                                                    ackDeviceConnected output1 = new ackDeviceConnected() {{
-                                                        status = true;
-                                                        message = "Device Connected";
-                                                        deviceSerialNumber = cdd.deviceId;
-                                                    }};
-                                                    ackConnection ack = new ackConnection() {{
-                                                        output = output1;
-                                                        payload = cdd.payload;
-                                                    }};
-                                                    ObjectMapper om2 = new ObjectMapper();
-
-                                                    String dataJson = null;
-                                                    try {
-                                                        dataJson = om2.writeValueAsString(ack);
-                                                    } catch (JsonProcessingException e) {
-                                                        e.printStackTrace();
-                                                    }
-                                                    try {
-                                                        JSONObject jsonObj = new JSONObject(dataJson);
-                                                        SmartLogger.getLogger().info("send  : " + dataJson);
-                                                        Ack fn = (Ack) objects[1];
-                                                        fn.call(jsonObj);
-                                                    } catch (JSONException e) {
-                                                        e.printStackTrace();
-                                                    }
-                                                } else {
-                                                    ackDeviceConnected output1 = new ackDeviceConnected() {{
-                                                        status = false;
-                                                        message = "Selected device is not having license or may be expired";
-
-                                                    }};
-                                                    ackConnection ack = new ackConnection() {{
-                                                        output = output1;
-                                                        payload = cdd.payload;
-                                                    }};
-                                                    ObjectMapper om2 = new ObjectMapper();
-
-                                                    String dataJson = null;
-                                                    try {
-                                                        dataJson = om2.writeValueAsString(ack);
-                                                    } catch (JsonProcessingException e) {
-                                                        e.printStackTrace();
-                                                    }
-                                                    try {
-                                                        JSONObject jsonObj = new JSONObject(dataJson);
-                                                        SmartLogger.getLogger().info("send  : " + dataJson);
-                                                        Ack fn = (Ack) objects[1];
-                                                        fn.call(jsonObj);
-                                                    } catch (JSONException e) {
-                                                        e.printStackTrace();
-                                                    }
-                                                }
-                                            } catch (ParseException e) {
-                                                e.printStackTrace();
-                                            }
-                                        }
-                                    }
-                                    if (!bFoundLic) {
-                                        ackDeviceConnected output1 = new ackDeviceConnected() {{
-                                            status = false;
-                                            message = "Licence not found";
-
-                                        }};
-                                        ackConnection ack = new ackConnection() {{
-                                            output = output1;
-                                            payload = cdd.payload;
-                                        }};
-                                        ObjectMapper om2 = new ObjectMapper();
-
-                                        String dataJson = null;
-                                        try {
-                                            dataJson = om2.writeValueAsString(ack);
-                                        } catch (JsonProcessingException e) {
-                                            e.printStackTrace();
-                                        }
-                                        try {
-                                            JSONObject jsonObj = new JSONObject(dataJson);
-                                            SmartLogger.getLogger().info("send  : " + dataJson);
-                                            Ack fn = (Ack) objects[1];
-                                            fn.call(jsonObj);
-                                        } catch (JSONException e) {
-                                            e.printStackTrace();
-                                        }
-                                    }
-                                } else {
-                                    ackDeviceConnected output1 = new ackDeviceConnected() {{
-                                        status = false;
-                                        message = "License not found.";
-
-                                    }};
-                                    ackConnection ack = new ackConnection() {{
-                                        output = output1;
-                                        payload = cdd.payload;
-                                    }};
-                                    ObjectMapper om2 = new ObjectMapper();
-
-                                    String dataJson = null;
-                                    try {
-                                        dataJson = om2.writeValueAsString(ack);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                    try {
-                                        JSONObject jsonObj = new JSONObject(dataJson);
-                                        SmartLogger.getLogger().info("send  : " + dataJson);
-                                        Ack fn = (Ack) objects[1];
-                                        fn.call(jsonObj);
-                                    } catch (JSONException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                            } else {
-                                ackDeviceConnected output1 = new ackDeviceConnected() {{
-                                    status = false;
-                                    message = "Device cannot be Ethernet";
-                                }};
-                                ackConnection ack = new ackConnection() {{
-                                    output = output1;
-                                    payload = cdd.payload;
-                                }};
-                                ObjectMapper om2 = new ObjectMapper();
-
-                                String dataJson = null;
-                                try {
-                                    dataJson = om2.writeValueAsString(ack);
-                                } catch (JsonProcessingException e) {
-                                    e.printStackTrace();
-                                }
-                                try {
-                                    JSONObject jsonObj = new JSONObject(dataJson);
-                                    SmartLogger.getLogger().info("send  : " + dataJson);
-                                    Ack fn = (Ack) objects[1];
-                                    fn.call(jsonObj);
-                                } catch (JSONException e) {
-                                    e.printStackTrace();
-                                }
-                            }
-
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-
-                    }
-                });
-                socket.on("disconnectDevice", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("Disconnect payload: " + objects[0]);
-                        IsLicenseValidated = false;
-
-                        ackDeviceDisconnected adc = new ackDeviceDisconnected() {{
-                            status = true;
-                            socketId = socket.id().toString();
-                            deviceId = objects[0].toString();
-                            message = "Device disconnected";
-                        }};
-                        ObjectMapper om2 = new ObjectMapper();
-
-                        String dataJson = null;
-                        try {
-                            dataJson = om2.writeValueAsString(adc);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                        try {
-                            JSONObject jsonObj = new JSONObject(dataJson);
-                            SmartLogger.getLogger().info("send  : " + dataJson);
-                            Ack fn = (Ack) objects[1];
-                            fn.call(jsonObj);
-                        } catch (JSONException e) {
-                            e.printStackTrace();
-                        }
-
-                    }
-                });
-                socket.on("startScan", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("StartScan payload: " + objects[0]);
-                        ackStartScan output1 = null;
-                        ObjectMapper om = new ObjectMapper();
-                        try {
-                            StartScanData ssd = om.readValue(objects[0].toString(), StartScanData.class);
-                            if (ssd.scanMode.equals("continuous"))
-                                IsContinuousMode = true;
-                            else
-                                IsContinuousMode = false;
-
-                            if (ssd.deviceId.equals(DeviceHandler.getDevice().getSerialNumber())) {
-                                if (IsLicenseValidated) {
-                                    if (DeviceHandler.getDevice().getStatus() == DeviceStatus.READY || DeviceHandler.getDevice().getStatus() == DeviceStatus.LED_ON) {
-                                        DeviceHandler.getDevice().requestScan();
-                                        output1 = new ackStartScan() {{
-                                            status = true;
-                                            message = "Success";
-                                        }};
-                                    } else {
-                                        output1 = new ackStartScan() {{
-                                            status = false;
-                                            message = "Device not ready";
-                                        }};
-                                    }
-                                } else {
-                                    output1 = new ackStartScan() {{
-                                        status = false;
-                                        message = "Invalid License";
-                                    }};
-                                }
-                            } else {
-                                output1 = new ackStartScan() {{
-                                    status = false;
-                                    message = "Invalid Device Serial";
-                                }};
-                            }
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-
-                        ObjectMapper om2 = new ObjectMapper();
-                        String dataJson = null;
-                        try {
-                            dataJson = om2.writeValueAsString(output1);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                        try {
-                            JSONObject jsonObj = new JSONObject(dataJson);
-                            SmartLogger.getLogger().info("send  : " + dataJson);
-                            Ack fn = (Ack) objects[1];
-                            fn.call(jsonObj);
-                        } catch (JSONException e) {
-                            e.printStackTrace();
-
-                        }
-                    }
-                });
-                socket.on("stopScan", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("StopScan payload: " + objects[0]);
-                        ackStopScan output1 = null;
-                        ObjectMapper om = new ObjectMapper();
-
-                        try {
-                            StopScanData ssd = om.readValue(objects[0].toString(), StopScanData.class);
-                            if (ssd.deviceId.equals(DeviceHandler.getDevice().getSerialNumber())) {
-                                if (IsLicenseValidated) {
-                                    if (DeviceHandler.getDevice().getStatus() == DeviceStatus.SCANNING) {
-                                        DeviceHandler.getDevice().stopScan();
-                                        Thread.sleep(1000);
-                                    }
-                                    Inventory _lastInventory = ((DaoInventory) DbManager.getDao(InventoryEntity.class)).getLastInventory();
-                                    output1 = new ackStopScan() {{
-                                        status = true;
-                                        message = "Scan stopped";
-                                        deviceSerialNumber = DeviceHandler.getDevice().getSerialNumber();
-                                        tags = _lastInventory.getTagsAll().toArray();
-                                    }};
-
-                                } else {
-                                    output1 = new ackStopScan() {{
-                                        status = false;
-                                        message = "Invalid License";
-                                        deviceSerialNumber = DeviceHandler.getDevice().getSerialNumber();
-                                    }};
-                                }
-                            } else {
-                                output1 = new ackStopScan() {{
-                                    status = false;
-                                    message = "Invalid Device Serial";
-                                    deviceSerialNumber = DeviceHandler.getDevice().getSerialNumber();
-                                }};
-                            }
-
-                        } catch (JsonProcessingException | InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                        ackStopScan finalOutput = output1;
-                        ackConnection2 ack = new ackConnection2() {{
-                            output = finalOutput;
-                            payload = objects[0].toString();
-                        }};
-                        ObjectMapper om2 = new ObjectMapper();
-                        String dataJson = null;
-                        try {
-                            dataJson = om2.writeValueAsString(ack);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                        try {
-                            JSONObject jsonObj = new JSONObject(dataJson);
-                            SmartLogger.getLogger().info("send  : " + dataJson);
-                            Ack fn = (Ack) objects[1];
-                            fn.call(jsonObj);
-                        } catch (JSONException e) {
-                            e.printStackTrace();
-
-                        }
-                    }
-                });
-                socket.on("refreshTags", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("refreshTags payload: " + objects[0]);
-                    }
-                });
-                socket.on("connectionStatus", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("connectionStatus payload: " + objects[0]);
-                    }
-                });
-                socket.on("ledOn", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("Led on payload: " + objects[0]);
-                        ObjectMapper om = new ObjectMapper();
-                        try {
-                            Pair<Boolean, String> resp = null;
-                            ledOnData lod = om.readValue(objects[0].toString(), ledOnData.class);
-                            if (IsLicenseValidated) {
-                                if (lod.deviceId.equals(DeviceHandler.getDevice().getSerialNumber())) {
-
-                                    if (!ledLighting) {
-                                        ledLighting = true;
-                                        boolean ret = DeviceHandler.getDevice().startLightingTagsLed(new ArrayList<>(Arrays.asList(lod.list)));
-                                        if (ret)
-                                            resp = new Pair<>(ret, "Led turned On");
-                                        else
-                                            resp = new Pair<>(ret, "Unable to turn on LED");
-                                    } else
-                                        resp = new Pair<>(false, "LED Already lighting");
-                                } else {
-                                    resp = new Pair<>(false, "Invalid Serial Number");
-                                }
-                            } else {
-                                resp = new Pair<>(false, "Invalid License");
-                            }
-                            Pair<Boolean, String> finalResp = resp;
-                            ackLedOn ack = new ackLedOn() {{
-                                status = finalResp.getKey();
-                                message = finalResp.getValue();
-                            }};
-
-                            ObjectMapper om2 = new ObjectMapper();
-                            String dataJson = null;
-                            try {
-                                dataJson = om2.writeValueAsString(ack);
-                            } catch (JsonProcessingException e) {
-                                e.printStackTrace();
-                            }
-                            try {
-                                JSONObject jsonObj = new JSONObject(dataJson);
-                                SmartLogger.getLogger().info("send  : " + dataJson);
-                                Ack fn = (Ack) objects[1];
-                                fn.call(jsonObj);
-                            } catch (JSONException e) {
-                                e.printStackTrace();
-
-                            }
-
-
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                });
-                socket.on("ledOff", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("led off payload: " + objects[0]);
-                        Pair<Boolean, String> resp = null;
-                        if (IsLicenseValidated) {
-                            if (ledLighting) {
-                                ledLighting = false;
-                                boolean ret = DeviceHandler.getDevice().stopLightingTagsLed();
-                                if (ret)
-                                    resp = new Pair<>(ret, "Led turned Off");
-                                else
-                                    resp = new Pair<>(ret, "Unable to turn off LED");
-                            } else
-                                resp = new Pair<>(false, "LED Already stopped");
-                        } else {
-                            resp = new Pair<>(false, "Invalid License");
-                        }
-
-                        Pair<Boolean, String> finalResp = resp;
-                        ackLedOn ack = new ackLedOn() {{
-                            status = finalResp.getKey();
-                            message = finalResp.getValue();
-                        }};
-
-                        ObjectMapper om2 = new ObjectMapper();
-                        String dataJson = null;
-                        try {
-                            dataJson = om2.writeValueAsString(ack);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                        try {
-                            JSONObject jsonObj = new JSONObject(dataJson);
-                            SmartLogger.getLogger().info("send  : " + dataJson);
-                            Ack fn = (Ack) objects[1];
-                            fn.call(jsonObj);
-                        } catch (JSONException e) {
-                            e.printStackTrace();
-
-                        }
-
-                    }
-                });
-                socket.on("oneTagScan", new Emitter.Listener() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("one tag scan payload: " + objects[0]);
-                    }
-                });
-
-                socket.connect();
-
-                Thread.sleep(1000);
-                connectionString connectionString = new connectionString() {{
-                    deviceType = "service";
-                }};
-                ObjectMapper om = new ObjectMapper();
-                String dataJson = om.writeValueAsString(connectionString);
-                JSONObject jsonObj = new JSONObject(dataJson);
-                SmartLogger.getLogger().info("send  : " + dataJson);
-                socket.emit("connection", jsonObj, new Ack() {
-                    @Override
-                    public void call(Object... objects) {
-                        SmartLogger.getLogger().info("Socket connected");
-                    }
-                });
-
-                socket.emit("getConnectedDevices", "sdsd");
-
-            }
+            // Socket.IO middleware
+            SocketIoBridge.start();
 
         ///Socket IO BS
 /*
@@ -1209,8 +640,6 @@ public final class SmartServer
         } catch (InterruptedException ie)
         {
             Logger.getLogger(SmartServer.class.getName()).log(Level.SEVERE, "InterruptedException during execution of sync().", ie);
-        } catch (JsonProcessingException | JSONException e) {
-            e.printStackTrace();
         } finally
         {
             WORKER_GROUP.shutdownGracefully();
@@ -1257,6 +686,8 @@ public final class SmartServer
 
     /**
      * Send the given message using the given channel context. Add the END_OF_MESSAGE character at the end of the message.
+     * If the message responds to a request with a correlation ID (see {@link RequestContext}), the ID is sent first and
+     * the flush of the channel is consolidated with the ones of the other responses (see {@link ResponseFlusher}).
      *
      * @param ctx       ChannelHandlerContext instance corresponding to the channel existing between
      *                  SmartServer and the new Client.
@@ -1272,6 +703,22 @@ public final class SmartServer
             return null;
         }
 
+        // response to a request of a batch: sent with the response of the batch
+        if(RequestContext.collectResponse(ctx, packets))
+        {
+            return ctx.newSucceededFuture();
+        }
+
+        String correlationId = RequestContext.getCorrelationId(ctx);
+
+        if(correlationId != null && packets != null)
+        {
+            String[] correlatedPackets = new String[packets.length + 1];
+            correlatedPackets[0] = correlationId;
+            System.arraycopy(packets, 0, correlatedPackets, 1, packets.length);
+            packets = correlatedPackets;
+        }
+
         String message = MessageHandler.packetsToFullMessage(packets);
 
         if(message == null)
@@ -1279,12 +726,24 @@ public final class SmartServer
             return null;
         }
 
+        Object encoded;
+
         if(ctx.handler() == WS_HANDLER)
         {
-            return ctx.writeAndFlush(new TextWebSocketFrame(message));
+            encoded = new TextWebSocketFrame(message);
+        }
+
+        else if(TcpFraming.isBinary(ctx.channel()))
+        {
+            encoded = TcpFraming.encode(ctx.alloc(), packets);
+        }
+
+        else
+        {
+            encoded = message;
         }
 
-        return ctx.writeAndFlush(message);
+        return correlationId == null ? ctx.writeAndFlush(encoded) : ResponseFlusher.write(ctx, encoded);
     }
 
 
@@ -1297,6 +756,19 @@ public final class SmartServer
      * @return ChannelGroupFuture instance provided by ChannelGroup write() method.
      */
     public static ChannelGroupFuture sendAllClients(String... packets)
+    {
+        return sendAllClients(ChannelMatchers.all(), packets);
+    }
+
+    /**
+     * Send the given message to the connected clients selected by the given matcher.
+     *
+     * @param matcher Select the channels (clients) which should receive the message.
+     * @param packets Message to be delivered to the clients.
+     *
+     * @return ChannelGroupFuture instance provided by ChannelGroup write() method.
+     */
+    public static ChannelGroupFuture sendAllClients(ChannelMatcher matcher, String... packets)
     {
         String message = MessageHandler.packetsToFullMessage(packets);
 
@@ -1305,107 +777,97 @@ public final class SmartServer
             return null;
         }
 
-        ChannelGroupFuture result = TCP_IP_CHAN_GROUP.write(message);
-        WS_CHAN_GROUP.write(new TextWebSocketFrame(message));
-
-        TCP_IP_CHAN_GROUP.flush();
-        WS_CHAN_GROUP.flush();
+        if(!EventJournal.isEvent(packets[0]))
+        {
+            return write(matcher, packets, message);
+        }
 
-        if (IsLicenseValidated)
+        // the events are numbered and written in the same order: a client never receives them out of sequence
+        synchronized(EVENTS_LOCK)
         {
-            if (message.contains("event_scan_started"))
-            {
-                SmartLogger.getLogger().info("Scan started " );
-                scanFlag = true;
-                ackScanStarted ass = new ackScanStarted(){{
-                    msg = "Scan Started";
-                    sockectId = socket.id().toString();
-                }};
-                ObjectMapper om = new ObjectMapper();
-                String dataJson = null;
-                try {
-                    dataJson = om.writeValueAsString(ass);
-                } catch (JsonProcessingException e) {
-                    e.printStackTrace();
-                }
-                JSONObject jsonObj = null;
-                try {
-                    jsonObj = new JSONObject(dataJson);
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-                SmartLogger.getLogger().info("send  : " + dataJson);
-                socket.emit("scanStarted",jsonObj);
+            String[] sequenced = EventJournal.record(matcher, packets);
 
-            }
-            else if (message.contains("event_tag_added"))
-            {
-                int start = message.lastIndexOf('\u001C');
-                int end = message.lastIndexOf('\u0004');
-                String tag_Added  = message.substring(start + 1 ,end);
-                SmartLogger.getLogger().info("Tag Added  " + tag_Added);
-                ackTagAdded ata = new ackTagAdded(){{
-                    str = "SERIAL-" + DeviceHandler.getDevice().getSerialNumber()+", TAG-" + tag_Added;
-                    socketId = socket.id().toString();
-                }};
-                ObjectMapper om = new ObjectMapper();
-                String dataJson = null;
-                try {
-                    dataJson = om.writeValueAsString(ata);
-                } catch (JsonProcessingException e) {
-                    e.printStackTrace();
-                }
-                JSONObject jsonObj = null;
-                try {
-                    jsonObj = new JSONObject(dataJson);
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-                SmartLogger.getLogger().info("send  : " + dataJson);
-                socket.emit("addTag",jsonObj);
+            // only the clients which subscribed to this event (or to all events) receive it
+            matcher = EventSubscriptions.filter(matcher, packets[0]);
 
+            if(!EventJournal.hasSequencedChannels())
+            {
+                return write(matcher, packets, message);
             }
-            else if (message.contains("event_status_changed"))
+
+            write(ChannelMatchers.compose(matcher, EventJournal.SEQUENCED_CHANNELS), sequenced,
+                    MessageHandler.packetsToFullMessage(sequenced));
+            return write(ChannelMatchers.compose(matcher, EventJournal.PLAIN_CHANNELS), packets, message);
+        }
+    }
+
+    /**
+     * Send the events a client missed while it was disconnected (see {@link EventJournal}). From now on, the client
+     * receives the events with their sequence number.
+     *
+     * @param ctx           Channel between SmartServer and the client.
+     * @param lastReceived  Sequence of the last event received by the client (null if none: nothing to send).
+     *
+     * @return False if some of the missed events are not available anymore (the client has to resynchronize).
+     */
+    public static boolean resumeEvents(ChannelHandlerContext ctx, Long lastReceived)
+    {
+        synchronized(EVENTS_LOCK)
+        {
+            EventJournal.setSequenced(ctx.channel(), true);
+
+            if(lastReceived == null)
             {
-                int start = message.lastIndexOf('\u001C');
-                int end = message.lastIndexOf('\u0004');
-                String status = message.substring(start + 1 ,end);
-                SmartLogger.getLogger().info("Rfid Status  " + status);
+                return true;
             }
-            else if (message.contains("event_scan_completed")) {
-                SmartLogger.getLogger().info("Scan completed");
-
-                scanFlag = false;
-                Inventory _lastInventory = ((DaoInventory) DbManager.getDao(InventoryEntity.class)).getLastInventory();
-                ackScanCompleted asc = new ackScanCompleted(){{
-                   status = true;
-                   message = "Scan Completed";
-                   tags = _lastInventory.getTagsAll().toArray();
-                   socketId = socket.id().toString();
-                }};
-                ObjectMapper om = new ObjectMapper();
-                String dataJson = null;
-                try {
-                    dataJson = om.writeValueAsString(asc);
-                } catch (JsonProcessingException e) {
-                    e.printStackTrace();
-                }
-                JSONObject jsonObj = null;
-                try {
-                    jsonObj = new JSONObject(dataJson);
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-                SmartLogger.getLogger().info("send  : " + dataJson);
-                socket.emit("scanCompleted",jsonObj);
 
+            List<String[]> missed = EventJournal.since(lastReceived, ctx.channel());
+
+            if(missed == null)
+            {
+                return false;
             }
-            else
+
+            ChannelMatcher client = ChannelMatchers.is(ctx.channel());
+
+            for(String[] event : missed)
             {
-                SmartLogger.getLogger().info("unknown msg " + message);
+                write(client, event, MessageHandler.packetsToFullMessage(event));
             }
+
+            return true;
+        }
+    }
+
+    /**
+     * Write a message in the selected channels, with the encoding of each channel, and flush them.
+     *
+     * @param matcher Select the channels (clients) which should receive the message.
+     * @param packets Message to be delivered to the clients.
+     * @param message Full message (legacy framing).
+     *
+     * @return ChannelGroupFuture instance provided by ChannelGroup write() method.
+     */
+    private static ChannelGroupFuture write(ChannelMatcher matcher, String[] packets, String message)
+    {
+        // encode the message once: each channel writes a duplicate of the same (pooled) buffer
+        ByteBuf encoded = PooledByteBufAllocator.DEFAULT.buffer(message.length());
+        ByteBufUtil.writeUtf8(encoded, message);
+
+        // the groups release the message once it has been written in each channel
+        ChannelGroupFuture result = TCP_IP_CHAN_GROUP.write(encoded.duplicate().retain(),
+                withFraming(matcher, TcpFraming.LEGACY_CHANNELS));
+        WS_CHAN_GROUP.write(new TextWebSocketFrame(encoded), matcher);
+
+        if(TcpFraming.hasBinaryChannels())
+        {
+            TCP_IP_CHAN_GROUP.write(TcpFraming.encode(PooledByteBufAllocator.DEFAULT, packets),
+                    withFraming(matcher, TcpFraming.BINARY_CHANNELS));
         }
 
+        TCP_IP_CHAN_GROUP.flush(matcher);
+        WS_CHAN_GROUP.flush(matcher);
+
         /*if (InOneTImeSessionScanned )
         {
             if (message.contains("event_scan_completed"))
@@ -1457,6 +919,17 @@ public final class SmartServer
         return result;
     }
 
+    /**
+     * @param matcher Channels selected by the caller.
+     * @param framing Channels using a given TCP/IP framing.
+     *
+     * @return A matcher selecting the channels matched by both.
+     */
+    private static ChannelMatcher withFraming(ChannelMatcher matcher, ChannelMatcher framing)
+    {
+        return matcher == ChannelMatchers.all() ? framing : ChannelMatchers.compose(matcher, framing);
+    }
+
     /**
      * Register a socket address as an administrator (a user authenticated with "SignInAdmin" command).
      * 
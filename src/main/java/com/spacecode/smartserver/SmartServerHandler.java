@@ -14,7 +14,7 @@ import java.util.logging.Level;
  * Default ChannelHandler, used to perform asynchronous communication through regular sockets (TCP/IP).
  */
 @ChannelHandler.Sharable
-final class SmartServerHandler extends SimpleChannelInboundHandler<String>
+final class SmartServerHandler extends SimpleChannelInboundHandler<Object>
 {
     private static final ClientCommandRegister COMMAND_REGISTER = new ClientCommandRegister();
 
@@ -35,12 +35,21 @@ final class SmartServerHandler extends SimpleChannelInboundHandler<String>
      *
      * @param ctx   ChannelHandlerContext instance corresponding to the channel existing between
      *              SmartServer and the new Client.
-     * @param msg   Client message (which is a "Request": a command, with potential parameters).
+     * @param msg   Client message (which is a "Request": a command, with potential parameters). A String (legacy
+     *              framing) or the Packets of a binary frame.
      */
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, String msg)
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg)
     {
-        handleTextRequest(ctx, msg);
+        if(msg instanceof TcpFraming.Packets)
+        {
+            handleBinaryRequest(ctx, (TcpFraming.Packets) msg);
+        }
+
+        else if(msg instanceof String)
+        {
+            handleTextRequest(ctx, (String) msg);
+        }
     }
 
     private void handleTextRequest(ChannelHandlerContext ctx, String request)
@@ -50,8 +59,22 @@ final class SmartServerHandler extends SimpleChannelInboundHandler<String>
             return;
         }
 
-        String[] parameters = request.split(Character.toString(MessageHandler.DELIMITER));
+        handleRequest(ctx, request.split(Character.toString(MessageHandler.DELIMITER)));
+    }
+
+    private void handleBinaryRequest(ChannelHandlerContext ctx, TcpFraming.Packets request)
+    {
+        // each packet is decoded from its own slice of the frame: no delimiter to look for
+        if(request.count() == 0 || !request.packet(0).isReadable())
+        {
+            return;
+        }
+
+        handleRequest(ctx, request.toStrings());
+    }
 
+    private void handleRequest(ChannelHandlerContext ctx, String[] parameters)
+    {
         SmartLogger.getLogger().info(ctx.channel().remoteAddress().toString()+" - "+parameters[0]);
 
         try
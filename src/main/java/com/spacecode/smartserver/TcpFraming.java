@@ -0,0 +1,334 @@
+package com.spacecode.smartserver;
+
+import com.spacecode.sdk.network.communication.MessageHandler;
+import com.spacecode.smartserver.helper.SmartLogger;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.CharsetUtil;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Framing modes of the raw TCP/IP channel.
+ *
+ * <p>LEGACY (default): a message is made of packets separated by {@link MessageHandler#DELIMITER} and ends with
+ * {@link MessageHandler#END_OF_MESSAGE}.</p>
+ *
+ * <p>BINARY: negotiated by the client, which sends {@link #MAGIC} as the very first bytes of the connection
+ * (SmartServer answers with the same bytes). Then each message (both ways) is a length-prefixed frame:</p>
+ * <pre>
+ * [frame length: int32] [packets count: uint16] [end offset of each packet: int32 * count] [UTF-8 packets]
+ * </pre>
+ * The "frame length" excludes itself, offsets are relative to the first byte of the packets. Packets are read
+ * directly from the received buffer: no delimiter is scanned.
+ */
+final class TcpFraming
+{
+    /** Sent by the client to use the BINARY framing. A legacy request never starts with a 0x00 byte. */
+    static final byte[] MAGIC = new byte[] { 0x00, 'S', 'C', 'F', 0x01 };
+
+    /** Framing mode of a channel (no value means LEGACY). */
+    static final AttributeKey<Mode> FRAMING = AttributeKey.valueOf("smartserver.tcp.framing");
+
+    /** Select the channels using the BINARY framing. */
+    static final ChannelMatcher BINARY_CHANNELS = new ChannelMatcher()
+    {
+        @Override
+        public boolean matches(Channel channel)
+        {
+            return isBinary(channel);
+        }
+    };
+
+    /** Select the channels using the LEGACY framing. */
+    static final ChannelMatcher LEGACY_CHANNELS = new ChannelMatcher()
+    {
+        @Override
+        public boolean matches(Channel channel)
+        {
+            return !isBinary(channel);
+        }
+    };
+
+    // size of the "frame length" field and of each offset
+    private static final int INT_SIZE = 4;
+    // size of the "packets count" field
+    private static final int COUNT_SIZE = 2;
+    private static final int MAX_PACKETS = 0xFFFF;
+
+    // number of connected channels using the BINARY framing
+    private static final AtomicInteger BINARY_CHANNELS_COUNT = new AtomicInteger();
+
+    enum Mode
+    {
+        LEGACY,
+        BINARY
+    }
+
+    /** Must not be instantiated. */
+    private TcpFraming()
+    {
+    }
+
+    /**
+     * @param channel TCP/IP channel.
+     *
+     * @return True if the channel uses the BINARY framing (false if unknown).
+     */
+    static boolean isBinary(Channel channel)
+    {
+        if(channel == null)
+        {
+            return false;
+        }
+
+        Attribute<Mode> framing = channel.attr(FRAMING);
+        return framing != null && framing.get() == Mode.BINARY;
+    }
+
+    /**
+     * @return True if at least one connected channel uses the BINARY framing.
+     */
+    static boolean hasBinaryChannels()
+    {
+        return BINARY_CHANNELS_COUNT.get() > 0;
+    }
+
+    /**
+     * @return Number of connected channels using the BINARY framing.
+     */
+    static int getBinaryChannelsCount()
+    {
+        return BINARY_CHANNELS_COUNT.get();
+    }
+
+    /**
+     * Encode the given packets in a BINARY frame.
+     *
+     * @param allocator Allocator of the buffer.
+     * @param packets   Packets of the message (a null packet is sent as an empty one).
+     *
+     * @return A new buffer containing the frame.
+     */
+    static ByteBuf encode(ByteBufAllocator allocator, String... packets)
+    {
+        if(packets.length > MAX_PACKETS)
+        {
+            throw new IllegalArgumentException("Too many packets: " + packets.length);
+        }
+
+        int headerSize = INT_SIZE + COUNT_SIZE + INT_SIZE * packets.length;
+        int estimatedSize = headerSize;
+
+        for(String packet : packets)
+        {
+            estimatedSize += packet == null ? 0 : packet.length();
+        }
+
+        ByteBuf frame = allocator.buffer(estimatedSize);
+        frame.writerIndex(headerSize);
+
+        for(int i = 0; i < packets.length; ++i)
+        {
+            if(packets[i] != null)
+            {
+                ByteBufUtil.writeUtf8(frame, packets[i]);
+            }
+
+            frame.setInt(INT_SIZE + COUNT_SIZE + INT_SIZE * i, frame.writerIndex() - headerSize);
+        }
+
+        frame.setInt(0, frame.writerIndex() - INT_SIZE);
+        frame.setShort(INT_SIZE, packets.length);
+        return frame;
+    }
+
+    /**
+     * @param frame A BINARY frame, as returned by {@link #encode(ByteBufAllocator, String...)}.
+     *
+     * @return A view of the bytes of the first packet of the frame (empty if the frame has no packet).
+     */
+    static ByteBuf firstPacket(ByteBuf frame)
+    {
+        int start = frame.readerIndex() + INT_SIZE;
+        int count = frame.getUnsignedShort(start);
+
+        if(count == 0)
+        {
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        return frame.slice(start + COUNT_SIZE + INT_SIZE * count, frame.getInt(start + COUNT_SIZE));
+    }
+
+    /**
+     * First inbound handler of the TCP/IP pipeline. Reads the first byte(s) of the connection to choose the framing,
+     * then replaces itself by the decoders of this framing.
+     */
+    static class Negotiator extends ByteToMessageDecoder
+    {
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out)
+        {
+            if(!in.isReadable())
+            {
+                return;
+            }
+
+            ChannelPipeline pipeline = ctx.pipeline();
+
+            if(in.getByte(in.readerIndex()) != MAGIC[0])
+            {
+                // Define character EOT (0x04) as an end-of-frame character.
+                pipeline.addAfter(ctx.name(), "frameDecoder", new DelimiterBasedFrameDecoder(
+                        SmartServer.MAX_FRAME_LENGTH, Unpooled.wrappedBuffer(new byte[]{MessageHandler.END_OF_MESSAGE})));
+                // Allow receiving string instead of byte buffers.
+                pipeline.addAfter("frameDecoder", "stringDecoder", new StringDecoder());
+                ctx.channel().attr(FRAMING).set(Mode.LEGACY);
+
+                // the bytes already received are forwarded to the new decoders
+                pipeline.remove(this);
+                return;
+            }
+
+            if(in.readableBytes() < MAGIC.length)
+            {
+                return;
+            }
+
+            for(int i = 0; i < MAGIC.length; ++i)
+            {
+                if(in.getByte(in.readerIndex() + i) != MAGIC[i])
+                {
+                    SmartLogger.getLogger().warning("Invalid framing negotiation from " + ctx.channel().remoteAddress());
+                    in.skipBytes(in.readableBytes());
+                    ctx.close();
+                    return;
+                }
+            }
+
+            in.skipBytes(MAGIC.length);
+
+            pipeline.addAfter(ctx.name(), "frameDecoder",
+                    new LengthFieldBasedFrameDecoder(SmartServer.MAX_FRAME_LENGTH, 0, INT_SIZE, 0, INT_SIZE));
+            pipeline.addAfter("frameDecoder", "packetsDecoder", new FrameDecoder());
+            ctx.channel().attr(FRAMING).set(Mode.BINARY);
+
+            BINARY_CHANNELS_COUNT.incrementAndGet();
+            ctx.channel().closeFuture().addListener(new ChannelFutureListener()
+            {
+                @Override
+                public void operationComplete(ChannelFuture future)
+                {
+                    BINARY_CHANNELS_COUNT.decrementAndGet();
+                }
+            });
+
+            // let the client know that the BINARY framing is used
+            ctx.writeAndFlush(Unpooled.wrappedBuffer(MAGIC));
+            pipeline.remove(this);
+        }
+    }
+
+    /** Turn a BINARY frame (without its length) into {@link Packets}. */
+    static class FrameDecoder extends MessageToMessageDecoder<ByteBuf>
+    {
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf frame, List<Object> out)
+        {
+            if(frame.readableBytes() < COUNT_SIZE)
+            {
+                throw new CorruptedFrameException("Frame too short: " + frame.readableBytes());
+            }
+
+            int count = frame.readUnsignedShort();
+
+            if(frame.readableBytes() < count * INT_SIZE)
+            {
+                throw new CorruptedFrameException("Frame too short for " + count + " packets");
+            }
+
+            int[] ends = new int[count];
+            int payloadLength = frame.readableBytes() - count * INT_SIZE;
+            int previousEnd = 0;
+
+            for(int i = 0; i < count; ++i)
+            {
+                ends[i] = frame.readInt();
+
+                if(ends[i] < previousEnd || ends[i] > payloadLength)
+                {
+                    throw new CorruptedFrameException("Invalid offset of packet " + i + ": " + ends[i]);
+                }
+
+                previousEnd = ends[i];
+            }
+
+            out.add(new Packets(frame.slice().retain(), ends));
+        }
+    }
+
+    /** Packets of a received BINARY frame, read as views of the frame buffer. */
+    static class Packets extends DefaultByteBufHolder
+    {
+        private final int[] _ends;
+
+        Packets(ByteBuf payload, int[] ends)
+        {
+            super(payload);
+            _ends = ends;
+        }
+
+        /**
+         * @return Number of packets.
+         */
+        int count()
+        {
+            return _ends.length;
+        }
+
+        /**
+         * @param index Index of the packet.
+         *
+         * @return A view of the bytes of the packet (not a copy, not retained).
+         */
+        ByteBuf packet(int index)
+        {
+            int start = index == 0 ? 0 : _ends[index - 1];
+            return content().slice(content().readerIndex() + start, _ends[index] - start);
+        }
+
+        /**
+         * @return Packets decoded as Strings (UTF-8).
+         */
+        String[] toStrings()
+        {
+            String[] result = new String[_ends.length];
+
+            for(int i = 0; i < _ends.length; ++i)
+            {
+                result[i] = packet(i).toString(CharsetUtil.UTF_8);
+            }
+
+            return result;
+        }
+    }
+}
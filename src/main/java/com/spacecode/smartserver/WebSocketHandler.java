@@ -5,6 +5,7 @@ import com.spacecode.smartserver.command.ClientCommandException;
 import com.spacecode.smartserver.command.ClientCommandRegister;
 import com.spacecode.smartserver.helper.SmartLogger;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
@@ -12,6 +13,7 @@ import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.websocketx.*;
+import io.netty.util.AttributeKey;
 import io.netty.util.CharsetUtil;
 
 import java.util.logging.Level;
@@ -28,18 +30,35 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 @ChannelHandler.Sharable
 class WebSocketHandler extends SimpleChannelInboundHandler<Object>
 {
-    private WebSocketServerHandshaker _handshaker;
     private static final ClientCommandRegister COMMAND_REGISTER = new ClientCommandRegister();
 
-    private final StringBuilder _continuousBuffer = new StringBuilder();
+    // the handler is shared by all the channels: the state of each connection is kept as an attribute of its channel
+    private static final AttributeKey<WebSocketSession> SESSION = AttributeKey.valueOf("smartserver.ws.session");
+
+    // maximum number of fragments kept as they are (above that, the composite buffer is consolidated: copied)
+    private static final int MAX_FRAGMENTS = 1024;
 
     @Override
     public void channelActive(final ChannelHandlerContext ctx)
     {
+        ctx.channel().attr(SESSION).set(new WebSocketSession());
         SmartServer.addClientChannel(ctx.channel(), ctx.handler());
         SmartLogger.getLogger().info("Receive Connection from " + ctx.channel().remoteAddress());
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception
+    {
+        WebSocketSession session = ctx.channel().attr(SESSION).getAndRemove();
+
+        if(session != null)
+        {
+            session.releaseFragments();
+        }
+
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void channelRead0(ChannelHandlerContext ctx, Object msg)
     {
@@ -85,9 +104,9 @@ class WebSocketHandler extends SimpleChannelInboundHandler<Object>
         WebSocketServerHandshakerFactory wsFactory = new WebSocketServerHandshakerFactory(
                 "ws://" + req.headers().get(HOST), null, false, SmartServer.MAX_FRAME_LENGTH);
 
-        _handshaker = wsFactory.newHandshaker(req);
+        WebSocketServerHandshaker handshaker = wsFactory.newHandshaker(req);
 
-        if (_handshaker == null)
+        if (handshaker == null)
         {
             SmartLogger.getLogger().log(Level.INFO, "unsupported version");
             WebSocketServerHandshakerFactory.sendUnsupportedVersionResponse(ctx.channel());
@@ -96,45 +115,68 @@ class WebSocketHandler extends SimpleChannelInboundHandler<Object>
         else
         {
             //SmartLogger.getLogger().log(Level.INFO, "Handsake " + req.toString());
-            _handshaker.handshake(ctx.channel(), req);
+            ctx.channel().attr(SESSION).get()._handshaker = handshaker;
+            handshaker.handshake(ctx.channel(), req);
         }
     }
 
     private void handleWebSocketFrame(ChannelHandlerContext ctx, WebSocketFrame frame)
     {
+        WebSocketSession session = ctx.channel().attr(SESSION).get();
+
         if (frame instanceof CloseWebSocketFrame)
         {
             //SmartLogger.getLogger().log(Level.INFO, "frame is  CloseWebSocketFrame");
-            _handshaker.close(ctx.channel(), (CloseWebSocketFrame) frame.retain());
+            session.releaseFragments();
+            session._handshaker.close(ctx.channel(), (CloseWebSocketFrame) frame.retain());
             return;
         }
 
-        String request;
-
-        if (frame instanceof TextWebSocketFrame)
+        if (!(frame instanceof TextWebSocketFrame) && !(frame instanceof ContinuationWebSocketFrame))
         {
-            _continuousBuffer.append(((TextWebSocketFrame) frame).text());
+            SmartLogger.getLogger().severe("Invalid WebSocketFrame not handled: " + frame.getClass());
+            return;
         }
 
-        else if (frame instanceof ContinuationWebSocketFrame)
-        {
-            _continuousBuffer.append(((ContinuationWebSocketFrame) frame).text());
-        }
+        String request;
 
-        else
+        // a complete (not fragmented) message: decoded directly from the frame
+        if(frame.isFinalFragment() && session._fragments == null)
         {
-            SmartLogger.getLogger().severe("Invalid WebSocketFrame not handled: " + frame.getClass());
-            return;
+            request = frame.content().toString(CharsetUtil.UTF_8);
         }
 
-        if(!frame.isFinalFragment())
+        else
         {
-            SmartLogger.getLogger().log(Level.INFO, "frame is not FinalFragment()");
-            return;
+            // keep the fragment (no copy, no decoding) until the final one is received
+            if(session._fragments == null)
+            {
+                session._fragments = ctx.alloc().compositeBuffer(MAX_FRAGMENTS);
+            }
+
+            ByteBuf fragment = frame.content();
+            session._fragments.addComponent(fragment.retain());
+            session._fragments.writerIndex(session._fragments.writerIndex() + fragment.readableBytes());
+
+            if(session._fragments.readableBytes() > SmartServer.MAX_FRAME_LENGTH)
+            {
+                SmartLogger.getLogger().warning("Fragmented WebSocket message too long, closing "
+                        + ctx.channel().remoteAddress());
+                session.releaseFragments();
+                ctx.close();
+                return;
+            }
+
+            if(!frame.isFinalFragment())
+            {
+                return;
+            }
+
+            // the whole message is decoded once, when the last fragment is received
+            request = session._fragments.toString(CharsetUtil.UTF_8);
+            session.releaseFragments();
         }
 
-        request = _continuousBuffer.toString();
-        _continuousBuffer.setLength(0);
         if(request.trim().isEmpty())
         {
             return;
@@ -176,4 +218,20 @@ class WebSocketHandler extends SimpleChannelInboundHandler<Object>
         SmartLogger.getLogger().log(Level.WARNING, "Exception caught by WebSockethandler", cause);
         ctx.close();
     }
+
+    /** State of a WebSocket connection: its handshaker, and the fragments of an incomplete message (if any). */
+    private static class WebSocketSession
+    {
+        private WebSocketServerHandshaker _handshaker;
+        private CompositeByteBuf _fragments;
+
+        private void releaseFragments()
+        {
+            if(_fragments != null)
+            {
+                _fragments.release();
+                _fragments = null;
+            }
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.SmartServer;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Command completing asynchronously: instead of sending its response, it returns a future of the response packets.
+ *
+ * The request is accepted by the calling (network) thread, which only starts the command: the slow part (database,
+ * device) is executed by the executor of its workload (see {@link CommandExecutors#supplyAsync}), and the
+ * {@link ClientCommandRegister} sends the response once the future is completed. If the future fails or is not
+ * completed within the {@link CommandContract#timeout()}, the {@link CommandContract#responseIfInvalid()} is sent.
+ */
+abstract class AsyncClientCommand extends ClientCommand
+{
+    /**
+     * To be overridden for each command behavior.
+     *
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    String array containing parameters (if any) provided by the client.
+     *
+     * @return Future of the response packets (RequestCode first).
+     */
+    abstract CompletableFuture<String[]> executeAsync(ChannelHandlerContext ctx, String[] parameters);
+
+    /**
+     * Execute the command and wait for its response (blocking), then send it.
+     *
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    String array containing parameters (if any) provided by the client.
+     *
+     * @throws ClientCommandException If the command failed.
+     */
+    @Override
+    public void execute(ChannelHandlerContext ctx, String[] parameters) throws ClientCommandException
+    {
+        String[] response;
+
+        try
+        {
+            response = executeAsync(ctx, parameters).join();
+        } catch(CompletionException | CancellationException e)
+        {
+            throw new ClientCommandException("Asynchronous command failed: " + e.getMessage());
+        }
+
+        SmartServer.sendMessage(ctx, response);
+    }
+
+    /**
+     * @param packets Response packets.
+     *
+     * @return A future already completed with the given response.
+     */
+    static CompletableFuture<String[]> completed(String... packets)
+    {
+        return CompletableFuture.completedFuture(packets);
+    }
+}
@@ -2,7 +2,7 @@ package com.spacecode.smartserver.command;
 
 import io.netty.channel.ChannelHandlerContext;
 
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * See Command pattern: http://en.wikipedia.org/wiki/Command_pattern
@@ -26,12 +26,36 @@ abstract class ClientCommand
 
     /**
      * Allow paralleling an action when running a command (the method is protected, then inherited).
-     * Simply prevent from instantiating/using a custom thread-pool etc.
+     * Simply prevent from instantiating/using a custom thread-pool etc.: the action is executed by the shared pool of
+     * background threads (see {@link CommandExecutors}), and cancelled if the client leaves or if it times out.
      *
+     * @param ctx       Channel between SmartServer and the client.
      * @param runnable  Runnable instance of the task to be paralleled.
+     * @param timeout   Maximum duration of the task.
+     * @param unit      Unit of the timeout.
+     *
+     * @return False if the task was rejected (too many tasks running), true otherwise.
+     */
+    static boolean parallelize(ChannelHandlerContext ctx, Runnable runnable, long timeout, TimeUnit unit)
+    {
+        return CommandExecutors.runInBackground(ctx.channel(), runnable, timeout, unit);
+    }
+
+    /**
+     * Same as {@link #parallelize(ChannelHandlerContext, Runnable, long, TimeUnit)}, with an action executed if the
+     * task is cancelled (i.e. to answer the client).
+     *
+     * @param ctx           Channel between SmartServer and the client.
+     * @param runnable      Runnable instance of the task to be paralleled.
+     * @param onCancelled   Called if the task times out, or if the client leaves.
+     * @param timeout       Maximum duration of the task.
+     * @param unit          Unit of the timeout.
+     *
+     * @return False if the task was rejected (too many tasks running), true otherwise.
      */
-    static void parallelize(Runnable runnable)
+    static boolean parallelize(ChannelHandlerContext ctx, Runnable runnable, Runnable onCancelled, long timeout,
+                               TimeUnit unit)
     {
-        Executors.newSingleThreadExecutor().submit(runnable);
+        return CommandExecutors.runInBackground(ctx.channel(), runnable, onCancelled, timeout, unit);
     }
 }
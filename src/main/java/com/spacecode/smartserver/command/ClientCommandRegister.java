@@ -2,109 +2,139 @@ package com.spacecode.smartserver.command;
 
 import com.spacecode.sdk.network.communication.RequestCode;
 import com.spacecode.smartserver.SmartServer;
-import com.spacecode.smartserver.helper.DeviceHandler;
+import com.spacecode.smartserver.helper.ResponseCache;
 import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
 import io.netty.channel.ChannelHandlerContext;
 
-import java.lang.annotation.Annotation;
-import java.net.SocketAddress;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 
 /**
  * ClientCommandRegister contains the mapping of Request Codes to Commands.<br/> 
- * This class handles the execution of each command by providing an anti-flood system (a request coming from the same
- * socket with the same code/parameters in a given delay will be refused).<br/>
+ * The contract of each command is resolved once, when the command is registered (immutable dispatch table, replaced
+ * when a command is added). Each execution goes through a chain of {@link CommandInterceptor}: rate limiting of each
+ * client (see {@link RateLimitInterceptor}), contract checks, timing and tracing (see {@link CommandInterceptors}).<br/>
  * Few "secret" commands are also provided for internal purposes like "TestRFID" integrated into a web app (SmartApp).
  */
 public final class ClientCommandRegister extends ClientCommand
 {
     // Key:     Command code (RequestCode value).
-    // Value:   ClientCommand instance.
-    private final Map<String, ClientCommand> _commands = new HashMap<>();
+    // Value:   ClientCommand instance and its contract.
+    private volatile Map<String, RegisteredCommand> _commands;
 
-    // delay (ms) allowed between 2 executions of a same request (same request code, param count, and first param)
-    static final int DELAY_BETWEEN_EXEC = 500;
-    private long _lastExecTimestamp;
-    private String[] _lastExecPackets = new String[] { "" };
-    private SocketAddress _lastSender = null;
+    // called before/after each execution, in this order
+    private volatile CommandInterceptor[] _interceptors;
 
     /**
      * Initialize a command register: Build the map "RequestCode to Command".
      */
     public ClientCommandRegister()
     {
-        _commands.put(RequestCode.ADD_ALERT,            new CmdAddAlert());
-        _commands.put(RequestCode.ADD_USER,             new CmdAddUser());
-        _commands.put(RequestCode.ALERTS_LIST,          new CmdAlertsList());
-        _commands.put(RequestCode.ALERT_REPORTS,        new CmdAlertReports());
-        _commands.put(RequestCode.AUTHENTICATIONS_LIST, new CmdAuthenticationsList());
-        _commands.put(RequestCode.DB_SETTINGS,          new CmdDbSettings());
-        _commands.put(RequestCode.DEVICE_STATUS,        new CmdDeviceStatus());
-        _commands.put(RequestCode.DISCONNECT,           new CmdDisconnect());
-        _commands.put(RequestCode.ENROLL_FINGER,        new CmdEnrollFinger());
-        _commands.put(RequestCode.INITIALIZATION,       new CmdInitialization());
-        _commands.put(RequestCode.INVENTORIES_LIST,     new CmdInventoriesList());
-        _commands.put(RequestCode.INVENTORY_BY_ID,      new CmdInventoryById());
-        _commands.put(RequestCode.LAST_ALERT,           new CmdLastAlert());
-        _commands.put(RequestCode.LAST_INVENTORY,       new CmdLastInventory());
-        _commands.put(RequestCode.PROBE_SETTINGS,       new CmdProbeSettings());
-        _commands.put(RequestCode.REMOVE_ALERT,         new CmdRemoveAlert());
-        _commands.put(RequestCode.REMOVE_FINGERPRINT,   new CmdRemoveFingerprint());
-        _commands.put(RequestCode.REMOVE_USER,          new CmdRemoveUser());
-        _commands.put(RequestCode.REWRITE_UID,          new CmdRewriteUid());
-        _commands.put(RequestCode.SCAN,                 new CmdScan());
-        _commands.put(RequestCode.SET_DB_SETTINGS,      new CmdSetDbSettings());
-        _commands.put(RequestCode.SET_LIGHT_INTENSITY,  new CmdSetLightIntensity());
-        _commands.put(RequestCode.SET_PROBE_SETTINGS,   new CmdSetProbeSettings());
-        _commands.put(RequestCode.SET_SMTP_SERVER,      new CmdSetSmtpServer());
-        _commands.put(RequestCode.SET_THIEF_FINGER,     new CmdSetThiefFinger());
-        _commands.put(RequestCode.SMTP_SERVER,          new CmdSmtpServer());
-        _commands.put(RequestCode.START_LIGHTING,       new CmdStartLighting());
-        _commands.put(RequestCode.STOP_LIGHTING,        new CmdStopLighting());
-        _commands.put(RequestCode.STOP_SCAN,            new CmdStopScan());
-        _commands.put(RequestCode.UPDATE_PERMISSION,    new CmdUpdatePermission());
-        _commands.put(RequestCode.UPDATE_ALERT,         new CmdUpdateAlert());
-        _commands.put(RequestCode.UPDATE_BADGE,         new CmdUpdateBadge());
-        _commands.put(RequestCode.USER_BY_NAME,         new CmdUserByName());
-        _commands.put(RequestCode.USERS_LIST,           new CmdUsersList());
-        _commands.put(RequestCode.USERS_UNREGISTERED,   new CmdUnregisteredUsers());
-        _commands.put(RequestCode.TAG_TO_DRAWER,        new CmdTagToDrawer());
-        _commands.put(RequestCode.TAG_TO_DRAWER_BY_ID,  new CmdTagToDrawerById());
-        _commands.put(RequestCode.TEMPERATURE_CURRENT,  new CmdTemperatureCurrent());
-        _commands.put(RequestCode.TEMPERATURE_LIST,     new CmdTemperatureList());
-        _commands.put(RequestCode.START_LIGHTING_ACROSS, new CmdStartLightingAcrossReader());
-        _commands.put(RequestCode.STOP_LIGHTING_ACROSS, new CmdStopLightingAcrossReader());
+        Map<String, ClientCommand> commands = new HashMap<>();
+
+        commands.put(RequestCode.ADD_ALERT,            new CmdAddAlert());
+        commands.put(RequestCode.ADD_USER,             new CmdAddUser());
+        commands.put(RequestCode.ALERTS_LIST,          new CmdAlertsList());
+        commands.put(RequestCode.ALERT_REPORTS,        new CmdAlertReports());
+        commands.put(RequestCode.AUTHENTICATIONS_LIST, new CmdAuthenticationsList());
+        commands.put(RequestCode.DB_SETTINGS,          new CmdDbSettings());
+        commands.put(RequestCode.DEVICE_STATUS,        new CmdDeviceStatus());
+        commands.put(RequestCode.DISCONNECT,           new CmdDisconnect());
+        commands.put(RequestCode.ENROLL_FINGER,        new CmdEnrollFinger());
+        commands.put(RequestCode.INITIALIZATION,       new CmdInitialization());
+        commands.put(RequestCode.INVENTORIES_LIST,     new CmdInventoriesList());
+        commands.put(RequestCode.INVENTORY_BY_ID,      new CmdInventoryById());
+        commands.put(RequestCode.LAST_ALERT,           new CmdLastAlert());
+        commands.put(RequestCode.LAST_INVENTORY,       new CmdLastInventory());
+        commands.put(RequestCode.PROBE_SETTINGS,       new CmdProbeSettings());
+        commands.put(RequestCode.REMOVE_ALERT,         new CmdRemoveAlert());
+        commands.put(RequestCode.REMOVE_FINGERPRINT,   new CmdRemoveFingerprint());
+        commands.put(RequestCode.REMOVE_USER,          new CmdRemoveUser());
+        commands.put(RequestCode.REWRITE_UID,          new CmdRewriteUid());
+        commands.put(RequestCode.SCAN,                 new CmdScan());
+        commands.put(RequestCode.SET_DB_SETTINGS,      new CmdSetDbSettings());
+        commands.put(RequestCode.SET_LIGHT_INTENSITY,  new CmdSetLightIntensity());
+        commands.put(RequestCode.SET_PROBE_SETTINGS,   new CmdSetProbeSettings());
+        commands.put(RequestCode.SET_SMTP_SERVER,      new CmdSetSmtpServer());
+        commands.put(RequestCode.SET_THIEF_FINGER,     new CmdSetThiefFinger());
+        commands.put(RequestCode.SMTP_SERVER,          new CmdSmtpServer());
+        commands.put(RequestCode.START_LIGHTING,       new CmdStartLighting());
+        commands.put(RequestCode.STOP_LIGHTING,        new CmdStopLighting());
+        commands.put(RequestCode.STOP_SCAN,            new CmdStopScan());
+        commands.put(RequestCode.UPDATE_PERMISSION,    new CmdUpdatePermission());
+        commands.put(RequestCode.UPDATE_ALERT,         new CmdUpdateAlert());
+        commands.put(RequestCode.UPDATE_BADGE,         new CmdUpdateBadge());
+        commands.put(RequestCode.USER_BY_NAME,         new CmdUserByName());
+        commands.put(RequestCode.USERS_LIST,           new CmdUsersList());
+        commands.put(RequestCode.USERS_UNREGISTERED,   new CmdUnregisteredUsers());
+        commands.put(RequestCode.TAG_TO_DRAWER,        new CmdTagToDrawer());
+        commands.put(RequestCode.TAG_TO_DRAWER_BY_ID,  new CmdTagToDrawerById());
+        commands.put(RequestCode.TEMPERATURE_CURRENT,  new CmdTemperatureCurrent());
+        commands.put(RequestCode.TEMPERATURE_LIST,     new CmdTemperatureList());
+        commands.put(RequestCode.START_LIGHTING_ACROSS, new CmdStartLightingAcrossReader());
+        commands.put(RequestCode.STOP_LIGHTING_ACROSS, new CmdStopLightingAcrossReader());
 
         // RequestCodes not open to SDK/API users: Spacecode's internal usage only
-        _commands.put(AppCode.BR_SERIAL,                new ScAdmin.CmdBrSerial());
-        _commands.put(AppCode.FLASH_FIRMWARE,           new ScAdmin.CmdFlashFirmware());
-        _commands.put(AppCode.HOSTNAME,                 new ScAdmin.CmdHostname());
-        _commands.put(AppCode.FPR_SERIAL,               new ScAdmin.CmdFprSerial());
-        _commands.put(AppCode.NETWORK_SETTINGS,         new ScAdmin.CmdNetworkSettings());
-        _commands.put(AppCode.SIGN_IN_ADMIN,            new ScAdmin.CmdSignInAdmin());
-        _commands.put(AppCode.SERIAL_BRIDGE,            new ScAdmin.CmdSerialBridge());
-        _commands.put(AppCode.SET_BR_SERIAL,            new ScAdmin.CmdSetBrSerial());
-        _commands.put(AppCode.SET_FPR_SERIAL,           new ScAdmin.CmdSetFprSerial());
-        _commands.put(AppCode.SET_NETWORK,              new ScAdmin.CmdSetNetworkSettings());
-        _commands.put(AppCode.START_UPDATE,             new ScAdmin.CmdStartUpdate());
-        _commands.put(AppCode.UPDATE_REPORT,            new ScAdmin.CmdUpdateReport());
+        commands.put(AppCode.BR_SERIAL,                new ScAdmin.CmdBrSerial());
+        commands.put(AppCode.FLASH_FIRMWARE,           new ScAdmin.CmdFlashFirmware());
+        commands.put(AppCode.HOSTNAME,                 new ScAdmin.CmdHostname());
+        commands.put(AppCode.FPR_SERIAL,               new ScAdmin.CmdFprSerial());
+        commands.put(AppCode.METRICS,                  new ScAdmin.CmdMetrics());
+        commands.put(AppCode.NETWORK_SETTINGS,         new ScAdmin.CmdNetworkSettings());
+        commands.put(AppCode.SIGN_IN_ADMIN,            new ScAdmin.CmdSignInAdmin());
+        commands.put(AppCode.SERIAL_BRIDGE,            new ScAdmin.CmdSerialBridge());
+        commands.put(AppCode.SET_BR_SERIAL,            new ScAdmin.CmdSetBrSerial());
+        commands.put(AppCode.SET_FPR_SERIAL,           new ScAdmin.CmdSetFprSerial());
+        commands.put(AppCode.SET_NETWORK,              new ScAdmin.CmdSetNetworkSettings());
+        commands.put(AppCode.START_UPDATE,             new ScAdmin.CmdStartUpdate());
+        commands.put(AppCode.UPDATE_REPORT,            new ScAdmin.CmdUpdateReport());
+        // Several requests in one round trip
+        commands.put(AppCode.BATCH,                    new CmdBatch(this));
+        // Scans chained back-to-back, only the changes are sent
+        commands.put(AppCode.CONTINUOUS_SCAN,          new CmdContinuousScan());
+        // Delta synchronization of the inventories
+        commands.put(AppCode.INVENTORIES_SINCE,        new CmdInventoriesSince());
+        commands.put(AppCode.INVENTORY_DIGESTS,        new CmdInventoryDigests());
+        // Options of the connection (events sent to the client)
+        commands.put(AppCode.EVENT_BATCHING,           new CmdEventBatching());
+        commands.put(AppCode.RESUME_EVENTS,            new CmdResumeEvents());
+        commands.put(AppCode.SUBSCRIBE,                new CmdSubscribe());
+        commands.put(AppCode.UNSUBSCRIBE,              new CmdUnsubscribe());
         // Requires the User to be authenticated, "TestRFID" part
-        _commands.put(AppCode.RFID_AXIS_COUNT,          new ScRfid.CmdRfidAxisCount());
-        _commands.put(AppCode.RFID_CALIBRATE,           new ScRfid.CmdRfidCalibrate());
-        _commands.put(AppCode.RFID_DEC_FREQUENCY,       new ScRfid.CmdRfidDecFrequency());
-        _commands.put(AppCode.RFID_DUTY_CYCLE,          new ScRfid.CmdRfidDutyCycle());
-        _commands.put(AppCode.RFID_FREQUENCY,           new ScRfid.CmdRfidFrequency());
-        _commands.put(AppCode.RFID_INC_FREQUENCY,       new ScRfid.CmdRfidIncFrequency());
-        _commands.put(AppCode.RFID_SAVE_DUTY_CYCLE,     new ScRfid.CmdRfidSaveDutyCycle());
-        _commands.put(AppCode.RFID_SELECT_AXIS,         new ScRfid.CmdRfidSelectAxis());
-        _commands.put(AppCode.RFID_SET_DOOR_STATE,      new ScRfid.CmdRfidSetDoorState());
-        _commands.put(AppCode.RFID_SET_DUTY_CYCLE,      new ScRfid.CmdRfidSetDutyCycle());
-        _commands.put(AppCode.RFID_SET_THRESHOLD,       new ScRfid.CmdRfidSetThreshold());
-        _commands.put(AppCode.RFID_THRESHOLD,           new ScRfid.CmdRfidThreshold());
-        _commands.put(AppCode.RFID_THRESHOLD_SAMPLING,  new ScRfid.CmdRfidThresholdSampling());
+        commands.put(AppCode.RFID_AXIS_COUNT,          new ScRfid.CmdRfidAxisCount());
+        commands.put(AppCode.RFID_CALIBRATE,           new ScRfid.CmdRfidCalibrate());
+        commands.put(AppCode.RFID_DEC_FREQUENCY,       new ScRfid.CmdRfidDecFrequency());
+        commands.put(AppCode.RFID_DUTY_CYCLE,          new ScRfid.CmdRfidDutyCycle());
+        commands.put(AppCode.RFID_FREQUENCY,           new ScRfid.CmdRfidFrequency());
+        commands.put(AppCode.RFID_INC_FREQUENCY,       new ScRfid.CmdRfidIncFrequency());
+        commands.put(AppCode.RFID_SAVE_DUTY_CYCLE,     new ScRfid.CmdRfidSaveDutyCycle());
+        commands.put(AppCode.RFID_SELECT_AXIS,         new ScRfid.CmdRfidSelectAxis());
+        commands.put(AppCode.RFID_SET_DOOR_STATE,      new ScRfid.CmdRfidSetDoorState());
+        commands.put(AppCode.RFID_SET_DUTY_CYCLE,      new ScRfid.CmdRfidSetDutyCycle());
+        commands.put(AppCode.RFID_SET_THRESHOLD,       new ScRfid.CmdRfidSetThreshold());
+        commands.put(AppCode.RFID_THRESHOLD,           new ScRfid.CmdRfidThreshold());
+        commands.put(AppCode.RFID_THRESHOLD_SAMPLING,  new ScRfid.CmdRfidThresholdSampling());
+
+        Map<String, RegisteredCommand> dispatchTable = new HashMap<>();
+
+        for(Map.Entry<String, ClientCommand> entry : commands.entrySet())
+        {
+            dispatchTable.put(entry.getKey(), new RegisteredCommand(entry.getKey(), entry.getValue()));
+        }
+
+        _commands = Collections.unmodifiableMap(dispatchTable);
+        _interceptors = CommandInterceptors.defaults();
     }
 
     /**
@@ -115,7 +145,7 @@ public final class ClientCommandRegister extends ClientCommand
      *
      * @return True if the operation succeeded, false otherwise (invalid command and/or name, or name already in use).
      */
-    public boolean addCommand(String name, ClientCommand command)
+    public synchronized boolean addCommand(String name, ClientCommand command)
     {
         if(name == null || command == null || name.trim().isEmpty())
         {
@@ -127,13 +157,28 @@ public final class ClientCommandRegister extends ClientCommand
             return false;
         }
 
-        _commands.put(name, command);
+        Map<String, RegisteredCommand> dispatchTable = new HashMap<>(_commands);
+        dispatchTable.put(name, new RegisteredCommand(name, command));
+        _commands = Collections.unmodifiableMap(dispatchTable);
         return true;
     }
 
+    /**
+     * Add an interceptor at the end of the chain (called before/after the execution of all commands).
+     *
+     * @param interceptor Interceptor to be added.
+     */
+    synchronized void addInterceptor(CommandInterceptor interceptor)
+    {
+        CommandInterceptor[] interceptors = Arrays.copyOf(_interceptors, _interceptors.length + 1);
+        interceptors[_interceptors.length] = interceptor;
+        _interceptors = interceptors;
+    }
+
     /**
      * Looks for a ClientCommand corresponding to the given request and execute it with given parameters.
      * First entry of the "parameters" array contains the RequestCode. Others (if any) are extra parameters.
+     * The RequestCode can be preceded by a correlation ID, echoed in the response(s) (see {@link RequestContext}).
      *
      * @param ctx                       Channel between SmartServer and the client.
      * @param parameters                String array containing parameters (if any) provided by the client.
@@ -143,138 +188,397 @@ public final class ClientCommandRegister extends ClientCommand
     @Override
     public void execute(final ChannelHandlerContext ctx, final String[] parameters) throws ClientCommandException
     {
-        String requestCode = parameters[0];
-        final ClientCommand cmd = _commands.get(requestCode);
+        int codeIndex = parameters.length > 1 && RequestContext.isCorrelationId(parameters[0]) ? 1 : 0;
+        String requestCode = parameters[codeIndex];
+        RegisteredCommand cmd = _commands.get(requestCode);
 
         if(cmd == null)
         {
             throw new ClientCommandException("Unknown Command: " + requestCode);
         }
 
-        boolean executeCommand = true;
-        long currentTimestamp = System.currentTimeMillis();
+        RequestContext context = codeIndex == 0 ? null : new RequestContext(ctx, parameters[0]);
 
-        // if the previous request code was the same & came from the same sender
-        if(requestCode.equals(_lastExecPackets[0]) && _lastSender == ctx.channel().remoteAddress())
-        {
-            // if the number of parameters is the same
-            if(parameters.length > 0 && _lastExecPackets.length == parameters.length)
-            { 
-                executeCommand = false;
+        // remove the RequestCode and keep the other packets: parameters for the command
+        dispatch(cmd, ctx, Arrays.copyOfRange(parameters, codeIndex + 1, parameters.length), context);
+    }
 
-                // if any packet is different: consider this is not the same request: execute it
-                for(int i = 1; i < parameters.length; ++i)
-                {
-                    if(!parameters[i].equals(_lastExecPackets[i]))
-                    {
-                        executeCommand = true;
-                        break;
-                    }
-                }
-                
-                // if the packets are the same BUT the anti-flood delay has passed, execute it 
-                if(!executeCommand)
-                {
-                    executeCommand = currentTimestamp - _lastExecTimestamp > DELAY_BETWEEN_EXEC;    
-                }                
-            }
-        }
+    /**
+     * Execute a request of a batch (see {@link CmdBatch}): its response completes the given future instead of being
+     * sent to the client.
+     *
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    RequestCode and parameters (if any) of the request.
+     * @param response      Future of the response to the request.
+     *
+     * @return False if the request is unknown (or is a batch), true otherwise.
+     */
+    boolean executeInBatch(ChannelHandlerContext ctx, String[] parameters, CompletableFuture<String[]> response)
+    {
+        RegisteredCommand cmd = _commands.get(parameters[0]);
 
-        _lastExecTimestamp = currentTimestamp;
-        _lastExecPackets = Arrays.copyOfRange(parameters, 0, parameters.length);
-        _lastSender = ctx.channel().remoteAddress();
+        if(cmd == null || cmd.getCommand() instanceof CmdBatch)
+        {
+            return false;
+        }
 
-        if(executeCommand)
+        try
+        {
+            dispatch(cmd, ctx, Arrays.copyOfRange(parameters, 1, parameters.length),
+                    new RequestContext(ctx, null, response));
+        } catch (ClientCommandException cce)
         {
-            // remove the RequestCode and keep the other packets: parameters for the command
-            executeOrFail(cmd, ctx, requestCode, Arrays.copyOfRange(parameters, 1, parameters.length));
+            response.completeExceptionally(cce);
         }
+
+        return true;
     }
 
     /**
-     * Check the command CommandContract: 
-     * If invalid, the {@link CommandContract#responseIfInvalid()} will be sent back. Otherwise, cmd is executed.
+     * Execute the command with the executor matching its {@link CommandContract#workload()}, for the network (I/O)
+     * threads not to be blocked by the device or the database. Cheap commands are executed by the calling thread, as
+     * well as asynchronous commands (which use the executor of their workload for their slow part only).
+     * If the executor is overloaded (full queue), the request is rejected with the
+     * {@link CommandContract#responseIfInvalid()} of the command.
      *
      * @param cmd           Command to be executed.
      * @param ctx           Channel of the client used to send the request.
-     * @param requestCode   RequestCode of the request.
      * @param cmdParams     Parameters given with the request.
+     * @param context       Context of the request (null if the request has no correlation ID).
+     *
+     * @throws ClientCommandException If the command is executed by the calling thread and fails.
      */
-    public void executeOrFail(ClientCommand cmd, ChannelHandlerContext ctx, String requestCode, String[] cmdParams) 
-            throws ClientCommandException
+    private void dispatch(final RegisteredCommand cmd, final ChannelHandlerContext ctx, final String[] cmdParams,
+                          RequestContext context) throws ClientCommandException
     {
-        for(Annotation annotation : cmd.getClass().getAnnotations())
+        final String[] cachedResponse = cmd.getContract().cached() ?
+                ResponseCache.get(cmd.getRequestCode(), cmdParams) : null;
+
+        // a cached response is sent by the calling thread: no work left for the executors
+        Executor executor = cmd.isAsync() || cachedResponse != null ?
+                null : CommandExecutors.get(cmd.getContract().workload());
+
+        if(executor == null)
         {
-            if(!(annotation instanceof CommandContract))
+            RequestContext previous = RequestContext.attach(context);
+
+            try
+            {
+                executeOrFail(cmd, ctx, cmdParams, cachedResponse);
+            } finally
             {
-                continue;
+                RequestContext.restore(previous);
             }
+            return;
+        }
 
-            CommandContract contract = (CommandContract) annotation;
-
-            boolean logException = true;
+        final long queuedAt = System.nanoTime();
 
-            try
+        try
+        {
+            executor.execute(RequestContext.wrap(context, new Runnable()
             {
-                // either the number of param is "enough" (not-strict mode), either it needs to be exactly the same 
-                if (cmdParams.length < contract.paramCount() ||
-                        (contract.strictCount() && cmdParams.length != contract.paramCount()))
+                @Override
+                public void run()
                 {
-                    throw new ClientCommandException("Invalid number of parameters [" + requestCode + "]");
-                }
+                    SmartMetrics.recordTime(cmd.getWaitTimerName(), System.nanoTime() - queuedAt);
 
-                if(contract.deviceRequired() && !DeviceHandler.isAvailable())
-                {
-                    logException = false;
-                    throw new ClientCommandException("Device not available [" + requestCode + "]");
+                    try
+                    {
+                        executeOrFail(cmd, ctx, cmdParams, null);
+                    } catch (ClientCommandException cce)
+                    {
+                        SmartLogger.getLogger().log(Level.SEVERE, "ClientCommand exception occurred.", cce);
+                    } catch (RuntimeException re)
+                    {
+                        SmartLogger.getLogger().log(Level.SEVERE,
+                                "Unexpected error in command " + cmd.getRequestCode(), re);
+                    }
                 }
-
-                if (contract.adminRequired() && !SmartServer.isAdministrator(ctx.channel().remoteAddress()))
+            }));
+        } catch (RejectedExecutionException ree)
+        {
+            SmartLogger.getLogger().log(Level.WARNING,
+                    "Too many pending requests, rejected [" + cmd.getRequestCode() + "]", ree);
+            SmartMetrics.increment("commands.rejected");
+            RequestContext.wrap(context, new Runnable()
+            {
+                @Override
+                public void run()
                 {
-                    logException = false;
-                    throw new ClientCommandException("User is not an Administrator [" + requestCode + "]");
+                    sendResponseIfInvalid(cmd.getContract(), ctx, cmd.getRequestCode());
                 }
-            } catch(ClientCommandException cce)
+            }).run();
+        }
+    }
+
+    /**
+     * Run the interceptors of the request: 
+     * If one of them rejects it, the {@link CommandContract#responseIfInvalid()} will be sent back. Otherwise, cmd is
+     * executed (or its cached response is sent back), then the interceptors are notified (reverse order).
+     *
+     * @param cmd               Command to be executed.
+     * @param ctx               Channel of the client used to send the request.
+     * @param cmdParams         Parameters given with the request.
+     * @param cachedResponse    Cached response of the command (null if none, see {@link CommandContract#cached()}).
+     */
+    private void executeOrFail(RegisteredCommand cmd, ChannelHandlerContext ctx, String[] cmdParams,
+                               String[] cachedResponse) throws ClientCommandException
+    {
+        CommandInterceptor[] interceptors = _interceptors;
+
+        for(CommandInterceptor interceptor : interceptors)
+        {
+            switch(interceptor.before(cmd, ctx, cmdParams))
+            {
+                case REJECT:
+                    sendResponseIfInvalid(cmd.getContract(), ctx, cmd.getRequestCode());
+                    return;
+
+                case THROTTLE:
+                    // the other clients are not concerned by the requests of this one
+                    sendResponseIfInvalid(cmd.getContract(), ctx, cmd.getRequestCode(), false);
+                    return;
+
+                case IGNORE:
+                    // a request of a batch is still answered (by its RequestCode alone)
+                    RequestContext.collectNoResponse(ctx, cmd.getRequestCode());
+                    return;
+
+                default:
+                    break;
+            }
+        }
+
+        if(cachedResponse != null)
+        {
+            long startedAt = System.nanoTime();
+            SmartServer.sendMessage(ctx, cachedResponse);
+            notifyAfter(interceptors, cmd, ctx, cmdParams, System.nanoTime() - startedAt, null);
+            return;
+        }
+
+        CommandContract contract = cmd.getContract();
+        RequestContext previous = null;
+
+        if(contract.cached())
+        {
+            // the response sent by the command is cached
+            ResponseCache.Recording recording = ResponseCache.startRecording(cmd.getRequestCode(), cmdParams);
+            previous = RequestContext.attach(RequestContext.withRecording(RequestContext.current(), ctx, recording));
+        }
+
+        // before (responses being built must not be cached) and after (responses built meanwhile) the changes
+        invalidateResponses(contract);
+
+        try
+        {
+            if(cmd.isAsync())
+            {
+                executeAsync(cmd, ctx, cmdParams, interceptors);
+                return;
+            }
+
+            Throwable failure = null;
+            long startedAt = System.nanoTime();
+
+            try
+            {
+                cmd.getCommand().execute(ctx, cmdParams);
+            } catch (ClientCommandException | RuntimeException e)
+            {
+                failure = e;
+                throw e;
+            } finally
+            {
+                invalidateResponses(contract);
+                notifyAfter(interceptors, cmd, ctx, cmdParams, System.nanoTime() - startedAt, failure);
+                // a request of a batch is answered even if the command sent nothing back (i.e. StopScan)
+                RequestContext.collectNoResponse(ctx, cmd.getRequestCode());
+            }
+        } finally
+        {
+            if(contract.cached())
             {
-                SmartLogger.getLogger().log(logException ? Level.WARNING : Level.INFO,
-                        "An error occurred while executing a command [" + requestCode + "]",
-                        cce);
+                RequestContext.restore(previous);
+            }
+        }
+    }
+
+    private static void invalidateResponses(CommandContract contract)
+    {
+        if(contract.invalidates().length != 0)
+        {
+            ResponseCache.invalidate(contract.invalidates());
+        }
+    }
 
-                if(!contract.noResponseWhenInvalid())
+    /**
+     * Start an asynchronous command. Once completed, its response is sent back (or its
+     * {@link CommandContract#responseIfInvalid()} if it failed or timed out), then the interceptors are notified.
+     *
+     * @param cmd           Command to be executed (asynchronous).
+     * @param ctx           Channel of the client used to send the request.
+     * @param cmdParams     Parameters given with the request.
+     * @param interceptors  Interceptors which accepted the request.
+     */
+    private void executeAsync(final RegisteredCommand cmd, final ChannelHandlerContext ctx, final String[] cmdParams,
+                              final CommandInterceptor[] interceptors)
+    {
+        final long startedAt = System.nanoTime();
+        // the response is sent by the thread completing the future
+        final RequestContext context = RequestContext.current();
+        CompletableFuture<String[]> response;
+
+        try
+        {
+            response = ((AsyncClientCommand) cmd.getCommand()).executeAsync(ctx, cmdParams);
+        } catch (RuntimeException re)
+        {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(re);
+        }
+
+        CommandExecutors.withTimeout(response, cmd.getContract().timeout(), TimeUnit.SECONDS)
+                .whenComplete(new BiConsumer<String[], Throwable>()
                 {
-                    if(contract.respondToAllIfInvalid())
+                    @Override
+                    public void accept(String[] packets, Throwable failure)
                     {
-                        SmartServer.sendAllClients(contract.responseIfInvalid());
+                        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ?
+                                failure.getCause() : failure;
+                        RequestContext previous = RequestContext.attach(context);
+
+                        try
+                        {
+                            if(cause == null)
+                            {
+                                SmartServer.sendMessage(ctx, packets);
+                            }
+
+                            else
+                            {
+                                onAsyncFailure(cmd, ctx, cause);
+                            }
+
+                            invalidateResponses(cmd.getContract());
+                            notifyAfter(interceptors, cmd, ctx, cmdParams, System.nanoTime() - startedAt, cause);
+                        } finally
+                        {
+                            RequestContext.restore(previous);
+                        }
                     }
-                    
-                    else
-                    {
-                        SmartServer.sendMessage(ctx, requestCode, contract.responseIfInvalid());
-                    }
-                }
+                });
+    }
 
-                return;
-            }
+    private void onAsyncFailure(RegisteredCommand cmd, ChannelHandlerContext ctx, Throwable cause)
+    {
+        if(cause instanceof RejectedExecutionException)
+        {
+            SmartLogger.getLogger().log(Level.WARNING,
+                    "Too many pending requests, rejected [" + cmd.getRequestCode() + "]", cause);
+            SmartMetrics.increment("commands.rejected");
+        }
+
+        else if(cause instanceof TimeoutException)
+        {
+            SmartLogger.getLogger().warning("Command timed out [" + cmd.getRequestCode() + "]");
+            SmartMetrics.increment("commands.timeouts");
+        }
+
+        else
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Unexpected error in command " + cmd.getRequestCode(), cause);
         }
 
-        cmd.execute(ctx, cmdParams);
+        sendResponseIfInvalid(cmd.getContract(), ctx, cmd.getRequestCode());
+    }
+
+    private static void notifyAfter(CommandInterceptor[] interceptors, RegisteredCommand cmd,
+                                    ChannelHandlerContext ctx, String[] cmdParams, long duration, Throwable failure)
+    {
+        for(int i = interceptors.length - 1; i >= 0; --i)
+        {
+            interceptors[i].after(cmd, ctx, cmdParams, duration, failure);
+        }
+    }
+
+    /**
+     * Send the {@link CommandContract#responseIfInvalid()} of a command (to the client, or to all clients), if the
+     * contract expects a response. A request of a batch is answered by its RequestCode alone otherwise.
+     *
+     * @param contract      Contract of the command.
+     * @param ctx           Channel of the client used to send the request.
+     * @param requestCode   RequestCode of the request.
+     */
+    private void sendResponseIfInvalid(CommandContract contract, ChannelHandlerContext ctx, String requestCode)
+    {
+        sendResponseIfInvalid(contract, ctx, requestCode, contract.respondToAllIfInvalid());
+    }
+
+    /**
+     * Send the {@link CommandContract#responseIfInvalid()} of a command, if the contract expects a response.
+     *
+     * @param contract      Contract of the command.
+     * @param ctx           Channel of the client used to send the request.
+     * @param requestCode   RequestCode of the request.
+     * @param toAllClients  If true, the response is sent to all clients. Otherwise, to the client only.
+     */
+    private void sendResponseIfInvalid(CommandContract contract, ChannelHandlerContext ctx, String requestCode,
+                                       boolean toAllClients)
+    {
+        if(contract.noResponseWhenInvalid())
+        {
+            RequestContext.collectNoResponse(ctx, requestCode);
+            return;
+        }
+
+        if(toAllClients)
+        {
+            SmartServer.sendAllClients(contract.responseIfInvalid());
+            // not sent to the collector of the request
+            RequestContext.collectNoResponse(ctx, requestCode);
+        }
+
+        else
+        {
+            SmartServer.sendMessage(ctx, requestCode, contract.responseIfInvalid());
+        }
     }
 
     /** Internal RequestCode, used by the SmartApp or the embedded shell scripts. */
     static class AppCode
     {
+        /** Execute several requests, and get all their responses in one message */
+        static final String BATCH = "batch";
+
         /** Get the badge reader serial port name */
         static final String BR_SERIAL = "brserial";
+
+        /** Enable/disable the continuous scan mode (only the tags added/removed by each cycle are sent) */
+        static final String CONTINUOUS_SCAN = "continuousscan";
+        
+        /** Receive the "tag added" events by batches (or not) */
+        static final String EVENT_BATCHING = "eventbatching";
         
         /** Get the fingerprint reader serial number */
         static final String FPR_SERIAL = "fprserial";
         
+        /** Delta synchronization: get the inventories recorded after a given one */
+        static final String INVENTORIES_SINCE = "inventoriessince";
+        
+        /** Delta synchronization: get the digests of the inventories of a period, by time buckets */
+        static final String INVENTORY_DIGESTS = "inventorydigests";
+        
         /** Flash the Firmware */
         static final String FLASH_FIRMWARE = "flashfirmware";
         
         /** Get the device's Hostname */
         static final String HOSTNAME = "hostname";
         
+        /** Get the current values of the runtime metrics */
+        static final String METRICS = "metrics";
+        
         /** Get the device's network config */
         static final String NETWORK_SETTINGS = "networksettings";
         
@@ -299,6 +603,15 @@ public final class ClientCommandRegister extends ClientCommand
         /** Inform SmartServer of the progress of Updates (update script) */
         static final String UPDATE_REPORT   = "updatereport";
 
+        /** Receive only the given events */
+        static final String SUBSCRIBE       = "subscribe";
+
+        /** Receive the events with their sequence number, after the ones missed since a given sequence */
+        static final String RESUME_EVENTS   = "resumeevents";
+
+        /** Stop receiving the given events (or receive all the events again) */
+        static final String UNSUBSCRIBE     = "unsubscribe";
+
         /** Test RFID: Provide the number of axis used (known) by the Device */
         static final String RFID_AXIS_COUNT = "rfidaxiscount";
 
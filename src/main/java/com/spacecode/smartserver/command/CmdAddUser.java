@@ -12,7 +12,8 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * AddUser command.
  */
-@CommandContract(paramCount = 1, deviceRequired = true)
+@CommandContract(paramCount = 1, deviceRequired = true, workload = CommandContract.Workload.DATABASE,
+        invalidates = { RequestCode.USERS_LIST, RequestCode.USERS_UNREGISTERED })
 public class CmdAddUser extends ClientCommand
 {
     /**
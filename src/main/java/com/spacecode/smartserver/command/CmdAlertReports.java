@@ -1,16 +1,19 @@
 package com.spacecode.smartserver.command;
 
+import com.j256.ormlite.stmt.QueryBuilder;
 import com.spacecode.sdk.network.communication.RequestCode;
-import com.spacecode.smartserver.SmartServer;
 import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.database.dao.DaoAlertHistory;
 import com.spacecode.smartserver.database.entity.AlertHistoryEntity;
 import com.spacecode.smartserver.helper.SmartLogger;
 import io.netty.channel.ChannelHandlerContext;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 /**
@@ -18,19 +21,43 @@ import java.util.logging.Level;
  *
  * Provide reports (if any) for alert raised during a certain period (start/end date provided).
  * Sends Alert IDs instead of sending serialized alerts, in order to minimize risk to exceed the TCP frame size.
+ *
+ * Optionally paginated, or streamed: see {@link HistoryQuery}.
  */
-@CommandContract(paramCount = 2, strictCount = true, responseIfInvalid = "")
-public class CmdAlertReports extends ClientCommand
+@CommandContract(paramCount = 2, responseIfInvalid = "", workload = CommandContract.Workload.DATABASE,
+        timeout = 300)
+public class CmdAlertReports extends AsyncClientCommand
 {
+    private static final HistoryQuery<AlertHistoryEntity> HISTORY =
+            new HistoryQuery<AlertHistoryEntity>(RequestCode.ALERT_REPORTS)
+    {
+        @Override
+        QueryBuilder<AlertHistoryEntity, Integer> getQuery(Date from, Date to, int afterId) throws SQLException
+        {
+            return ((DaoAlertHistory) DbManager.getDao(AlertHistoryEntity.class)).getPeriodQuery(from, to, afterId);
+        }
+
+        @Override
+        void addPackets(AlertHistoryEntity entity, List<String> packets)
+        {
+            // add: [alert id, timestamp (seconds), extra data]
+            packets.add(String.valueOf(entity.getAlert().getId()));
+            packets.add(String.valueOf(entity.getCreatedAt().getTime()/1000));
+            packets.add("".equals(entity.getExtraData()) ? " " : entity.getExtraData());
+        }
+    };
+
     /**
      * @param ctx           Channel between SmartServer and the client.
-     * @param parameters    "Start" and "End" dates (period).
+     * @param parameters    "Start" and "End" dates (period). Optional: page size (or "stream") and "after ID".
+     *
+     * @return Future of the response, completed by the "database" executor.
      */
     @Override
-    public void execute(ChannelHandlerContext ctx, String[] parameters)
+    CompletableFuture<String[]> executeAsync(final ChannelHandlerContext ctx, final String[] parameters)
     {
-        long timestampStart;
-        long timestampEnd;
+        final long timestampStart;
+        final long timestampEnd;
 
         try
         {
@@ -40,32 +67,39 @@ public class CmdAlertReports extends ClientCommand
         {
             SmartLogger.getLogger().log(Level.WARNING,
                     "Invalid timestamp sent by client for AlertReports.", nfe);
-            SmartServer.sendMessage(ctx, RequestCode.ALERT_REPORTS);
-            return;
+            return completed(RequestCode.ALERT_REPORTS);
         }
 
-        if(timestampEnd <= timestampStart)
+        if(timestampEnd <= timestampStart || parameters.length > 4)
         {
-            SmartServer.sendMessage(ctx, RequestCode.ALERT_REPORTS);
-            return;
+            return completed(RequestCode.ALERT_REPORTS);
         }
 
-        DaoAlertHistory daoAlertHistory =
-                (DaoAlertHistory) DbManager.getDao(AlertHistoryEntity.class);
-        List<AlertHistoryEntity> entities = 
-                daoAlertHistory.getAlertsHistory(new Date(timestampStart), new Date(timestampEnd));
+        return CommandExecutors.supplyAsync(CommandContract.Workload.DATABASE, new Supplier<String[]>()
+        {
+            @Override
+            public String[] get()
+            {
+                if(HistoryQuery.isPaginated(parameters))
+                {
+                    return HISTORY.execute(ctx, new Date(timestampStart), new Date(timestampEnd), parameters);
+                }
 
-        List<String> responsePackets = new ArrayList<>();
-        responsePackets.add(RequestCode.ALERT_REPORTS);
+                DaoAlertHistory daoAlertHistory =
+                        (DaoAlertHistory) DbManager.getDao(AlertHistoryEntity.class);
+                List<AlertHistoryEntity> entities = 
+                        daoAlertHistory.getAlertsHistory(new Date(timestampStart), new Date(timestampEnd));
 
-        for(AlertHistoryEntity entity : entities)
-        {
-            // add: [alert id, timestamp (seconds), extra data]
-            responsePackets.add(String.valueOf(entity.getAlert().getId()));
-            responsePackets.add(String.valueOf(entity.getCreatedAt().getTime()/1000));
-            responsePackets.add("".equals(entity.getExtraData()) ? " " : entity.getExtraData());
-        }
+                List<String> responsePackets = new ArrayList<>();
+                responsePackets.add(RequestCode.ALERT_REPORTS);
+
+                for(AlertHistoryEntity entity : entities)
+                {
+                    HISTORY.addPackets(entity, responsePackets);
+                }
 
-        SmartServer.sendMessage(ctx, responsePackets.toArray(new String[responsePackets.size()]));
+                return responsePackets.toArray(new String[responsePackets.size()]);
+            }
+        });
     }
 }
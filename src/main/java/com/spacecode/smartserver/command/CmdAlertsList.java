@@ -20,6 +20,7 @@ import java.util.List;
 /**
  * AlertsList command.
  */
+@CommandContract(workload = CommandContract.Workload.DATABASE, cached = true)
 public class CmdAlertsList extends ClientCommand
 {
     /**
@@ -1,5 +1,6 @@
 package com.spacecode.smartserver.command;
 
+import com.j256.ormlite.stmt.QueryBuilder;
 import com.spacecode.sdk.network.communication.RequestCode;
 import com.spacecode.sdk.user.data.AccessType;
 import com.spacecode.smartserver.SmartServer;
@@ -11,6 +12,7 @@ import com.spacecode.smartserver.database.entity.UserEntity;
 import com.spacecode.smartserver.helper.SmartLogger;
 import io.netty.channel.ChannelHandlerContext;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -20,13 +22,43 @@ import java.util.logging.Level;
  * AuthenticationsList command.
  *
  * Provide authentications recorded during a certain period, if any.
+ *
+ * Optionally paginated, or streamed: see {@link HistoryQuery}.
  */
-@CommandContract(paramCount = 2, strictCount = true, responseIfInvalid = "")
+@CommandContract(paramCount = 2, responseIfInvalid = "", workload = CommandContract.Workload.DATABASE)
 public class CmdAuthenticationsList extends ClientCommand
 {
+    private static final HistoryQuery<AuthenticationEntity> HISTORY =
+            new HistoryQuery<AuthenticationEntity>(RequestCode.AUTHENTICATIONS_LIST)
+    {
+        @Override
+        QueryBuilder<AuthenticationEntity, Integer> getQuery(Date from, Date to, int afterId) throws SQLException
+        {
+            return ((DaoAuthentication) DbManager.getDao(AuthenticationEntity.class))
+                    .getPeriodQuery(from, to, afterId);
+        }
+
+        @Override
+        void addPackets(AuthenticationEntity authentication, List<String> packets)
+        {
+            AccessType accessType = DaoAccessType.asAccessType(authentication.getAccessType());
+            String accessTypePacket =
+                    accessType == AccessType.BADGE
+                    ? "B"
+                    : accessType == AccessType.FINGERPRINT
+                    ? "F"
+                    : "U";
+
+            UserEntity authenticatedUser = authentication.getUser();
+            packets.add(authenticatedUser != null ? authenticatedUser.getUsername() : "Unknown User");
+            packets.add(String.valueOf(authentication.getCreatedAt().getTime() / 1000));
+            packets.add(accessTypePacket);
+        }
+    };
+
     /**
      * @param ctx           Channel between SmartServer and the client.
-     * @param parameters    "Start" and "End" dates (period).
+     * @param parameters    "Start" and "End" dates (period). Optional: page size (or "stream") and "after ID".
      */
     @Override
     public void execute(ChannelHandlerContext ctx, String[] parameters)
@@ -46,12 +78,19 @@ public class CmdAuthenticationsList extends ClientCommand
             return;
         }
 
-        if(timestampEnd <= timestampStart)
+        if(timestampEnd <= timestampStart || parameters.length > 4)
         {
             SmartServer.sendMessage(ctx, RequestCode.AUTHENTICATIONS_LIST);
             return;
         }
 
+        if(HistoryQuery.isPaginated(parameters))
+        {
+            SmartServer.sendMessage(ctx,
+                    HISTORY.execute(ctx, new Date(timestampStart), new Date(timestampEnd), parameters));
+            return;
+        }
+
         DaoAuthentication daoAuthentication =
                 (DaoAuthentication) DbManager.getDao(AuthenticationEntity.class);
         List<AuthenticationEntity> authentications =
@@ -62,18 +101,7 @@ public class CmdAuthenticationsList extends ClientCommand
 
         for(AuthenticationEntity authentication : authentications)
         {
-            AccessType accessType = DaoAccessType.asAccessType(authentication.getAccessType());
-            String accessTypePacket =
-                    accessType == AccessType.BADGE
-                    ? "B"
-                    : accessType == AccessType.FINGERPRINT
-                    ? "F"
-                    : "U";
-
-            UserEntity authenticatedUser = authentication.getUser();
-            responsePackets.add(authenticatedUser != null ? authenticatedUser.getUsername() : "Unknown User");
-            responsePackets.add(String.valueOf(authentication.getCreatedAt().getTime() / 1000));
-            responsePackets.add(accessTypePacket);
+            HISTORY.addPackets(authentication, responsePackets);
         }
 
         SmartServer.sendMessage(ctx, responsePackets.toArray(new String[responsePackets.size()]));
@@ -0,0 +1,121 @@
+package com.spacecode.smartserver.command;
+
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * "Batch" command: execute several requests in one round trip.
+ *
+ * Each parameter is a request: RequestCode and parameters, separated by {@link #SEPARATOR}. The requests are
+ * dispatched like any other request (database requests are executed in parallel, device requests one at a time), and
+ * their responses are sent back in one message, in the order of the requests: [batch, response1, response2, ...]
+ * (packets of each response separated by {@link #SEPARATOR}). A request which is unknown, failed, ignored, did not
+ * respond in time or whose command sends nothing back (i.e. StopScan) is answered by its RequestCode alone.
+ */
+@CommandContract(paramCount = 1)
+public class CmdBatch extends AsyncClientCommand
+{
+    /** Separator of the packets of a request (or response) in a batch */
+    public static final char SEPARATOR = '\u001D';
+
+    // maximum number of requests in a batch
+    static final int MAX_REQUESTS = 32;
+
+    // maximum delay (s) to get the response to a request
+    static final int REQUEST_TIMEOUT = 20;
+
+    private static final Pattern SEPARATOR_PATTERN = Pattern.compile(Pattern.quote(String.valueOf(SEPARATOR)));
+
+    private final ClientCommandRegister _register;
+
+    /**
+     * @param register Register executing the requests of the batches.
+     */
+    CmdBatch(ClientCommandRegister register)
+    {
+        _register = register;
+    }
+
+    /**
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    Requests (RequestCode and parameters separated by {@link #SEPARATOR}).
+     *
+     * @return Future of the combined response, completed once all requests responded (or timed out).
+     */
+    @Override
+    CompletableFuture<String[]> executeAsync(ChannelHandlerContext ctx, String[] parameters)
+    {
+        if(parameters.length > MAX_REQUESTS)
+        {
+            return completed(ClientCommandRegister.AppCode.BATCH, FALSE);
+        }
+
+        final List<CompletableFuture<String>> responses = new ArrayList<>(parameters.length);
+
+        for(int i = 0; i < parameters.length; ++i)
+        {
+            String[] request = SEPARATOR_PATTERN.split(parameters[i], -1);
+            final String requestCode = request[0];
+            CompletableFuture<String[]> response = CommandExecutors.withTimeout(new CompletableFuture<String[]>(),
+                    REQUEST_TIMEOUT, TimeUnit.SECONDS);
+
+            responses.add(response.handle(new BiFunction<String[], Throwable, String>()
+            {
+                @Override
+                public String apply(String[] packets, Throwable failure)
+                {
+                    return failure == null ? join(packets) : requestCode;
+                }
+            }));
+
+            if(!_register.executeInBatch(ctx, request, response))
+            {
+                response.complete(new String[] { requestCode });
+            }
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(
+                responses.toArray(new CompletableFuture<?>[responses.size()]));
+
+        return all.thenApply(new Function<Void, String[]>()
+        {
+            @Override
+            public String[] apply(Void ignored)
+            {
+                String[] packets = new String[responses.size() + 1];
+                packets[0] = ClientCommandRegister.AppCode.BATCH;
+
+                for(int i = 0; i < responses.size(); ++i)
+                {
+                    packets[i + 1] = responses.get(i).join();
+                }
+
+                return packets;
+            }
+        });
+    }
+
+    private static String join(String[] packets)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < packets.length; ++i)
+        {
+            if(i > 0)
+            {
+                sb.append(SEPARATOR);
+            }
+
+            sb.append(packets[i] == null ? "" : packets[i]);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.sdk.device.data.DeviceStatus;
+import com.spacecode.sdk.device.data.ScanOption;
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.ContinuousScan;
+import com.spacecode.smartserver.helper.DeviceHandler;
+import com.spacecode.smartserver.helper.SmartLogger;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * ContinuousScan command.
+ */
+@CommandContract(paramCount = 1, deviceRequired = true, workload = CommandContract.Workload.DEVICE)
+public class CmdContinuousScan extends ClientCommand
+{
+    /**
+     * Enable or disable the continuous scan mode (see {@link ContinuousScan}): while enabled, the scans are chained and
+     * the clients receive the tags added/removed by each cycle ("event_tags_delta") instead of the full inventories.
+     *
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    "true" to enable the mode, "false" to disable it (and stop the current scan). When enabled,
+     *                      {@link ScanOption}s of each scan could be provided.
+     */
+    @Override
+    public void execute(ChannelHandlerContext ctx, String[] parameters)
+    {
+        if(!Boolean.parseBoolean(parameters[0]))
+        {
+            ContinuousScan.stop();
+
+            if(DeviceHandler.getDevice().getStatus() == DeviceStatus.SCANNING)
+            {
+                DeviceHandler.getDevice().stopScan();
+            }
+
+            SmartServer.sendMessage(ctx, ClientCommandRegister.AppCode.CONTINUOUS_SCAN, TRUE);
+            return;
+        }
+
+        List<ScanOption> scanOptions = new ArrayList<>();
+
+        for(int i = 1; i < parameters.length; ++i)
+        {
+            try
+            {
+                scanOptions.add(ScanOption.valueOf(parameters[i]));
+            } catch(IllegalArgumentException iae)
+            {
+                SmartLogger.getLogger().log(Level.WARNING, "Invalid ScanOption provided: " + parameters[i], iae);
+            }
+        }
+
+        // same as a single scan: the cycles are not recorded if the user asked so
+        DeviceHandler.setRecordInventory(!scanOptions.contains(ScanOption.NO_RECORD));
+        ContinuousScan.start(scanOptions.toArray(new ScanOption[scanOptions.size()]));
+        SmartServer.sendMessage(ctx, ClientCommandRegister.AppCode.CONTINUOUS_SCAN, TRUE);
+    }
+}
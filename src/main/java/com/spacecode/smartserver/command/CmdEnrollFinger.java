@@ -2,24 +2,32 @@ package com.spacecode.smartserver.command;
 
 import com.spacecode.sdk.network.communication.RequestCode;
 import com.spacecode.sdk.user.User;
+import com.spacecode.sdk.user.UsersService;
 import com.spacecode.sdk.user.data.FingerIndex;
 import com.spacecode.smartserver.SmartServer;
 import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.database.dao.DaoFingerprint;
 import com.spacecode.smartserver.database.entity.FingerprintEntity;
 import com.spacecode.smartserver.helper.DeviceHandler;
+import com.spacecode.smartserver.helper.ResponseCache;
 import com.spacecode.smartserver.helper.SmartLogger;
 import io.netty.channel.ChannelHandlerContext;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 /**
  * EnrollFinger command.
  */
-@CommandContract(paramCount = 3, deviceRequired = true)
+@CommandContract(paramCount = 3, deviceRequired = true, workload = CommandContract.Workload.DATABASE,
+        invalidates = { RequestCode.USERS_LIST, RequestCode.USERS_UNREGISTERED })
 public class CmdEnrollFinger extends ClientCommand
 {
+    // maximum duration (s) of an enrollment, before it is cancelled
+    static final int ENROLLMENT_TIMEOUT = 120;
+
     /**
      * Try to start an enrollment process for a given user and finger index. Sends back "true" if succeed, "false" otherwise.
      *
@@ -66,8 +74,11 @@ public class CmdEnrollFinger extends ClientCommand
         // if no template has been provided: process a "normal" enrollment
         if(template == null || template.trim().isEmpty())
         {
+            // set once the client has been answered: by the enrollment, or by its cancellation
+            final AtomicBoolean answered = new AtomicBoolean(false);
+
             // Action needs to be parallelized in order to handle New Enrollment Sample event
-            parallelize(new Runnable()
+            boolean started = parallelize(ctx, new Runnable()
             {
                 @Override
                 public void run()
@@ -76,7 +87,7 @@ public class CmdEnrollFinger extends ClientCommand
                             
                     try
                     {
-                         result = enrollAndPersist(gu, fingerIndex, masterReader, oldTemplate);
+                         result = enrollAndPersist(gu, fingerIndex, masterReader, oldTemplate, answered);
                     } catch (TimeoutException te)
                     {
                         SmartLogger.getLogger().log(Level.WARNING, 
@@ -84,9 +95,34 @@ public class CmdEnrollFinger extends ClientCommand
                         result = false;
                     }
 
+                    if(!answered.compareAndSet(false, true))
+                    {
+                        // cancelled meanwhile: the client already got "false"
+                        return;
+                    }
+
+                    // enrolled after the execution of the command: the cached users must be invalidated again
+                    ResponseCache.invalidate(RequestCode.USERS_LIST, RequestCode.USERS_UNREGISTERED);
                     SmartServer.sendMessage(ctx, RequestCode.ENROLL_FINGER, result ? TRUE : FALSE);
                 }
-            });
+            }, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // timed out, or client left: the enrollment (waiting for the finger) has been interrupted
+                    if(answered.compareAndSet(false, true))
+                    {
+                        SmartLogger.getLogger().warning("Enrollment process cancelled for User " + username);
+                        SmartServer.sendMessage(ctx, RequestCode.ENROLL_FINGER, FALSE);
+                    }
+                }
+            }, ENROLLMENT_TIMEOUT, TimeUnit.SECONDS);
+
+            if(!started)
+            {
+                SmartServer.sendMessage(ctx, RequestCode.ENROLL_FINGER, FALSE);
+            }
         }
         
         else
@@ -118,8 +154,40 @@ public class CmdEnrollFinger extends ClientCommand
     boolean enrollAndPersist(User user, FingerIndex fingerIndex, boolean masterReader, String oldTemplate) 
             throws TimeoutException
     {
-        return DeviceHandler.getDevice().getUsersService().enrollFinger(user.getUsername(), fingerIndex, masterReader) 
-                && persistTemplate(user, fingerIndex, oldTemplate);
+        return enrollAndPersist(user, fingerIndex, masterReader, oldTemplate, new AtomicBoolean(false));
+    }
+
+    /**
+     * Same as {@link #enrollAndPersist(User, FingerIndex, boolean, String)}, unless the enrollment is cancelled while
+     * the device is waiting for the finger: the new template is then neither kept nor persisted.
+     *
+     * @param user          User owning the templates.
+     * @param fingerIndex   Index of the enrolled finger.
+     * @param masterReader  If true, use the master fingerprint reader. Otherwise, the slave.
+     * @param oldTemplate   Template to be restored if the operation fails.
+     * @param cancelled     Set if the enrollment has been cancelled (and the client answered).
+     *
+     * @return True if the enrollment AND the persistence succeeded. False otherwise.
+     *
+     * @throws TimeoutException If the enrollment max. delay is up.
+     */
+    boolean enrollAndPersist(User user, FingerIndex fingerIndex, boolean masterReader, String oldTemplate,
+                             AtomicBoolean cancelled) throws TimeoutException
+    {
+        UsersService usersService = DeviceHandler.getDevice().getUsersService();
+
+        if(!usersService.enrollFinger(user.getUsername(), fingerIndex, masterReader))
+        {
+            return false;
+        }
+
+        if(cancelled.get())
+        {
+            restoreTemplate(user, fingerIndex, oldTemplate);
+            return false;
+        }
+
+        return persistTemplate(user, fingerIndex, oldTemplate);
     }
 
     /**
@@ -139,10 +207,23 @@ public class CmdEnrollFinger extends ClientCommand
         
         if (!daoFp.persist(user.getUsername(), fingerIndex.getIndex(), fpTpl))
         {
-            DeviceHandler.getDevice().getUsersService().enrollFinger(user.getUsername(), fingerIndex, oldTemplate);
+            restoreTemplate(user, fingerIndex, oldTemplate);
             return false;
         }
 
         return true;
     }
+
+    /**
+     * Give back its previous template to the local user instance (not to be used by the UsersService for
+     * authentications).
+     *
+     * @param user          User owning the templates.
+     * @param fingerIndex   Index of the finger to be restored.
+     * @param oldTemplate   Template to be restored.
+     */
+    private static void restoreTemplate(User user, FingerIndex fingerIndex, String oldTemplate)
+    {
+        DeviceHandler.getDevice().getUsersService().enrollFinger(user.getUsername(), fingerIndex, oldTemplate);
+    }
 }
@@ -0,0 +1,26 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.TagEventBatcher;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * EventBatching command.
+ */
+@CommandContract(paramCount = 1, strictCount = true)
+public class CmdEventBatching extends ClientCommand
+{
+    /**
+     * Enable or disable, for the current client, the batches of "tag added" events: when enabled, the client receives
+     * "event_tags_added" events (carrying many UIDs) instead of one "event_tag_added" event per tag.
+     *
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    "true" to receive batches, "false" to receive one event per tag.
+     */
+    @Override
+    public void execute(ChannelHandlerContext ctx, String[] parameters)
+    {
+        TagEventBatcher.setBatching(ctx.channel(), Boolean.parseBoolean(parameters[0]));
+        SmartServer.sendMessage(ctx, ClientCommandRegister.AppCode.EVENT_BATCHING, TRUE);
+    }
+}
@@ -9,7 +9,7 @@ import io.netty.channel.ChannelHandlerContext;
  * Initialization command.
  * Provide basic information of current device (serial number, device type, hardware and software version).
  */
-@CommandContract(deviceRequired = true, noResponseWhenInvalid = true)
+@CommandContract(deviceRequired = true, noResponseWhenInvalid = true, cached = true)
 public class CmdInitialization extends ClientCommand
 {
     /**
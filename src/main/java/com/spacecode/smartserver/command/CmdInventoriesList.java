@@ -1,36 +1,60 @@
 package com.spacecode.smartserver.command;
 
+import com.j256.ormlite.stmt.QueryBuilder;
 import com.spacecode.sdk.device.data.Inventory;
 import com.spacecode.sdk.network.communication.RequestCode;
-import com.spacecode.smartserver.SmartServer;
 import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.database.dao.DaoInventory;
 import com.spacecode.smartserver.database.entity.InventoryEntity;
 import com.spacecode.smartserver.helper.SmartLogger;
 import io.netty.channel.ChannelHandlerContext;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 /**
  * InventoriesList command.
  *
  * Provide inventories over a given period (start/end date provided), if any.
+ *
+ * Optionally paginated, or streamed: see {@link HistoryQuery}.
  */
-@CommandContract(paramCount = 2, strictCount = true, responseIfInvalid = "")
-public class CmdInventoriesList extends ClientCommand
+@CommandContract(paramCount = 2, responseIfInvalid = "", workload = CommandContract.Workload.DATABASE,
+        timeout = 300)
+public class CmdInventoriesList extends AsyncClientCommand
 {
+    private static final HistoryQuery<InventoryEntity> HISTORY =
+            new HistoryQuery<InventoryEntity>(RequestCode.INVENTORIES_LIST)
+    {
+        @Override
+        QueryBuilder<InventoryEntity, Integer> getQuery(Date from, Date to, int afterId) throws SQLException
+        {
+            return ((DaoInventory) DbManager.getDao(InventoryEntity.class)).getPeriodQuery(from, to, afterId);
+        }
+
+        @Override
+        void addPackets(InventoryEntity entity, List<String> packets)
+        {
+            packets.add(entity.asInventory().serialize());
+        }
+    };
+
     /**
      * @param ctx           Channel between SmartServer and the client.
-     * @param parameters    "Start" and "End" dates (period).
+     * @param parameters    "Start" and "End" dates (period). Optional: page size (or "stream") and "after ID".
+     *
+     * @return Future of the response, completed by the "database" executor.
      */
     @Override
-    public void execute(ChannelHandlerContext ctx, String[] parameters)
+    CompletableFuture<String[]> executeAsync(final ChannelHandlerContext ctx, final String[] parameters)
     {
-        long timestampStart;
-        long timestampEnd;
+        final long timestampStart;
+        final long timestampEnd;
 
         try
         {
@@ -40,27 +64,38 @@ public class CmdInventoriesList extends ClientCommand
         {
             SmartLogger.getLogger().log(Level.WARNING,
                     "Invalid timestamp sent by client for Inventories.", nfe);
-            SmartServer.sendMessage(ctx, RequestCode.INVENTORIES_LIST);
-            return;
+            return completed(RequestCode.INVENTORIES_LIST);
         }
 
-        if(timestampEnd <= timestampStart)
+        if(timestampEnd <= timestampStart || parameters.length > 4)
         {
-            SmartServer.sendMessage(ctx, RequestCode.INVENTORIES_LIST);
-            return;
+            return completed(RequestCode.INVENTORIES_LIST);
         }
 
-        DaoInventory daoInvent = (DaoInventory) DbManager.getDao(InventoryEntity.class);
-        List<Inventory> inventories = daoInvent.getInventories(new Date(timestampStart), new Date(timestampEnd));
+        return CommandExecutors.supplyAsync(CommandContract.Workload.DATABASE, new Supplier<String[]>()
+        {
+            @Override
+            public String[] get()
+            {
+                if(HistoryQuery.isPaginated(parameters))
+                {
+                    return HISTORY.execute(ctx, new Date(timestampStart), new Date(timestampEnd), parameters);
+                }
+
+                DaoInventory daoInvent = (DaoInventory) DbManager.getDao(InventoryEntity.class);
+                List<Inventory> inventories =
+                        daoInvent.getInventories(new Date(timestampStart), new Date(timestampEnd));
 
-        List<String> responsePackets = new ArrayList<>();
-        responsePackets.add(RequestCode.INVENTORIES_LIST);
+                List<String> responsePackets = new ArrayList<>();
+                responsePackets.add(RequestCode.INVENTORIES_LIST);
 
-        for(Inventory inventory : inventories)
-        {
-            responsePackets.add(inventory.serialize());
-        }
+                for(Inventory inventory : inventories)
+                {
+                    responsePackets.add(inventory.serialize());
+                }
 
-        SmartServer.sendMessage(ctx, responsePackets.toArray(new String[responsePackets.size()]));
+                return responsePackets.toArray(new String[responsePackets.size()]);
+            }
+        });
     }
 }
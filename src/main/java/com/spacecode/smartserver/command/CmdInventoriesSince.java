@@ -0,0 +1,88 @@
+package com.spacecode.smartserver.command;
+
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.spacecode.smartserver.database.DbManager;
+import com.spacecode.smartserver.database.dao.DaoInventory;
+import com.spacecode.smartserver.database.entity.InventoryEntity;
+import com.spacecode.smartserver.helper.SmartLogger;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * "InventoriesSince" command.
+ *
+ * Delta synchronization of the inventories: provide the inventories recorded after the last one known by the client
+ * (given its ID), by pages: [RequestCode, cursor, serialized inventories]. The cursor is the ID to be given to get the
+ * next page, or an empty string if the client is up to date (see {@link HistoryQuery}).
+ */
+@CommandContract(paramCount = 1, responseIfInvalid = "", workload = CommandContract.Workload.DATABASE)
+public class CmdInventoriesSince extends AsyncClientCommand
+{
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final HistoryQuery<InventoryEntity> HISTORY =
+            new HistoryQuery<InventoryEntity>(ClientCommandRegister.AppCode.INVENTORIES_SINCE)
+    {
+        @Override
+        QueryBuilder<InventoryEntity, Integer> getQuery(Date from, Date to, int afterId) throws SQLException
+        {
+            return ((DaoInventory) DbManager.getDao(InventoryEntity.class)).getPeriodQuery(from, to, afterId);
+        }
+
+        @Override
+        void addPackets(InventoryEntity entity, List<String> packets)
+        {
+            packets.add(entity.asInventory().serialize());
+        }
+    };
+
+    /**
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    ID of the last inventory known by the client (0 if none). Optional: page size.
+     *
+     * @return Future of the response, completed by the "database" executor.
+     */
+    @Override
+    CompletableFuture<String[]> executeAsync(ChannelHandlerContext ctx, String[] parameters)
+    {
+        final int afterId;
+        final int pageSize;
+
+        try
+        {
+            afterId = Integer.parseInt(parameters[0]);
+            pageSize = parameters.length > 1 ? Integer.parseInt(parameters[1]) : DEFAULT_PAGE_SIZE;
+        } catch(NumberFormatException nfe)
+        {
+            SmartLogger.getLogger().log(Level.WARNING, "Invalid inventory ID sent by client for delta sync.", nfe);
+            return completed(ClientCommandRegister.AppCode.INVENTORIES_SINCE);
+        }
+
+        if(afterId < 0 || pageSize <= 0 || pageSize > HistoryQuery.MAX_PAGE_SIZE)
+        {
+            return completed(ClientCommandRegister.AppCode.INVENTORIES_SINCE);
+        }
+
+        return CommandExecutors.supplyAsync(CommandContract.Workload.DATABASE, new Supplier<String[]>()
+        {
+            @Override
+            public String[] get()
+            {
+                try
+                {
+                    return HISTORY.getPage(null, null, afterId, pageSize);
+                } catch (SQLException sqle)
+                {
+                    SmartLogger.getLogger().log(Level.SEVERE, "Exception occurred while getting new inventories.", sqle);
+                    return new String[] { ClientCommandRegister.AppCode.INVENTORIES_SINCE };
+                }
+            }
+        });
+    }
+}
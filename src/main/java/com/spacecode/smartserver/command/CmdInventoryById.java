@@ -9,7 +9,8 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * InventoryById command.
  */
-@CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, responseIfInvalid = "")
+@CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, responseIfInvalid = "",
+        workload = CommandContract.Workload.DATABASE)
 public class CmdInventoryById extends ClientCommand
 {
     /**
@@ -0,0 +1,180 @@
+package com.spacecode.smartserver.command;
+
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.spacecode.smartserver.database.DbManager;
+import com.spacecode.smartserver.database.dao.DaoInventory;
+import com.spacecode.smartserver.database.entity.InventoryEntity;
+import com.spacecode.smartserver.helper.SmartLogger;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * "InventoryDigests" command.
+ *
+ * Digests of the inventories recorded over a given period, by time buckets, for a client to verify the history it has
+ * in cache and fetch again (see {@link CmdInventoriesList}) only the buckets which differ.
+ *
+ * Response: [RequestCode, then for each bucket having inventories: bucket start (seconds), number of inventories,
+ * ID of the last inventory, CRC32 (hexadecimal) of the IDs of the inventories, in ascending order, as 4-byte big-endian
+ * integers]. Only IDs are digested: an inventory does not change once recorded.
+ */
+@CommandContract(paramCount = 3, strictCount = true, responseIfInvalid = "",
+        workload = CommandContract.Workload.DATABASE)
+public class CmdInventoryDigests extends AsyncClientCommand
+{
+    static final int MAX_BUCKETS = 1000;
+
+    /**
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    "Start" and "End" dates (period), duration of a bucket (seconds).
+     *
+     * @return Future of the response, completed by the "database" executor.
+     */
+    @Override
+    CompletableFuture<String[]> executeAsync(ChannelHandlerContext ctx, String[] parameters)
+    {
+        final long timestampStart;
+        final long timestampEnd;
+        final long bucketDuration;
+
+        try
+        {
+            timestampStart  = Long.parseLong(parameters[0]);
+            timestampEnd    = Long.parseLong(parameters[1]);
+            bucketDuration  = Long.parseLong(parameters[2]) * 1000;
+        } catch(NumberFormatException nfe)
+        {
+            SmartLogger.getLogger().log(Level.WARNING, "Invalid parameters sent by client for InventoryDigests.", nfe);
+            return completed(ClientCommandRegister.AppCode.INVENTORY_DIGESTS);
+        }
+
+        if(timestampEnd <= timestampStart || bucketDuration <= 0 ||
+                (timestampEnd - timestampStart) / bucketDuration >= MAX_BUCKETS)
+        {
+            return completed(ClientCommandRegister.AppCode.INVENTORY_DIGESTS);
+        }
+
+        return CommandExecutors.supplyAsync(CommandContract.Workload.DATABASE, new Supplier<String[]>()
+        {
+            @Override
+            public String[] get()
+            {
+                try
+                {
+                    return getDigests(timestampStart, timestampEnd, bucketDuration);
+                } catch (SQLException sqle)
+                {
+                    SmartLogger.getLogger().log(Level.SEVERE, "Exception occurred while getting digests.", sqle);
+                    return new String[] { ClientCommandRegister.AppCode.INVENTORY_DIGESTS };
+                }
+            }
+        });
+    }
+
+    private static String[] getDigests(long timestampStart, long timestampEnd, long bucketDuration)
+            throws SQLException
+    {
+        DaoInventory daoInventory = (DaoInventory) DbManager.getDao(InventoryEntity.class);
+        QueryBuilder<InventoryEntity, Integer> query =
+                daoInventory.getPeriodQuery(new Date(timestampStart), new Date(timestampEnd), 0);
+
+        // IDs and dates only, not the inventories (and their tags)
+        query.selectColumns(InventoryEntity.ID, InventoryEntity.CREATED_AT);
+
+        Map<Long, Digest> buckets = new TreeMap<>();
+        GenericRawResults<String[]> rows = query.queryRaw();
+
+        try
+        {
+            List<String> columns = Arrays.asList(rows.getColumnNames());
+            int idIndex = columns.indexOf(InventoryEntity.ID);
+            int dateIndex = columns.indexOf(InventoryEntity.CREATED_AT);
+
+            // ordered by ID: the IDs of each bucket are digested in ascending order
+            for(String[] row : rows)
+            {
+                long createdAt;
+
+                try
+                {
+                    createdAt = Timestamp.valueOf(row[dateIndex]).getTime();
+                } catch(IllegalArgumentException | NullPointerException e)
+                {
+                    SmartLogger.getLogger().warning("Invalid creation date of inventory " + row[idIndex]);
+                    continue;
+                }
+
+                Long bucket = (createdAt - timestampStart) / bucketDuration;
+                Digest digest = buckets.get(bucket);
+
+                if(digest == null)
+                {
+                    digest = new Digest();
+                    buckets.put(bucket, digest);
+                }
+
+                digest.add(Integer.parseInt(row[idIndex]));
+            }
+        } finally
+        {
+            rows.close();
+        }
+
+        List<String> responsePackets = new ArrayList<>();
+        responsePackets.add(ClientCommandRegister.AppCode.INVENTORY_DIGESTS);
+
+        for(Map.Entry<Long, Digest> entry : buckets.entrySet())
+        {
+            Digest digest = entry.getValue();
+
+            responsePackets.add(String.valueOf((timestampStart + entry.getKey() * bucketDuration) / 1000));
+            responsePackets.add(String.valueOf(digest._count));
+            responsePackets.add(String.valueOf(digest._lastId));
+            responsePackets.add(digest.getCrc());
+        }
+
+        return responsePackets.toArray(new String[responsePackets.size()]);
+    }
+
+    /** Number, last ID and CRC32 of the IDs of the inventories of a bucket. */
+    static class Digest
+    {
+        private final CRC32 _crc = new CRC32();
+        private final byte[] _buffer = new byte[4];
+        private int _count = 0;
+        private int _lastId = 0;
+
+        /**
+         * @param id ID of an inventory of the bucket (greater than the previous one).
+         */
+        void add(int id)
+        {
+            _buffer[0] = (byte) (id >>> 24);
+            _buffer[1] = (byte) (id >>> 16);
+            _buffer[2] = (byte) (id >>> 8);
+            _buffer[3] = (byte) id;
+
+            _crc.update(_buffer, 0, 4);
+            _lastId = id;
+            ++_count;
+        }
+
+        String getCrc()
+        {
+            return Long.toHexString(_crc.getValue());
+        }
+    }
+}
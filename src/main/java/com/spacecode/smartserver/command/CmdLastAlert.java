@@ -14,7 +14,7 @@ import io.netty.channel.ChannelHandlerContext;
  * LastAlert command.
  * Provide device's last alert raised (serialized).
  */
-@CommandContract(deviceRequired = true, responseIfInvalid = "")
+@CommandContract(deviceRequired = true, responseIfInvalid = "", workload = CommandContract.Workload.DATABASE)
 public class CmdLastAlert extends ClientCommand
 {
     /**
@@ -1,80 +1,107 @@
 package com.spacecode.smartserver.command;
 
-import com.spacecode.sdk.device.data.DeviceStatus;
-import com.spacecode.sdk.device.data.Inventory;
 import com.spacecode.sdk.network.communication.RequestCode;
 import com.spacecode.smartserver.SmartServer;
-import com.spacecode.smartserver.database.DbManager;
-import com.spacecode.smartserver.database.dao.DaoInventory;
-import com.spacecode.smartserver.database.entity.InventoryEntity;
-import com.spacecode.smartserver.helper.DeviceHandler;
+import com.spacecode.smartserver.helper.LatestInventory;
+import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
 import io.netty.channel.ChannelHandlerContext;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
 /**
  * LastInventory command.
  *
- * Provide device's last inventory (serialized).
+ * Provide device's last inventory (serialized), as kept by {@link LatestInventory}.
+ *
+ * A client may give the version of the last inventory it received: the response is then [RequestCode, serialized
+ * inventory, version], or [RequestCode, {@link #NOT_MODIFIED}, version] if it already has the last one.
+ *
+ * If it also accepts a delta ({@link #DELTA} as second parameter), and its version is still known, the response
+ * carries the changes of the tags only: [RequestCode, {@link #DELTA}, version, base version (the client's one), hash of
+ * the tags (see {@link LatestInventory.Snapshot#getTagsHash()}), number of tags added, UIDs added..., UIDs removed...].
+ * The client applies them to the tags it has, and asks for the full inventory if the hash does not match.
  */
-@CommandContract(deviceRequired = true, responseIfInvalid = "")
+@CommandContract(deviceRequired = true, responseIfInvalid = "", workload = CommandContract.Workload.DATABASE)
 public class CmdLastInventory extends ClientCommand
 {
-    private Inventory _lastInventory = null;
+    /** Sent instead of the inventory if the client already has it. */
+    public static final String NOT_MODIFIED = "not_modified";
+
+    /** Given by a client accepting a delta, and first packet of a delta. */
+    public static final String DELTA = "delta";
+
+    static final String METRIC_NOT_MODIFIED = "inventory.latest.not_modified";
+    static final String METRIC_DELTAS = "inventory.latest.deltas";
 
     /**
-     * Serialize device's last inventory and send it to current context.
+     * Send device's last inventory (serialized) to current context.
      *
      * @param ctx           Channel between SmartServer and the client.
-     * @param parameters    None expected.
+     * @param parameters    Optional: version of the last inventory received by the client ("0" if none), and
+     *                      {@link #DELTA} if the client accepts a delta.
      */
     @Override
     public void execute(ChannelHandlerContext ctx, String[] parameters)
     {
-        // if the user asked NOT TO save the last inventory in the DB, we have to provide an inventory "from memory":
-        // an inventory which has not been saved into the DB, and which has not been selected from the DB with an ID
-        if(!DeviceHandler.getRecordInventory())
+        // the database is only read if the last inventory is not known yet (start)
+        LatestInventory.Snapshot snapshot = LatestInventory.get();
+
+        if(parameters == null || parameters.length == 0)
         {
-            // if the device is not scanning, otherwise it means that a new inventory is coming and that
-            // "Record Inventory" may have been set to "false" with the current scan operation, not the previous one
-            if(DeviceHandler.getDevice().getStatus() != DeviceStatus.SCANNING)
-            {
-                sendInventory(ctx, DeviceHandler.getDevice().getLastInventory());
-                return;
-            }
+            SmartServer.sendMessage(ctx, RequestCode.LAST_INVENTORY, snapshot.getSerialized());
+            return;
         }
-        
-        // no inventory in cache, try to get the last inventory from Database
-        if(_lastInventory == null)
+
+        long knownVersion = 0;
+
+        try
         {
-            getAndSendLastInventory(ctx);
+            knownVersion = Long.parseLong(parameters[0]);
+        } catch(NumberFormatException nfe)
+        {
+            SmartLogger.getLogger().log(Level.WARNING, "Invalid inventory version sent by client.", nfe);
         }
 
-        else
+        String version = String.valueOf(snapshot.getVersion());
+
+        if(knownVersion == snapshot.getVersion())
         {
-            Inventory deviceInventory = DeviceHandler.getDevice().getLastInventory();
+            SmartMetrics.increment(METRIC_NOT_MODIFIED);
+            SmartServer.sendMessage(ctx, RequestCode.LAST_INVENTORY, NOT_MODIFIED, version);
+            return;
+        }
 
-            // if the inventory in cache is already the last one: send it
-            if(_lastInventory.getCreationDate().getTime() == deviceInventory.getCreationDate().getTime())
-            {
-                SmartServer.sendMessage(ctx, RequestCode.LAST_INVENTORY, _lastInventory.serialize());
-            }
+        if(parameters.length > 1 && DELTA.equals(parameters[1]))
+        {
+            LatestInventory.Delta delta = LatestInventory.getDelta(snapshot, knownVersion);
 
-            // else, get the last one (from the DB, to also get its ID...) and send it
-            else
+            if(delta != null)
             {
-                getAndSendLastInventory(ctx);
+                sendDelta(ctx, snapshot, knownVersion, delta);
+                return;
             }
         }
-    }
 
-    private void getAndSendLastInventory(ChannelHandlerContext ctx)
-    {
-        _lastInventory = ((DaoInventory) DbManager.getDao(InventoryEntity.class)).getLastInventory();
-        sendInventory(ctx, _lastInventory);
+        SmartServer.sendMessage(ctx, RequestCode.LAST_INVENTORY, snapshot.getSerialized(), version);
     }
 
-    private void sendInventory(ChannelHandlerContext ctx, Inventory inventory)
+    private void sendDelta(ChannelHandlerContext ctx, LatestInventory.Snapshot snapshot, long baseVersion,
+                           LatestInventory.Delta delta)
     {
-        // inventory may be null (for instance if the reference is given by a request from the DAO)
-        SmartServer.sendMessage(ctx, RequestCode.LAST_INVENTORY, inventory == null ? "" : inventory.serialize());
+        List<String> packets = new ArrayList<>(delta.getAdded().size() + delta.getRemoved().size() + 6);
+        packets.add(RequestCode.LAST_INVENTORY);
+        packets.add(DELTA);
+        packets.add(String.valueOf(snapshot.getVersion()));
+        packets.add(String.valueOf(baseVersion));
+        packets.add(snapshot.getTagsHash());
+        packets.add(String.valueOf(delta.getAdded().size()));
+        packets.addAll(delta.getAdded());
+        packets.addAll(delta.getRemoved());
+
+        SmartMetrics.increment(METRIC_DELTAS);
+        SmartServer.sendMessage(ctx, packets.toArray(new String[packets.size()]));
     }
 }
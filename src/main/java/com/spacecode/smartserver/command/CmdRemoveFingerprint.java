@@ -13,7 +13,9 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * RemoveFingerprint command.
  */
-@CommandContract(paramCount = 2, strictCount = true, deviceRequired = true)
+@CommandContract(paramCount = 2, strictCount = true, deviceRequired = true,
+        workload = CommandContract.Workload.DATABASE,
+        invalidates = { RequestCode.USERS_LIST, RequestCode.USERS_UNREGISTERED })
 public class CmdRemoveFingerprint extends ClientCommand
 {
     /**
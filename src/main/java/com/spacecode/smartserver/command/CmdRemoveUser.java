@@ -14,7 +14,9 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * RemoveUser command.
  */
-@CommandContract(paramCount = 1, strictCount = true, deviceRequired = true)
+@CommandContract(paramCount = 1, strictCount = true, deviceRequired = true,
+        workload = CommandContract.Workload.DATABASE,
+        invalidates = { RequestCode.USERS_LIST, RequestCode.USERS_UNREGISTERED })
 public class CmdRemoveUser extends ClientCommand
 {
     /**
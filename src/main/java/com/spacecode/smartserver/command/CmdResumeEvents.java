@@ -0,0 +1,49 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.EventJournal;
+import com.spacecode.smartserver.helper.SmartLogger;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.logging.Level;
+
+/**
+ * ResumeEvents command.
+ *
+ * From now on, the current client receives each event with its sequence number as last packet (see
+ * {@link EventJournal}). Given the sequence of the last event it received (i.e. before a reconnection), it first
+ * receives the events it missed.
+ *
+ * Response: [RequestCode, "true" or "false", sequence of the last event sent]. "false" if the missed events are not
+ * available anymore: the client has to resynchronize (last inventory, last alert...).
+ */
+@CommandContract(paramCount = 0)
+public class CmdResumeEvents extends ClientCommand
+{
+    /**
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    Optional: sequence of the last event received by the client.
+     */
+    @Override
+    public void execute(ChannelHandlerContext ctx, String[] parameters)
+    {
+        Long lastReceived = null;
+
+        if(parameters.length > 0)
+        {
+            try
+            {
+                lastReceived = Long.parseLong(parameters[0]);
+            } catch(NumberFormatException nfe)
+            {
+                SmartLogger.getLogger().log(Level.WARNING, "Invalid event sequence sent by client to resume.", nfe);
+                SmartServer.sendMessage(ctx, ClientCommandRegister.AppCode.RESUME_EVENTS, FALSE);
+                return;
+            }
+        }
+
+        boolean resumed = SmartServer.resumeEvents(ctx, lastReceived);
+        SmartServer.sendMessage(ctx, ClientCommandRegister.AppCode.RESUME_EVENTS, resumed ? TRUE : FALSE,
+                String.valueOf(EventJournal.getLastSequence()));
+    }
+}
@@ -10,7 +10,8 @@ import io.netty.channel.ChannelHandlerContext;
  * RewriteUid command.
  * "ERROR" (RewriteUidResult.ERROR.name()) is sent back if the contract is not respected.
  */
-@CommandContract(paramCount = 2, strictCount = true, deviceRequired = true, responseIfInvalid = "ERROR")
+@CommandContract(paramCount = 2, strictCount = true, deviceRequired = true, responseIfInvalid = "ERROR",
+        workload = CommandContract.Workload.DEVICE)
 public class CmdRewriteUid extends ClientCommand
 {
     /**
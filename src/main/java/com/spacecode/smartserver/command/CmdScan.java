@@ -14,7 +14,8 @@ import java.util.logging.Level;
 /**
  * Scan command.
  */
-@CommandContract(deviceRequired = true, responseIfInvalid = EventCode.SCAN_FAILED, respondToAllIfInvalid = true)
+@CommandContract(deviceRequired = true, responseIfInvalid = EventCode.SCAN_FAILED, respondToAllIfInvalid = true,
+        workload = CommandContract.Workload.DEVICE)
 public class CmdScan extends ClientCommand
 {
     /**
@@ -5,6 +5,7 @@ import com.spacecode.sdk.network.communication.RequestCode;
 import com.spacecode.smartserver.SmartServer;
 import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.helper.ConfManager;
+import com.spacecode.smartserver.helper.ResponseCache;
 import com.spacecode.smartserver.helper.SmartLogger;
 import io.netty.channel.ChannelHandlerContext;
 
@@ -13,7 +14,7 @@ import java.util.logging.Level;
 /**
  * Command SetDbSettings.
  */
-@CommandContract(paramCount = 6, strictCount = true)
+@CommandContract(paramCount = 6, strictCount = true, workload = CommandContract.Workload.DATABASE)
 public class CmdSetDbSettings extends ClientCommand
 {
     /**
@@ -49,6 +50,9 @@ public class CmdSetDbSettings extends ClientCommand
                 SmartLogger.getLogger()
                         .severe("Unable to re-initialize Database. New database configuration may be invalid.");
             }
+
+            // the cached responses come from the previous database
+            ResponseCache.invalidateAll();
             return;
         } catch(NumberFormatException nfe)
         {
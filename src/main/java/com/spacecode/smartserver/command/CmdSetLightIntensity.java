@@ -9,7 +9,8 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * InventoryById command.
  */
-@CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, responseIfInvalid = ClientCommand.FALSE)
+@CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, responseIfInvalid = ClientCommand.FALSE,
+        workload = CommandContract.Workload.DEVICE)
 public class CmdSetLightIntensity extends ClientCommand
 {
     /**
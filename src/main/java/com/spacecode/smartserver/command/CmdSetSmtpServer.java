@@ -14,7 +14,8 @@ import java.util.logging.Level;
 /**
  * SetSmtpServer command.
  */
-@CommandContract(paramCount = 5, strictCount = true)
+@CommandContract(paramCount = 5, strictCount = true, workload = CommandContract.Workload.DATABASE,
+        invalidates = RequestCode.SMTP_SERVER)
 public class CmdSetSmtpServer extends ClientCommand
 {
     /**
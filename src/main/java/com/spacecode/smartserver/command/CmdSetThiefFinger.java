@@ -10,7 +10,8 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * SetThiefFinger command.
  */
-@CommandContract(paramCount = 1)
+@CommandContract(paramCount = 1, workload = CommandContract.Workload.DATABASE,
+        invalidates = { RequestCode.USERS_LIST, RequestCode.USERS_UNREGISTERED })
 public class CmdSetThiefFinger extends ClientCommand
 {
     /**
@@ -10,6 +10,7 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * SmtpServer command.
  */
+@CommandContract(workload = CommandContract.Workload.DATABASE, cached = true)
 public class CmdSmtpServer extends ClientCommand
 {
     /**
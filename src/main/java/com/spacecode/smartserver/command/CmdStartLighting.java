@@ -12,7 +12,7 @@ import java.util.Arrays;
 /**
  * StartLighting command.
  */
-@CommandContract(paramCount = 1, deviceRequired = true)
+@CommandContract(paramCount = 1, deviceRequired = true, workload = CommandContract.Workload.DEVICE)
 public class CmdStartLighting extends ClientCommand
 {
     /**
@@ -13,7 +13,7 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * StartLighting command.
  */
-@CommandContract(deviceRequired = true)
+@CommandContract(deviceRequired = true, workload = CommandContract.Workload.DEVICE)
 public class CmdStartLightingAcrossReader extends ClientCommand {
     @Override
     public void execute(ChannelHandlerContext ctx, String[] parameters) throws ClientCommandException {
@@ -8,7 +8,7 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * StopLighting command.
  */
-@CommandContract(deviceRequired = true)
+@CommandContract(deviceRequired = true, workload = CommandContract.Workload.DEVICE)
 public class CmdStopLighting extends ClientCommand
 {
     /**
@@ -8,7 +8,7 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * Created by admin on 27/08/2016.
  */
-@CommandContract(deviceRequired = true)
+@CommandContract(deviceRequired = true, workload = CommandContract.Workload.DEVICE)
 public class CmdStopLightingAcrossReader extends ClientCommand {
     @Override
     public void execute(ChannelHandlerContext ctx, String[] parameters) throws ClientCommandException {
@@ -1,12 +1,13 @@
 package com.spacecode.smartserver.command;
 
+import com.spacecode.smartserver.helper.ContinuousScan;
 import com.spacecode.smartserver.helper.DeviceHandler;
 import io.netty.channel.ChannelHandlerContext;
 
 /**
  * StopScan command.
  */
-@CommandContract(deviceRequired = true, noResponseWhenInvalid = true)
+@CommandContract(deviceRequired = true, noResponseWhenInvalid = true, workload = CommandContract.Workload.DEVICE)
 public class CmdStopScan extends ClientCommand
 {
     /**
@@ -18,6 +19,8 @@ public class CmdStopScan extends ClientCommand
     @Override
     public void execute(ChannelHandlerContext ctx, String[] parameters)
     {
+        // the current cycle of the continuous mode is the last one
+        ContinuousScan.stop();
         DeviceHandler.getDevice().stopScan();
     }
 }
@@ -0,0 +1,28 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.EventSubscriptions;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.Arrays;
+
+/**
+ * Subscribe command.
+ */
+@CommandContract(paramCount = 1)
+public class CmdSubscribe extends ClientCommand
+{
+    /**
+     * Subscribe the current client to the given events. Once subscribed to any event, the client only receives the
+     * events it subscribed to. Sends back "false" (nothing subscribed) if one of the codes is not an event code.
+     *
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    Codes of the events wanted by the client (i.e. "event_door_opened").
+     */
+    @Override
+    public void execute(ChannelHandlerContext ctx, String[] parameters)
+    {
+        boolean result = EventSubscriptions.subscribe(ctx.channel(), Arrays.asList(parameters));
+        SmartServer.sendMessage(ctx, ClientCommandRegister.AppCode.SUBSCRIBE, result ? TRUE : FALSE);
+    }
+}
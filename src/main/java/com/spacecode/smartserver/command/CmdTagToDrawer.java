@@ -16,7 +16,7 @@ import java.util.Map;
  *
  * Provide the current "Tag To Axis" map of the {@link Device} instance.
  */
-@CommandContract(deviceRequired = true, responseIfInvalid = "")
+@CommandContract(deviceRequired = true, responseIfInvalid = "", cached = true)
 public class CmdTagToDrawer extends ClientCommand
 {
     /**
@@ -16,7 +16,8 @@ import java.util.List;
  *
  * Provide the current "Tag To Axis" map of the {@link Device} instance from Id of the inventory
  */
-@CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, responseIfInvalid = "")
+@CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, responseIfInvalid = "",
+        workload = CommandContract.Workload.DATABASE)
 public class CmdTagToDrawerById extends ClientCommand
 {
     /**
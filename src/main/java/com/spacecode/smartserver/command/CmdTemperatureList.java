@@ -1,35 +1,63 @@
 package com.spacecode.smartserver.command;
 
+import com.j256.ormlite.stmt.QueryBuilder;
 import com.spacecode.sdk.network.communication.RequestCode;
-import com.spacecode.smartserver.SmartServer;
 import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.database.dao.DaoTemperatureMeasurement;
 import com.spacecode.smartserver.database.entity.TemperatureMeasurementEntity;
 import com.spacecode.smartserver.helper.SmartLogger;
 import io.netty.channel.ChannelHandlerContext;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 /**
  * "TemperatureList" command.
  *
  * Provide temperature measurements over a given period (start/end date provided), if any.
+ *
+ * Optionally paginated, or streamed: see {@link HistoryQuery}.
  */
-@CommandContract(paramCount = 2, strictCount = true, deviceRequired = true, responseIfInvalid = "")
-public class CmdTemperatureList extends ClientCommand
+@CommandContract(paramCount = 2, deviceRequired = true, responseIfInvalid = "",
+        workload = CommandContract.Workload.DATABASE, timeout = 300)
+public class CmdTemperatureList extends AsyncClientCommand
 {
+    private static final HistoryQuery<TemperatureMeasurementEntity> HISTORY =
+            new HistoryQuery<TemperatureMeasurementEntity>(RequestCode.TEMPERATURE_LIST)
+    {
+        @Override
+        QueryBuilder<TemperatureMeasurementEntity, Integer> getQuery(Date from, Date to, int afterId)
+                throws SQLException
+        {
+            return ((DaoTemperatureMeasurement) DbManager.getDao(TemperatureMeasurementEntity.class))
+                    .getPeriodQuery(from, to, afterId);
+        }
+
+        @Override
+        void addPackets(TemperatureMeasurementEntity entity, List<String> packets)
+        {
+            // add TIMESTAMP in seconds and temperature measurement value
+            packets.add(String.valueOf(entity.getCreatedAt().getTime()/1000));
+            packets.add(String.valueOf(entity.getValue()));
+        }
+    };
+
     /**
      * @param ctx           Channel between SmartServer and the client.
-     * @param parameters    "Start" and "End" dates (period).
+     * @param parameters    "Start" and "End" dates (period). Optional: page size (or "stream") and "after ID".
+     *
+     * @return Future of the response, completed by the "database" executor.
      */
     @Override
-    public void execute(ChannelHandlerContext ctx, String[] parameters)
+    CompletableFuture<String[]> executeAsync(final ChannelHandlerContext ctx, final String[] parameters)
     {
-        long timestampStart;
-        long timestampEnd;
+        final long timestampStart;
+        final long timestampEnd;
 
         try
         {
@@ -39,32 +67,40 @@ public class CmdTemperatureList extends ClientCommand
         {
             SmartLogger.getLogger().log(Level.WARNING,
                     "Invalid timestamp sent by client for TemperatureList.", nfe);
-            SmartServer.sendMessage(ctx, RequestCode.TEMPERATURE_LIST);
-            return;
+            return completed(RequestCode.TEMPERATURE_LIST);
         }
 
-        if(timestampEnd <= timestampStart)
+        if(timestampEnd <= timestampStart || parameters.length > 4)
         {
-            SmartServer.sendMessage(ctx, RequestCode.TEMPERATURE_LIST);
-            return;
+            return completed(RequestCode.TEMPERATURE_LIST);
         }
 
-        DaoTemperatureMeasurement repo =
-                (DaoTemperatureMeasurement) DbManager.getDao(TemperatureMeasurementEntity.class);
+        return CommandExecutors.supplyAsync(CommandContract.Workload.DATABASE, new Supplier<String[]>()
+        {
+            @Override
+            public String[] get()
+            {
+                if(HistoryQuery.isPaginated(parameters))
+                {
+                    return HISTORY.execute(ctx, new Date(timestampStart), new Date(timestampEnd), parameters);
+                }
 
-        List<TemperatureMeasurementEntity> entities =
-                repo.getTemperatureMeasures(new Date(timestampStart), new Date(timestampEnd));
+                DaoTemperatureMeasurement repo =
+                        (DaoTemperatureMeasurement) DbManager.getDao(TemperatureMeasurementEntity.class);
 
-        List<String> responsePackets = new ArrayList<>();
-        responsePackets.add(RequestCode.TEMPERATURE_LIST);
+                List<TemperatureMeasurementEntity> entities =
+                        repo.getTemperatureMeasures(new Date(timestampStart), new Date(timestampEnd));
 
-        for(TemperatureMeasurementEntity entity : entities)
-        {
-            // add TIMESTAMP in seconds and temperature measurement value
-            responsePackets.add(String.valueOf(entity.getCreatedAt().getTime()/1000));
-            responsePackets.add(String.valueOf(entity.getValue()));
-        }
+                List<String> responsePackets = new ArrayList<>();
+                responsePackets.add(RequestCode.TEMPERATURE_LIST);
+
+                for(TemperatureMeasurementEntity entity : entities)
+                {
+                    HISTORY.addPackets(entity, responsePackets);
+                }
 
-        SmartServer.sendMessage(ctx, responsePackets.toArray(new String[responsePackets.size()]));
+                return responsePackets.toArray(new String[responsePackets.size()]);
+            }
+        });
     }
 }
@@ -11,7 +11,7 @@ import java.util.List;
 /**
  * Unregistered Users List command.
  */
-@CommandContract(deviceRequired = true, responseIfInvalid = "")
+@CommandContract(deviceRequired = true, responseIfInvalid = "", cached = true)
 public class CmdUnregisteredUsers extends ClientCommand
 {
     /**
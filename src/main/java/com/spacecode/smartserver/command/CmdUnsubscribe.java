@@ -0,0 +1,35 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.EventSubscriptions;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.Arrays;
+
+/**
+ * Unsubscribe command.
+ */
+public class CmdUnsubscribe extends ClientCommand
+{
+    /**
+     * Unsubscribe the current client from the given events: it still only receives the events it subscribed to (none,
+     * once unsubscribed from each of them). Without any event code, all its subscriptions are removed: the client
+     * receives all the events again.
+     *
+     * @param ctx           Channel between SmartServer and the client.
+     * @param parameters    Codes of the events not wanted anymore by the client (none: back to all events).
+     */
+    @Override
+    public void execute(ChannelHandlerContext ctx, String[] parameters)
+    {
+        if(parameters.length == 0)
+        {
+            EventSubscriptions.unsubscribeAll(ctx.channel());
+            SmartServer.sendMessage(ctx, ClientCommandRegister.AppCode.UNSUBSCRIBE, TRUE);
+            return;
+        }
+
+        boolean result = EventSubscriptions.unsubscribe(ctx.channel(), Arrays.asList(parameters));
+        SmartServer.sendMessage(ctx, ClientCommandRegister.AppCode.UNSUBSCRIBE, result ? TRUE : FALSE);
+    }
+}
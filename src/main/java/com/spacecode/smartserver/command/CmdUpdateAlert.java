@@ -13,7 +13,8 @@ import io.netty.channel.ChannelHandlerContext;
 /**
  * UpdateAlert command.
  */
-@CommandContract(paramCount = 1, strictCount = true)
+@CommandContract(paramCount = 1, strictCount = true, workload = CommandContract.Workload.DATABASE,
+        invalidates = RequestCode.ALERTS_LIST)
 public class CmdUpdateAlert extends ClientCommand
 {
     /**
@@ -15,7 +15,9 @@ import java.util.logging.Level;
 /**
  * UpdatePermission command.
  */
-@CommandContract(paramCount = 2, strictCount = true, deviceRequired = true)
+@CommandContract(paramCount = 2, strictCount = true, deviceRequired = true,
+        workload = CommandContract.Workload.DATABASE,
+        invalidates = { RequestCode.USERS_LIST, RequestCode.USERS_UNREGISTERED })
 public class CmdUpdatePermission extends ClientCommand
 {
     /**
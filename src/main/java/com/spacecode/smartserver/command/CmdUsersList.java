@@ -12,7 +12,7 @@ import java.util.List;
 /**
  * Granted Users List command.
  */
-@CommandContract(deviceRequired = true, responseIfInvalid = "")
+@CommandContract(deviceRequired = true, responseIfInvalid = "", cached = true)
 public class CmdUsersList extends ClientCommand
 {
     /**
@@ -1,5 +1,7 @@
 package com.spacecode.smartserver.command;
 
+import com.spacecode.smartserver.helper.ResponseCache;
+
 import java.lang.annotation.*;
 
 @Retention(RetentionPolicy.RUNTIME)
@@ -27,4 +29,29 @@ import java.lang.annotation.*;
     
     /** If true, the "responseIfInvalid" is sent to ALL clients */
     boolean respondToAllIfInvalid() default false;
+
+    /** Kind of work done by the command: decides which executor runs it (see {@link CommandExecutors}) */
+    Workload workload() default Workload.CHEAP;
+
+    /** Maximum duration (seconds) of an {@link AsyncClientCommand}, before the "responseIfInvalid" is sent */
+    int timeout() default 30;
+
+    /** If true, the response is cached until invalidated (see {@link ResponseCache}): for read-mostly commands */
+    boolean cached() default false;
+
+    /** Request codes of the cached responses invalidated by the command (which changes their data) */
+    String[] invalidates() default {};
+
+    /** Kinds of work done by the commands */
+    enum Workload
+    {
+        /** Fast, in-memory: executed by the network (I/O) thread which received the request */
+        CHEAP,
+
+        /** Talks to the device (RFID board, readers): executed one at a time, in order */
+        DEVICE,
+
+        /** Queries/updates the database: executed by a small pool of threads */
+        DATABASE
+    }
 }
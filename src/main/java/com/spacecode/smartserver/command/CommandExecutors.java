@@ -0,0 +1,429 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Executors running the commands which must not block the network (I/O) threads, according to the
+ * {@link CommandContract#workload()} of each command:
+ * <ul>
+ *     <li>DEVICE: one thread, requests to the device are executed one at a time, in order.</li>
+ *     <li>DATABASE: a small pool of threads.</li>
+ * </ul>
+ * Long-running work started by a command (see {@link ClientCommand#parallelize}) is executed by a small pool of
+ * "background" threads, with a timeout, and is cancelled if the client leaves.
+ *
+ * The queues are bounded: when a queue is full, the request is rejected (see {@link ClientCommandRegister}).
+ *
+ * Has to be started. Otherwise (i.e. unit tests), all commands are executed by the calling thread.
+ */
+public final class CommandExecutors
+{
+    static final int DEVICE_QUEUE_CAPACITY = 16;
+
+    static final int DATABASE_THREADS = 2;
+    static final int DATABASE_QUEUE_CAPACITY = 64;
+
+    static final int BACKGROUND_THREADS = 2;
+    static final int BACKGROUND_QUEUE_CAPACITY = 8;
+
+    static final String METRIC_BACKGROUND_TIMEOUTS = "commands.background.timeouts";
+    static final String METRIC_BACKGROUND_CANCELLED = "commands.background.cancelled";
+    static final String METRIC_BACKGROUND_REJECTED = "commands.background.rejected";
+
+    // executes the tasks in the calling thread
+    private static final Executor CALLING_THREAD = new Executor()
+    {
+        @Override
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    private static volatile ThreadPoolExecutor DEVICE_EXECUTOR = null;
+    private static volatile ThreadPoolExecutor DATABASE_EXECUTOR = null;
+    private static volatile ThreadPoolExecutor BACKGROUND_EXECUTOR = null;
+    // cancels the background tasks which timed out
+    private static volatile ScheduledThreadPoolExecutor TIMEOUT_SCHEDULER = null;
+
+    /** Must not be instantiated. */
+    private CommandExecutors()
+    {
+    }
+
+    /**
+     * Create the executors (if not already created).
+     */
+    public static synchronized void start()
+    {
+        if(DEVICE_EXECUTOR != null)
+        {
+            return;
+        }
+
+        final ThreadPoolExecutor deviceExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(DEVICE_QUEUE_CAPACITY), new DefaultThreadFactory("cmd-device", true));
+        final ThreadPoolExecutor databaseExecutor = new ThreadPoolExecutor(DATABASE_THREADS, DATABASE_THREADS,
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(DATABASE_QUEUE_CAPACITY),
+                new DefaultThreadFactory("cmd-database", true));
+        final ThreadPoolExecutor backgroundExecutor = new ThreadPoolExecutor(BACKGROUND_THREADS, BACKGROUND_THREADS,
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(BACKGROUND_QUEUE_CAPACITY),
+                new DefaultThreadFactory("cmd-background", true));
+        ScheduledThreadPoolExecutor timeoutScheduler =
+                new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("cmd-timeouts", true));
+        // most tasks end before their timeout: do not keep the cancelled timeouts in the queue
+        timeoutScheduler.setRemoveOnCancelPolicy(true);
+
+        SmartMetrics.registerGauge("commands.device.queue", new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return deviceExecutor.getQueue().size();
+            }
+        });
+
+        SmartMetrics.registerGauge("commands.database.queue", new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return databaseExecutor.getQueue().size();
+            }
+        });
+
+        SmartMetrics.registerGauge("commands.background.queue", new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return backgroundExecutor.getQueue().size();
+            }
+        });
+
+        SmartMetrics.registerGauge("commands.background.active", new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return backgroundExecutor.getActiveCount();
+            }
+        });
+
+        DEVICE_EXECUTOR = deviceExecutor;
+        DATABASE_EXECUTOR = databaseExecutor;
+        BACKGROUND_EXECUTOR = backgroundExecutor;
+        TIMEOUT_SCHEDULER = timeoutScheduler;
+    }
+
+    /**
+     * Stop accepting new commands and wait (a few seconds) for the running ones.
+     */
+    public static synchronized void stop()
+    {
+        if(DEVICE_EXECUTOR == null)
+        {
+            return;
+        }
+
+        DEVICE_EXECUTOR.shutdown();
+        DATABASE_EXECUTOR.shutdown();
+        // long-running tasks are not waited for
+        BACKGROUND_EXECUTOR.shutdownNow();
+        TIMEOUT_SCHEDULER.shutdownNow();
+
+        try
+        {
+            DEVICE_EXECUTOR.awaitTermination(5, TimeUnit.SECONDS);
+            DATABASE_EXECUTOR.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        DEVICE_EXECUTOR = null;
+        DATABASE_EXECUTOR = null;
+        BACKGROUND_EXECUTOR = null;
+        TIMEOUT_SCHEDULER = null;
+    }
+
+    /**
+     * @param workload Kind of work done by a command.
+     *
+     * @return Executor to be used for this kind of work, or null if the command should be executed by the calling
+     * thread (cheap command, or executors not started).
+     */
+    static Executor get(CommandContract.Workload workload)
+    {
+        switch(workload)
+        {
+            case DEVICE:
+                return DEVICE_EXECUTOR;
+
+            case DATABASE:
+                return DATABASE_EXECUTOR;
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Execute a task with the executor of the given workload (or by the calling thread, see {@link #get}), with the
+     * context of the current request (the messages it sends have the correlation ID of the request).
+     *
+     * @param workload  Kind of work done by the task.
+     * @param supplier  Task providing a result.
+     * @param <T>       Type of the result.
+     *
+     * @return Future of the result. Completed with a {@link RejectedExecutionException} if the executor is overloaded.
+     */
+    static <T> CompletableFuture<T> supplyAsync(CommandContract.Workload workload, final Supplier<T> supplier)
+    {
+        Executor executor = get(workload);
+        final RequestContext context = RequestContext.current();
+
+        try
+        {
+            return CompletableFuture.supplyAsync(new Supplier<T>()
+            {
+                @Override
+                public T get()
+                {
+                    RequestContext previous = RequestContext.attach(context);
+
+                    try
+                    {
+                        return supplier.get();
+                    } finally
+                    {
+                        RequestContext.restore(previous);
+                    }
+                }
+            }, executor == null ? CALLING_THREAD : executor);
+        } catch (RejectedExecutionException ree)
+        {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(ree);
+            return rejected;
+        }
+    }
+
+    /**
+     * Complete a future with a {@link TimeoutException} if it is not completed before the given timeout (nothing is
+     * done if the executors are not started).
+     *
+     * @param future    Future to be completed in time.
+     * @param timeout   Maximum delay.
+     * @param unit      Unit of the timeout.
+     * @param <T>       Type of the result.
+     *
+     * @return The given future.
+     */
+    static <T> CompletableFuture<T> withTimeout(final CompletableFuture<T> future, final long timeout,
+                                               final TimeUnit unit)
+    {
+        ScheduledThreadPoolExecutor timeoutScheduler = TIMEOUT_SCHEDULER;
+
+        if(timeoutScheduler == null || future.isDone())
+        {
+            return future;
+        }
+
+        try
+        {
+            final ScheduledFuture<?> timeoutTask = timeoutScheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    future.completeExceptionally(new TimeoutException("Not completed in " + timeout + " " + unit));
+                }
+            }, timeout, unit);
+
+            future.whenComplete(new BiConsumer<T, Throwable>()
+            {
+                @Override
+                public void accept(T result, Throwable failure)
+                {
+                    timeoutTask.cancel(false);
+                }
+            });
+        } catch (RejectedExecutionException ree)
+        {
+            // stopping: no timeout
+        }
+
+        return future;
+    }
+
+    /**
+     * Execute a long-running task in the background. The task is cancelled (interrupted) if it is still running after
+     * the given timeout, or if the channel of the client is closed.
+     *
+     * @param channel   Channel of the client which requested the task.
+     * @param task      Task to be executed.
+     * @param timeout   Maximum duration of the task.
+     * @param unit      Unit of the timeout.
+     *
+     * @return False if the task was rejected (too many background tasks), true otherwise.
+     */
+    static boolean runInBackground(Channel channel, Runnable task, long timeout, TimeUnit unit)
+    {
+        return runInBackground(channel, task, null, timeout, unit);
+    }
+
+    /**
+     * Execute a long-running task in the background. The task is cancelled (interrupted) if it is still running after
+     * the given timeout, or if the channel of the client is closed.
+     *
+     * @param channel       Channel of the client which requested the task.
+     * @param task          Task to be executed.
+     * @param onCancelled   Called (with the context of the request) if the task is cancelled. Can be null.
+     * @param timeout       Maximum duration of the task.
+     * @param unit          Unit of the timeout.
+     *
+     * @return False if the task was rejected (too many background tasks), true otherwise.
+     */
+    static boolean runInBackground(Channel channel, Runnable task, Runnable onCancelled, long timeout, TimeUnit unit)
+    {
+        ThreadPoolExecutor executor = BACKGROUND_EXECUTOR;
+        ScheduledThreadPoolExecutor timeoutScheduler = TIMEOUT_SCHEDULER;
+
+        if(executor == null || timeoutScheduler == null)
+        {
+            task.run();
+            return true;
+        }
+
+        // responses sent by the task are the ones of the request which started it
+        RequestContext context = RequestContext.current();
+        final BackgroundTask backgroundTask = new BackgroundTask(channel, RequestContext.wrap(context, task),
+                onCancelled == null ? null : RequestContext.wrap(context, onCancelled));
+
+        try
+        {
+            executor.execute(backgroundTask);
+        } catch (RejectedExecutionException ree)
+        {
+            SmartLogger.getLogger().warning("Too many background tasks, rejected.");
+            SmartMetrics.increment(METRIC_BACKGROUND_REJECTED);
+            return false;
+        }
+
+        // a request of a batch waits for the response of the task
+        RequestContext.deferResponse();
+        // called immediately if the channel is already closed
+        channel.closeFuture().addListener(backgroundTask);
+
+        try
+        {
+            backgroundTask._timeout = timeoutScheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if(backgroundTask.cancel(true))
+                    {
+                        SmartLogger.getLogger().warning("Background task timed out: cancelled.");
+                        SmartMetrics.increment(METRIC_BACKGROUND_TIMEOUTS);
+                    }
+                }
+            }, timeout, unit);
+        } catch (RejectedExecutionException ree)
+        {
+            // stopping: the task is cancelled by the shutdown of its executor
+        }
+
+        return true;
+    }
+
+    /** Background task, cancelled when the client leaves (listener of its channel). */
+    private static final class BackgroundTask extends FutureTask<Void> implements ChannelFutureListener
+    {
+        private final Channel _channel;
+        private final Runnable _onCancelled;
+        private volatile ScheduledFuture<?> _timeout;
+
+        private BackgroundTask(Channel channel, Runnable task, Runnable onCancelled)
+        {
+            super(task, null);
+            _channel = channel;
+            _onCancelled = onCancelled;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future)
+        {
+            if(cancel(true))
+            {
+                SmartMetrics.increment(METRIC_BACKGROUND_CANCELLED);
+            }
+        }
+
+        @Override
+        protected void done()
+        {
+            ScheduledFuture<?> timeout = _timeout;
+
+            if(timeout != null)
+            {
+                timeout.cancel(false);
+            }
+
+            _channel.closeFuture().removeListener(this);
+
+            try
+            {
+                get();
+            } catch (CancellationException ce)
+            {
+                // timed out, or client left: already counted
+                onCancelled();
+            } catch (ExecutionException ee)
+            {
+                SmartLogger.getLogger().log(Level.SEVERE, "Unexpected error in a background task", ee.getCause());
+            } catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void onCancelled()
+        {
+            if(_onCancelled == null)
+            {
+                return;
+            }
+
+            try
+            {
+                _onCancelled.run();
+            } catch (RuntimeException re)
+            {
+                SmartLogger.getLogger().log(Level.SEVERE, "Unexpected error after the cancellation of a task", re);
+            }
+        }
+    }
+}
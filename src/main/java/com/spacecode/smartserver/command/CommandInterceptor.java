@@ -0,0 +1,56 @@
+package com.spacecode.smartserver.command;
+
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Called by {@link ClientCommandRegister} before and after the execution of each command (see
+ * {@link CommandInterceptors} for the default ones: rate limiting, validation, authorization, timing, tracing).
+ *
+ * Interceptors are shared by all the clients and called by several threads: they have to be thread-safe.
+ */
+interface CommandInterceptor
+{
+    /** Decision of an interceptor about a request */
+    enum Verdict
+    {
+        /** The request goes on to the next interceptor, then to the command */
+        PROCEED,
+
+        /** The request is refused: the {@link CommandContract#responseIfInvalid()} of the command is sent back */
+        REJECT,
+
+        /**
+         * The request is refused because of its client (i.e. too many requests): the
+         * {@link CommandContract#responseIfInvalid()} of the command is sent back to this client only, even if the
+         * contract expects it to be sent to all clients
+         */
+        THROTTLE,
+
+        /** The request is silently ignored: nothing is sent back */
+        IGNORE
+    }
+
+    /**
+     * Called before the execution of the command. The next interceptors (and the command) are only called if the
+     * request is accepted.
+     *
+     * @param command       Registered command.
+     * @param ctx           Channel of the client used to send the request.
+     * @param parameters    Parameters given with the request (without the RequestCode).
+     *
+     * @return Decision about the request.
+     */
+    Verdict before(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters);
+
+    /**
+     * Called after the execution of the command (even if it failed), in the reverse order of {@link #before}.
+     *
+     * @param command       Registered command.
+     * @param ctx           Channel of the client used to send the request.
+     * @param parameters    Parameters given with the request (without the RequestCode).
+     * @param durationNanos Execution time of the command, in nanoseconds.
+     * @param failure       Exception thrown by the command, or null.
+     */
+    void after(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters, long durationNanos,
+               Throwable failure);
+}
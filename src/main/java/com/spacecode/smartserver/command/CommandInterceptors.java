@@ -0,0 +1,147 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.DeviceHandler;
+import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Default interceptors of the commands (see {@link #defaults()}).
+ */
+final class CommandInterceptors
+{
+    /** Must not be instantiated. */
+    private CommandInterceptors()
+    {
+    }
+
+    /**
+     * @return A new chain of the default interceptors, in their order of execution.
+     */
+    static CommandInterceptor[] defaults()
+    {
+        return new CommandInterceptor[]
+                {
+                        new RateLimitInterceptor(),
+                        new ParameterCount(),
+                        new DeviceAvailability(),
+                        new Administrator(),
+                        new Timing(),
+                        new Tracing()
+                };
+    }
+
+    /** Interceptor only checking the requests. */
+    abstract static class Check implements CommandInterceptor
+    {
+        @Override
+        public void after(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters,
+                          long durationNanos, Throwable failure)
+        {
+        }
+    }
+
+    /** Interceptor only observing the executions. */
+    abstract static class Observer implements CommandInterceptor
+    {
+        @Override
+        public Verdict before(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters)
+        {
+            return Verdict.PROCEED;
+        }
+    }
+
+    /**
+     * Validation: either the number of parameters is "enough" (not-strict mode), either it needs to be exactly the
+     * one of the contract.
+     */
+    static class ParameterCount extends Check
+    {
+        @Override
+        public Verdict before(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters)
+        {
+            CommandContract contract = command.getContract();
+
+            if (parameters.length < contract.paramCount() ||
+                    (contract.strictCount() && parameters.length != contract.paramCount()))
+            {
+                SmartLogger.getLogger().warning("Invalid number of parameters [" + command.getRequestCode() + "]");
+                return Verdict.REJECT;
+            }
+
+            return Verdict.PROCEED;
+        }
+    }
+
+    /** The device must be under control if the contract requires it. */
+    static class DeviceAvailability extends Check
+    {
+        @Override
+        public Verdict before(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters)
+        {
+            if(command.getContract().deviceRequired() && !DeviceHandler.isAvailable())
+            {
+                SmartLogger.getLogger().info("Device not available [" + command.getRequestCode() + "]");
+                return Verdict.REJECT;
+            }
+
+            return Verdict.PROCEED;
+        }
+    }
+
+    /** Authorization: the client must be an administrator if the contract requires it. */
+    static class Administrator extends Check
+    {
+        @Override
+        public Verdict before(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters)
+        {
+            if(command.getContract().adminRequired() && !SmartServer.isAdministrator(ctx.channel().remoteAddress()))
+            {
+                SmartLogger.getLogger().info("User is not an Administrator [" + command.getRequestCode() + "]");
+                return Verdict.REJECT;
+            }
+
+            return Verdict.PROCEED;
+        }
+    }
+
+    /** Execution time of each command, and number of failed executions. */
+    static class Timing extends Observer
+    {
+        @Override
+        public void after(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters,
+                          long durationNanos, Throwable failure)
+        {
+            SmartMetrics.recordTime(command.getTimerName(), durationNanos);
+
+            if(failure != null)
+            {
+                SmartMetrics.increment("commands.failed");
+            }
+        }
+    }
+
+    /** Trace of each execution (sender, duration), logged if the FINE level is enabled. */
+    static class Tracing extends Observer
+    {
+        @Override
+        public void after(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters,
+                          long durationNanos, Throwable failure)
+        {
+            SmartLogger logger = SmartLogger.getLogger();
+
+            if(!logger.isLoggable(Level.FINE))
+            {
+                return;
+            }
+
+            logger.fine("[" + command.getRequestCode() + "] from " + ctx.channel().remoteAddress() + ": " +
+                    (failure == null ? "done" : "failed") + " in " +
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos) + " ms");
+        }
+    }
+}
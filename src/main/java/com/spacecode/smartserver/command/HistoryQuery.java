@@ -0,0 +1,231 @@
+package com.spacecode.smartserver.command;
+
+import com.j256.ormlite.dao.CloseableIterator;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.database.entity.Entity;
+import com.spacecode.smartserver.helper.SmartLogger;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Keyset pagination of the commands providing the history of a period ("start" and "end" dates), for a response not to
+ * be built in memory at once, nor to exceed the maximum size of a frame.
+ *
+ * After the dates, a client can give a page size (or {@link #STREAM}) and the ID of the last entity it received:
+ * <ul>
+ *     <li>Page: [RequestCode, start, end, size, (afterId)] is answered by [RequestCode, cursor, up to "size" entities].
+ *     </li>
+ *     <li>Stream: [RequestCode, start, end, "stream", (afterId)] is answered by several messages formatted as pages,
+ *     read from a database cursor and sent as they are filled (memory use does not depend on the period). Not allowed
+ *     in a batch (see {@link CmdBatch}), which gets one response per request: answered by the RequestCode alone.</li>
+ * </ul>
+ * The cursor is the ID of the last entity of the message (to be given as "afterId" to get the next page), or an empty
+ * string if there is nothing left. A response without cursor means an error.
+ *
+ * @param <E> Type of the entities.
+ */
+abstract class HistoryQuery<E extends Entity>
+{
+    /** Given instead of a page size to get all the entities, by chunks */
+    static final String STREAM = "stream";
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    // entities per message of a stream
+    static final int CHUNK_SIZE = 250;
+
+    // maximum delay (s) to wait for a client reading a stream too slowly
+    static final int WRITE_TIMEOUT = 30;
+
+    private final String _requestCode;
+
+    /**
+     * @param requestCode RequestCode of the command.
+     */
+    HistoryQuery(String requestCode)
+    {
+        _requestCode = requestCode;
+    }
+
+    /**
+     * @param parameters Parameters of the request.
+     *
+     * @return True if the request asks for a page or a stream (more than the "start" and "end" dates).
+     */
+    static boolean isPaginated(String[] parameters)
+    {
+        return parameters.length > 2;
+    }
+
+    /**
+     * @param from      Period start date (null: no period).
+     * @param to        Period end date (null: no period).
+     * @param afterId   ID of the last entity already received.
+     *
+     * @return Query of the entities of the period, after the given ID, ordered by ID.
+     *
+     * @throws SQLException If the query could not be built.
+     */
+    abstract QueryBuilder<E, Integer> getQuery(Date from, Date to, int afterId) throws SQLException;
+
+    /**
+     * @param entity    Entity of the history.
+     * @param packets   Packets of the response, to which the entity is added.
+     */
+    abstract void addPackets(E entity, List<String> packets);
+
+    /**
+     * Execute a paginated request (see {@link #isPaginated(String[])}). Must be called by a "database" thread.
+     *
+     * @param ctx           Channel between SmartServer and the client (the chunks of a stream are sent to it).
+     * @param from          Period start date.
+     * @param to            Period end date.
+     * @param parameters    Parameters of the request: dates, page size (or {@link #STREAM}) and "afterId" (optional).
+     *
+     * @return The page, or the last message of the stream (the previous ones have been sent).
+     */
+    String[] execute(ChannelHandlerContext ctx, Date from, Date to, String[] parameters)
+    {
+        int pageSize;
+        int afterId;
+
+        try
+        {
+            pageSize = STREAM.equals(parameters[2]) ? 0 : Integer.parseInt(parameters[2]);
+            afterId = parameters.length > 3 ? Integer.parseInt(parameters[3]) : 0;
+        } catch(NumberFormatException nfe)
+        {
+            SmartLogger.getLogger().log(Level.WARNING, "Invalid page sent by client for " + _requestCode, nfe);
+            return new String[] { _requestCode };
+        }
+
+        if(pageSize < 0 || pageSize > MAX_PAGE_SIZE || afterId < 0)
+        {
+            return new String[] { _requestCode };
+        }
+
+        if(pageSize == 0 && RequestContext.isCollected(ctx))
+        {
+            SmartLogger.getLogger().warning("Stream requested in a batch, refused [" + _requestCode + "]");
+            return new String[] { _requestCode };
+        }
+
+        try
+        {
+            return pageSize == 0 ? stream(ctx, from, to, afterId) : getPage(from, to, afterId, pageSize);
+        } catch (SQLException sqle)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Exception occurred while getting " + _requestCode, sqle);
+            return new String[] { _requestCode };
+        }
+    }
+
+    /**
+     * @param from      Period start date (null: no period).
+     * @param to        Period end date (null: no period).
+     * @param afterId   ID of the last entity already received.
+     * @param pageSize  Maximum number of entities in the page.
+     *
+     * @return The page: [RequestCode, cursor, entities].
+     *
+     * @throws SQLException If the query failed.
+     */
+    String[] getPage(Date from, Date to, int afterId, int pageSize) throws SQLException
+    {
+        QueryBuilder<E, Integer> query = getQuery(from, to, afterId);
+        query.limit((long) pageSize);
+
+        List<E> entities = query.query();
+        List<String> packets = newMessage();
+
+        for(E entity : entities)
+        {
+            addPackets(entity, packets);
+        }
+
+        if(entities.size() == pageSize)
+        {
+            packets.set(1, String.valueOf(entities.get(pageSize - 1).getId()));
+        }
+
+        return packets.toArray(new String[packets.size()]);
+    }
+
+    private String[] stream(ChannelHandlerContext ctx, Date from, Date to, int afterId) throws SQLException
+    {
+        CloseableIterator<E> cursor = getQuery(from, to, afterId).iterator();
+
+        try
+        {
+            List<String> packets = newMessage();
+            int count = 0;
+
+            while(cursor.hasNext())
+            {
+                E entity = cursor.next();
+
+                if(count == CHUNK_SIZE)
+                {
+                    if(!sendChunk(ctx, packets))
+                    {
+                        // client gone, or too slow: stream not completed
+                        return new String[] { _requestCode };
+                    }
+
+                    packets = newMessage();
+                    count = 0;
+                }
+
+                addPackets(entity, packets);
+                packets.set(1, String.valueOf(entity.getId()));
+                ++count;
+            }
+
+            // last message: nothing left
+            packets.set(1, "");
+            return packets.toArray(new String[packets.size()]);
+        } finally
+        {
+            cursor.closeQuietly();
+        }
+    }
+
+    /**
+     * Send a message of a stream. If the client does not read fast enough (outbound buffer full), wait for the message
+     * to be written before reading the next entities.
+     *
+     * @return False if the channel is closed, true otherwise.
+     */
+    private boolean sendChunk(ChannelHandlerContext ctx, List<String> packets)
+    {
+        ChannelFuture future = SmartServer.sendMessage(ctx, packets.toArray(new String[packets.size()]));
+
+        if(future != null && !ctx.channel().isWritable() && !ctx.channel().eventLoop().inEventLoop())
+        {
+            if(!future.awaitUninterruptibly(WRITE_TIMEOUT, TimeUnit.SECONDS))
+            {
+                SmartLogger.getLogger().warning("Client too slow, stream cancelled [" + _requestCode + "]");
+                return false;
+            }
+        }
+
+        return ctx.channel().isActive();
+    }
+
+    private List<String> newMessage()
+    {
+        List<String> packets = new ArrayList<>();
+        packets.add(_requestCode);
+        // cursor: none until the page is full
+        packets.add("");
+        return packets;
+    }
+}
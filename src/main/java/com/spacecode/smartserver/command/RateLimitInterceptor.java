@@ -0,0 +1,284 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.helper.ConfManager;
+import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiting of the requests, for each client (state kept in the channel of the client, lock-free):
+ * <ul>
+ *     <li>Duplicates: a request with the same code/parameters as one executed less than {@link #DEDUP_DELAY} ms ago
+ *     is ignored. Not applied to the requests with a correlation ID, or part of a batch (see {@link RequestContext}):
+ *     the client expects one response for each of them.</li>
+ *     <li>Token bucket, for each command: a client can send "burst" requests in a row, then "rate" requests per
+ *     second (see {@link ConfManager#getAppRateLimit(String)} and {@link ConfManager#getAppRateBurst(String)}).
+ *     Requests above the limit are rejected: only their client is answered.</li>
+ * </ul>
+ */
+final class RateLimitInterceptor extends CommandInterceptors.Check
+{
+    static final int DEFAULT_RATE = 20;
+    static final int DEFAULT_BURST = 40;
+
+    // delay (ms) during which a same request (same request code and parameters) is not executed again
+    static final int DEDUP_DELAY = 500;
+
+    // number of recent requests of a client above which the expired ones are removed
+    static final int DEDUP_CACHE_SIZE = 32;
+
+    static final String METRIC_THROTTLED = "commands.throttled";
+    static final String METRIC_DUPLICATES = "commands.duplicates";
+
+    private static final long DEDUP_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(DEDUP_DELAY);
+
+    private static final AttributeKey<ClientState> CLIENT_STATE =
+            AttributeKey.valueOf("smartserver.commands.rate_limit");
+
+    // limit of each command, read from the configuration on first use
+    private final ConcurrentMap<String, Limit> _limits = new ConcurrentHashMap<>();
+
+    @Override
+    public Verdict before(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters)
+    {
+        ClientState state = getState(ctx.channel());
+        long now = System.nanoTime();
+        RequestKey request = null;
+        Long executedAt = null;
+
+        if(RequestContext.get(ctx) == null)
+        {
+            request = new RequestKey(command.getRequestCode(), parameters);
+            executedAt = state.recordRequest(request, now);
+
+            if(executedAt == null)
+            {
+                SmartMetrics.increment(METRIC_DUPLICATES);
+                return Verdict.IGNORE;
+            }
+        }
+
+        if(!state.tryAcquire(command.getRequestCode(), getLimit(command), now))
+        {
+            if(request != null)
+            {
+                // not executed: must not be considered as a duplicate
+                state.forgetRequest(request, executedAt);
+            }
+
+            SmartLogger.getLogger().info("Too many requests from " + ctx.channel().remoteAddress() + " [" +
+                    command.getRequestCode() + "]");
+            SmartMetrics.increment(METRIC_THROTTLED);
+            return Verdict.THROTTLE;
+        }
+
+        return Verdict.PROCEED;
+    }
+
+    private Limit getLimit(RegisteredCommand command)
+    {
+        Limit limit = _limits.get(command.getRequestCode());
+
+        if(limit == null)
+        {
+            int rate = ConfManager.getAppRateLimit(command.getCommandName());
+            int burst = ConfManager.getAppRateBurst(command.getCommandName());
+
+            limit = new Limit(rate < 0 ? DEFAULT_RATE : rate, burst > 0 ? burst : DEFAULT_BURST);
+            _limits.putIfAbsent(command.getRequestCode(), limit);
+        }
+
+        return limit;
+    }
+
+    private static ClientState getState(Channel channel)
+    {
+        Attribute<ClientState> attribute = channel.attr(CLIENT_STATE);
+        ClientState state = attribute.get();
+
+        if(state == null)
+        {
+            ClientState newState = new ClientState();
+            state = attribute.setIfAbsent(newState);
+            state = state == null ? newState : state;
+        }
+
+        return state;
+    }
+
+    /** Requests per second, and requests in a row, allowed for a command. */
+    static class Limit
+    {
+        // time (ns) needed to get a new token, 0 if unlimited
+        private final long _interval;
+        // time (ns) needed to fill the bucket
+        private final long _capacity;
+
+        /**
+         * @param rate  Requests per second (0: no limit).
+         * @param burst Requests allowed in a row.
+         */
+        Limit(int rate, int burst)
+        {
+            _interval = rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / rate;
+            _capacity = _interval * burst;
+        }
+    }
+
+    /** Recent requests and token buckets of a client. */
+    static class ClientState
+    {
+        // Key: recent request. Value: time (ns) of its execution.
+        private final ConcurrentMap<RequestKey, Long> _recentRequests = new ConcurrentHashMap<>();
+
+        // Key: request code. Value: "theoretical arrival time" (ns) of the next request, when the bucket is empty.
+        private final ConcurrentMap<String, AtomicLong> _buckets = new ConcurrentHashMap<>();
+
+        /**
+         * @param request   Request of the client.
+         * @param now       Current time (ns).
+         *
+         * @return Time recorded for the request, or null if it is a duplicate of a recent request.
+         */
+        Long recordRequest(RequestKey request, long now)
+        {
+            Long time = now;
+
+            while(true)
+            {
+                Long previous = _recentRequests.putIfAbsent(request, time);
+
+                if(previous == null)
+                {
+                    break;
+                }
+
+                if(now - previous < DEDUP_DELAY_NANOS)
+                {
+                    return null;
+                }
+
+                if(_recentRequests.replace(request, previous, time))
+                {
+                    break;
+                }
+            }
+
+            if(_recentRequests.size() > DEDUP_CACHE_SIZE)
+            {
+                removeExpiredRequests(now);
+            }
+
+            return time;
+        }
+
+        /**
+         * @param request   Request recorded by {@link #recordRequest(RequestKey, long)}.
+         * @param time      Time returned by {@link #recordRequest(RequestKey, long)}.
+         */
+        void forgetRequest(RequestKey request, Long time)
+        {
+            _recentRequests.remove(request, time);
+        }
+
+        /**
+         * @param requestCode   Request code of the command.
+         * @param limit         Limit of the command.
+         * @param now           Current time (ns).
+         *
+         * @return True if a token was available (the request can be executed), false otherwise.
+         */
+        boolean tryAcquire(String requestCode, Limit limit, long now)
+        {
+            if(limit._interval == 0)
+            {
+                return true;
+            }
+
+            AtomicLong bucket = _buckets.get(requestCode);
+
+            if(bucket == null)
+            {
+                AtomicLong newBucket = new AtomicLong(now);
+                bucket = _buckets.putIfAbsent(requestCode, newBucket);
+                bucket = bucket == null ? newBucket : bucket;
+            }
+
+            while(true)
+            {
+                long arrival = bucket.get();
+                long nextArrival = Math.max(arrival - now, 0) + now + limit._interval;
+
+                if(nextArrival - now > limit._capacity)
+                {
+                    return false;
+                }
+
+                if(bucket.compareAndSet(arrival, nextArrival))
+                {
+                    return true;
+                }
+            }
+        }
+
+        private void removeExpiredRequests(long now)
+        {
+            for(Map.Entry<RequestKey, Long> entry : _recentRequests.entrySet())
+            {
+                if(now - entry.getValue() >= DEDUP_DELAY_NANOS)
+                {
+                    _recentRequests.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /** Request code and parameters of a request, with their hash. */
+    static class RequestKey
+    {
+        private final String _requestCode;
+        private final String[] _parameters;
+        private final int _hash;
+
+        RequestKey(String requestCode, String[] parameters)
+        {
+            _requestCode = requestCode;
+            _parameters = parameters;
+            _hash = 31 * requestCode.hashCode() + Arrays.hashCode(parameters);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(this == obj)
+            {
+                return true;
+            }
+
+            if(!(obj instanceof RequestKey))
+            {
+                return false;
+            }
+
+            RequestKey other = (RequestKey) obj;
+            return _hash == other._hash && _requestCode.equals(other._requestCode) &&
+                    Arrays.equals(_parameters, other._parameters);
+        }
+    }
+}
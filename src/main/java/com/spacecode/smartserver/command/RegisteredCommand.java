@@ -0,0 +1,88 @@
+package com.spacecode.smartserver.command;
+
+/**
+ * Entry of the dispatch table of {@link ClientCommandRegister}: a command with its {@link CommandContract} and the
+ * names of its metrics, resolved once when the command is registered (no reflection when a request is executed).
+ */
+final class RegisteredCommand
+{
+    private final String _requestCode;
+    private final ClientCommand _command;
+    private final String _commandName;
+    private final CommandContract _contract;
+    private final String _timerName;
+    private final String _waitTimerName;
+    private final boolean _async;
+
+    /**
+     * @param requestCode   RequestCode executing the command.
+     * @param command       Command instance.
+     */
+    RegisteredCommand(String requestCode, ClientCommand command)
+    {
+        _requestCode = requestCode;
+        _command = command;
+        _commandName = command.getClass().getSimpleName();
+        // CommandContract is @Inherited, and ClientCommand has the default one
+        _contract = command.getClass().getAnnotation(CommandContract.class);
+        _timerName = "commands." + requestCode;
+        _waitTimerName = "commands." + _contract.workload().name().toLowerCase() + ".wait";
+        _async = command instanceof AsyncClientCommand;
+    }
+
+    /**
+     * @return RequestCode executing the command.
+     */
+    String getRequestCode()
+    {
+        return _requestCode;
+    }
+
+    /**
+     * @return Command instance.
+     */
+    ClientCommand getCommand()
+    {
+        return _command;
+    }
+
+    /**
+     * @return Name of the class of the command (used by the settings of the command).
+     */
+    String getCommandName()
+    {
+        return _commandName;
+    }
+
+    /**
+     * @return Contract of the command.
+     */
+    CommandContract getContract()
+    {
+        return _contract;
+    }
+
+    /**
+     * @return Name of the timer recording the execution time of the command.
+     */
+    String getTimerName()
+    {
+        return _timerName;
+    }
+
+    /**
+     * @return Name of the timer recording the time spent by the requests waiting for an executor.
+     */
+    String getWaitTimerName()
+    {
+        return _waitTimerName;
+    }
+
+    /**
+     * @return True if the command is an {@link AsyncClientCommand}.
+     */
+    boolean isAsync()
+    {
+        return _async;
+    }
+}
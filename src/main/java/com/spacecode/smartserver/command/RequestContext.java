@@ -0,0 +1,256 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.helper.ResponseCache;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Context of the request being executed by the current thread: correlation ID given by the client (if any),
+ * collector of the response (sub-request of a batch, see {@link CmdBatch}), recording of the response (cached
+ * commands, see {@link ResponseCache}).
+ *
+ * A client can start a request with a correlation ID packet ("#" followed by up to {@link #MAX_ID_LENGTH} characters,
+ * before the RequestCode). The ID is echoed as the first packet of the response(s) sent by the command, so that the
+ * client can send several requests in a row and match the responses, whatever their order.
+ */
+public final class RequestContext
+{
+    /** First character of a correlation ID packet */
+    public static final String CORRELATION_PREFIX = "#";
+
+    static final int MAX_ID_LENGTH = 64;
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private final ChannelHandlerContext _ctx;
+    private final String _correlationId;
+    private final CompletableFuture<String[]> _response;
+    private final ResponseCache.Recording _recording;
+
+    // the response is sent later, by a background task started by the command (see CommandExecutors#runInBackground)
+    private volatile boolean _deferred = false;
+
+    /**
+     * @param ctx           Channel of the client which sent the request.
+     * @param correlationId Correlation ID packet given with the request.
+     */
+    RequestContext(ChannelHandlerContext ctx, String correlationId)
+    {
+        this(ctx, correlationId, null);
+    }
+
+    /**
+     * @param ctx           Channel of the client which sent the request.
+     * @param correlationId Correlation ID packet given with the request (can be null).
+     * @param response      Completed with the (first) response to the request, instead of sending it to the client.
+     */
+    RequestContext(ChannelHandlerContext ctx, String correlationId, CompletableFuture<String[]> response)
+    {
+        this(ctx, correlationId, response, null);
+    }
+
+    private RequestContext(ChannelHandlerContext ctx, String correlationId, CompletableFuture<String[]> response,
+                           ResponseCache.Recording recording)
+    {
+        _ctx = ctx;
+        _correlationId = correlationId;
+        _response = response;
+        _recording = recording;
+    }
+
+    /**
+     * @param context   Context of the request (can be null).
+     * @param ctx       Channel of the client which sent the request.
+     * @param recording Recording of the response of the request, to be cached.
+     *
+     * @return Same context, with the given recording.
+     */
+    static RequestContext withRecording(RequestContext context, ChannelHandlerContext ctx,
+                                        ResponseCache.Recording recording)
+    {
+        return context == null ?
+                new RequestContext(ctx, null, null, recording) :
+                new RequestContext(context._ctx, context._correlationId, context._response, recording);
+    }
+
+    /**
+     * @param packet First packet of a request.
+     *
+     * @return True if the packet is a (valid) correlation ID.
+     */
+    static boolean isCorrelationId(String packet)
+    {
+        return packet.startsWith(CORRELATION_PREFIX) && packet.length() > 1 && packet.length() <= MAX_ID_LENGTH + 1;
+    }
+
+    /**
+     * @param ctx Channel a response is sent to.
+     *
+     * @return Correlation ID packet to be sent with the response, or null if the request being executed by the current
+     * thread does not have one (or was sent by another client).
+     */
+    public static String getCorrelationId(ChannelHandlerContext ctx)
+    {
+        RequestContext context = get(ctx);
+        return context == null ? null : context._correlationId;
+    }
+
+    /**
+     * Give a response to the collector of the request being executed by the current thread, if any. The response is
+     * also given to the recording of the request (if cached, see {@link ResponseCache}).
+     *
+     * @param ctx       Channel a response is sent to.
+     * @param packets   Packets of the response.
+     *
+     * @return True if the response was collected (it must not be sent to the client), false otherwise.
+     */
+    public static boolean collectResponse(ChannelHandlerContext ctx, String[] packets)
+    {
+        RequestContext context = get(ctx);
+
+        if(context == null)
+        {
+            return false;
+        }
+
+        if(context._recording != null)
+        {
+            context._recording.record(packets);
+        }
+
+        if(context._response == null)
+        {
+            return false;
+        }
+
+        // only one response expected: the next ones are dropped
+        context._response.complete(packets);
+        return true;
+    }
+
+    /**
+     * Complete the collector of the request being executed by the current thread, if any, with the RequestCode alone:
+     * the request got no response (ignored, silently rejected, or command sending nothing back). Nothing is done if the
+     * request already responded, or if its response is sent later by a background task.
+     *
+     * @param ctx           Channel of the client which sent the request.
+     * @param requestCode   RequestCode of the request.
+     */
+    static void collectNoResponse(ChannelHandlerContext ctx, String requestCode)
+    {
+        RequestContext context = get(ctx);
+
+        if(context == null || context._response == null || context._deferred)
+        {
+            return;
+        }
+
+        context._response.complete(new String[] { requestCode });
+    }
+
+    /**
+     * @param ctx Channel of the client which sent the request.
+     *
+     * @return True if the request being executed by the current thread has a collector (sub-request of a batch): only
+     * its first response is given to the client.
+     */
+    static boolean isCollected(ChannelHandlerContext ctx)
+    {
+        RequestContext context = get(ctx);
+        return context != null && context._response != null;
+    }
+
+    /**
+     * Mark the request being executed by the current thread (if any) as responded later, by a background task.
+     */
+    static void deferResponse()
+    {
+        RequestContext context = CURRENT.get();
+
+        if(context != null)
+        {
+            context._deferred = true;
+        }
+    }
+
+    /**
+     * @param ctx Channel of a client.
+     *
+     * @return Context of the request being executed by the current thread, if it was sent by the given client.
+     */
+    static RequestContext get(ChannelHandlerContext ctx)
+    {
+        RequestContext context = CURRENT.get();
+        return context != null && context._ctx == ctx ? context : null;
+    }
+
+    /**
+     * @return Context of the request being executed by the current thread (null if none).
+     */
+    static RequestContext current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Set the context of the request being executed by the current thread.
+     *
+     * @param context Context of the request (can be null).
+     *
+     * @return Previous context, to be given back to {@link #restore(RequestContext)}.
+     */
+    static RequestContext attach(RequestContext context)
+    {
+        RequestContext previous = CURRENT.get();
+        CURRENT.set(context);
+        return previous;
+    }
+
+    /**
+     * @param previous Context returned by {@link #attach(RequestContext)}.
+     */
+    static void restore(RequestContext previous)
+    {
+        if(previous == null)
+        {
+            CURRENT.remove();
+        }
+
+        else
+        {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @param context   Context to be used by the task (can be null).
+     * @param task      Task executed (later) by another thread.
+     *
+     * @return A task executing the given one with the given context.
+     */
+    static Runnable wrap(final RequestContext context, final Runnable task)
+    {
+        if(context == null)
+        {
+            return task;
+        }
+
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                RequestContext previous = attach(context);
+
+                try
+                {
+                    task.run();
+                } finally
+                {
+                    restore(previous);
+                }
+            }
+        };
+    }
+}
@@ -5,6 +5,7 @@ import com.spacecode.smartserver.SmartServer;
 import com.spacecode.smartserver.helper.ConfManager;
 import com.spacecode.smartserver.helper.DeviceHandler;
 import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
 import io.netty.channel.ChannelHandlerContext;
 
 import java.io.*;
@@ -42,7 +43,8 @@ class ScAdmin
     }
 
     /** Command FlashFirmware */
-    @CommandContract(paramCount = 1, strictCount = true, deviceRequired = true)
+    @CommandContract(paramCount = 1, strictCount = true, deviceRequired = true,
+            workload = CommandContract.Workload.DEVICE)
     static class CmdFlashFirmware extends ClientCommand
     {
         /**
@@ -160,6 +162,27 @@ class ScAdmin
         }
     }
 
+    /** Command Metrics */
+    static class CmdMetrics extends ClientCommand
+    {
+        /**
+         * Send the current values of SmartServer's runtime metrics (one "name=value" packet per metric).
+         *
+         * @param ctx           Channel between SmartServer and the client.
+         * @param parameters    None expected.
+         */
+        @Override
+        public void execute(ChannelHandlerContext ctx, String[] parameters)
+        {
+            List<String> responsePackets = new ArrayList<>();
+
+            responsePackets.add(ClientCommandRegister.AppCode.METRICS);
+            responsePackets.addAll(SmartMetrics.snapshot());
+
+            SmartServer.sendMessage(ctx, responsePackets.toArray(new String[responsePackets.size()]));
+        }
+    }
+
     /** Command NetworkSettings */
     static class CmdNetworkSettings extends ClientCommand
     {
@@ -15,7 +15,8 @@ class ScRfid
     /**
      * [ADMIN] Command AxisCount (number of axis known/used by the device).
      */
-    @CommandContract(deviceRequired = true, adminRequired = true, responseIfInvalid = "-1")
+    @CommandContract(deviceRequired = true, adminRequired = true, responseIfInvalid = "-1",
+            workload = CommandContract.Workload.DEVICE)
     static class CmdRfidAxisCount extends ClientCommand
     {
         /**
@@ -45,7 +46,8 @@ class ScRfid
     /**
      * [ADMIN] Command Calibrate (get and send 256 values of the "full image" of the carrier signal).
      */
-    @CommandContract(deviceRequired = true, adminRequired = true, responseIfInvalid = "")
+    @CommandContract(deviceRequired = true, adminRequired = true, responseIfInvalid = "",
+            workload = CommandContract.Workload.DEVICE)
     static class CmdRfidCalibrate extends ClientCommand
     {
         /**
@@ -80,7 +82,7 @@ class ScRfid
     /**
      * [ADMIN] Command DecFrequency (allow decreasing the period of the carrier signal).
      */
-    @CommandContract(deviceRequired = true, adminRequired = true)
+    @CommandContract(deviceRequired = true, adminRequired = true, workload = CommandContract.Workload.DEVICE)
     static class CmdRfidDecFrequency extends ClientCommand
     {
         /**
@@ -108,7 +110,8 @@ class ScRfid
     /**
      * [ADMIN] Command DutyCycle ("bridge type" and duty cycle values, in the RFID board memory).
      */
-    @CommandContract(deviceRequired = true, adminRequired = true, responseIfInvalid = "")
+    @CommandContract(deviceRequired = true, adminRequired = true, responseIfInvalid = "",
+            workload = CommandContract.Workload.DEVICE)
     static class CmdRfidDutyCycle extends ClientCommand
     {
         /**
@@ -145,7 +148,8 @@ class ScRfid
     /**
      * [ADMIN] Command Frequency (Carrier Period and Antenna Voltage).
      */
-    @CommandContract(deviceRequired = true, adminRequired = true, responseIfInvalid = "")
+    @CommandContract(deviceRequired = true, adminRequired = true, responseIfInvalid = "",
+            workload = CommandContract.Workload.DEVICE)
     static class CmdRfidFrequency extends ClientCommand
     {
         /**
@@ -182,7 +186,7 @@ class ScRfid
     /**
      * [ADMIN] Command IncFrequency (allow increasing the period of the carrier signal).
      */
-    @CommandContract(deviceRequired = true, adminRequired = true)
+    @CommandContract(deviceRequired = true, adminRequired = true, workload = CommandContract.Workload.DEVICE)
     static class CmdRfidIncFrequency extends ClientCommand
     {
         /**
@@ -210,7 +214,7 @@ class ScRfid
     /**
      * [ADMIN] Command SaveDutyCycle ("bridge type" and duty cycle values, in the RFID board memory).
      */
-    @CommandContract(deviceRequired = true, adminRequired = true)
+    @CommandContract(deviceRequired = true, adminRequired = true, workload = CommandContract.Workload.DEVICE)
     static class CmdRfidSaveDutyCycle extends ClientCommand
     {
         /**
@@ -236,7 +240,8 @@ class ScRfid
     }
 
     /** [ADMIN] Command SelectAxis (ask the RFID board to Switch Axis) */
-    @CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, adminRequired = true)
+    @CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, adminRequired = true,
+            workload = CommandContract.Workload.DEVICE)
     static class CmdRfidSelectAxis extends ClientCommand
     {
         /**
@@ -281,7 +286,8 @@ class ScRfid
     /**
      * [ADMIN] Command SetDoorState (Allows opening/closing the master or the slave door(s)).
      */
-    @CommandContract(paramCount = 2, strictCount = true, deviceRequired = true, adminRequired = true)
+    @CommandContract(paramCount = 2, strictCount = true, deviceRequired = true, adminRequired = true,
+            workload = CommandContract.Workload.DEVICE)
     static class CmdRfidSetDoorState extends ClientCommand
     {
         /**
@@ -312,7 +318,8 @@ class ScRfid
     /**
      * [ADMIN] Command SetDutyCycle ("bridge type" and duty cycle values, in the RFID board memory).
      */
-    @CommandContract(paramCount = 3, strictCount = true, deviceRequired = true, adminRequired = true)
+    @CommandContract(paramCount = 3, strictCount = true, deviceRequired = true, adminRequired = true,
+            workload = CommandContract.Workload.DEVICE)
     static class CmdRfidSetDutyCycle extends ClientCommand
     {
         /**
@@ -368,7 +375,8 @@ class ScRfid
     /**
      * [ADMIN] Command SetThreshold (correlation threshold of the RFID board).
      */
-    @CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, adminRequired = true)
+    @CommandContract(paramCount = 1, strictCount = true, deviceRequired = true, adminRequired = true,
+            workload = CommandContract.Workload.DEVICE)
     static class CmdRfidSetThreshold extends ClientCommand
     {
         /**
@@ -414,7 +422,7 @@ class ScRfid
     /**
      * [ADMIN] Command Threshold (correlation threshold of the RFID board).
      */
-    @CommandContract(deviceRequired = true, adminRequired = true)
+    @CommandContract(deviceRequired = true, adminRequired = true, workload = CommandContract.Workload.DEVICE)
     static class CmdRfidThreshold extends ClientCommand
     {
         /**
@@ -443,7 +451,8 @@ class ScRfid
     /**
      * [ADMIN] Command ThresholdSampling (correlation measures of the RFID board).
      */
-    @CommandContract(paramCount = 2, strictCount = true, deviceRequired = true, adminRequired = true)
+    @CommandContract(paramCount = 2, strictCount = true, deviceRequired = true, adminRequired = true,
+            workload = CommandContract.Workload.DEVICE)
     static class CmdRfidThresholdSampling extends ClientCommand
     {
         private static short[] _presentSamples = new short[256];
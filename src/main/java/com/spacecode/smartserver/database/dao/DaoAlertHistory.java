@@ -50,6 +50,36 @@ public class DaoAlertHistory extends DaoEntity<AlertHistoryEntity, Integer>
         }
     }
 
+    /**
+     * Keyset query of the alerts history created during a certain period, after the given ID: next page (or cursor)
+     * of results. Ordered by ID (i.e. creation order), for the next query to start after the last result.
+     *
+     * @param from      Period start date.
+     * @param to        Period end date.
+     * @param afterId   ID of the last result already received (0 for the first page).
+     *
+     * @return Query builder, to be limited (page) or iterated (cursor).
+     *
+     * @throws SQLException If the query could not be built.
+     */
+    public QueryBuilder<AlertHistoryEntity, Integer> getPeriodQuery(Date from, Date to, int afterId)
+            throws SQLException
+    {
+        QueryBuilder<AlertEntity, Integer> alertQb = DbManager.getDao(AlertEntity.class).queryBuilder();
+        alertQb.where().eq(AlertEntity.DEVICE_ID, DbManager.getDevEntity().getId());
+
+        QueryBuilder<AlertHistoryEntity, Integer> qb = queryBuilder();
+
+        qb.orderBy(AlertHistoryEntity.ID, true)
+                .join(alertQb)
+                .where()
+                .between(AlertHistoryEntity.CREATED_AT, from, to)
+                .and()
+                .gt(AlertHistoryEntity.ID, afterId);
+
+        return qb;
+    }
+
     /**
      * Get a list of AlertHistoryEntity created during a certain period.
      *
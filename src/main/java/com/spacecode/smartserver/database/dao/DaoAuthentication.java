@@ -26,6 +26,34 @@ public class DaoAuthentication extends DaoEntity<AuthenticationEntity, Integer>
         super(connectionSource, AuthenticationEntity.class);
     }
 
+    /**
+     * Keyset query of the authentications created during a certain period, after the given ID: next page (or cursor)
+     * of results. Ordered by ID (i.e. creation order), for the next query to start after the last result.
+     *
+     * @param from      Period start date.
+     * @param to        Period end date.
+     * @param afterId   ID of the last result already received (0 for the first page).
+     *
+     * @return Query builder, to be limited (page) or iterated (cursor).
+     *
+     * @throws SQLException If the query could not be built.
+     */
+    public QueryBuilder<AuthenticationEntity, Integer> getPeriodQuery(Date from, Date to, int afterId)
+            throws SQLException
+    {
+        QueryBuilder<AuthenticationEntity, Integer> qb = queryBuilder();
+
+        qb.orderBy(AuthenticationEntity.ID, true)
+                .where()
+                .eq(AuthenticationEntity.DEVICE_ID, DbManager.getDevEntity().getId())
+                .and()
+                .between(AuthenticationEntity.CREATED_AT, from, to)
+                .and()
+                .gt(AuthenticationEntity.ID, afterId);
+
+        return qb;
+    }
+
     /**
      * Get the list of Authentications created during a certain period.
      *
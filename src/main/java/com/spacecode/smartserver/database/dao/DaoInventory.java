@@ -1,6 +1,8 @@
 package com.spacecode.smartserver.database.dao;
 
 import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.ConnectionSource;
 import com.spacecode.sdk.device.data.Inventory;
 import com.spacecode.smartserver.database.DbManager;
@@ -57,6 +59,36 @@ public class DaoInventory extends DaoEntity<InventoryEntity, Integer>
         }
     }
 
+    /**
+     * Keyset query of the inventories created during a certain period, after the given ID: next page (or cursor)
+     * of results. Ordered by ID (i.e. creation order), for the next query to start after the last result.
+     *
+     * @param from      Period start date (null: all the inventories, i.e. delta synchronization).
+     * @param to        Period end date (null: all the inventories).
+     * @param afterId   ID of the last result already received (0 for the first page).
+     *
+     * @return Query builder, to be limited (page) or iterated (cursor).
+     *
+     * @throws SQLException If the query could not be built.
+     */
+    public QueryBuilder<InventoryEntity, Integer> getPeriodQuery(Date from, Date to, int afterId) throws SQLException
+    {
+        QueryBuilder<InventoryEntity, Integer> qb = queryBuilder();
+
+        Where<InventoryEntity, Integer> where = qb.orderBy(InventoryEntity.ID, true)
+                .where()
+                .eq(InventoryEntity.DEVICE_ID, DbManager.getDevEntity().getId())
+                .and()
+                .gt(InventoryEntity.ID, afterId);
+
+        if(from != null && to != null)
+        {
+            where.and().between(InventoryEntity.CREATED_AT, from, to);
+        }
+
+        return qb;
+    }
+
     /**
      * Get the list of InventoryEntity created during a certain period and convert it to a list of Inventory.
      *
@@ -104,36 +136,91 @@ public class DaoInventory extends DaoEntity<InventoryEntity, Integer>
      */
     public boolean persist(Inventory lastInventory)
     {
+        return persist(lastInventory, DeviceHandler.getDevice().getTagToDrawerNumber());
+    }
+
+    /**
+     * Persist new inventory in the database, including related RfidTagEntities
+     * (many-to-many relationship through InventoryRfidTag).
+     *
+     * @param lastInventory Provided by RfidDevice instance. Inventory made when last scan completed.
+     * @param tagToAxis     Axis number where each tag has been detected (taken when the scan completed).
+     *
+     * @return  True if operation succeeded, false otherwise.
+     */
+    public boolean persist(Inventory lastInventory, Map<String, Byte> tagToAxis)
+    {
+        return insertInventory(lastInventory, tagToAxis) != null;
+    }
+
+    /**
+     * Persist new inventory in the database (see {@link #persist(Inventory, Map)}), then read it again with its ID.
+     *
+     * @param lastInventory Provided by RfidDevice instance. Inventory made when last scan completed.
+     * @param tagToAxis     Axis number where each tag has been detected (taken when the scan completed).
+     *
+     * @return  The inventory as written, with its ID (the given inventory if it could not be read again), or null if
+     * the operation failed.
+     */
+    public Inventory persistWithId(Inventory lastInventory, Map<String, Byte> tagToAxis)
+    {
+        Integer id = insertInventory(lastInventory, tagToAxis);
+
+        if(id == null)
+        {
+            return null;
+        }
+
         try
         {
-            TransactionManager.callInTransaction(DbManager.getConnectionSource(),
-                    new PersistInventoryCallable(lastInventory));
+            InventoryEntity written = queryForId(id);
+
+            if(written != null)
+            {
+                return written.asInventory();
+            }
         } catch (SQLException sqle)
         {
-            SmartLogger.getLogger().log(Level.SEVERE, "Error while persisting new inventory.", sqle);
-            return false;
+            SmartLogger.getLogger().log(Level.WARNING, "Unable to read the new inventory again.", sqle);
         }
 
-        return true;
+        return lastInventory;
     }
 
-
+    /**
+     * @return The ID of the new inventory, or null if the operation failed.
+     */
+    private Integer insertInventory(Inventory lastInventory, Map<String, Byte> tagToAxis)
+    {
+        try
+        {
+            return TransactionManager.callInTransaction(DbManager.getConnectionSource(),
+                    new PersistInventoryCallable(lastInventory,
+                            tagToAxis == null ? new HashMap<String, Byte>() : tagToAxis));
+        } catch (SQLException sqle)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Error while persisting new inventory.", sqle);
+            return null;
+        }
+    }
 
     /**
      * Callable subclass called when persisting a new inventory (SQL transaction).
      * Doing all the operations in a transaction allow cancelling everything if anything goes wrong.
      */
-    private class PersistInventoryCallable implements Callable<Void>
+    private class PersistInventoryCallable implements Callable<Integer>
     {
         private final Inventory _inventory;
+        private final Map<String, Byte> _tagToAxis;
 
-        private PersistInventoryCallable(Inventory inventory)
+        private PersistInventoryCallable(Inventory inventory, Map<String, Byte> tagToAxis)
         {
             _inventory = inventory;
+            _tagToAxis = tagToAxis;
         }
 
         @Override
-        public Void call() throws Exception
+        public Integer call() throws Exception
         {
             DaoUser daoUser = (DaoUser) DbManager.getDao(UserEntity.class);
             DaoAccessType daoAccessType = (DaoAccessType) DbManager.getDao(AccessTypeEntity.class);
@@ -166,58 +253,48 @@ public class DaoInventory extends DaoEntity<InventoryEntity, Integer>
                 throw new SQLException("Failed when inserting new Inventory");
             }
 
-            Map<String, RfidTagEntity> uidToEntity = new HashMap<>();
             List<String> allUids = new ArrayList<>(_inventory.getTagsAll());
             allUids.addAll(_inventory.getTagsRemoved());
 
-            // browse all UID's (tags added, present, removed) to fill the map with entities
-            for(String tagUid : allUids)
-            {
-                // TODO: Optimize this! => For X tags: X "SELECT" + [0;X] "INSERT"... (X to 2X) 
-                // TODO: Maybe do a SELECT all tags WHERE uid IN (... uids of the new inventory ...) to only create the one NOT EXISTING
-                RfidTagEntity rte = daoTag.createIfNotExists(tagUid);
-
-                if(rte == null)
-                {
-                    throw new SQLException("Unable to createIfNotExists a tag in database");
-                }
+            // get (or create) the entities of all UID's (tags added, present, removed) with a few set-based statements
+            Map<String, RfidTagEntity> uidToEntity = daoTag.createIfNotExists(allUids);
 
-                uidToEntity.put(tagUid, rte);
+            if(uidToEntity == null)
+            {
+                throw new SQLException("Unable to createIfNotExists the tags in database");
             }
 
             // create the many-to-many relationship between the Inventory table and the RfidTag table
             List<InventoryRfidTag> inventoryRfidTags = new ArrayList<>();
 
-            // get the matrix containing the axis number where each tag has been detected for the last time
-            Map<String, Byte> tagToAxis = DeviceHandler.getDevice().getTagToDrawerNumber();
-
             int shelveNbr;
 
             for(String tagUid : _inventory.getTagsAdded())
             {
-                shelveNbr = tagToAxis.get(tagUid) == null ? 0 : tagToAxis.get(tagUid);
+                shelveNbr = _tagToAxis.get(tagUid) == null ? 0 : _tagToAxis.get(tagUid);
                 inventoryRfidTags.add(new InventoryRfidTag(ie, uidToEntity.get(tagUid), 1, shelveNbr));
             }
 
             for(String tagUid : _inventory.getTagsPresent())
             {
-                shelveNbr = tagToAxis.get(tagUid) == null ? 0 : tagToAxis.get(tagUid);
+                shelveNbr = _tagToAxis.get(tagUid) == null ? 0 : _tagToAxis.get(tagUid);
                 inventoryRfidTags.add(new InventoryRfidTag(ie, uidToEntity.get(tagUid), 0, shelveNbr));
             }
 
             for(String tagUid : _inventory.getTagsRemoved())
             {
-                shelveNbr = tagToAxis.get(tagUid) == null ? 0 : tagToAxis.get(tagUid);
+                shelveNbr = _tagToAxis.get(tagUid) == null ? 0 : _tagToAxis.get(tagUid);
                 inventoryRfidTags.add(new InventoryRfidTag(ie, uidToEntity.get(tagUid), -1, shelveNbr));
             }
 
+            // inserted with JDBC batches
             if(!daoInventoryTag.insert(inventoryRfidTags))
             {
                 throw new SQLException("Unable to insert all tags and movements of the new Inventory");
             }
 
-            // this Callable doesn't need a return value
-            return null;
+            // ID given by the database to the new inventory
+            return ie.getId();
         }
     }
 }
@@ -1,17 +1,129 @@
 package com.spacecode.smartserver.database.dao;
 
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
 import com.spacecode.smartserver.database.entity.InventoryRfidTag;
+import com.spacecode.smartserver.helper.SmartLogger;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.logging.Level;
 
 /**
  * InventoryRfidTag Repository
  */
 public class DaoInventoryRfidTag extends DaoEntity<InventoryRfidTag, Integer>
 {
+    // number of rows sent to the DBMS with each "executeBatch"
+    static final int BATCH_SIZE = 500;
+
+    private final String _insertStatement;
+
     public DaoInventoryRfidTag(ConnectionSource connectionSource) throws SQLException
     {
         super(connectionSource, InventoryRfidTag.class);
+
+        DatabaseType dbType = connectionSource.getDatabaseType();
+        StringBuilder sb = new StringBuilder("INSERT INTO ");
+        dbType.appendEscapedEntityName(sb, InventoryRfidTag.TABLE_NAME);
+        sb.append(" (");
+        dbType.appendEscapedEntityName(sb, InventoryRfidTag.INVENTORY_ID);
+        sb.append(',');
+        dbType.appendEscapedEntityName(sb, InventoryRfidTag.RFID_TAG_ID);
+        sb.append(',');
+        dbType.appendEscapedEntityName(sb, InventoryRfidTag.MOVEMENT);
+        sb.append(',');
+        dbType.appendEscapedEntityName(sb, InventoryRfidTag.SHELVE_NUMBER);
+        sb.append(") VALUES (?,?,?,?)");
+
+        _insertStatement = sb.toString();
+    }
+
+    /**
+     * Insert the given collection with JDBC batches (one round trip per {@link #BATCH_SIZE} rows) instead of one
+     * INSERT per entity. If called during a transaction, the connection of the transaction is used.
+     * The generated Id's are not read back (the entities are not used after being inserted).
+     *
+     * @param newEntities   Collection of InventoryRfidTag to be inserted.
+     *
+     * @return True if successful, false otherwise (SQLException).
+     */
+    @Override
+    public boolean insert(Collection<InventoryRfidTag> newEntities)
+    {
+        if(newEntities.isEmpty())
+        {
+            return true;
+        }
+
+        ConnectionSource connectionSource = getConnectionSource();
+        DatabaseConnection connection = null;
+        PreparedStatement statement = null;
+
+        try
+        {
+            connection = connectionSource.getReadWriteConnection();
+
+            if(!(connection instanceof JdbcDatabaseConnection))
+            {
+                // not a JDBC connection: no batch available, insert the rows one by one
+                return super.insert(newEntities);
+            }
+
+            statement = ((JdbcDatabaseConnection) connection).getInternalConnection().prepareStatement(_insertStatement);
+            int pendingRows = 0;
+
+            for(InventoryRfidTag irt : newEntities)
+            {
+                statement.setInt(1, irt.getInventory().getId());
+                statement.setInt(2, irt.getRfidTag().getId());
+                statement.setInt(3, irt.getMovement());
+                statement.setInt(4, irt.getShelveNumber());
+                statement.addBatch();
+
+                if(++pendingRows == BATCH_SIZE)
+                {
+                    statement.executeBatch();
+                    pendingRows = 0;
+                }
+            }
+
+            if(pendingRows != 0)
+            {
+                statement.executeBatch();
+            }
+
+            return true;
+        } catch (SQLException sqle)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Error occurred while batch-inserting InventoryRfidTags.", sqle);
+            return false;
+        } finally
+        {
+            if(statement != null)
+            {
+                try
+                {
+                    statement.close();
+                } catch (SQLException sqle)
+                {
+                    SmartLogger.getLogger().log(Level.WARNING, "Unable to close batch statement.", sqle);
+                }
+            }
+
+            if(connection != null)
+            {
+                try
+                {
+                    connectionSource.releaseConnection(connection);
+                } catch (SQLException sqle)
+                {
+                    SmartLogger.getLogger().log(Level.WARNING, "Unable to release connection.", sqle);
+                }
+            }
+        }
     }
 }
@@ -5,6 +5,7 @@ import com.spacecode.smartserver.database.entity.RfidTagEntity;
 import com.spacecode.smartserver.helper.SmartLogger;
 
 import java.sql.SQLException;
+import java.util.*;
 import java.util.logging.Level;
 
 /**
@@ -12,6 +13,9 @@ import java.util.logging.Level;
  */
 public class DaoRfidTag extends DaoEntity<RfidTagEntity, Integer>
 {
+    // max. number of UID's put in one "IN (...)" clause or one multi-rows INSERT (SQL Server accepts 2100 parameters)
+    static final int CHUNK_SIZE = 500;
+
     public DaoRfidTag(ConnectionSource connectionSource) throws SQLException
     {
         super(connectionSource, RfidTagEntity.class);
@@ -77,4 +81,107 @@ public class DaoRfidTag extends DaoEntity<RfidTagEntity, Integer>
             return null;
         }
     }
+
+    /**
+     * Set-based version of {@link #createIfNotExists(String)}: for each chunk of {@link #CHUNK_SIZE} UID's, one
+     * "SELECT ... WHERE uid IN (...)" is made, then the missing tags are created with one multi-rows "INSERT" (and
+     * selected again, to get their Id). The number of statements does not depend on the number of tags anymore.
+     *
+     * @param uids  RFID Tags Unique Identifiers.
+     *
+     * @return      Map of UID to RfidTagEntity (existing or just inserted). Null if any UID is invalid or if something
+     *              went wrong (SQLException).
+     */
+    public Map<String, RfidTagEntity> createIfNotExists(Collection<String> uids)
+    {
+        Map<String, RfidTagEntity> uidToEntity = new HashMap<>();
+
+        // remove the duplicates (a tag can't be "removed" and "present" in the same inventory, but anyway...)
+        List<String> uniqueUids = new ArrayList<>(new LinkedHashSet<>(uids));
+
+        for(String uid : uniqueUids)
+        {
+            if(uid == null || uid.trim().isEmpty())
+            {
+                return null;
+            }
+        }
+
+        try
+        {
+            for(int i = 0; i < uniqueUids.size(); i += CHUNK_SIZE)
+            {
+                List<String> chunk = uniqueUids.subList(i, Math.min(i + CHUNK_SIZE, uniqueUids.size()));
+                Set<String> missingUids = new LinkedHashSet<>(chunk);
+
+                for(RfidTagEntity rte : getByUids(chunk))
+                {
+                    uidToEntity.put(rte.getUid(), rte);
+                    missingUids.remove(rte.getUid());
+                }
+
+                if(missingUids.isEmpty())
+                {
+                    continue;
+                }
+
+                insertUids(missingUids);
+
+                for(RfidTagEntity rte : getByUids(missingUids))
+                {
+                    uidToEntity.put(rte.getUid(), rte);
+                }
+            }
+        } catch (SQLException sqle)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Unable to insert RfidTags in DB.", sqle);
+            return null;
+        }
+
+        if(uidToEntity.size() != uniqueUids.size())
+        {
+            SmartLogger.getLogger().severe("Some RfidTags could not be found after being inserted in DB.");
+            return null;
+        }
+
+        return uidToEntity;
+    }
+
+    /**
+     * @param uids  Chunk of UID's (no more than {@link #CHUNK_SIZE}).
+     *
+     * @return      RfidTagEntities matching the given UID's (one "IN" query).
+     *
+     * @throws SQLException If the query failed.
+     */
+    private List<RfidTagEntity> getByUids(Collection<String> uids) throws SQLException
+    {
+        return query(queryBuilder().where().in(RfidTagEntity.UID, uids).prepare());
+    }
+
+    /**
+     * Insert all the given UID's with one multi-rows INSERT statement: "INSERT INTO t (uid) VALUES (?),(?),...".
+     *
+     * @param uids  Chunk of UID's (no more than {@link #CHUNK_SIZE}) which do not exist yet in the table.
+     *
+     * @throws SQLException If the statement failed, or not all rows were inserted.
+     */
+    private void insertUids(Collection<String> uids) throws SQLException
+    {
+        StringBuilder sb = new StringBuilder("INSERT INTO ");
+        getConnectionSource().getDatabaseType().appendEscapedEntityName(sb, RfidTagEntity.TABLE_NAME);
+        sb.append(" (");
+        getConnectionSource().getDatabaseType().appendEscapedEntityName(sb, RfidTagEntity.UID);
+        sb.append(") VALUES ");
+
+        for(int i = 0; i < uids.size(); ++i)
+        {
+            sb.append(i == 0 ? "(?)" : ",(?)");
+        }
+
+        if(updateRaw(sb.toString(), uids.toArray(new String[uids.size()])) != uids.size())
+        {
+            throw new SQLException("Multi-rows insertion of RfidTags did not insert all the rows");
+        }
+    }
 }
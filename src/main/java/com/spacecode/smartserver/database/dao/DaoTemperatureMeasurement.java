@@ -22,6 +22,34 @@ public class DaoTemperatureMeasurement extends DaoEntity<TemperatureMeasurementE
         super(connectionSource, TemperatureMeasurementEntity.class);
     }
 
+    /**
+     * Keyset query of the temperature measures created during a certain period, after the given ID: next page (or
+     * cursor) of results. Ordered by ID (i.e. creation order), for the next query to start after the last result.
+     *
+     * @param from      Period start date.
+     * @param to        Period end date.
+     * @param afterId   ID of the last result already received (0 for the first page).
+     *
+     * @return Query builder, to be limited (page) or iterated (cursor).
+     *
+     * @throws SQLException If the query could not be built.
+     */
+    public QueryBuilder<TemperatureMeasurementEntity, Integer> getPeriodQuery(Date from, Date to, int afterId)
+            throws SQLException
+    {
+        QueryBuilder<TemperatureMeasurementEntity, Integer> qb = queryBuilder();
+
+        qb.orderBy(TemperatureMeasurementEntity.ID, true)
+                .where()
+                .eq(TemperatureMeasurementEntity.DEVICE_ID, DbManager.getDevEntity().getId())
+                .and()
+                .between(TemperatureMeasurementEntity.CREATED_AT, from, to)
+                .and()
+                .gt(TemperatureMeasurementEntity.ID, afterId);
+
+        return qb;
+    }
+
     /**
      * Get the list of TemperatureMeasurement created during a certain period.
      *
@@ -62,7 +62,7 @@ public final class AlertCenter
         _daoAlertType = (DaoAlertType) DbManager.getDao(AlertTypeEntity.class);
         _daoAlertTemperature = (DaoAlertTemperature) DbManager.getDao(AlertTemperatureEntity.class);
 
-        DeviceHandler.getDevice().addListener(new AlertEventHandler());
+        DeviceEventBus.subscribe("alerts", new AlertEventHandler());
     }
 
     /**
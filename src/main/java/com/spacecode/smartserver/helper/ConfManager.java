@@ -76,6 +76,33 @@ public class ConfManager
     /** SocketIO port number used by SmartServer for the raw socketIO channel handler */
     public static final String APP_PORT_SOCKETIO    = "app_socketIO_port";
 
+    /** Size (bytes) of the outbound buffer of a client above which its channel is not writable anymore. */
+    public static final String APP_WRITE_HIGH_WATERMARK = "app_write_high_watermark";
+
+    /** Size (bytes) of the outbound buffer of a client under which its channel is writable again. */
+    public static final String APP_WRITE_LOW_WATERMARK  = "app_write_low_watermark";
+
+    /** Policy applied to the events sent to a slow client: "drop", "coalesce" or "disconnect". */
+    public static final String APP_SLOW_CLIENT_POLICY   = "app_slow_client_policy";
+
+    /** Maximum size (bytes) of the outbound buffer of a slow client. */
+    public static final String APP_SLOW_CLIENT_LIMIT    = "app_slow_client_limit";
+
+    /** Maximum number of tags in a batch of "tag added" events. */
+    public static final String APP_TAG_BATCH_SIZE       = "app_tag_batch_size";
+
+    /** Maximum delay (ms) before a batch of "tag added" events is sent. */
+    public static final String APP_TAG_BATCH_DELAY      = "app_tag_batch_delay";
+
+    /** Maximum delay (ms) before a batch of "addTag" events is emitted to the Socket.IO server (0: no batch). */
+    public static final String APP_SOCKETIO_BATCH_DELAY = "app_socketio_batch_delay";
+
+    /** Requests per second allowed for each client and each command ("app_rate_limit.[CommandClass]" for one command). */
+    public static final String APP_RATE_LIMIT           = "app_rate_limit";
+
+    /** Requests allowed in a row for each client and each command ("app_rate_burst.[CommandClass]" for one command). */
+    public static final String APP_RATE_BURST           = "app_rate_burst";
+
     private ConfManager()
     {
         try
@@ -250,6 +277,92 @@ public class ConfManager
         }
     }
 
+    /** @return High watermark (bytes) of the outbound buffer of each client. -1 if no valid value is available. */
+    public static int getAppWriteHighWatermark()
+    {
+        return getIntProperty(APP_WRITE_HIGH_WATERMARK, "Write Buffer High Watermark");
+    }
+
+    /** @return Low watermark (bytes) of the outbound buffer of each client. -1 if no valid value is available. */
+    public static int getAppWriteLowWatermark()
+    {
+        return getIntProperty(APP_WRITE_LOW_WATERMARK, "Write Buffer Low Watermark");
+    }
+
+    /** @return Policy applied to the events sent to a slow client (can be empty), or null if the property is not existing. */
+    public static String getAppSlowClientPolicy()
+    {
+        return LazyHolder.INSTANCE.getProperty(APP_SLOW_CLIENT_POLICY);
+    }
+
+    /** @return Maximum size (bytes) of the outbound buffer of a slow client. -1 if no valid value is available. */
+    public static int getAppSlowClientLimit()
+    {
+        return getIntProperty(APP_SLOW_CLIENT_LIMIT, "Slow Client Limit");
+    }
+
+    /** @return Maximum number of tags in a batch of "tag added" events. -1 if no valid value is available. */
+    public static int getAppTagBatchSize()
+    {
+        return getIntProperty(APP_TAG_BATCH_SIZE, "Tag Batch Size");
+    }
+
+    /** @return Maximum delay (ms) before a batch of "tag added" events is sent. -1 if no valid value is available. */
+    public static int getAppTagBatchDelay()
+    {
+        return getIntProperty(APP_TAG_BATCH_DELAY, "Tag Batch Delay");
+    }
+
+    /** @return Maximum delay (ms) before a batch of "addTag" events is emitted. -1 if no valid value is available. */
+    public static int getAppSocketIoBatchDelay()
+    {
+        return getIntProperty(APP_SOCKETIO_BATCH_DELAY, "Socket.IO Batch Delay");
+    }
+
+    /**
+     * @param commandName Name of the class of the command.
+     *
+     * @return Requests per second allowed for each client (setting of the command, or the general one). -1 if no valid
+     * value is available.
+     */
+    public static int getAppRateLimit(String commandName)
+    {
+        int value = getIntProperty(APP_RATE_LIMIT + "." + commandName, "Rate Limit of " + commandName);
+        return value != -1 ? value : getIntProperty(APP_RATE_LIMIT, "Rate Limit");
+    }
+
+    /**
+     * @param commandName Name of the class of the command.
+     *
+     * @return Requests allowed in a row for each client (setting of the command, or the general one). -1 if no valid
+     * value is available.
+     */
+    public static int getAppRateBurst(String commandName)
+    {
+        int value = getIntProperty(APP_RATE_BURST + "." + commandName, "Rate Burst of " + commandName);
+        return value != -1 ? value : getIntProperty(APP_RATE_BURST, "Rate Burst");
+    }
+
+    /**
+     * @param key   Name of the setting to be read.
+     * @param label Name of the setting, for the logs.
+     *
+     * @return Value of the property, as an integer. -1 if no valid value is available.
+     */
+    private static int getIntProperty(String key, String label)
+    {
+        String propertyValue = LazyHolder.INSTANCE.getProperty(key);
+
+        try
+        {
+            return propertyValue == null || propertyValue.trim().isEmpty() ? -1 : Integer.parseInt(propertyValue.trim());
+        } catch(NumberFormatException nfe)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Invalid value for property " + label, nfe);
+            return -1;
+        }
+    }
+
     /** @return Application's SocketIO url for the raw SocketIO channel handler. */
     public static String getAppUrlSocketIO()
     {
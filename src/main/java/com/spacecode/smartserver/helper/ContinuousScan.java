@@ -0,0 +1,237 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.Device;
+import com.spacecode.sdk.device.data.DeviceStatus;
+import com.spacecode.sdk.device.data.Inventory;
+import com.spacecode.sdk.device.data.ScanOption;
+import com.spacecode.smartserver.SmartServer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Continuous scan mode: while enabled, the scans are chained back-to-back and the tags currently in the device are
+ * kept in a live set.
+ *
+ * The clients are notified of the first "scan started" only, and do not receive the "tag added" / "scan completed"
+ * events of each cycle: at the end of a cycle changing the tags, they receive one {@link #TAGS_DELTA} event with the
+ * tags added and removed. The inventory of a cycle is recorded only if it changed the tags (see {@link DeviceHandler}).
+ *
+ * A cycle ending otherwise (scan failed or cancelled, i.e. door opened) is followed by the next one once the device is
+ * ready again. After {@link #MAX_FAILED_CYCLES} failed cycles in a row, the mode is disabled and the clients receive a
+ * {@link #STOPPED} event.
+ */
+public final class ContinuousScan
+{
+    /** Event code of the changes of a cycle: [TAGS_DELTA, number of tags added, UIDs added..., UIDs removed...]. */
+    public static final String TAGS_DELTA = "event_tags_delta";
+
+    /** Event code sent when the mode is disabled because the scans keep failing. */
+    public static final String STOPPED = "event_continuous_scan_stopped";
+
+    // failed cycles in a row after which the mode is disabled
+    static final int MAX_FAILED_CYCLES = 3;
+
+    static final String METRIC_CYCLES = "scan.continuous.cycles";
+    static final String METRIC_UNCHANGED = "scan.continuous.unchanged";
+    static final String METRIC_INTERRUPTED = "scan.continuous.interrupted";
+
+    private static final Set<String> LIVE_TAGS = new HashSet<>();
+
+    private static volatile boolean _enabled = false;
+    private static volatile boolean _firstCycle = false;
+    private static volatile ScanOption[] _options = new ScanOption[0];
+    // next cycle to be started once the device is ready
+    private static volatile boolean _pending = false;
+    // cycles failed since the last completed one
+    private static volatile int _failedCycles = 0;
+
+    /** Must not be instantiated. */
+    private ContinuousScan()
+    {
+    }
+
+    /**
+     * Enable the continuous mode, and start the first cycle if the device is ready.
+     *
+     * @param options Options of each scan.
+     *
+     * @return True if the first scan was requested, false if the device is not ready (requested once it is).
+     */
+    public static boolean start(ScanOption... options)
+    {
+        synchronized(LIVE_TAGS)
+        {
+            LIVE_TAGS.clear();
+        }
+
+        _options = options.clone();
+        _firstCycle = true;
+        _failedCycles = 0;
+        _enabled = true;
+
+        return requestNextScan();
+    }
+
+    /**
+     * Disable the continuous mode (the current scan, if any, is not stopped).
+     */
+    public static void stop()
+    {
+        _enabled = false;
+    }
+
+    /**
+     * @return True if the continuous mode is enabled.
+     */
+    public static boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    /**
+     * @return A copy of the tags found by the last cycles.
+     */
+    public static Set<String> getLiveTags()
+    {
+        synchronized(LIVE_TAGS)
+        {
+            return new HashSet<>(LIVE_TAGS);
+        }
+    }
+
+    /**
+     * Start the postponed cycle, if any, once the device is ready.
+     *
+     * @param status New status of the device.
+     */
+    static void statusChanged(DeviceStatus status)
+    {
+        if(_pending && status == DeviceStatus.READY)
+        {
+            requestNextScan();
+        }
+    }
+
+    /**
+     * @return True if the clients should be notified of this scan start (first cycle only).
+     */
+    static boolean cycleStarted()
+    {
+        boolean first = _firstCycle;
+        _firstCycle = false;
+        return first;
+    }
+
+    /**
+     * Update the live set with the tags of a cycle, send the changes (if any) to the clients, and start the next cycle.
+     *
+     * @param inventory Inventory of the cycle.
+     *
+     * @return True if the cycle changed the tags (its inventory should be recorded).
+     */
+    static boolean cycleCompleted(Inventory inventory)
+    {
+        List<String> added = new ArrayList<>();
+        List<String> removed;
+
+        synchronized(LIVE_TAGS)
+        {
+            Set<String> previous = new HashSet<>(LIVE_TAGS);
+
+            for(String uid : inventory.getTagsAll())
+            {
+                if(!previous.remove(uid))
+                {
+                    added.add(uid);
+                }
+            }
+
+            removed = new ArrayList<>(previous);
+            LIVE_TAGS.addAll(added);
+            LIVE_TAGS.removeAll(removed);
+        }
+
+        SmartMetrics.increment(METRIC_CYCLES);
+        _failedCycles = 0;
+        boolean changed = !added.isEmpty() || !removed.isEmpty();
+
+        if(changed)
+        {
+            List<String> packets = new ArrayList<>(added.size() + removed.size() + 2);
+            packets.add(TAGS_DELTA);
+            packets.add(String.valueOf(added.size()));
+            packets.addAll(added);
+            packets.addAll(removed);
+            SmartServer.sendAllClients(packets.toArray(new String[packets.size()]));
+        }
+
+        else
+        {
+            SmartMetrics.increment(METRIC_UNCHANGED);
+        }
+
+        requestNextScan();
+        return changed;
+    }
+
+    /**
+     * Start the next cycle once the device is ready again, after a cycle which did not complete. Disable the mode if
+     * too many cycles failed in a row.
+     *
+     * @param failed True if the scan failed, false if it was cancelled (i.e. door opened).
+     */
+    static void cycleInterrupted(boolean failed)
+    {
+        if(!_enabled)
+        {
+            return;
+        }
+
+        SmartMetrics.increment(METRIC_INTERRUPTED);
+
+        if(failed && ++_failedCycles >= MAX_FAILED_CYCLES)
+        {
+            SmartLogger.getLogger().warning("Continuous scan disabled: " + _failedCycles + " failed cycles in a row.");
+            _enabled = false;
+            _pending = false;
+            SmartServer.sendAllClients(STOPPED);
+            return;
+        }
+
+        requestNextScan();
+    }
+
+    private static boolean requestNextScan()
+    {
+        Device device = DeviceHandler.getDevice();
+        _pending = false;
+
+        if(!_enabled || device == null)
+        {
+            return false;
+        }
+
+        DeviceStatus status = device.getStatus();
+
+        if(status != DeviceStatus.READY && status != DeviceStatus.LED_ON)
+        {
+            // i.e. still "scanning" when the end of the cycle is handled, or door still open
+            _pending = true;
+            return false;
+        }
+
+        try
+        {
+            device.requestScan(_options);
+            return true;
+        } catch(RuntimeException re)
+        {
+            SmartLogger.getLogger().log(Level.WARNING, "Unable to start the next continuous scan cycle.", re);
+            return false;
+        }
+    }
+}
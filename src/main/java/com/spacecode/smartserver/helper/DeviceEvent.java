@@ -0,0 +1,434 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.data.DeviceStatus;
+import com.spacecode.sdk.device.data.Inventory;
+import com.spacecode.sdk.device.event.*;
+import com.spacecode.sdk.device.module.AuthenticationModule;
+import com.spacecode.sdk.user.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event of the device, as published on the {@link DeviceEventBus}: its type and its data, as given by the SDK.
+ *
+ * Not modified once published: the same instance is read by all the subscribers.
+ */
+public final class DeviceEvent
+{
+    /** Types of the device events (one per SDK callback). */
+    public enum Type
+    {
+        DEVICE_DISCONNECTED,
+        STATUS_CHANGED,
+        SCAN_STARTED,
+        TAG_ADDED,
+        SCAN_COMPLETED,
+        SCAN_FAILED,
+        SCAN_CANCELLED_BY_HOST,
+        SCAN_CANCELLED_BY_DOOR,
+        DOOR_OPENED,
+        DOOR_CLOSED,
+        DOOR_OPEN_DELAY,
+        AUTHENTICATION_SUCCESS,
+        AUTHENTICATION_FAILURE,
+        BADGE_READER_CONNECTED,
+        BADGE_READER_DISCONNECTED,
+        BADGE_SCANNED,
+        FINGER_TOUCHED,
+        ENROLLMENT_SAMPLE,
+        TEMPERATURE_MEASURE,
+        LIGHTING_STARTED,
+        LIGHTING_STOPPED,
+        FLASHING_PROGRESS,
+        CORRELATION_SAMPLE,
+        CORRELATION_SERIES
+    }
+
+    private final Type _type;
+    private final long _publishedAt = System.nanoTime();
+
+    // sequence number given by the bus
+    private long _sequence;
+
+    private String _text;
+    private boolean _master;
+    private double _value;
+    private int _first;
+    private int _second;
+    private DeviceStatus _status;
+    private Inventory _inventory;
+    private Map<String, Byte> _tagToAxis = Collections.emptyMap();
+    private AuthenticationModule _authModule;
+    private User _user;
+    private List<String> _tags = Collections.emptyList();
+    private short[] _presentSamples;
+    private short[] _missingSamples;
+
+    private DeviceEvent(Type type)
+    {
+        _type = type;
+    }
+
+    /** @return A device event without data (door opened, scan started...). */
+    public static DeviceEvent of(Type type)
+    {
+        return new DeviceEvent(type);
+    }
+
+    public static DeviceEvent statusChanged(DeviceStatus status)
+    {
+        DeviceEvent event = new DeviceEvent(Type.STATUS_CHANGED);
+        event._status = status;
+        return event;
+    }
+
+    public static DeviceEvent tagAdded(String tagUid)
+    {
+        DeviceEvent event = new DeviceEvent(Type.TAG_ADDED);
+        event._text = tagUid;
+        return event;
+    }
+
+    /**
+     * @param inventory Inventory of the scan (last inventory of the device when the event was raised).
+     * @param tagToAxis Drawer (axis) of each tag of the scan, copied as the device may start a new scan.
+     */
+    public static DeviceEvent scanCompleted(Inventory inventory, Map<String, Byte> tagToAxis)
+    {
+        DeviceEvent event = new DeviceEvent(Type.SCAN_COMPLETED);
+        event._inventory = inventory;
+
+        if(tagToAxis != null)
+        {
+            event._tagToAxis = Collections.unmodifiableMap(new HashMap<>(tagToAxis));
+        }
+
+        return event;
+    }
+
+    public static DeviceEvent authentication(boolean success, AuthenticationModule authModule, User user)
+    {
+        DeviceEvent event = new DeviceEvent(success ? Type.AUTHENTICATION_SUCCESS : Type.AUTHENTICATION_FAILURE);
+        event._authModule = authModule;
+        event._user = user;
+        return event;
+    }
+
+    public static DeviceEvent badgeReader(boolean connected, boolean isMaster)
+    {
+        DeviceEvent event = new DeviceEvent(connected ? Type.BADGE_READER_CONNECTED : Type.BADGE_READER_DISCONNECTED);
+        event._master = isMaster;
+        return event;
+    }
+
+    public static DeviceEvent badgeScanned(String badgeNumber)
+    {
+        DeviceEvent event = new DeviceEvent(Type.BADGE_SCANNED);
+        event._text = badgeNumber;
+        return event;
+    }
+
+    public static DeviceEvent fingerTouched(boolean isMaster)
+    {
+        DeviceEvent event = new DeviceEvent(Type.FINGER_TOUCHED);
+        event._master = isMaster;
+        return event;
+    }
+
+    public static DeviceEvent enrollmentSample(byte sampleNumber)
+    {
+        DeviceEvent event = new DeviceEvent(Type.ENROLLMENT_SAMPLE);
+        event._first = sampleNumber;
+        return event;
+    }
+
+    public static DeviceEvent temperatureMeasure(double value)
+    {
+        DeviceEvent event = new DeviceEvent(Type.TEMPERATURE_MEASURE);
+        event._value = value;
+        return event;
+    }
+
+    public static DeviceEvent lightingStarted(List<String> tagsLeft)
+    {
+        DeviceEvent event = new DeviceEvent(Type.LIGHTING_STARTED);
+        event._tags = Collections.unmodifiableList(new ArrayList<>(tagsLeft));
+        return event;
+    }
+
+    public static DeviceEvent flashingProgress(int rowNumber, int rowCount)
+    {
+        DeviceEvent event = new DeviceEvent(Type.FLASHING_PROGRESS);
+        event._first = rowNumber;
+        event._second = rowCount;
+        return event;
+    }
+
+    public static DeviceEvent correlationSample(int correlation, int phaseShift)
+    {
+        DeviceEvent event = new DeviceEvent(Type.CORRELATION_SAMPLE);
+        event._first = correlation;
+        event._second = phaseShift;
+        return event;
+    }
+
+    public static DeviceEvent correlationSeries(short[] presentSamples, short[] missingSamples)
+    {
+        DeviceEvent event = new DeviceEvent(Type.CORRELATION_SERIES);
+        event._presentSamples = presentSamples == null ? null : presentSamples.clone();
+        event._missingSamples = missingSamples == null ? null : missingSamples.clone();
+        return event;
+    }
+
+    public Type getType()
+    {
+        return _type;
+    }
+
+    /** @return Value of System.nanoTime() when the event was raised. */
+    public long getPublishedAt()
+    {
+        return _publishedAt;
+    }
+
+    /** @return Sequence number of the event on the bus (starting at 0). */
+    public long getSequence()
+    {
+        return _sequence;
+    }
+
+    void setSequence(long sequence)
+    {
+        _sequence = sequence;
+    }
+
+    /** @return UID of the tag ({@link Type#TAG_ADDED}) or badge number ({@link Type#BADGE_SCANNED}). */
+    public String getText()
+    {
+        return _text;
+    }
+
+    public DeviceStatus getStatus()
+    {
+        return _status;
+    }
+
+    public Inventory getInventory()
+    {
+        return _inventory;
+    }
+
+    /** @return Drawer (axis) of each tag of the scan ({@link Type#SCAN_COMPLETED}), empty if unknown. */
+    public Map<String, Byte> getTagToAxis()
+    {
+        return _tagToAxis;
+    }
+
+    public double getValue()
+    {
+        return _value;
+    }
+
+    /**
+     * Dispatch the event to an SDK-style listener, if it handles this type of event.
+     *
+     * @param handler Listener.
+     */
+    public void dispatch(DeviceEventHandler handler)
+    {
+        switch(_type)
+        {
+            case DEVICE_DISCONNECTED:
+            case STATUS_CHANGED:
+                if(handler instanceof BasicEventHandler)
+                {
+                    if(_type == Type.DEVICE_DISCONNECTED)
+                    {
+                        ((BasicEventHandler) handler).deviceDisconnected();
+                    }
+
+                    else
+                    {
+                        ((BasicEventHandler) handler).deviceStatusChanged(_status);
+                    }
+                }
+                break;
+
+            case SCAN_STARTED:
+            case TAG_ADDED:
+            case SCAN_COMPLETED:
+            case SCAN_FAILED:
+            case SCAN_CANCELLED_BY_HOST:
+                if(handler instanceof ScanEventHandler)
+                {
+                    dispatchScan((ScanEventHandler) handler);
+                }
+                break;
+
+            case SCAN_CANCELLED_BY_DOOR:
+            case DOOR_OPENED:
+            case DOOR_CLOSED:
+            case DOOR_OPEN_DELAY:
+                if(handler instanceof DoorEventHandler)
+                {
+                    dispatchDoor((DoorEventHandler) handler);
+                }
+                break;
+
+            case AUTHENTICATION_SUCCESS:
+            case AUTHENTICATION_FAILURE:
+                if(handler instanceof AccessControlEventHandler)
+                {
+                    if(_type == Type.AUTHENTICATION_SUCCESS)
+                    {
+                        ((AccessControlEventHandler) handler).authenticationSuccess(_authModule, _user);
+                    }
+
+                    else
+                    {
+                        ((AccessControlEventHandler) handler).authenticationFailure(_authModule, _user);
+                    }
+                }
+                break;
+
+            case BADGE_READER_CONNECTED:
+            case BADGE_READER_DISCONNECTED:
+            case BADGE_SCANNED:
+            case FINGER_TOUCHED:
+            case ENROLLMENT_SAMPLE:
+                if(handler instanceof AccessModuleEventHandler)
+                {
+                    dispatchAccessModule((AccessModuleEventHandler) handler);
+                }
+                break;
+
+            case TEMPERATURE_MEASURE:
+                if(handler instanceof TemperatureEventHandler)
+                {
+                    ((TemperatureEventHandler) handler).temperatureMeasure(_value);
+                }
+                break;
+
+            case LIGHTING_STARTED:
+            case LIGHTING_STOPPED:
+                if(handler instanceof LedEventHandler)
+                {
+                    if(_type == Type.LIGHTING_STARTED)
+                    {
+                        ((LedEventHandler) handler).lightingStarted(_tags);
+                    }
+
+                    else
+                    {
+                        ((LedEventHandler) handler).lightingStopped();
+                    }
+                }
+                break;
+
+            case FLASHING_PROGRESS:
+            case CORRELATION_SAMPLE:
+            case CORRELATION_SERIES:
+                if(handler instanceof MaintenanceEventHandler)
+                {
+                    dispatchMaintenance((MaintenanceEventHandler) handler);
+                }
+                break;
+        }
+    }
+
+    private void dispatchScan(ScanEventHandler handler)
+    {
+        switch(_type)
+        {
+            case SCAN_STARTED:
+                handler.scanStarted();
+                break;
+
+            case TAG_ADDED:
+                handler.tagAdded(_text);
+                break;
+
+            case SCAN_COMPLETED:
+                handler.scanCompleted();
+                break;
+
+            case SCAN_FAILED:
+                handler.scanFailed();
+                break;
+
+            default:
+                handler.scanCancelledByHost();
+                break;
+        }
+    }
+
+    private void dispatchDoor(DoorEventHandler handler)
+    {
+        switch(_type)
+        {
+            case SCAN_CANCELLED_BY_DOOR:
+                handler.scanCancelledByDoor();
+                break;
+
+            case DOOR_OPENED:
+                handler.doorOpened();
+                break;
+
+            case DOOR_CLOSED:
+                handler.doorClosed();
+                break;
+
+            default:
+                handler.doorOpenDelay();
+                break;
+        }
+    }
+
+    private void dispatchAccessModule(AccessModuleEventHandler handler)
+    {
+        switch(_type)
+        {
+            case BADGE_READER_CONNECTED:
+                handler.badgeReaderConnected(_master);
+                break;
+
+            case BADGE_READER_DISCONNECTED:
+                handler.badgeReaderDisconnected(_master);
+                break;
+
+            case BADGE_SCANNED:
+                handler.badgeScanned(_text);
+                break;
+
+            case FINGER_TOUCHED:
+                handler.fingerTouched(_master);
+                break;
+
+            default:
+                handler.fingerprintEnrollmentSample((byte) _first);
+                break;
+        }
+    }
+
+    private void dispatchMaintenance(MaintenanceEventHandler handler)
+    {
+        switch(_type)
+        {
+            case FLASHING_PROGRESS:
+                handler.flashingProgress(_first, _second);
+                break;
+
+            case CORRELATION_SAMPLE:
+                handler.correlationSample(_first, _second);
+                break;
+
+            default:
+                handler.correlationSampleSeries(_presentSamples, _missingSamples);
+                break;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.event.DeviceEventHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Bus of the device events, between the SDK listener (see {@link DeviceEventPublisher}) and the subscribers: clients
+ * (TCP/IP, WebSocket), Socket.IO bridge, alerts, temperature measures...
+ *
+ * The events are published on a ring buffer, by one producer at a time, without ever waiting for a subscriber: the SDK
+ * thread only creates the event. Each subscriber has its own thread and reads the ring at its own pace, receiving the
+ * events in order. A subscriber lagging more than {@link #RING_SIZE} events behind skips the oldest ones (counted by
+ * its "dropped" metric). A lossless subscriber (i.e. persisting the inventories) never skips an event: its events are
+ * handed off through its own unbounded queue instead. The time from an event to its delivery is recorded by the
+ * "latency" timer of each subscriber.
+ *
+ * Has to be started for the subscribers to receive the events on their threads. Otherwise (i.e. unit tests), the events
+ * are delivered to each subscriber by the publishing thread.
+ */
+public final class DeviceEventBus
+{
+    static final int RING_SIZE = 8192;
+    private static final int MASK = RING_SIZE - 1;
+
+    static final String METRIC_PUBLISHED = "events.bus.published";
+    private static final String METRIC_PREFIX = "events.bus.";
+
+    private static final AtomicReferenceArray<DeviceEvent> RING = new AtomicReferenceArray<>(RING_SIZE);
+    private static final Object PUBLISH_LOCK = new Object();
+
+    // sequence of the next event to be published (i.e. number of events published)
+    private static volatile long _published = 0;
+
+    private static final List<Consumer> CONSUMERS = new CopyOnWriteArrayList<>();
+    private static volatile boolean _started = false;
+
+    /** Must not be instantiated. */
+    private DeviceEventBus()
+    {
+    }
+
+    /**
+     * Start a thread per subscriber: from now on, the events are delivered by these threads.
+     */
+    public static synchronized void start()
+    {
+        if(_started)
+        {
+            return;
+        }
+
+        synchronized(PUBLISH_LOCK)
+        {
+            _started = true;
+
+            for(Consumer consumer : CONSUMERS)
+            {
+                consumer.start(_published);
+            }
+        }
+    }
+
+    /**
+     * Stop the threads of the subscribers: from now on, the events are delivered by the publishing thread.
+     */
+    public static synchronized void stop()
+    {
+        synchronized(PUBLISH_LOCK)
+        {
+            _started = false;
+
+            for(Consumer consumer : CONSUMERS)
+            {
+                consumer.stop();
+            }
+        }
+    }
+
+    /**
+     * Subscribe to the device events. Replaces the subscriber with the same name, if any (i.e. device reconnected).
+     * The events are skipped if the subscriber lags too far behind.
+     *
+     * @param name          Name of the subscriber (thread and metrics).
+     * @param subscriber    Subscriber.
+     */
+    public static void subscribe(String name, Subscriber subscriber)
+    {
+        subscribe(name, subscriber, false);
+    }
+
+    /**
+     * Subscribe to the device events. Replaces the subscriber with the same name, if any (i.e. device reconnected).
+     *
+     * @param name          Name of the subscriber (thread and metrics).
+     * @param subscriber    Subscriber.
+     * @param lossless      If true, the subscriber receives every event, however far behind it lags (queued in
+     *                      memory until it handles them). Otherwise, it skips the oldest ones.
+     */
+    public static synchronized void subscribe(String name, Subscriber subscriber, boolean lossless)
+    {
+        unsubscribe(name);
+
+        final Consumer consumer = new Consumer(name, subscriber, lossless);
+
+        synchronized(PUBLISH_LOCK)
+        {
+            CONSUMERS.add(consumer);
+
+            if(_started)
+            {
+                consumer.start(_published);
+            }
+        }
+
+        SmartMetrics.registerGauge(METRIC_PREFIX + name + ".lag", new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return consumer.getLag();
+            }
+        });
+    }
+
+    /**
+     * Subscribe an SDK-style listener to the device events: it receives the events of the handler interfaces it
+     * implements (see {@link DeviceEvent#dispatch(DeviceEventHandler)}).
+     *
+     * @param name      Name of the subscriber (thread and metrics).
+     * @param handler   SDK-style listener.
+     */
+    public static void subscribe(String name, final DeviceEventHandler handler)
+    {
+        subscribe(name, new Subscriber()
+        {
+            @Override
+            public void onEvent(DeviceEvent event)
+            {
+                event.dispatch(handler);
+            }
+        });
+    }
+
+    /**
+     * @param name Name of the subscriber to be removed.
+     */
+    public static synchronized void unsubscribe(String name)
+    {
+        for(Consumer consumer : CONSUMERS)
+        {
+            if(consumer._name.equals(name))
+            {
+                consumer.stop();
+                CONSUMERS.remove(consumer);
+                SmartMetrics.unregister(METRIC_PREFIX + name + ".lag");
+            }
+        }
+    }
+
+    /**
+     * Publish an event: never waits for the subscribers (when the bus is started).
+     *
+     * @param event Device event.
+     */
+    public static void publish(DeviceEvent event)
+    {
+        boolean started;
+
+        synchronized(PUBLISH_LOCK)
+        {
+            long sequence = _published;
+            event.setSequence(sequence);
+
+            started = _started;
+
+            if(started)
+            {
+                RING.set((int) (sequence & MASK), event);
+
+                // handed off in order, under the lock
+                for(Consumer consumer : CONSUMERS)
+                {
+                    consumer.handOff(event);
+                }
+            }
+
+            _published = sequence + 1;
+        }
+
+        SmartMetrics.increment(METRIC_PUBLISHED);
+
+        for(Consumer consumer : CONSUMERS)
+        {
+            if(started)
+            {
+                consumer.wakeUp();
+            }
+
+            else
+            {
+                consumer.deliver(event);
+            }
+        }
+    }
+
+    /** Receiver of the device events. */
+    public interface Subscriber
+    {
+        /**
+         * Called by the thread of the subscriber, for each event, in order.
+         *
+         * @param event Device event.
+         */
+        void onEvent(DeviceEvent event);
+    }
+
+    /** Thread of a subscriber and its position in the ring (or its own queue, if lossless). */
+    private static final class Consumer implements Runnable
+    {
+        private final String _name;
+        private final Subscriber _subscriber;
+        private final String _latencyMetric;
+        private final String _droppedMetric;
+        // events not delivered yet to a lossless subscriber (null otherwise)
+        private final Queue<DeviceEvent> _handOff;
+
+        // sequence of the next event to be delivered
+        private volatile long _next;
+        private volatile Thread _thread;
+
+        private Consumer(String name, Subscriber subscriber, boolean lossless)
+        {
+            _name = name;
+            _subscriber = subscriber;
+            _latencyMetric = METRIC_PREFIX + name + ".latency";
+            _droppedMetric = METRIC_PREFIX + name + ".dropped";
+            _handOff = lossless ? new ConcurrentLinkedQueue<DeviceEvent>() : null;
+        }
+
+        private void start(long next)
+        {
+            _next = next;
+            _thread = new DefaultThreadFactory("events-" + _name, true).newThread(this);
+            _thread.start();
+        }
+
+        private void stop()
+        {
+            Thread thread = _thread;
+            _thread = null;
+
+            if(thread != null)
+            {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void handOff(DeviceEvent event)
+        {
+            if(_handOff != null && _thread != null)
+            {
+                _handOff.offer(event);
+            }
+        }
+
+        private void wakeUp()
+        {
+            Thread thread = _thread;
+
+            if(thread != null)
+            {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private long getLag()
+        {
+            return _thread == null ? 0 : _published - _next;
+        }
+
+        @Override
+        public void run()
+        {
+            if(_handOff != null)
+            {
+                runLossless();
+                return;
+            }
+
+            Thread self = Thread.currentThread();
+
+            while(_thread == self)
+            {
+                long published = _published;
+                long next = _next;
+
+                if(next == published)
+                {
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                if(published - next > RING_SIZE)
+                {
+                    // overtaken by the producer: the oldest events are lost
+                    SmartMetrics.add(_droppedMetric, published - RING_SIZE - next);
+                    _next = published - RING_SIZE;
+                    continue;
+                }
+
+                DeviceEvent event = RING.get((int) (next & MASK));
+
+                // being overwritten: checked again with the new sequence
+                if(event == null || event.getSequence() != next)
+                {
+                    continue;
+                }
+
+                deliver(event);
+                _next = next + 1;
+            }
+        }
+
+        private void runLossless()
+        {
+            Thread self = Thread.currentThread();
+
+            while(_thread == self)
+            {
+                DeviceEvent event = _handOff.poll();
+
+                if(event == null)
+                {
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                deliver(event);
+                _next = event.getSequence() + 1;
+            }
+
+            // stopped: the events already handed off are delivered all the same
+            for(DeviceEvent event = _handOff.poll(); event != null; event = _handOff.poll())
+            {
+                deliver(event);
+            }
+        }
+
+        private void deliver(DeviceEvent event)
+        {
+            try
+            {
+                _subscriber.onEvent(event);
+            } catch(RuntimeException re)
+            {
+                SmartLogger.getLogger().log(Level.SEVERE,
+                        "Exception occurred while handling " + event.getType() + " [" + _name + "]", re);
+            }
+
+            SmartMetrics.recordTime(_latencyMetric, System.nanoTime() - event.getPublishedAt());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.Device;
+import com.spacecode.sdk.device.data.DeviceStatus;
+import com.spacecode.sdk.device.event.*;
+import com.spacecode.sdk.device.module.AuthenticationModule;
+import com.spacecode.sdk.user.User;
+
+import java.util.List;
+
+/**
+ * Listener of the device (SDK): publishes each event on the {@link DeviceEventBus}, and returns.
+ */
+class DeviceEventPublisher implements BasicEventHandler, ScanEventHandler, DoorEventHandler,
+        AccessControlEventHandler, AccessModuleEventHandler, TemperatureEventHandler, LedEventHandler,
+        MaintenanceEventHandler
+{
+    private final Device _device;
+
+    /**
+     * @param device Device listened to.
+     */
+    DeviceEventPublisher(Device device)
+    {
+        _device = device;
+    }
+
+    @Override
+    public void deviceDisconnected()
+    {
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.DEVICE_DISCONNECTED));
+    }
+
+    @Override
+    public void deviceStatusChanged(DeviceStatus status)
+    {
+        DeviceEventBus.publish(DeviceEvent.statusChanged(status));
+    }
+
+    @Override
+    public void scanStarted()
+    {
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.SCAN_STARTED));
+    }
+
+    @Override
+    public void scanCompleted()
+    {
+        // the subscribers may handle the event after the next scan started
+        DeviceEventBus.publish(DeviceEvent.scanCompleted(_device.getLastInventory(), _device.getTagToDrawerNumber()));
+    }
+
+    @Override
+    public void tagAdded(String tagUID)
+    {
+        DeviceEventBus.publish(DeviceEvent.tagAdded(tagUID));
+    }
+
+    @Override
+    public void scanFailed()
+    {
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.SCAN_FAILED));
+    }
+
+    @Override
+    public void scanCancelledByHost()
+    {
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.SCAN_CANCELLED_BY_HOST));
+    }
+
+    @Override
+    public void scanCancelledByDoor()
+    {
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.SCAN_CANCELLED_BY_DOOR));
+    }
+
+    @Override
+    public void doorOpened()
+    {
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.DOOR_OPENED));
+    }
+
+    @Override
+    public void doorClosed()
+    {
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.DOOR_CLOSED));
+    }
+
+    @Override
+    public void doorOpenDelay()
+    {
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.DOOR_OPEN_DELAY));
+    }
+
+    @Override
+    public void authenticationSuccess(AuthenticationModule authModule, User user)
+    {
+        DeviceEventBus.publish(DeviceEvent.authentication(true, authModule, user));
+    }
+
+    @Override
+    public void authenticationFailure(AuthenticationModule authModule, User user)
+    {
+        DeviceEventBus.publish(DeviceEvent.authentication(false, authModule, user));
+    }
+
+    @Override
+    public void badgeReaderConnected(boolean isMaster)
+    {
+        DeviceEventBus.publish(DeviceEvent.badgeReader(true, isMaster));
+    }
+
+    @Override
+    public void badgeReaderDisconnected(boolean isMaster)
+    {
+        DeviceEventBus.publish(DeviceEvent.badgeReader(false, isMaster));
+    }
+
+    @Override
+    public void badgeScanned(String badgeNumber)
+    {
+        DeviceEventBus.publish(DeviceEvent.badgeScanned(badgeNumber));
+    }
+
+    @Override
+    public void fingerTouched(boolean isMaster)
+    {
+        DeviceEventBus.publish(DeviceEvent.fingerTouched(isMaster));
+    }
+
+    @Override
+    public void fingerprintEnrollmentSample(byte sampleNumber)
+    {
+        DeviceEventBus.publish(DeviceEvent.enrollmentSample(sampleNumber));
+    }
+
+    @Override
+    public void temperatureMeasure(double value)
+    {
+        DeviceEventBus.publish(DeviceEvent.temperatureMeasure(value));
+    }
+
+    @Override
+    public void lightingStarted(List<String> tagsLeft)
+    {
+        DeviceEventBus.publish(DeviceEvent.lightingStarted(tagsLeft));
+    }
+
+    @Override
+    public void lightingStopped()
+    {
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.LIGHTING_STOPPED));
+    }
+
+    @Override
+    public void flashingProgress(int rowNumber, int rowCount)
+    {
+        DeviceEventBus.publish(DeviceEvent.flashingProgress(rowNumber, rowCount));
+    }
+
+    @Override
+    public void correlationSample(int correlation, int phaseShift)
+    {
+        DeviceEventBus.publish(DeviceEvent.correlationSample(correlation, phaseShift));
+    }
+
+    @Override
+    public void correlationSampleSeries(short[] presentSamples, short[] missingSamples)
+    {
+        DeviceEventBus.publish(DeviceEvent.correlationSeries(presentSamples, missingSamples));
+    }
+}
@@ -9,6 +9,7 @@ import com.spacecode.sdk.device.event.*;
 import com.spacecode.sdk.device.module.AuthenticationModule;
 import com.spacecode.sdk.device.module.FingerprintReaderException;
 import com.spacecode.sdk.network.communication.EventCode;
+import com.spacecode.sdk.network.communication.RequestCode;
 import com.spacecode.sdk.user.User;
 import com.spacecode.sdk.user.data.AccessType;
 import com.spacecode.smartserver.SmartServer;
@@ -76,8 +77,13 @@ public final class DeviceHandler
         {
             SmartLogger.getLogger().info("Serial Port: "+deviceInfo.getSerialPort());
             DEVICE = new Device(null, deviceInfo.getSerialPort());
-            DEVICE.addListener(new SmartEventHandler());
+            // the SDK thread only publishes the events: the subscribers handle them on their own threads
+            DeviceEventBus.Subscriber clients = new SmartEventHandler();
+            DEVICE.addListener(new DeviceEventPublisher(DEVICE));
+            // lossless: the inventories and authentications are persisted by this subscriber
+            DeviceEventBus.subscribe("clients", clients, true);
             _serialPort = deviceInfo.getSerialPort();
+            ResponseCache.invalidateAll();
         } catch (DeviceCreationException dce)
         {
             SmartLogger.getLogger().log(Level.INFO, "Unable to instantiate a device.", dce);
@@ -96,6 +102,7 @@ public final class DeviceHandler
         {
             DEVICE.release();
             DEVICE = null;
+            ResponseCache.invalidateAll();
         }
     }
 
@@ -324,6 +331,7 @@ public final class DeviceHandler
             DEVICE.getUsersService().removeUser(unregUser.getUsername());    
         }        
 
+        ResponseCache.invalidate(RequestCode.USERS_LIST, RequestCode.USERS_UNREGISTERED);
         return true;
     }
 
@@ -407,18 +415,34 @@ public final class DeviceHandler
 
     /**
      * Handle Device events and proceed according to expected SmartServer behavior.
+     *
+     * Subscribed to the {@link DeviceEventBus} as "clients", without ever skipping an event.
      */
     static class SmartEventHandler implements BasicEventHandler, ScanEventHandler, DoorEventHandler,
             AccessControlEventHandler, AccessModuleEventHandler, TemperatureEventHandler, LedEventHandler,
-            MaintenanceEventHandler
+            MaintenanceEventHandler, DeviceEventBus.Subscriber
     {
+        @Override
+        public void onEvent(DeviceEvent event)
+        {
+            if(event.getType() == DeviceEvent.Type.SCAN_COMPLETED && event.getInventory() != null)
+            {
+                scanCompleted(event.getInventory(), event.getTagToAxis());
+                return;
+            }
+
+            event.dispatch(this);
+        }
+
         @Override
         public void deviceDisconnected()
         {
             SmartLogger.getLogger().info("Device Disconnected...");
 
             SmartServer.sendAllClients(EventCode.DEVICE_DISCONNECTED);
+            ContinuousScan.stop();
             DEVICE = null;
+            ResponseCache.invalidateAll();
 
             reconnectDevice();
         }
@@ -444,21 +468,54 @@ public final class DeviceHandler
         @Override
         public void scanStarted()
         {
+            // continuous mode: the clients are only notified of the first cycle
+            if(ContinuousScan.isEnabled() && !ContinuousScan.cycleStarted())
+            {
+                return;
+            }
+
             SmartServer.sendAllClients(EventCode.SCAN_STARTED);
         }
 
         @Override
         public void scanCancelledByHost()
         {
+            ResponseCache.invalidate(RequestCode.TAG_TO_DRAWER);
+            TagEventBatcher.flush();
             SmartServer.sendAllClients(EventCode.SCAN_CANCELLED_BY_HOST);
+            ContinuousScan.cycleInterrupted(false);
         }
 
         @Override 
         
         public void scanCompleted()
         {
-            Inventory newInventory = DEVICE.getLastInventory();
-            
+            scanCompleted(DEVICE.getLastInventory(), DEVICE.getTagToDrawerNumber());
+        }
+
+        /**
+         * @param newInventory  Inventory of the scan, as published with the event (the device may be scanning again).
+         * @param tagToAxis     Drawer (axis) of each tag of the scan, as published with the event.
+         */
+        void scanCompleted(Inventory newInventory, Map<String, Byte> tagToAxis)
+        {
+            if(ContinuousScan.isEnabled())
+            {
+                // the clients receive the changes of the cycle (if any), and only these cycles are recorded
+                if(ContinuousScan.cycleCompleted(newInventory))
+                {
+                    LatestInventory.update(newInventory);
+
+                    if(RECORD_INVENTORY)
+                    {
+                        InventoryRecorder.submit(newInventory, tagToAxis);
+                    }
+                }
+
+                ResponseCache.invalidate(RequestCode.TAG_TO_DRAWER);
+                return;
+            }
+
             // insert the new inventory in the DB only if the user wants to
             if(RECORD_INVENTORY)
             {
@@ -468,25 +525,43 @@ public final class DeviceHandler
                         newInventory.getNumberPresent() != 0 ||
                         newInventory.getAccessType() != AccessType.UNDEFINED)
                 {
-                    DaoInventory daoInventory = (DaoInventory) DbManager.getDao(InventoryEntity.class);
-                    // todo: thread this? The point is about "getLastInventory" command, which MUST return the VERY last
-                    daoInventory.persist(newInventory);
+                    // provided to the clients at once, before being written in the DB
+                    LatestInventory.update(newInventory);
+
+                    // written in the background: until then, InventoryRecorder provides it as the very last one
+                    InventoryRecorder.submit(newInventory, tagToAxis);
                 }
             }     
 
+            else
+            {
+                LatestInventory.update(newInventory);
+            }
+
+            ResponseCache.invalidate(RequestCode.TAG_TO_DRAWER);
+            TagEventBatcher.flush();
             SmartServer.sendAllClients(EventCode.SCAN_COMPLETED);
         }
 
         @Override
         public void scanFailed()
         {
+            ResponseCache.invalidate(RequestCode.TAG_TO_DRAWER);
+            TagEventBatcher.flush();
             SmartServer.sendAllClients(EventCode.SCAN_FAILED);
+            ContinuousScan.cycleInterrupted(true);
         }
 
         @Override
         public void tagAdded(String tagUID)
         {
-            SmartServer.sendAllClients(EventCode.TAG_ADDED, tagUID);
+            // continuous mode: the tags are sent at the end of the cycle, if they changed
+            if(ContinuousScan.isEnabled())
+            {
+                return;
+            }
+
+            TagEventBatcher.tagAdded(tagUID);
         }
 
         @Override
@@ -538,7 +613,10 @@ public final class DeviceHandler
         public void scanCancelledByDoor()
         {
             SmartLogger.getLogger().info("Scan has been cancelled because someone opened the door.");
+            ResponseCache.invalidate(RequestCode.TAG_TO_DRAWER);
+            TagEventBatcher.flush();
             SmartServer.sendAllClients(EventCode.SCAN_CANCELLED_BY_DOOR);
+            ContinuousScan.cycleInterrupted(false);
         }
 
         @Override
@@ -567,7 +645,10 @@ public final class DeviceHandler
         @Override
         public void deviceStatusChanged(DeviceStatus status)
         {
+            // the status is part of the initialization response
+            ResponseCache.invalidate(RequestCode.INITIALIZATION);
             SmartServer.sendAllClients(EventCode.STATUS_CHANGED, status.name());
+            ContinuousScan.statusChanged(status);
         }
 
         @Override
@@ -0,0 +1,216 @@
+package com.spacecode.smartserver.helper;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.util.AttributeKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Journal of the events sent to the clients: each event gets a sequence number, and the last {@link #CAPACITY} ones
+ * are kept in a ring buffer.
+ *
+ * A client which asked for it (see {@link #setSequenced(Channel, boolean)}) receives each event with its sequence
+ * number as last packet: [event_code, ..., sequence]. Once reconnected, it gives the sequence of the last event it
+ * received and gets the events it missed, or has to resynchronize (i.e. last inventory, last alert...) if they are not
+ * in the buffer anymore.
+ *
+ * The sequences start from the time SmartServer was started (in microseconds): the sequences given by a previous run
+ * are always older than the events kept, so a client cannot resume from them.
+ */
+public final class EventJournal
+{
+    static final int CAPACITY = 4096;
+
+    static final String METRIC_REPLAYED = "events.journal.replayed";
+    static final String METRIC_RESYNC = "events.journal.resync";
+
+    private static final String EVENT_PREFIX = "event_";
+
+    /** Set on the channels of the clients which receive the sequence numbers. */
+    private static final AttributeKey<Boolean> SEQUENCED = AttributeKey.valueOf("smartserver.events.sequenced");
+
+    /** Select the channels receiving the events with their sequence number. */
+    public static final ChannelMatcher SEQUENCED_CHANNELS = new ChannelMatcher()
+    {
+        @Override
+        public boolean matches(Channel channel)
+        {
+            return isSequenced(channel);
+        }
+    };
+
+    /** Select the channels receiving the events without sequence number. */
+    public static final ChannelMatcher PLAIN_CHANNELS = new ChannelMatcher()
+    {
+        @Override
+        public boolean matches(Channel channel)
+        {
+            return !isSequenced(channel);
+        }
+    };
+
+    private static final Entry[] RING = new Entry[CAPACITY];
+
+    // sequence of the next event
+    private static long _next = System.currentTimeMillis() * 1000;
+    // sequence of the oldest event kept
+    private static long _oldest = _next;
+
+    // number of connected channels receiving the sequence numbers
+    private static final AtomicInteger SEQUENCED_CHANNELS_COUNT = new AtomicInteger();
+
+    /** Must not be instantiated. */
+    private EventJournal()
+    {
+    }
+
+    /**
+     * @param code First packet of a message.
+     *
+     * @return True if the message is an event (journaled), false otherwise (i.e. response sent to all clients).
+     */
+    public static boolean isEvent(String code)
+    {
+        return code != null && code.startsWith(EVENT_PREFIX);
+    }
+
+    /**
+     * Give the next sequence number to an event, and keep it (overwriting the oldest one if the buffer is full).
+     *
+     * @param matcher Clients selected by the sender of the event (checked again when the event is replayed).
+     * @param packets Event.
+     *
+     * @return The given packets, followed by the sequence number of the event.
+     */
+    public static synchronized String[] record(ChannelMatcher matcher, String[] packets)
+    {
+        long sequence = _next++;
+        String[] sequenced = Arrays.copyOf(packets, packets.length + 1);
+        sequenced[packets.length] = String.valueOf(sequence);
+
+        RING[(int) (sequence % CAPACITY)] = new Entry(matcher, sequenced);
+
+        if(_next - _oldest > CAPACITY)
+        {
+            _oldest = _next - CAPACITY;
+        }
+
+        return sequenced;
+    }
+
+    /**
+     * @return Sequence number of the last event recorded (the one before the first event if none was recorded).
+     */
+    public static synchronized long getLastSequence()
+    {
+        return _next - 1;
+    }
+
+    /**
+     * @param lastReceived Sequence of the last event received by the client.
+     * @param channel      Channel of the client: only the events it would have received (sender's choice, current
+     *                     subscriptions) are returned.
+     *
+     * @return The events recorded after the given one, with their sequence number. Null if some of them are not in the
+     * buffer anymore (or if the sequence is unknown): the client has to resynchronize.
+     */
+    public static synchronized List<String[]> since(long lastReceived, Channel channel)
+    {
+        if(lastReceived < _oldest - 1 || lastReceived >= _next)
+        {
+            SmartMetrics.increment(METRIC_RESYNC);
+            return null;
+        }
+
+        List<String[]> missed = new ArrayList<>((int) (_next - lastReceived - 1));
+
+        for(long sequence = lastReceived + 1; sequence < _next; ++sequence)
+        {
+            Entry entry = RING[(int) (sequence % CAPACITY)];
+
+            if(EventSubscriptions.filter(entry._matcher, entry._packets[0]).matches(channel))
+            {
+                missed.add(entry._packets);
+            }
+        }
+
+        SmartMetrics.add(METRIC_REPLAYED, missed.size());
+        return missed;
+    }
+
+    /**
+     * @param channel Channel of a client.
+     *
+     * @return True if the client receives the sequence numbers of the events.
+     */
+    public static boolean isSequenced(Channel channel)
+    {
+        Boolean sequenced = channel.attr(SEQUENCED).get();
+        return sequenced != null && sequenced;
+    }
+
+    /**
+     * @return True if at least one connected client receives the sequence numbers of the events.
+     */
+    public static boolean hasSequencedChannels()
+    {
+        return SEQUENCED_CHANNELS_COUNT.get() > 0;
+    }
+
+    /**
+     * @param channel Channel of the client.
+     * @param state   If true, the client receives the events with their sequence number.
+     *
+     * @return True if the state of the client changed.
+     */
+    public static boolean setSequenced(final Channel channel, boolean state)
+    {
+        Boolean previous = channel.attr(SEQUENCED).getAndSet(state);
+
+        if(state == (previous != null && previous))
+        {
+            return false;
+        }
+
+        if(!state)
+        {
+            SEQUENCED_CHANNELS_COUNT.decrementAndGet();
+            return true;
+        }
+
+        SEQUENCED_CHANNELS_COUNT.incrementAndGet();
+        channel.closeFuture().addListener(new ChannelFutureListener()
+        {
+            @Override
+            public void operationComplete(ChannelFuture future)
+            {
+                // the client may have disabled the sequence numbers before leaving
+                if(Boolean.TRUE.equals(channel.attr(SEQUENCED).getAndSet(false)))
+                {
+                    SEQUENCED_CHANNELS_COUNT.decrementAndGet();
+                }
+            }
+        });
+
+        return true;
+    }
+
+    /** Event kept in the ring buffer. */
+    private static final class Entry
+    {
+        private final ChannelMatcher _matcher;
+        private final String[] _packets;
+
+        private Entry(ChannelMatcher matcher, String[] packets)
+        {
+            _matcher = matcher;
+            _packets = packets;
+        }
+    }
+}
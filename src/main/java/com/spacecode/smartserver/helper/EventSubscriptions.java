@@ -0,0 +1,210 @@
+package com.spacecode.smartserver.helper;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.channel.group.ChannelMatchers;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Events wanted by each client.
+ *
+ * By default, a client receives all the events. Once it has subscribed to some event codes, it only receives those
+ * events, even if it unsubscribes from each of them: only {@link #unsubscribeAll(Channel)} gives it all the events
+ * again. Messages which are not events (i.e. responses sent to all clients) are not filtered.
+ *
+ * The subscribers of each event code are kept in a set: selecting the recipients of an event does not require to
+ * look at the subscriptions of each client. The set of an event code is removed once its last subscriber unsubscribed
+ * or disconnected: any code starting with "event_" can be subscribed to, but only while the client is connected.
+ *
+ * The subscriptions are changed one client at a time (lock), while the events are filtered without lock.
+ */
+public final class EventSubscriptions
+{
+    private static final String EVENT_PREFIX = "event_";
+
+    // channels which only receive the events they subscribed to
+    private static final Set<Channel> FILTERED_CHANNELS = ConcurrentHashMap.newKeySet();
+
+    // subscribers of each event code
+    private static final ConcurrentMap<String, Subscribers> SUBSCRIBERS = new ConcurrentHashMap<>();
+
+    // event code without subscriber: only received by the clients which did not subscribe to any event
+    private static final Subscribers NO_SUBSCRIBERS = new Subscribers();
+
+    private static final ChannelFutureListener REMOVE_ON_CLOSE = new ChannelFutureListener()
+    {
+        @Override
+        public void operationComplete(ChannelFuture future)
+        {
+            unsubscribeAll(future.channel());
+        }
+    };
+
+    /** Must not be instantiated. */
+    private EventSubscriptions()
+    {
+    }
+
+    /**
+     * Subscribe a client to the given events: from now on, it only receives the events it subscribed to.
+     *
+     * @param channel    Channel of the client.
+     * @param eventCodes Event codes wanted by the client.
+     *
+     * @return False if one of the codes is not an event code (nothing is subscribed), true otherwise.
+     */
+    public static synchronized boolean subscribe(Channel channel, Collection<String> eventCodes)
+    {
+        for(String eventCode : eventCodes)
+        {
+            if(!isEventCode(eventCode))
+            {
+                return false;
+            }
+        }
+
+        for(String eventCode : eventCodes)
+        {
+            getSubscribers(eventCode)._channels.add(channel);
+        }
+
+        if(FILTERED_CHANNELS.add(channel))
+        {
+            channel.closeFuture().addListener(REMOVE_ON_CLOSE);
+        }
+
+        return true;
+    }
+
+    /**
+     * Unsubscribe a client from the given events. It still only receives the events it subscribed to (none, once
+     * unsubscribed from all of them).
+     *
+     * @param channel    Channel of the client.
+     * @param eventCodes Event codes not wanted anymore by the client.
+     *
+     * @return False if the client did not subscribe to any event (it receives all of them), true otherwise.
+     */
+    public static synchronized boolean unsubscribe(Channel channel, Collection<String> eventCodes)
+    {
+        if(!FILTERED_CHANNELS.contains(channel))
+        {
+            return false;
+        }
+
+        for(String eventCode : eventCodes)
+        {
+            Subscribers subscribers = SUBSCRIBERS.get(eventCode);
+
+            if(subscribers != null)
+            {
+                removeSubscriber(eventCode, subscribers, channel);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove all the subscriptions of a client: it receives all the events again.
+     *
+     * @param channel Channel of the client.
+     */
+    public static synchronized void unsubscribeAll(Channel channel)
+    {
+        if(!FILTERED_CHANNELS.remove(channel))
+        {
+            return;
+        }
+
+        for(Map.Entry<String, Subscribers> entry : SUBSCRIBERS.entrySet())
+        {
+            removeSubscriber(entry.getKey(), entry.getValue(), channel);
+        }
+
+        channel.closeFuture().removeListener(REMOVE_ON_CLOSE);
+    }
+
+    /**
+     * @param matcher Channels selected by the sender of the message.
+     * @param code    First packet of the message (event code, or request code for a response).
+     *
+     * @return A matcher selecting, among the given channels, the ones which want to receive the message.
+     */
+    public static ChannelMatcher filter(ChannelMatcher matcher, String code)
+    {
+        if(FILTERED_CHANNELS.isEmpty() || !isEventCode(code))
+        {
+            return matcher;
+        }
+
+        Subscribers subscribers = SUBSCRIBERS.get(code);
+
+        if(subscribers == null)
+        {
+            subscribers = NO_SUBSCRIBERS;
+        }
+
+        return matcher == ChannelMatchers.all() ? subscribers : ChannelMatchers.compose(matcher, subscribers);
+    }
+
+    /**
+     * @param code First packet of a message.
+     *
+     * @return True if the message is an event (can be subscribed to).
+     */
+    public static boolean isEventCode(String code)
+    {
+        return code != null && code.startsWith(EVENT_PREFIX);
+    }
+
+    /** @return Number of event codes with at least one subscriber. */
+    static int getSubscribedCodesCount()
+    {
+        return SUBSCRIBERS.size();
+    }
+
+    private static Subscribers getSubscribers(String eventCode)
+    {
+        Subscribers subscribers = SUBSCRIBERS.get(eventCode);
+
+        if(subscribers == null)
+        {
+            Subscribers newSubscribers = new Subscribers();
+            subscribers = SUBSCRIBERS.putIfAbsent(eventCode, newSubscribers);
+            subscribers = subscribers == null ? newSubscribers : subscribers;
+        }
+
+        return subscribers;
+    }
+
+    private static void removeSubscriber(String eventCode, Subscribers subscribers, Channel channel)
+    {
+        subscribers._channels.remove(channel);
+
+        // no subscriber anymore: the event is only received by the clients which did not subscribe to any event
+        if(subscribers._channels.isEmpty())
+        {
+            SUBSCRIBERS.remove(eventCode, subscribers);
+        }
+    }
+
+    /** Select the subscribers of an event, and the clients which did not subscribe to any event. */
+    private static class Subscribers implements ChannelMatcher
+    {
+        private final Set<Channel> _channels = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public boolean matches(Channel channel)
+        {
+            return _channels.contains(channel) || !FILTERED_CHANNELS.contains(channel);
+        }
+    }
+}
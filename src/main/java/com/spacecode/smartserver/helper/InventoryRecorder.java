@@ -0,0 +1,283 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.data.Inventory;
+import com.spacecode.smartserver.database.DbManager;
+import com.spacecode.smartserver.database.dao.DaoInventory;
+import com.spacecode.smartserver.database.entity.InventoryEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Write-behind persistence of the new inventories.
+ *
+ * The inventories are queued (bounded, ordered) by the SDK event thread and written in the database by a dedicated
+ * thread, so that the clients are notified of the end of a scan without waiting for the database.
+ * Until it is committed, the last queued inventory is provided by {@link #getLastInventory()}.
+ *
+ * Has to be started to persist the inventories in the background (otherwise, they are persisted by the caller).
+ */
+public final class InventoryRecorder
+{
+    // maximum number of inventories waiting to be written. When full, the SDK event thread waits for some room
+    static final int QUEUE_CAPACITY = 32;
+
+    private static final BlockingQueue<PendingInventory> QUEUE = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    // version given to the last queued inventory, and version of the last inventory handled by the writer
+    private static long _submittedVersion = 0;
+    private static volatile long _committedVersion = 0;
+    private static volatile PendingInventory _latest = null;
+
+    private static volatile Thread _writerThread = null;
+    private static volatile boolean _running = false;
+
+    // maximum time given to the writer to empty the queue when the recorder is stopped
+    private static final long STOP_TIMEOUT_MS = 30000;
+
+    static final String METRIC_QUEUE_DEPTH = "inventory.queue.depth";
+    static final String METRIC_COMMIT_LATENCY = "inventory.commit.latency";
+    static final String METRIC_PERSIST_TIME = "inventory.persist.time";
+    static final String METRIC_FAILURES = "inventory.persist.failures";
+
+    static
+    {
+        SmartMetrics.registerGauge(METRIC_QUEUE_DEPTH, new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return QUEUE.size();
+            }
+        });
+    }
+
+    /** Must not be instantiated. */
+    private InventoryRecorder()
+    {
+    }
+
+    /**
+     * Start the writer thread (if not already started).
+     */
+    public static synchronized void start()
+    {
+        if(_writerThread != null)
+        {
+            return;
+        }
+
+        _running = true;
+        _writerThread = new Thread(new Writer(), "inventory-recorder");
+        _writerThread.setDaemon(true);
+        _writerThread.start();
+    }
+
+    /**
+     * Stop the writer thread, once all the queued inventories have been written (or after a timeout).
+     */
+    public static synchronized void stop()
+    {
+        if(_writerThread == null)
+        {
+            return;
+        }
+
+        _running = false;
+
+        try
+        {
+            _writerThread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException ie)
+        {
+            SmartLogger.getLogger().log(Level.WARNING, "Interrupted while waiting for the Inventory Recorder.", ie);
+            Thread.currentThread().interrupt();
+        }
+
+        if(!QUEUE.isEmpty())
+        {
+            SmartLogger.getLogger().severe(QUEUE.size() + " inventories could not be written in the database.");
+        }
+
+        _writerThread = null;
+    }
+
+    /**
+     * Queue a new inventory to be written in the database.
+     * If the recorder is not started, the inventory is persisted by the calling thread.
+     *
+     * @param inventory New inventory, provided by the device.
+     * @param tagToAxis Drawer (axis) of each tag, taken with the inventory (the device may have started a new scan
+     *                  when the inventory is written). Copied.
+     *
+     * @return True if the inventory has been queued (or persisted), false otherwise.
+     */
+    public static synchronized boolean submit(Inventory inventory, Map<String, Byte> tagToAxis)
+    {
+        Map<String, Byte> tagToAxisCopy = tagToAxis == null ? new HashMap<String, Byte>() : new HashMap<>(tagToAxis);
+
+        PendingInventory pending = new PendingInventory(++_submittedVersion, inventory, tagToAxisCopy);
+
+        if(_writerThread == null)
+        {
+            _latest = pending;
+            write(pending);
+            return true;
+        }
+
+        _latest = pending;
+
+        if(QUEUE.offer(pending))
+        {
+            return true;
+        }
+
+        SmartLogger.getLogger().warning("Inventory Recorder queue is full: waiting for the database.");
+
+        try
+        {
+            QUEUE.put(pending);
+            return true;
+        } catch (InterruptedException ie)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Interrupted while queuing a new inventory.", ie);
+            Thread.currentThread().interrupt();
+            // this inventory will never be committed
+            _committedVersion = pending._version;
+            return false;
+        }
+    }
+
+    /**
+     * @return The last queued inventory if it has not been committed yet, null otherwise. As it is not in the
+     * database yet, its ID is unknown (0).
+     */
+    public static Inventory getPendingInventory()
+    {
+        PendingInventory latest = _latest;
+
+        if(latest == null || latest._version <= _committedVersion)
+        {
+            return null;
+        }
+
+        return latest._inventory;
+    }
+
+    /**
+     * @return The very last inventory: the one waiting to be written, if any, or the last one from the database
+     * (null if none, or if any error occurred).
+     */
+    public static Inventory getLastInventory()
+    {
+        Inventory pendingInventory = getPendingInventory();
+
+        if(pendingInventory != null)
+        {
+            return pendingInventory;
+        }
+
+        return ((DaoInventory) DbManager.getDao(InventoryEntity.class)).getLastInventory();
+    }
+
+    /**
+     * @return Number of inventories waiting to be written.
+     */
+    public static int getQueueDepth()
+    {
+        return QUEUE.size();
+    }
+
+    /**
+     * Write the given inventory in the database and mark its version as committed (even if it failed, for the
+     * in-memory inventory not to be provided forever).
+     *
+     * @param pending Queued inventory.
+     */
+    private static void write(PendingInventory pending)
+    {
+        long startTime = System.nanoTime();
+
+        try
+        {
+            DaoInventory daoInventory = (DaoInventory) DbManager.getDao(InventoryEntity.class);
+
+            Inventory withId = daoInventory.persistWithId(pending._inventory, pending._tagToAxis);
+
+            if(withId == null)
+            {
+                SmartLogger.getLogger().severe("Unable to write the inventory of " + pending._inventory.getCreationDate());
+                SmartMetrics.increment(METRIC_FAILURES);
+            }
+
+            else
+            {
+                // its ID is now known
+                LatestInventory.recorded(pending._inventory, withId);
+            }
+        } finally
+        {
+            long endTime = System.nanoTime();
+            SmartMetrics.recordTime(METRIC_PERSIST_TIME, endTime - startTime);
+            SmartMetrics.recordTime(METRIC_COMMIT_LATENCY, endTime - pending._queuedAt);
+
+            _committedVersion = pending._version;
+        }
+    }
+
+    /** Take the queued inventories, in order, and write them. */
+    private static class Writer implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            while(_running || !QUEUE.isEmpty())
+            {
+                PendingInventory pending;
+
+                try
+                {
+                    pending = QUEUE.poll(500, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie)
+                {
+                    SmartLogger.getLogger().log(Level.WARNING, "Inventory Recorder interrupted.", ie);
+                    return;
+                }
+
+                if(pending == null)
+                {
+                    continue;
+                }
+
+                try
+                {
+                    write(pending);
+                } catch (RuntimeException re)
+                {
+                    SmartLogger.getLogger().log(Level.SEVERE, "Unexpected error while writing an inventory.", re);
+                    SmartMetrics.increment(METRIC_FAILURES);
+                }
+            }
+        }
+    }
+
+    /** Inventory waiting to be written, with its version and the drawer of each tag. */
+    private static class PendingInventory
+    {
+        private final long _version;
+        private final Inventory _inventory;
+        private final Map<String, Byte> _tagToAxis;
+        private final long _queuedAt = System.nanoTime();
+
+        private PendingInventory(long version, Inventory inventory, Map<String, Byte> tagToAxis)
+        {
+            _version = version;
+            _inventory = inventory;
+            _tagToAxis = tagToAxis;
+        }
+    }
+}
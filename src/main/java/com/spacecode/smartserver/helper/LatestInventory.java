@@ -0,0 +1,282 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.data.Inventory;
+import com.spacecode.smartserver.database.DbManager;
+import com.spacecode.smartserver.database.dao.DaoInventory;
+import com.spacecode.smartserver.database.entity.InventoryEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Last inventory of the device, shared by all the clients (TCP/IP, WebSocket, Socket.IO), with its serialized form
+ * and a version.
+ *
+ * Fed by the end of each scan (see {@link DeviceHandler}): the new inventory is provided at once, even before being
+ * written in the database. Once written (see {@link InventoryRecorder}), it is replaced by the same inventory with its
+ * ID, under a new version (the clients having it download it again, to get its ID). The database is only queried when
+ * SmartServer starts, not for each request.
+ *
+ * The version changes with the inventory: a client giving the version it has can be told it is not modified. The
+ * versions start from the time SmartServer was started (in microseconds): a version given by a previous run is never
+ * taken for the current one.
+ *
+ * The last {@link #HISTORY_SIZE} inventories are kept: a client having one of them (written or not yet) can be given
+ * the changes of the tags only (see {@link #getDelta(Snapshot, long)}), instead of the full inventory.
+ */
+public final class LatestInventory
+{
+    static final int HISTORY_SIZE = 4;
+
+    private static final Object LOCK = new Object();
+
+    // last snapshots, the current one first
+    private static final Deque<Snapshot> HISTORY = new ArrayDeque<>(HISTORY_SIZE + 1);
+
+    private static long _nextVersion = System.currentTimeMillis() * 1000;
+    private static volatile Snapshot _snapshot = null;
+
+    /** Must not be instantiated. */
+    private LatestInventory()
+    {
+    }
+
+    /**
+     * @return The last inventory, with its version (the inventory is null if none was ever recorded, or if the
+     * database could not be read).
+     */
+    public static Snapshot get()
+    {
+        Snapshot snapshot = _snapshot;
+
+        if(snapshot != null)
+        {
+            return snapshot;
+        }
+
+        synchronized(LOCK)
+        {
+            if(_snapshot == null)
+            {
+                Inventory inventory = ((DaoInventory) DbManager.getDao(InventoryEntity.class)).getLastInventory();
+                setSnapshot(new Snapshot(_nextVersion++, inventory));
+            }
+
+            return _snapshot;
+        }
+    }
+
+    /**
+     * Provide a new inventory (end of a scan).
+     *
+     * @param inventory New inventory of the device.
+     */
+    static void update(Inventory inventory)
+    {
+        synchronized(LOCK)
+        {
+            setSnapshot(new Snapshot(_nextVersion++, inventory));
+        }
+    }
+
+    /**
+     * Called once an inventory has been written in the database: if it is still the last one, it is replaced by the
+     * given one (with its ID), under a new version. It keeps its place in the history: same tags, and its previous
+     * version is still known for the deltas.
+     *
+     * @param inventory Inventory written.
+     * @param withId    Same inventory, with the ID given by the database.
+     */
+    static void recorded(Inventory inventory, Inventory withId)
+    {
+        Snapshot snapshot = _snapshot;
+
+        if(snapshot == null || snapshot._inventory != inventory)
+        {
+            return;
+        }
+
+        synchronized(LOCK)
+        {
+            // not replaced by a newer inventory in the meantime
+            if(_snapshot == snapshot)
+            {
+                Snapshot identified = new Snapshot(_nextVersion++, withId, snapshot._version);
+                _snapshot = identified;
+                HISTORY.removeFirst();
+                HISTORY.addFirst(identified);
+            }
+        }
+    }
+
+    /**
+     * @param current       Last inventory, as given to the client.
+     * @param baseVersion   Version of the inventory the client has.
+     *
+     * @return The tags added and removed since the given version, or null if this version is not known anymore.
+     */
+    public static Delta getDelta(Snapshot current, long baseVersion)
+    {
+        Delta delta = current._deltas.get(baseVersion);
+
+        if(delta != null)
+        {
+            return delta;
+        }
+
+        Snapshot base = null;
+
+        synchronized(LOCK)
+        {
+            for(Snapshot snapshot : HISTORY)
+            {
+                if(snapshot._version == baseVersion || snapshot._unwrittenVersion == baseVersion)
+                {
+                    base = snapshot;
+                    break;
+                }
+            }
+        }
+
+        if(base == null || baseVersion > current._version)
+        {
+            return null;
+        }
+
+        delta = new Delta(current._tags, base._tags);
+        current._deltas.put(baseVersion, delta);
+        return delta;
+    }
+
+    private static void setSnapshot(Snapshot snapshot)
+    {
+        _snapshot = snapshot;
+        HISTORY.addFirst(snapshot);
+
+        if(HISTORY.size() > HISTORY_SIZE)
+        {
+            HISTORY.removeLast();
+        }
+    }
+
+    /** Inventory with its version, its serialized form and its tags (built once). */
+    public static final class Snapshot
+    {
+        private final long _version;
+        private final Inventory _inventory;
+        private final String _serialized;
+        private final Set<String> _tags;
+        private final String _tagsHash;
+        // version of the same inventory before it was written (no ID), -1 if none
+        private final long _unwrittenVersion;
+
+        // changes since the older versions asked by the clients
+        private final ConcurrentMap<Long, Delta> _deltas = new ConcurrentHashMap<>();
+
+        private Snapshot(long version, Inventory inventory)
+        {
+            this(version, inventory, -1);
+        }
+
+        private Snapshot(long version, Inventory inventory, long unwrittenVersion)
+        {
+            _version = version;
+            _unwrittenVersion = unwrittenVersion;
+            _inventory = inventory;
+            String serialized = inventory == null ? null : inventory.serialize();
+            _serialized = serialized == null ? "" : serialized;
+            List<String> tags = inventory == null ? null : inventory.getTagsAll();
+            _tags = tags == null ? Collections.<String>emptySet() : new HashSet<>(tags);
+            _tagsHash = hash(_tags);
+        }
+
+        /**
+         * @param tags UIDs of the tags.
+         *
+         * @return CRC32 (hexadecimal) of the UIDs, in ascending order, each one followed by a line feed (UTF-8).
+         */
+        static String hash(Set<String> tags)
+        {
+            List<String> sortedTags = new ArrayList<>(tags);
+            Collections.sort(sortedTags);
+
+            CRC32 crc = new CRC32();
+
+            for(String uid : sortedTags)
+            {
+                crc.update(uid.getBytes(StandardCharsets.UTF_8));
+                crc.update('\n');
+            }
+
+            return Long.toHexString(crc.getValue());
+        }
+
+        public long getVersion()
+        {
+            return _version;
+        }
+
+        /** @return The inventory, or null if there is none. */
+        public Inventory getInventory()
+        {
+            return _inventory;
+        }
+
+        /** @return The serialized inventory, or an empty string if there is none. */
+        public String getSerialized()
+        {
+            return _serialized;
+        }
+
+        /** @return Hash of the tags of the inventory, for the client to check the result of a delta. */
+        public String getTagsHash()
+        {
+            return _tagsHash;
+        }
+    }
+
+    /** Tags added and removed between two versions. */
+    public static final class Delta
+    {
+        private final List<String> _added = new ArrayList<>();
+        private final List<String> _removed = new ArrayList<>();
+
+        private Delta(Set<String> tags, Set<String> baseTags)
+        {
+            for(String uid : tags)
+            {
+                if(!baseTags.contains(uid))
+                {
+                    _added.add(uid);
+                }
+            }
+
+            for(String uid : baseTags)
+            {
+                if(!tags.contains(uid))
+                {
+                    _removed.add(uid);
+                }
+            }
+        }
+
+        public List<String> getAdded()
+        {
+            return Collections.unmodifiableList(_added);
+        }
+
+        public List<String> getRemoved()
+        {
+            return Collections.unmodifiableList(_removed);
+        }
+    }
+}
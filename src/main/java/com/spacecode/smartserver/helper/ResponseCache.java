@@ -0,0 +1,190 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.network.communication.MessageHandler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Responses of the read-mostly commands, by request code and parameters, so that polling clients do not rebuild (and
+ * query the database for) the same answer again and again.
+ *
+ * A response is valid until its request code is invalidated: by a command changing the data (see the "invalidates"
+ * clause of the contract of the commands), or by a device event (see {@link DeviceHandler}). Each request code has a
+ * generation, incremented by each invalidation: a response built while its data was changed is never used.
+ *
+ * The packets of the responses are kept, not the encoded messages: the encoding depends on the client (framing,
+ * WebSocket, correlation ID).
+ */
+public final class ResponseCache
+{
+    static final int MAX_ENTRIES = 256;
+
+    static final String METRIC_HITS = "commands.cache.hits";
+    static final String METRIC_MISSES = "commands.cache.misses";
+
+    private static final String KEY_SEPARATOR = String.valueOf(MessageHandler.DELIMITER);
+
+    // Key: request code and parameters. Value: response, with the generation of the request code when it was built.
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    // Key: request code. Value: current generation of its responses.
+    private static final ConcurrentMap<String, AtomicLong> GENERATIONS = new ConcurrentHashMap<>();
+
+    /** Must not be instantiated. */
+    private ResponseCache()
+    {
+    }
+
+    /**
+     * @param requestCode   Request code.
+     * @param parameters    Parameters of the request.
+     *
+     * @return Packets of the (valid) cached response, or null if there is none.
+     */
+    public static String[] get(String requestCode, String[] parameters)
+    {
+        Entry entry = ENTRIES.get(toKey(requestCode, parameters));
+
+        if(entry == null || entry._generation != getGeneration(requestCode).get())
+        {
+            SmartMetrics.increment(METRIC_MISSES);
+            return null;
+        }
+
+        SmartMetrics.increment(METRIC_HITS);
+        return entry._packets;
+    }
+
+    /**
+     * To be called before building the response to a request.
+     *
+     * @param requestCode   Request code.
+     * @param parameters    Parameters of the request.
+     *
+     * @return Recording of the response, which caches it if its data did not change in the meantime.
+     */
+    public static Recording startRecording(String requestCode, String[] parameters)
+    {
+        return new Recording(requestCode, toKey(requestCode, parameters), getGeneration(requestCode).get());
+    }
+
+    /**
+     * Invalidate the cached responses to the given requests (their data changed).
+     *
+     * @param requestCodes Request codes.
+     */
+    public static void invalidate(String... requestCodes)
+    {
+        for(String requestCode : requestCodes)
+        {
+            getGeneration(requestCode).incrementAndGet();
+            ENTRIES.keySet().remove(requestCode);
+
+            for(String key : ENTRIES.keySet())
+            {
+                if(key.startsWith(requestCode + KEY_SEPARATOR))
+                {
+                    ENTRIES.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidate all the cached responses (i.e. the device or the database changed).
+     */
+    public static void invalidateAll()
+    {
+        for(AtomicLong generation : GENERATIONS.values())
+        {
+            generation.incrementAndGet();
+        }
+
+        ENTRIES.clear();
+    }
+
+    private static AtomicLong getGeneration(String requestCode)
+    {
+        AtomicLong generation = GENERATIONS.get(requestCode);
+
+        if(generation == null)
+        {
+            AtomicLong newGeneration = new AtomicLong();
+            generation = GENERATIONS.putIfAbsent(requestCode, newGeneration);
+            generation = generation == null ? newGeneration : generation;
+        }
+
+        return generation;
+    }
+
+    private static String toKey(String requestCode, String[] parameters)
+    {
+        if(parameters.length == 0)
+        {
+            return requestCode;
+        }
+
+        StringBuilder sb = new StringBuilder(requestCode);
+
+        for(String parameter : parameters)
+        {
+            sb.append(KEY_SEPARATOR).append(parameter);
+        }
+
+        return sb.toString();
+    }
+
+    /** Response with the generation of its request code. */
+    private static class Entry
+    {
+        private final String[] _packets;
+        private final long _generation;
+
+        private Entry(String[] packets, long generation)
+        {
+            _packets = packets;
+            _generation = generation;
+        }
+    }
+
+    /** Response of a request being built, cached once it is sent. */
+    public static final class Recording
+    {
+        private final String _requestCode;
+        private final String _key;
+        private final long _generation;
+        private volatile boolean _recorded;
+
+        private Recording(String requestCode, String key, long generation)
+        {
+            _requestCode = requestCode;
+            _key = key;
+            _generation = generation;
+        }
+
+        /**
+         * Cache the response, if it is a (successful) response to the request and if its data did not change since
+         * the recording started. Only the first response is cached.
+         *
+         * @param packets Packets of the response.
+         */
+        public void record(String[] packets)
+        {
+            if(_recorded || packets == null || packets.length == 0 || !_requestCode.equals(packets[0]))
+            {
+                return;
+            }
+
+            _recorded = true;
+
+            if(getGeneration(_requestCode).get() != _generation || ENTRIES.size() >= MAX_ENTRIES)
+            {
+                return;
+            }
+
+            ENTRIES.put(_key, new Entry(packets.clone(), _generation));
+        }
+    }
+}
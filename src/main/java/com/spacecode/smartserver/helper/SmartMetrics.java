@@ -0,0 +1,190 @@
+package com.spacecode.smartserver.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lightweight, in-memory registry of SmartServer's runtime metrics (counters, gauges and timers).
+ *
+ * Metrics are identified by a dotted name (i.e. "inventory.queue.depth") and can be read with {@link #snapshot()}.
+ */
+public final class SmartMetrics
+{
+    private static final ConcurrentMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Gauge> GAUGES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    /** Must not be instantiated. */
+    private SmartMetrics()
+    {
+    }
+
+    /**
+     * Add one to the given counter (created if it does not exist).
+     *
+     * @param name Name of the counter.
+     */
+    public static void increment(String name)
+    {
+        add(name, 1);
+    }
+
+    /**
+     * Add the given value to the given counter (created if it does not exist).
+     *
+     * @param name  Name of the counter.
+     * @param delta Value to be added.
+     */
+    public static void add(String name, long delta)
+    {
+        AtomicLong counter = COUNTERS.get(name);
+
+        if(counter == null)
+        {
+            AtomicLong newCounter = new AtomicLong();
+            counter = COUNTERS.putIfAbsent(name, newCounter);
+            counter = counter == null ? newCounter : counter;
+        }
+
+        counter.addAndGet(delta);
+    }
+
+    /**
+     * @param name Name of the counter.
+     *
+     * @return Current value of the counter (0 if it does not exist).
+     */
+    public static long getCounter(String name)
+    {
+        AtomicLong counter = COUNTERS.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Register a gauge: its value is read each time a snapshot is made. Replaces any gauge with the same name.
+     *
+     * @param name  Name of the gauge.
+     * @param gauge Provider of the current value.
+     */
+    public static void registerGauge(String name, Gauge gauge)
+    {
+        GAUGES.put(name, gauge);
+    }
+
+    /**
+     * Remove the counter, gauge or timer with the given name (i.e. metrics of a disconnected client).
+     *
+     * @param name Name of the metric.
+     */
+    public static void unregister(String name)
+    {
+        COUNTERS.remove(name);
+        GAUGES.remove(name);
+        TIMERS.remove(name);
+    }
+
+    /**
+     * Record a new duration for the given timer (created if it does not exist).
+     *
+     * @param name          Name of the timer.
+     * @param durationNanos Duration, in nanoseconds.
+     */
+    public static void recordTime(String name, long durationNanos)
+    {
+        Timer timer = TIMERS.get(name);
+
+        if(timer == null)
+        {
+            Timer newTimer = new Timer();
+            timer = TIMERS.putIfAbsent(name, newTimer);
+            timer = timer == null ? newTimer : timer;
+        }
+
+        timer.record(durationNanos);
+    }
+
+    /**
+     * @param name Name of the timer.
+     *
+     * @return Number of durations recorded by the timer (0 if it does not exist).
+     */
+    public static long getTimerCount(String name)
+    {
+        Timer timer = TIMERS.get(name);
+        return timer == null ? 0 : timer._count.get();
+    }
+
+    /**
+     * Take a snapshot of all metrics, sorted by name, formatted as "name=value".
+     * Timers provide three values: "[name].count", "[name].avg_ms" and "[name].max_ms".
+     *
+     * @return List of formatted metrics.
+     */
+    public static List<String> snapshot()
+    {
+        Map<String, Long> values = new TreeMap<>();
+
+        for(Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet())
+        {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+
+        for(Map.Entry<String, Gauge> entry : GAUGES.entrySet())
+        {
+            values.put(entry.getKey(), entry.getValue().getValue());
+        }
+
+        for(Map.Entry<String, Timer> entry : TIMERS.entrySet())
+        {
+            Timer timer = entry.getValue();
+            long count = timer._count.get();
+
+            values.put(entry.getKey() + ".count", count);
+            values.put(entry.getKey() + ".avg_ms",
+                    count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(timer._totalNanos.get() / count));
+            values.put(entry.getKey() + ".max_ms", TimeUnit.NANOSECONDS.toMillis(timer._maxNanos.get()));
+        }
+
+        List<String> result = new ArrayList<>();
+
+        for(Map.Entry<String, Long> entry : values.entrySet())
+        {
+            result.add(entry.getKey() + "=" + entry.getValue());
+        }
+
+        return result;
+    }
+
+    /** Provide the current value of a metric which is not incremented but read (i.e. size of a queue). */
+    public interface Gauge
+    {
+        long getValue();
+    }
+
+    /** Count, total and maximum of recorded durations. */
+    private static class Timer
+    {
+        private final AtomicLong _count = new AtomicLong();
+        private final AtomicLong _totalNanos = new AtomicLong();
+        private final AtomicLong _maxNanos = new AtomicLong();
+
+        private void record(long durationNanos)
+        {
+            _count.incrementAndGet();
+            _totalNanos.addAndGet(durationNanos);
+
+            long max = _maxNanos.get();
+
+            while(durationNanos > max && !_maxNanos.compareAndSet(max, durationNanos))
+            {
+                max = _maxNanos.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,642 @@
+package com.spacecode.smartserver.helper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.spacecode.sdk.device.data.DeviceStatus;
+import com.spacecode.sdk.device.data.Inventory;
+import com.spacecode.smartserver.React.*;
+import com.spacecode.smartserver.SmartServer;
+import io.socket.client.Ack;
+import io.socket.client.IO;
+import io.socket.client.Socket;
+import io.socket.emitter.Emitter;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.logging.Level;
+
+/**
+ * Bridge between SmartServer and the Socket.IO server ("app_url_socketio" property): answer its requests (devices,
+ * connection, scan, LEDs) and forward it the device events (scan started/completed, tag added).
+ *
+ * The payloads are built by {@link JsonPayloads}. The events are emitted through a {@link SocketIoOutbox}: batched, and
+ * kept while the link is down.
+ */
+public final class SocketIoBridge
+{
+    static final int DEFAULT_BATCH_DELAY_MS = 250;
+
+    private static Socket _socket;
+    private static SocketIoOutbox _outbox;
+
+    private static volatile boolean _licenseValidated = false;
+    private static volatile boolean _scanning = false;
+    private static volatile boolean _ledLighting = false;
+    private static volatile boolean _firstConnection = true;
+
+    /** Must not be instantiated. */
+    private SocketIoBridge()
+    {
+    }
+
+    /**
+     * Connect to the Socket.IO server, if any.
+     *
+     * @throws InterruptedException If interrupted while waiting for the connection.
+     */
+    public static void start() throws InterruptedException
+    {
+        String socketIoUrl = ConfManager.getAppUrlSocketIO();
+
+        if(socketIoUrl == null || socketIoUrl.isEmpty())
+        {
+            return;
+        }
+
+        SmartLogger.getLogger().info("Version 1.0.1");
+        SmartLogger.getLogger().info("Try Initialize socketIO on  : " + socketIoUrl);
+
+        IO.Options options = IO.Options.builder()
+                .setQuery("token : v3")
+                .setQuery("EIO=4")
+                .build();
+        _socket = IO.socket(URI.create(socketIoUrl), options);
+
+        int batchDelay = ConfManager.getAppSocketIoBatchDelay();
+        _outbox = new SocketIoOutbox(new SocketIoOutbox.Link()
+        {
+            @Override
+            public boolean isConnected()
+            {
+                return _socket.connected();
+            }
+
+            @Override
+            public void emit(String event, Object payload)
+            {
+                _socket.emit(event, payload);
+            }
+        }, new File(SmartServer.getWorkingDirectory() + SocketIoOutbox.SPOOL_FILENAME),
+                batchDelay >= 0 ? batchDelay : DEFAULT_BATCH_DELAY_MS);
+
+        addListeners();
+        _socket.connect();
+
+        DeviceEventBus.subscribe("socketio", new DeviceEventBus.Subscriber()
+        {
+            @Override
+            public void onEvent(DeviceEvent event)
+            {
+                forward(event);
+            }
+        });
+
+        Thread.sleep(1000);
+        emitConnection();
+        _socket.emit("getConnectedDevices", "sdsd");
+    }
+
+    /**
+     * Forward a device event to the Socket.IO server (if a license has been validated).
+     *
+     * @param event Device event, received from the {@link DeviceEventBus}.
+     */
+    private static void forward(DeviceEvent event)
+    {
+        if(!_licenseValidated)
+        {
+            return;
+        }
+
+        switch(event.getType())
+        {
+            case SCAN_STARTED:
+                SmartLogger.getLogger().info("Scan started ");
+                _scanning = true;
+
+                ackScanStarted ass = new ackScanStarted();
+                ass.msg = "Scan Started";
+                ass.sockectId = _socket.id();
+                emit("scanStarted", ackScanStarted.class, ass);
+                break;
+
+            case TAG_ADDED:
+                // continuous mode: the tags of each cycle are only sent with "scanCompleted"
+                if(ContinuousScan.isEnabled())
+                {
+                    break;
+                }
+
+                SmartLogger.getLogger().info("Tag Added  " + event.getText());
+
+                ackTagAdded ata = new ackTagAdded();
+                ata.str = "SERIAL-" + DeviceHandler.getDevice().getSerialNumber() + ", TAG-" + event.getText();
+                ata.socketId = _socket.id();
+                emit(SocketIoOutbox.ADD_TAG, ackTagAdded.class, ata);
+                break;
+
+            case STATUS_CHANGED:
+                SmartLogger.getLogger().info("Rfid Status  " + event.getStatus());
+                break;
+
+            case SCAN_COMPLETED:
+                SmartLogger.getLogger().info("Scan completed");
+                _scanning = false;
+
+                ackScanCompleted asc = new ackScanCompleted();
+                asc.status = true;
+                asc.message = "Scan Completed";
+                asc.tags = event.getInventory() == null
+                        ? new Object[0]
+                        : event.getInventory().getTagsAll().toArray();
+                asc.socketId = _socket.id();
+                emit("scanCompleted", ackScanCompleted.class, asc);
+                break;
+
+            default:
+                // not forwarded to the Socket.IO server
+                break;
+        }
+    }
+
+    private static void emitConnection()
+    {
+        connectionString connection = new connectionString();
+        connection.deviceType = "service";
+
+        JSONObject payload = toPayload(connectionString.class, connection);
+
+        if(payload == null)
+        {
+            return;
+        }
+
+        _socket.emit("connection", payload, new Ack()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("Socket connected");
+            }
+        });
+    }
+
+    private static <T> void emit(String event, Class<T> type, T dto)
+    {
+        JSONObject payload = toPayload(type, dto);
+
+        if(payload != null)
+        {
+            _outbox.send(event, payload);
+        }
+    }
+
+    /**
+     * Answer a request of the Socket.IO server.
+     *
+     * @param objects   Arguments of the request (the last one is its acknowledgement callback).
+     * @param type      DTO class of the answer.
+     * @param dto       Answer.
+     */
+    private static <T> void acknowledge(Object[] objects, Class<T> type, T dto)
+    {
+        JSONObject payload = toPayload(type, dto);
+
+        if(payload != null)
+        {
+            ((Ack) objects[1]).call(payload);
+        }
+    }
+
+    private static <T> JSONObject toPayload(Class<T> type, T dto)
+    {
+        try
+        {
+            JSONObject payload = JsonPayloads.write(type, dto);
+
+            if(SmartLogger.getLogger().isLoggable(Level.FINE))
+            {
+                SmartLogger.getLogger().fine("send  : " + payload);
+            }
+
+            return payload;
+        } catch(IOException ioe)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Unable to serialize Socket.IO payload.", ioe);
+            return null;
+        }
+    }
+
+    private static void addListeners()
+    {
+        _socket.on(Socket.EVENT_CONNECT, new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("Socket  Event CONNECT");
+
+                if(!_firstConnection)
+                {
+                    emitConnection();
+                }
+
+                else
+                {
+                    _firstConnection = false;
+                }
+
+                // events kept while the link was down (or by a previous run)
+                _outbox.replay();
+            }
+        });
+
+        _socket.on(Socket.EVENT_CONNECT_ERROR, new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("Socket  Event ERROR");
+            }
+        });
+
+        _socket.on(Socket.EVENT_DISCONNECT, new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                // the license remains valid: the events are kept until the link is up again
+                SmartLogger.getLogger().info("Socket  Event DISCONNECT");
+            }
+        });
+
+        _socket.on("connectToRoom", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("Connect to Room");
+            }
+        });
+
+        _socket.on("getConnectedDevices", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("getConnectedDevices: " + objects[0]);
+            }
+        });
+
+        _socket.on("getDevices", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("payload: " + objects[0]);
+                SmartLogger.getLogger().info("Fetching devices : ");
+
+                DeviceModel device = new DeviceModel();
+                device.socketId = _socket.id();
+                device.deviceId = DeviceHandler.getDevice().getSerialNumber();
+
+                ackGetDevices output = new ackGetDevices();
+                output.status = true;
+                output.message = "Device found";
+                output.devices = new Object[] { device };
+
+                acknowledge(objects, ackGetDevices.class, output);
+            }
+        });
+
+        _socket.on("connectDevice", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("connectDevice payload: " + objects[0]);
+                _licenseValidated = false;
+
+                try
+                {
+                    connectDeviceData cdd = JsonPayloads.read(objects[0], connectDeviceData.class);
+
+                    ackConnection ack = new ackConnection();
+                    ack.output = connectDevice(cdd);
+                    ack.payload = cdd.payload;
+                    acknowledge(objects, ackConnection.class, ack);
+                } catch(JsonProcessingException jpe)
+                {
+                    SmartLogger.getLogger().log(Level.SEVERE, "Invalid connectDevice payload.", jpe);
+                }
+            }
+        });
+
+        _socket.on("disconnectDevice", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("Disconnect payload: " + objects[0]);
+                _licenseValidated = false;
+
+                ackDeviceDisconnected adc = new ackDeviceDisconnected();
+                adc.status = true;
+                adc.socketId = _socket.id();
+                adc.deviceId = objects[0].toString();
+                adc.message = "Device disconnected";
+
+                acknowledge(objects, ackDeviceDisconnected.class, adc);
+            }
+        });
+
+        _socket.on("startScan", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("StartScan payload: " + objects[0]);
+
+                ackStartScan output = null;
+
+                try
+                {
+                    output = startScan(JsonPayloads.read(objects[0], StartScanData.class));
+                } catch(JsonProcessingException jpe)
+                {
+                    SmartLogger.getLogger().log(Level.SEVERE, "Invalid startScan payload.", jpe);
+                }
+
+                acknowledge(objects, ackStartScan.class, output);
+            }
+        });
+
+        _socket.on("stopScan", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("StopScan payload: " + objects[0]);
+
+                ackConnection2 ack = new ackConnection2();
+                ack.payload = objects[0].toString();
+
+                try
+                {
+                    ack.output = stopScan(JsonPayloads.read(objects[0], StopScanData.class));
+                } catch(JsonProcessingException | InterruptedException e)
+                {
+                    SmartLogger.getLogger().log(Level.SEVERE, "Unable to process stopScan.", e);
+                }
+
+                acknowledge(objects, ackConnection2.class, ack);
+            }
+        });
+
+        _socket.on("refreshTags", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("refreshTags payload: " + objects[0]);
+            }
+        });
+
+        _socket.on("connectionStatus", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("connectionStatus payload: " + objects[0]);
+            }
+        });
+
+        _socket.on("ledOn", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("Led on payload: " + objects[0]);
+
+                try
+                {
+                    ledOnData lod = JsonPayloads.read(objects[0], ledOnData.class);
+                    acknowledge(objects, ackLedOn.class, ledOn(lod));
+                } catch(JsonProcessingException jpe)
+                {
+                    SmartLogger.getLogger().log(Level.SEVERE, "Invalid ledOn payload.", jpe);
+                }
+            }
+        });
+
+        _socket.on("ledOff", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("led off payload: " + objects[0]);
+                acknowledge(objects, ackLedOn.class, ledOff());
+            }
+        });
+
+        _socket.on("oneTagScan", new Emitter.Listener()
+        {
+            @Override
+            public void call(Object... objects)
+            {
+                SmartLogger.getLogger().info("one tag scan payload: " + objects[0]);
+            }
+        });
+    }
+
+    /**
+     * Check the license of the device given by the Socket.IO server.
+     */
+    private static ackDeviceConnected connectDevice(connectDeviceData cdd)
+    {
+        // not an IP
+        if(cdd.deviceId.contains(":"))
+        {
+            return newDeviceConnected(false, "Device cannot be Ethernet");
+        }
+
+        SmartLogger.getLogger().info("Checking for serial number");
+
+        if(cdd.deviceLisences.length == 0)
+        {
+            return newDeviceConnected(false, "License not found.");
+        }
+
+        ackDeviceConnected output = null;
+
+        for(Devicelisence licInfo : cdd.deviceLisences)
+        {
+            if(!cdd.deviceId.equals(licInfo.serialNumber))
+            {
+                continue;
+            }
+
+            SimpleDateFormat parser = new SimpleDateFormat("MM/dd/yyyy");
+
+            try
+            {
+                Date start = parser.parse(licInfo.startLicenseDate);
+                Date end = parser.parse(licInfo.endLicenseDate);
+                Date today = new Date();
+
+                if(today.after(start) && today.before(end))
+                {
+                    _licenseValidated = true;
+                    output = newDeviceConnected(true, "Device Connected");
+                    output.deviceSerialNumber = cdd.deviceId;
+                }
+
+                else
+                {
+                    output = newDeviceConnected(false, "Selected device is not having license or may be expired");
+                }
+            } catch(ParseException pe)
+            {
+                SmartLogger.getLogger().log(Level.SEVERE, "Invalid license dates.", pe);
+                // a license was found, but is not valid
+                output = newDeviceConnected(false, "Selected device is not having license or may be expired");
+            }
+        }
+
+        return output == null ? newDeviceConnected(false, "Licence not found") : output;
+    }
+
+    private static ackDeviceConnected newDeviceConnected(boolean status, String message)
+    {
+        ackDeviceConnected output = new ackDeviceConnected();
+        output.status = status;
+        output.message = message;
+        return output;
+    }
+
+    private static ackStartScan startScan(StartScanData ssd)
+    {
+        ackStartScan output = new ackStartScan();
+
+        if(!ssd.deviceId.equals(DeviceHandler.getDevice().getSerialNumber()))
+        {
+            output.message = "Invalid Device Serial";
+        }
+
+        else if(!_licenseValidated)
+        {
+            output.message = "Invalid License";
+        }
+
+        else if(DeviceHandler.getDevice().getStatus() == DeviceStatus.READY ||
+                DeviceHandler.getDevice().getStatus() == DeviceStatus.LED_ON)
+        {
+            if("continuous".equals(ssd.scanMode))
+            {
+                ContinuousScan.start();
+            }
+
+            else
+            {
+                DeviceHandler.getDevice().requestScan();
+            }
+
+            output.status = true;
+            output.message = "Success";
+        }
+
+        else
+        {
+            output.message = "Device not ready";
+        }
+
+        return output;
+    }
+
+    private static ackStopScan stopScan(StopScanData ssd) throws InterruptedException
+    {
+        ackStopScan output = new ackStopScan();
+        output.deviceSerialNumber = DeviceHandler.getDevice().getSerialNumber();
+
+        if(!ssd.deviceId.equals(output.deviceSerialNumber))
+        {
+            output.message = "Invalid Device Serial";
+        }
+
+        else if(!_licenseValidated)
+        {
+            output.message = "Invalid License";
+        }
+
+        else
+        {
+            ContinuousScan.stop();
+
+            if(DeviceHandler.getDevice().getStatus() == DeviceStatus.SCANNING)
+            {
+                DeviceHandler.getDevice().stopScan();
+                Thread.sleep(1000);
+            }
+
+            Inventory lastInventory = LatestInventory.get().getInventory();
+            output.status = true;
+            output.message = "Scan stopped";
+            output.tags = lastInventory == null ? new Object[0] : lastInventory.getTagsAll().toArray();
+        }
+
+        return output;
+    }
+
+    private static ackLedOn ledOn(ledOnData lod)
+    {
+        if(!_licenseValidated)
+        {
+            return newLedAck(false, "Invalid License");
+        }
+
+        if(!lod.deviceId.equals(DeviceHandler.getDevice().getSerialNumber()))
+        {
+            return newLedAck(false, "Invalid Serial Number");
+        }
+
+        if(_ledLighting)
+        {
+            return newLedAck(false, "LED Already lighting");
+        }
+
+        _ledLighting = true;
+        boolean ret = DeviceHandler.getDevice().startLightingTagsLed(new ArrayList<>(Arrays.asList(lod.list)));
+        return newLedAck(ret, ret ? "Led turned On" : "Unable to turn on LED");
+    }
+
+    private static ackLedOn ledOff()
+    {
+        if(!_licenseValidated)
+        {
+            return newLedAck(false, "Invalid License");
+        }
+
+        if(!_ledLighting)
+        {
+            return newLedAck(false, "LED Already stopped");
+        }
+
+        _ledLighting = false;
+        boolean ret = DeviceHandler.getDevice().stopLightingTagsLed();
+        return newLedAck(ret, ret ? "Led turned Off" : "Unable to turn off LED");
+    }
+
+    private static ackLedOn newLedAck(boolean status, String message)
+    {
+        ackLedOn ack = new ackLedOn();
+        ack.status = status;
+        ack.message = message;
+        return ack;
+    }
+}
@@ -0,0 +1,419 @@
+package com.spacecode.smartserver.helper;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Outbound queue of the events sent to the Socket.IO server (store and forward).
+ *
+ * The events are emitted, in order, by a single thread: the device threads are never blocked by the link. The "tag
+ * added" events are emitted by batches ({@link #ADD_TAGS}, an array of "addTag" payloads), a batch being emitted when
+ * it is full, when its delay has passed, or before any other event. While the link is down, the events are appended to
+ * a spool file, replayed in order (see {@link #replay()}) once the link is up again, before any new event.
+ *
+ * The queue and the spool file are bounded: the events exceeding them are dropped (and counted).
+ */
+final class SocketIoOutbox
+{
+    /** Event of a "tag added", emitted alone. */
+    static final String ADD_TAG = "addTag";
+
+    /** Event of a batch of "tag added" (array of {@link #ADD_TAG} payloads). */
+    static final String ADD_TAGS = "addTags";
+
+    static final String SPOOL_FILENAME = "socketio_outbox.spool";
+
+    static final int MAX_QUEUED = 10000;
+    static final int MAX_TAG_BATCH = 200;
+    static final long MAX_SPOOL_BYTES = 8 * 1024 * 1024;
+
+    static final String METRIC_DEPTH = "socketio.outbox.depth";
+    static final String METRIC_SPOOLED = "socketio.outbox.spooled";
+    static final String METRIC_DROPPED = "socketio.outbox.dropped";
+    static final String METRIC_REPLAY_LATENCY = "socketio.outbox.replay_latency";
+
+    private static final char FIELD_SEPARATOR = '\t';
+
+    private final Link _link;
+    private final File _spoolFile;
+    private final int _batchDelay;
+    private final ScheduledExecutorService _executor;
+
+    // events submitted to the executor and not processed yet
+    private final AtomicInteger _queued = new AtomicInteger();
+
+    // only used by the executor thread
+    private final List<Object> _pendingTags = new ArrayList<>();
+    private Writer _spoolWriter;
+
+    // events in the spool file
+    private volatile int _spooled;
+
+    /**
+     * @param link          Socket.IO link.
+     * @param spoolFile     File where the events are stored while the link is down (events left by a previous run are
+     *                      replayed).
+     * @param batchDelay    Maximum delay (ms) before a batch of "tag added" events is emitted (0: no batch).
+     */
+    SocketIoOutbox(Link link, File spoolFile, int batchDelay)
+    {
+        _link = link;
+        _spoolFile = spoolFile;
+        _batchDelay = batchDelay;
+        _executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("socketio-outbox", true));
+        _spooled = countSpooledEvents();
+
+        SmartMetrics.registerGauge(METRIC_DEPTH, new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return _queued.get();
+            }
+        });
+
+        SmartMetrics.registerGauge(METRIC_SPOOLED, new SmartMetrics.Gauge()
+        {
+            @Override
+            public long getValue()
+            {
+                return _spooled;
+            }
+        });
+    }
+
+    /**
+     * Queue an event, to be emitted as soon as possible (or spooled while the link is down).
+     *
+     * @param event     Name of the event.
+     * @param payload   Payload of the event.
+     */
+    void send(final String event, final JSONObject payload)
+    {
+        if(_queued.incrementAndGet() > MAX_QUEUED)
+        {
+            _queued.decrementAndGet();
+            SmartMetrics.increment(METRIC_DROPPED);
+            return;
+        }
+
+        try
+        {
+            _executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    _queued.decrementAndGet();
+
+                    if(ADD_TAG.equals(event))
+                    {
+                        addTag(payload);
+                    }
+
+                    else
+                    {
+                        // the tags added before the event are emitted first
+                        flushTags();
+                        deliver(event, payload, System.currentTimeMillis());
+                    }
+                }
+            });
+        } catch(RejectedExecutionException ree)
+        {
+            _queued.decrementAndGet();
+            SmartMetrics.increment(METRIC_DROPPED);
+        }
+    }
+
+    /**
+     * Emit the spooled events, in order. To be called when the link is up again: the events queued meanwhile are
+     * emitted after them.
+     */
+    void replay()
+    {
+        try
+        {
+            _executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    replaySpool();
+                }
+            });
+        } catch(RejectedExecutionException ree)
+        {
+            SmartLogger.getLogger().warning("Socket.IO outbox stopped: events not replayed.");
+        }
+    }
+
+    /**
+     * Wait for the events queued so far to be processed (the pending batch of tags is not emitted).
+     *
+     * @throws Exception If interrupted, or if the outbox is stopped.
+     */
+    void sync() throws Exception
+    {
+        _executor.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call()
+            {
+                return null;
+            }
+        }).get();
+    }
+
+    /**
+     * Stop the thread emitting the events. The spooled events are kept for the next run.
+     */
+    void stop()
+    {
+        _executor.shutdownNow();
+        SmartMetrics.unregister(METRIC_DEPTH);
+        SmartMetrics.unregister(METRIC_SPOOLED);
+    }
+
+    private void addTag(JSONObject payload)
+    {
+        _pendingTags.add(payload);
+
+        if(_pendingTags.size() >= MAX_TAG_BATCH || _batchDelay <= 0)
+        {
+            flushTags();
+        }
+
+        else if(_pendingTags.size() == 1)
+        {
+            _executor.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    flushTags();
+                }
+            }, _batchDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushTags()
+    {
+        if(_pendingTags.isEmpty())
+        {
+            return;
+        }
+
+        if(_pendingTags.size() == 1)
+        {
+            deliver(ADD_TAG, _pendingTags.get(0), System.currentTimeMillis());
+        }
+
+        else
+        {
+            deliver(ADD_TAGS, new JSONArray(_pendingTags), System.currentTimeMillis());
+        }
+
+        _pendingTags.clear();
+    }
+
+    private void deliver(String event, Object payload, long timestamp)
+    {
+        // the spooled events have to be emitted first
+        if(_spooled == 0 && _link.isConnected())
+        {
+            _link.emit(event, payload);
+            return;
+        }
+
+        spool(event, payload, timestamp);
+    }
+
+    private void spool(String event, Object payload, long timestamp)
+    {
+        if(_spoolFile.length() >= MAX_SPOOL_BYTES)
+        {
+            SmartMetrics.increment(METRIC_DROPPED);
+            return;
+        }
+
+        try
+        {
+            if(_spoolWriter == null)
+            {
+                _spoolWriter = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(_spoolFile, true), StandardCharsets.UTF_8));
+            }
+
+            // the JSON text is escaped: no tabulation, no new line
+            _spoolWriter.write(event + FIELD_SEPARATOR + timestamp + FIELD_SEPARATOR + payload + '\n');
+            _spoolWriter.flush();
+            ++_spooled;
+        } catch(IOException ioe)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Unable to spool Socket.IO event " + event, ioe);
+            SmartMetrics.increment(METRIC_DROPPED);
+        }
+    }
+
+    private void replaySpool()
+    {
+        closeSpoolWriter();
+
+        if(!_spoolFile.exists())
+        {
+            _spooled = 0;
+            return;
+        }
+
+        List<String> lines = readSpool();
+        int replayed = 0;
+
+        for(String line : lines)
+        {
+            // link down again: the others are kept for the next replay
+            if(!_link.isConnected())
+            {
+                break;
+            }
+
+            ++replayed;
+
+            int eventEnd = line.indexOf(FIELD_SEPARATOR);
+            int timestampEnd = line.indexOf(FIELD_SEPARATOR, eventEnd + 1);
+
+            if(eventEnd == -1 || timestampEnd == -1)
+            {
+                SmartLogger.getLogger().warning("Invalid spooled Socket.IO event: " + line);
+                continue;
+            }
+
+            String payload = line.substring(timestampEnd + 1);
+
+            try
+            {
+                long timestamp = Long.parseLong(line.substring(eventEnd + 1, timestampEnd));
+
+                _link.emit(line.substring(0, eventEnd),
+                        payload.startsWith("[") ? new JSONArray(payload) : new JSONObject(payload));
+                SmartMetrics.recordTime(METRIC_REPLAY_LATENCY,
+                        TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - timestamp));
+            } catch(JSONException | NumberFormatException e)
+            {
+                SmartLogger.getLogger().log(Level.WARNING, "Invalid spooled Socket.IO event: " + line, e);
+            }
+        }
+
+        rewriteSpool(lines.subList(replayed, lines.size()));
+    }
+
+    private List<String> readSpool()
+    {
+        List<String> lines = new ArrayList<>();
+
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(_spoolFile), StandardCharsets.UTF_8)))
+        {
+            String line;
+
+            while((line = reader.readLine()) != null)
+            {
+                if(!line.isEmpty())
+                {
+                    lines.add(line);
+                }
+            }
+        } catch(IOException ioe)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Unable to read the Socket.IO spool file.", ioe);
+        }
+
+        return lines;
+    }
+
+    private void rewriteSpool(List<String> lines)
+    {
+        if(lines.isEmpty())
+        {
+            if(!_spoolFile.delete() && _spoolFile.exists())
+            {
+                SmartLogger.getLogger().warning("Unable to delete the Socket.IO spool file.");
+            }
+
+            _spooled = 0;
+            return;
+        }
+
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(_spoolFile, false), StandardCharsets.UTF_8)))
+        {
+            for(String line : lines)
+            {
+                writer.write(line + '\n');
+            }
+        } catch(IOException ioe)
+        {
+            SmartLogger.getLogger().log(Level.SEVERE, "Unable to rewrite the Socket.IO spool file.", ioe);
+        }
+
+        _spooled = lines.size();
+    }
+
+    private void closeSpoolWriter()
+    {
+        if(_spoolWriter == null)
+        {
+            return;
+        }
+
+        try
+        {
+            _spoolWriter.close();
+        } catch(IOException ioe)
+        {
+            SmartLogger.getLogger().log(Level.WARNING, "Unable to close the Socket.IO spool file.", ioe);
+        }
+
+        _spoolWriter = null;
+    }
+
+    private int countSpooledEvents()
+    {
+        return _spoolFile.exists() ? readSpool().size() : 0;
+    }
+
+    /** Link to the Socket.IO server. */
+    interface Link
+    {
+        /** @return True if the events can be emitted. */
+        boolean isConnected();
+
+        /**
+         * @param event     Name of the event.
+         * @param payload   JSONObject or JSONArray.
+         */
+        void emit(String event, Object payload);
+    }
+}
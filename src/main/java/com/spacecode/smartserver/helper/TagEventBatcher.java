@@ -0,0 +1,233 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.network.communication.EventCode;
+import com.spacecode.smartserver.SmartServer;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batches of "tag added" events, for the clients which asked for them (see {@link #setBatching(Channel, boolean)}).
+ *
+ * During a scan, the other clients receive one {@link EventCode#TAG_ADDED} event per tag, as before. The batching
+ * clients receive {@link #TAGS_ADDED} events, carrying the UIDs of the tags added since the previous batch. A batch is
+ * sent when it is full, when its delay has passed, or before any event ending the scan.
+ *
+ * Has to be started to delay the batches. Otherwise (i.e. unit tests), each batch is sent with its first tag.
+ */
+public final class TagEventBatcher
+{
+    /** Event code of a batch: [TAGS_ADDED, UID1, UID2, ...]. */
+    public static final String TAGS_ADDED = "event_tags_added";
+
+    static final int DEFAULT_BATCH_SIZE = 200;
+    static final int DEFAULT_BATCH_DELAY_MS = 250;
+
+    /** Set on the channels of the clients which want to receive the batches. */
+    private static final AttributeKey<Boolean> BATCHING = AttributeKey.valueOf("smartserver.events.batching");
+
+    /** Select the channels receiving the batches. */
+    public static final ChannelMatcher BATCHING_CHANNELS = new ChannelMatcher()
+    {
+        @Override
+        public boolean matches(Channel channel)
+        {
+            return isBatching(channel);
+        }
+    };
+
+    /** Select the channels receiving one event per tag. */
+    public static final ChannelMatcher SINGLE_EVENT_CHANNELS = new ChannelMatcher()
+    {
+        @Override
+        public boolean matches(Channel channel)
+        {
+            return !isBatching(channel);
+        }
+    };
+
+    // number of connected channels receiving the batches
+    private static final AtomicInteger BATCHING_CHANNELS_COUNT = new AtomicInteger();
+
+    private static final List<String> PENDING_TAGS = new ArrayList<>();
+
+    private static int _batchSize = DEFAULT_BATCH_SIZE;
+    private static int _batchDelay = DEFAULT_BATCH_DELAY_MS;
+    private static volatile ScheduledExecutorService _scheduler = null;
+
+    /** Must not be instantiated. */
+    private TagEventBatcher()
+    {
+    }
+
+    /**
+     * Read the size and delay of the batches (configuration file) and start the thread sending the delayed batches.
+     */
+    public static synchronized void start()
+    {
+        if(_scheduler != null)
+        {
+            return;
+        }
+
+        int batchSize = ConfManager.getAppTagBatchSize();
+        int batchDelay = ConfManager.getAppTagBatchDelay();
+
+        _batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        _batchDelay = batchDelay > 0 ? batchDelay : DEFAULT_BATCH_DELAY_MS;
+        _scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("tag-events", true));
+    }
+
+    /**
+     * Send the pending batch (if any) and stop the thread.
+     */
+    public static synchronized void stop()
+    {
+        if(_scheduler == null)
+        {
+            return;
+        }
+
+        flush();
+        _scheduler.shutdownNow();
+        _scheduler = null;
+    }
+
+    /**
+     * Enable or disable the batches of "tag added" events for a client.
+     *
+     * @param channel Channel of the client.
+     * @param state   If true, the client receives batches instead of one event per tag.
+     *
+     * @return True if the state of the client changed.
+     */
+    public static boolean setBatching(final Channel channel, boolean state)
+    {
+        Boolean previous = channel.attr(BATCHING).getAndSet(state);
+
+        if(state == (previous != null && previous))
+        {
+            return false;
+        }
+
+        if(!state)
+        {
+            BATCHING_CHANNELS_COUNT.decrementAndGet();
+            return true;
+        }
+
+        BATCHING_CHANNELS_COUNT.incrementAndGet();
+        channel.closeFuture().addListener(new ChannelFutureListener()
+        {
+            @Override
+            public void operationComplete(ChannelFuture future)
+            {
+                // the client may have disabled the batches before leaving
+                if(Boolean.TRUE.equals(channel.attr(BATCHING).getAndSet(false)))
+                {
+                    BATCHING_CHANNELS_COUNT.decrementAndGet();
+                }
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * @param channel Channel of a client.
+     *
+     * @return True if the client receives batches of "tag added" events.
+     */
+    public static boolean isBatching(Channel channel)
+    {
+        return channel != null && Boolean.TRUE.equals(channel.attr(BATCHING).get());
+    }
+
+    /**
+     * Notify the clients of a new tag: immediately for the clients receiving one event per tag, with the next batch
+     * for the others.
+     *
+     * @param tagUid UID of the new tag.
+     */
+    public static void tagAdded(String tagUid)
+    {
+        if(BATCHING_CHANNELS_COUNT.get() == 0)
+        {
+            SmartServer.sendAllClients(EventCode.TAG_ADDED, tagUid);
+            return;
+        }
+
+        SmartServer.sendAllClients(SINGLE_EVENT_CHANNELS, EventCode.TAG_ADDED, tagUid);
+
+        ScheduledExecutorService scheduler = _scheduler;
+
+        synchronized(PENDING_TAGS)
+        {
+            PENDING_TAGS.add(tagUid);
+
+            if(PENDING_TAGS.size() >= _batchSize || scheduler == null)
+            {
+                flush();
+            }
+
+            else if(PENDING_TAGS.size() == 1)
+            {
+                scheduleFlush(scheduler);
+            }
+        }
+    }
+
+    /**
+     * Send the pending batch (if any) to the batching clients. Must be called before any event ending a scan, for the
+     * clients to receive all the tags first.
+     */
+    public static void flush()
+    {
+        synchronized(PENDING_TAGS)
+        {
+            if(PENDING_TAGS.isEmpty())
+            {
+                return;
+            }
+
+            List<String> packets = new ArrayList<>(PENDING_TAGS.size() + 1);
+            packets.add(TAGS_ADDED);
+            packets.addAll(PENDING_TAGS);
+            PENDING_TAGS.clear();
+
+            // sent while holding the lock: batches are written in order
+            SmartServer.sendAllClients(BATCHING_CHANNELS, packets.toArray(new String[packets.size()]));
+            SmartMetrics.increment("events.tags_added.batches");
+        }
+    }
+
+    private static void scheduleFlush(ScheduledExecutorService scheduler)
+    {
+        try
+        {
+            scheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    flush();
+                }
+            }, _batchDelay, TimeUnit.MILLISECONDS);
+        } catch(RejectedExecutionException ree)
+        {
+            // scheduler stopped: no more delay
+            flush();
+        }
+    }
+}
@@ -44,7 +44,7 @@ public class TemperatureCenter
         }
         
         // listen for temperature events
-        DeviceHandler.getDevice().addListener(new TemperatureMeasureHandler());
+        DeviceEventBus.subscribe("temperature", new TemperatureMeasureHandler());
         
         // set up a timer to force recording at least one measure every DELAY_MS_FORCE_MEASURE milliseconds
         _measurementTimer = new Timer();
@@ -0,0 +1,178 @@
+package com.spacecode.smartserver;
+
+import com.spacecode.sdk.network.communication.EventCode;
+import com.spacecode.sdk.network.communication.MessageHandler;
+import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+/**
+ * JUnit "OutboundPolicyHandler" testing class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ SmartServer.class, SmartLogger.class })
+public class OutboundPolicyHandlerTest
+{
+    // the channel is not writable anymore after 20 bytes, and writable again under 10 bytes
+    private static final int LOW_WATERMARK = 10;
+    private static final int HIGH_WATERMARK = 20;
+    private static final int LIMIT = 40;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mockStatic(SmartServer.class);
+        mockStatic(SmartLogger.class);
+        doReturn(PowerMockito.mock(SmartLogger.class)).when(SmartLogger.class, "getLogger");
+    }
+
+    @Test
+    public void testPolicyFromName()
+    {
+        assertEquals(OutboundPolicyHandler.Policy.COALESCE, OutboundPolicyHandler.Policy.fromName(" coalesce"));
+        assertEquals(OutboundPolicyHandler.Policy.DISCONNECT, OutboundPolicyHandler.Policy.fromName("DISCONNECT"));
+        assertEquals(OutboundPolicyHandler.Policy.DROP, OutboundPolicyHandler.Policy.fromName(null));
+        assertEquals(OutboundPolicyHandler.Policy.DROP, OutboundPolicyHandler.Policy.fromName("unknown"));
+    }
+
+    @Test
+    public void testDrop()
+    {
+        OutboundPolicyHandler handler = newHandler(OutboundPolicyHandler.Policy.DROP);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        long droppedBefore = SmartMetrics.getCounter(OutboundPolicyHandler.METRIC_DROPPED);
+
+        // not flushed: the events stay in the outbound buffer, as if the client did not read them
+        channel.write(event(EventCode.TAG_ADDED, "0123456789"));
+        assertFalse(channel.isWritable());
+        assertTrue(handler.getQueuedBytes() > HIGH_WATERMARK);
+
+        ByteBuf dropped = event(EventCode.TAG_ADDED, "9876543210");
+        ChannelFuture future = channel.write(dropped);
+        assertFalse(future.isSuccess());
+        assertEquals(0, dropped.refCnt());
+        assertEquals(1, handler.getDroppedEvents());
+        assertEquals(droppedBefore + 1, SmartMetrics.getCounter(OutboundPolicyHandler.METRIC_DROPPED));
+
+        channel.flush();
+        assertTrue(channel.isWritable());
+        assertEquals(1, releaseOutbound(channel));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testCoalesce()
+    {
+        OutboundPolicyHandler handler = newHandler(OutboundPolicyHandler.Policy.COALESCE);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        channel.write(event(EventCode.TAG_ADDED, "0123456789"));
+        assertFalse(channel.isWritable());
+
+        // only the last status event is kept, other events are queued (under the limit)
+        ByteBuf firstStatus = event(EventCode.STATUS_CHANGED, "SCANNING");
+        channel.write(firstStatus);
+        channel.write(event(EventCode.STATUS_CHANGED, "READY"));
+        channel.write(event(EventCode.SCAN_COMPLETED));
+
+        assertEquals(0, firstStatus.refCnt());
+        assertEquals(0, handler.getDroppedEvents());
+
+        // the client reads: the last status is written once the channel is writable again
+        channel.flush();
+        assertTrue(channel.isWritable());
+
+        assertEquals(EventCode.TAG_ADDED + MessageHandler.DELIMITER + "0123456789" + MessageHandler.END_OF_MESSAGE,
+                readOutbound(channel));
+        assertEquals(EventCode.SCAN_COMPLETED + MessageHandler.END_OF_MESSAGE, readOutbound(channel));
+        assertEquals(EventCode.STATUS_CHANGED + MessageHandler.DELIMITER + "READY" + MessageHandler.END_OF_MESSAGE,
+                readOutbound(channel));
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDisconnect()
+    {
+        OutboundPolicyHandler handler = newHandler(OutboundPolicyHandler.Policy.DISCONNECT);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        // events are queued until the limit is reached
+        channel.write(event(EventCode.TAG_ADDED, "0123456789"));
+        assertFalse(channel.isWritable());
+        channel.write(event(EventCode.TAG_ADDED, "0123456789"));
+        assertTrue(channel.isOpen());
+        assertTrue(handler.getQueuedBytes() >= LIMIT);
+
+        channel.write(event(EventCode.TAG_ADDED, "0123456789"));
+
+        assertFalse(channel.isOpen());
+        assertEquals(1, handler.getDroppedEvents());
+        channel.finish();
+        releaseOutbound(channel);
+    }
+
+    @Test
+    public void testResponsesAreNotDropped()
+    {
+        OutboundPolicyHandler handler = newHandler(OutboundPolicyHandler.Policy.DROP);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        channel.write(event(EventCode.TAG_ADDED, "0123456789"));
+        assertFalse(channel.isWritable());
+
+        // a response is written by the context of the request handler, which is before the policy handler
+        channel.pipeline().firstContext().write(event("response"));
+        channel.flush();
+
+        assertEquals(2, releaseOutbound(channel));
+        assertEquals(0, handler.getDroppedEvents());
+        assertFalse(channel.finish());
+    }
+
+    private static OutboundPolicyHandler newHandler(OutboundPolicyHandler.Policy policy)
+    {
+        return new OutboundPolicyHandler(policy, LOW_WATERMARK, HIGH_WATERMARK, LIMIT);
+    }
+
+    private static ByteBuf event(String... packets)
+    {
+        return Unpooled.copiedBuffer(MessageHandler.packetsToFullMessage(packets), CharsetUtil.UTF_8);
+    }
+
+    private static String readOutbound(EmbeddedChannel channel)
+    {
+        ByteBuf message = (ByteBuf) channel.readOutbound();
+        String result = message.toString(CharsetUtil.UTF_8);
+        message.release();
+        return result;
+    }
+
+    private static int releaseOutbound(EmbeddedChannel channel)
+    {
+        int count = 0;
+        ByteBuf message;
+
+        while((message = (ByteBuf) channel.readOutbound()) != null)
+        {
+            message.release();
+            ++count;
+        }
+
+        return count;
+    }
+}
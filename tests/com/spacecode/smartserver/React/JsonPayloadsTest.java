@@ -0,0 +1,66 @@
+package com.spacecode.smartserver.React;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JUnit "JsonPayloads" testing class.
+ */
+public class JsonPayloadsTest
+{
+    @Test
+    public void testWriteMatchesParsedJson() throws Exception
+    {
+        ackStopScan output = new ackStopScan();
+        output.status = true;
+        output.message = "Scan stopped";
+        output.tags = new Object[] { "3000000001", "3000000002" };
+
+        ackConnection2 ack = new ackConnection2();
+        ack.output = output;
+
+        JSONObject payload = JsonPayloads.write(ackConnection2.class, ack);
+        // what the former implementation built: serialized to a String, then parsed
+        JSONObject parsed = new JSONObject(new ObjectMapper().writeValueAsString(ack));
+
+        assertEquals(parsed.toString(), payload.toString());
+        assertTrue(payload.isNull("payload"));
+
+        JSONArray tags = payload.getJSONObject("output").getJSONArray("tags");
+        assertEquals(2, tags.length());
+        assertEquals("3000000002", tags.getString(1));
+        assertEquals(Boolean.TRUE, payload.getJSONObject("output").get("status"));
+    }
+
+    @Test
+    public void testWriteAnonymousSubclassAsDto() throws Exception
+    {
+        ackLedOn ack = new ackLedOn()
+        {
+            {
+                status = false;
+                message = "Invalid License";
+            }
+        };
+
+        JSONObject payload = JsonPayloads.write(ackLedOn.class, ack);
+
+        assertEquals(Boolean.FALSE, payload.get("status"));
+        assertEquals("Invalid License", payload.getString("message"));
+    }
+
+    @Test
+    public void testRead() throws Exception
+    {
+        ledOnData lod = JsonPayloads.read(new JSONObject("{\"deviceId\":\"AA77\",\"list\":[\"1\",\"2\"]}"),
+                ledOnData.class);
+
+        assertEquals("AA77", lod.deviceId);
+        assertEquals(2, lod.list.length);
+    }
+}
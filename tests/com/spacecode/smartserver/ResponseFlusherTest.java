@@ -0,0 +1,41 @@
+package com.spacecode.smartserver;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * JUnit "ResponseFlusher" testing class.
+ */
+public class ResponseFlusherTest
+{
+    @Test
+    public void testOneFlushForSeveralResponses()
+    {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ChannelHandlerContext ctx = channel.pipeline().firstContext();
+
+        ResponseFlusher.write(ctx, "response1");
+        ResponseFlusher.write(ctx, "response2");
+
+        // written, not flushed yet
+        assertNull(channel.readOutbound());
+
+        channel.runPendingTasks();
+
+        assertEquals("response1", channel.readOutbound());
+        assertEquals("response2", channel.readOutbound());
+
+        // a new flush is scheduled for the next responses
+        ResponseFlusher.write(ctx, "response3");
+        channel.runPendingTasks();
+
+        assertEquals("response3", channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+}
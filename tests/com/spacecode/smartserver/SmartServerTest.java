@@ -6,16 +6,22 @@ import com.spacecode.sdk.network.communication.MessageHandler;
 import com.spacecode.sdk.network.communication.RequestCode;
 import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.helper.*;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.ChannelGroupFuture;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.channel.group.ChannelMatchers;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.CharsetUtil;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -287,11 +293,19 @@ public class SmartServerTest
         doReturn(cgf).when(tcpIpGroup).write(anyString());
 
         when(SmartServer.class, "sendAllClients", anyString(), anyString()).thenCallRealMethod();
+        doCallRealMethod().when(SmartServer.class);
+        SmartServer.sendAllClients(any(ChannelMatcher.class), Matchers.<String>anyVararg());
+        when(SmartServer.class, "withFraming", any(ChannelMatcher.class), any(ChannelMatcher.class))
+                .thenCallRealMethod();
+        when(SmartServer.class, "write", any(ChannelMatcher.class), any(String[].class), anyString())
+                .thenCallRealMethod();
 
         assertNull(SmartServer.sendAllClients((String) null));
         assertNull(SmartServer.sendAllClients(EventCode.ENROLLMENT_SAMPLE, null));
         verify(tcpIpGroup, never()).write(anyString());
-        verify(webSocketGroup, never()).write(anyString());
+        verify(tcpIpGroup, never()).write(any(), any(ChannelMatcher.class));
+        verify(webSocketGroup, never()).write(any());
+        verify(webSocketGroup, never()).write(any(), any(ChannelMatcher.class));
     }
 
     @Test
@@ -303,18 +317,38 @@ public class SmartServerTest
         Whitebox.setInternalState(SmartServer.class, "TCP_IP_CHAN_GROUP", tcpIpGroup);
 
         ChannelGroupFuture cgf = PowerMockito.mock(ChannelGroupFuture.class);
-        doReturn(cgf).when(tcpIpGroup).write(anyString());
+        doReturn(cgf).when(tcpIpGroup).write(any(ByteBuf.class), any(ChannelMatcher.class));
 
         when(SmartServer.class, "sendAllClients", anyString(), anyString()).thenCallRealMethod();
+        doCallRealMethod().when(SmartServer.class);
+        SmartServer.sendAllClients(any(ChannelMatcher.class), Matchers.<String>anyVararg());
+        when(SmartServer.class, "withFraming", any(ChannelMatcher.class), any(ChannelMatcher.class))
+                .thenCallRealMethod();
+        when(SmartServer.class, "write", any(ChannelMatcher.class), any(String[].class), anyString())
+                .thenCallRealMethod();
 
         assertNotNull(SmartServer.sendAllClients(EventCode.TEMPERATURE_MEASURE, "4.5"));
-        verify(tcpIpGroup).write(EventCode.TEMPERATURE_MEASURE +
+
+        String expected = EventCode.TEMPERATURE_MEASURE +
                 MessageHandler.DELIMITER +
                 "4.5" +
-                MessageHandler.END_OF_MESSAGE);
-        verify(webSocketGroup).write(any(TextWebSocketFrame.class));
+                MessageHandler.END_OF_MESSAGE;
+
+        // the message is encoded once, and sent to the channels using the legacy (EOT-delimited) framing
+        ArgumentCaptor<ByteBuf> tcpIpMessage = ArgumentCaptor.forClass(ByteBuf.class);
+        verify(tcpIpGroup).write(tcpIpMessage.capture(), eq(TcpFraming.LEGACY_CHANNELS));
+        assertEquals(expected, tcpIpMessage.getValue().toString(CharsetUtil.UTF_8));
+
+        // the WebSocket frame shares the same buffer
+        ArgumentCaptor<TextWebSocketFrame> wsMessage = ArgumentCaptor.forClass(TextWebSocketFrame.class);
+        verify(webSocketGroup).write(wsMessage.capture(), eq(ChannelMatchers.all()));
+        assertEquals(expected, wsMessage.getValue().text());
+        assertEquals(2, wsMessage.getValue().refCnt());
+
+        tcpIpMessage.getValue().release();
+        wsMessage.getValue().release();
 
-        verify(tcpIpGroup).flush();
-        verify(webSocketGroup).flush();
+        verify(tcpIpGroup).flush(ChannelMatchers.all());
+        verify(webSocketGroup).flush(ChannelMatchers.all());
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.spacecode.smartserver;
+
+import com.spacecode.sdk.network.communication.MessageHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit "TcpFraming" testing class.
+ */
+public class TcpFramingTest
+{
+    @Test
+    public void testLegacyFraming()
+    {
+        EmbeddedChannel channel = new EmbeddedChannel(new TcpFraming.Negotiator());
+
+        String request = "request" + MessageHandler.DELIMITER + "param1";
+        channel.writeInbound(Unpooled.copiedBuffer(request + MessageHandler.END_OF_MESSAGE + "next",
+                CharsetUtil.UTF_8));
+        channel.writeInbound(Unpooled.copiedBuffer("" + MessageHandler.END_OF_MESSAGE, CharsetUtil.UTF_8));
+
+        assertFalse(TcpFraming.isBinary(channel));
+        assertEquals(request, channel.readInbound());
+        assertEquals("next", channel.readInbound());
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testBinaryFraming()
+    {
+        int binaryChannels = TcpFraming.getBinaryChannelsCount();
+        EmbeddedChannel channel = new EmbeddedChannel(new TcpFraming.Negotiator());
+
+        // the magic bytes and the beginning of a first frame
+        ByteBuf frame = TcpFraming.encode(UnpooledByteBufAllocator.DEFAULT, "request", "café", "", "param3");
+        ByteBuf firstBytes = Unpooled.buffer();
+        firstBytes.writeBytes(TcpFraming.MAGIC);
+        firstBytes.writeBytes(frame, 10);
+
+        channel.writeInbound(firstBytes);
+        assertTrue(TcpFraming.isBinary(channel));
+        assertTrue(TcpFraming.hasBinaryChannels());
+        assertEquals(binaryChannels + 1, TcpFraming.getBinaryChannelsCount());
+        assertNull(channel.readInbound());
+
+        // the server answered with the magic bytes
+        ByteBuf ack = (ByteBuf) channel.readOutbound();
+        byte[] ackBytes = new byte[ack.readableBytes()];
+        ack.readBytes(ackBytes);
+        assertArrayEquals(TcpFraming.MAGIC, ackBytes);
+        ack.release();
+
+        channel.writeInbound(frame);
+
+        TcpFraming.Packets packets = (TcpFraming.Packets) channel.readInbound();
+        assertEquals(4, packets.count());
+        assertEquals("café".getBytes(CharsetUtil.UTF_8).length, packets.packet(1).readableBytes());
+        assertArrayEquals(new String[] { "request", "café", "", "param3" }, packets.toStrings());
+        assertTrue(packets.release());
+
+        channel.finish();
+        assertEquals(binaryChannels, TcpFraming.getBinaryChannelsCount());
+    }
+
+    @Test
+    public void testBinaryFramingInvalidOffsets()
+    {
+        EmbeddedChannel channel = new EmbeddedChannel(new TcpFraming.Negotiator());
+        channel.writeInbound(Unpooled.wrappedBuffer(TcpFraming.MAGIC));
+
+        // 1 packet, which would end after the end of the frame
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(2 + 4 + 3);
+        frame.writeShort(1);
+        frame.writeInt(10);
+        frame.writeBytes(new byte[] { 'a', 'b', 'c' });
+
+        try
+        {
+            channel.writeInbound(frame);
+            fail("An invalid frame must not be accepted");
+        } catch(CorruptedFrameException cfe)
+        {
+            assertNull(channel.readInbound());
+        }
+
+        channel.finish();
+    }
+
+    @Test
+    public void testInvalidNegotiationClosesChannel()
+    {
+        EmbeddedChannel channel = new EmbeddedChannel(new TcpFraming.Negotiator());
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0x00, 'S', 'C', 'X', 0x01 }));
+
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testEncode()
+    {
+        ByteBuf frame = TcpFraming.encode(UnpooledByteBufAllocator.DEFAULT, "ab", null, "c");
+
+        assertEquals(frame.readableBytes() - 4, frame.readInt());
+        assertEquals(3, frame.readUnsignedShort());
+        assertEquals(2, frame.readInt());
+        assertEquals(2, frame.readInt());
+        assertEquals(3, frame.readInt());
+        assertEquals("abc", frame.toString(CharsetUtil.UTF_8));
+        frame.release();
+    }
+}
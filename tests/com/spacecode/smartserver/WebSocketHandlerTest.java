@@ -0,0 +1,140 @@
+package com.spacecode.smartserver;
+
+import com.spacecode.sdk.network.communication.MessageHandler;
+import com.spacecode.smartserver.command.ClientCommandException;
+import com.spacecode.smartserver.command.ClientCommandRegister;
+import com.spacecode.smartserver.helper.SmartLogger;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+/**
+ * JUnit "WebSocketHandler" testing class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ SmartServer.class, SmartLogger.class })
+public class WebSocketHandlerTest
+{
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private static final String REQUEST_CODE = "fakerequest";
+
+    private ClientCommandRegister _register;
+    private Map<String, Object> _originalCommands;
+    private Object _command;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
+        mockStatic(SmartLogger.class);
+        doReturn(PowerMockito.mock(SmartLogger.class)).when(SmartLogger.class, "getLogger");
+
+        // replace the commands of the (static) register used by the WebSocket handler
+        _register = Whitebox.getInternalState(WebSocketHandler.class, "COMMAND_REGISTER");
+        _originalCommands = Whitebox.getInternalState(_register, "_commands");
+
+        Class<?> commandClass = Class.forName("com.spacecode.smartserver.command.ClientCommand");
+        _command = PowerMockito.mock(commandClass);
+
+        Whitebox.setInternalState(_register, "_commands", Collections.emptyMap());
+        Whitebox.invokeMethod(_register, "addCommand", REQUEST_CODE, _command);
+    }
+
+    @After
+    public void tearDown()
+    {
+        Whitebox.setInternalState(_register, "_commands", _originalCommands);
+    }
+
+    @Test
+    public void testInterleavedFragmentsFromTwoChannels() throws Exception
+    {
+        WebSocketHandler handler = new WebSocketHandler();
+        EmbeddedChannel channel1 = new EmbeddedChannel(handler);
+        EmbeddedChannel channel2 = new EmbeddedChannel(handler);
+
+        // "é" is encoded on two bytes: split between two fragments, it must be decoded with the whole message
+        byte[] message1 = (REQUEST_CODE + MessageHandler.DELIMITER + "café").getBytes(CharsetUtil.UTF_8);
+        byte[] message2 = (REQUEST_CODE + MessageHandler.DELIMITER + "second").getBytes(CharsetUtil.UTF_8);
+        int split1 = message1.length - 1;
+        int split2 = 5;
+
+        channel1.writeInbound(new TextWebSocketFrame(false, 0, slice(message1, 0, split1)));
+        channel2.writeInbound(new TextWebSocketFrame(false, 0, slice(message2, 0, split2)));
+        channel1.writeInbound(new ContinuationWebSocketFrame(true, 0, slice(message1, split1, message1.length)));
+        channel2.writeInbound(new ContinuationWebSocketFrame(true, 0, slice(message2, split2, message2.length)));
+
+        ArgumentCaptor<String[]> parameters = ArgumentCaptor.forClass(String[].class);
+        verifyExecuted(times(2), parameters);
+
+        List<String[]> requests = parameters.getAllValues();
+        assertEquals(2, requests.size());
+        assertArrayEquals(new String[] { "café" }, requests.get(0));
+        assertArrayEquals(new String[] { "second" }, requests.get(1));
+
+        channel1.finish();
+        channel2.finish();
+    }
+
+    @Test
+    public void testSingleFrameMessage() throws Exception
+    {
+        EmbeddedChannel channel = new EmbeddedChannel(new WebSocketHandler());
+
+        channel.writeInbound(new TextWebSocketFrame(REQUEST_CODE + MessageHandler.DELIMITER + "single"));
+
+        ArgumentCaptor<String[]> parameters = ArgumentCaptor.forClass(String[].class);
+        verifyExecuted(times(1), parameters);
+        assertEquals(Arrays.asList("single"), Arrays.asList(parameters.getValue()));
+
+        channel.finish();
+    }
+
+    private void verifyExecuted(org.mockito.verification.VerificationMode mode, ArgumentCaptor<String[]> parameters)
+            throws Exception
+    {
+        // ClientCommand is package-private: verify its "execute" method by reflection
+        Object verified = verify(_command, mode);
+        verified.getClass().getMethod("execute", ChannelHandlerContext.class, String[].class)
+                .invoke(verified, any(ChannelHandlerContext.class), parameters.capture());
+    }
+
+    private static ByteBuf slice(byte[] bytes, int from, int to)
+    {
+        return Unpooled.copiedBuffer(bytes, from, to - from);
+    }
+}
@@ -0,0 +1,150 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.sdk.network.communication.MessageHandler;
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.SmartLogger;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit "CmdBatch" testing class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ ClientCommandRegister.class, SmartLogger.class, SmartServer.class })
+public class CmdBatchTest
+{
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private static final String SEPARATOR = String.valueOf(CmdBatch.SEPARATOR);
+
+    private ClientCommandRegister _commandRegister;
+    private ChannelHandlerContext _ctx;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        PowerMockito.mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        PowerMockito.doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
+        PowerMockito.mockStatic(SmartLogger.class);
+        PowerMockito.doReturn(PowerMockito.mock(SmartLogger.class)).when(SmartLogger.class, "getLogger");
+
+        // the responses of the requests are collected by SmartServer.sendMessage
+        PowerMockito.doCallRealMethod().when(SmartServer.class);
+        SmartServer.sendMessage(any(ChannelHandlerContext.class), Matchers.<String>anyVararg());
+
+        _commandRegister = PowerMockito.mock(ClientCommandRegister.class, CALLS_REAL_METHODS);
+        Whitebox.setInternalState(_commandRegister, "_commands", Collections.emptyMap());
+        Whitebox.setInternalState(_commandRegister, "_interceptors", CommandInterceptors.defaults());
+
+        _ctx = PowerMockito.mock(ChannelHandlerContext.class);
+        PowerMockito.doReturn(new EmbeddedChannel()).when(_ctx).channel();
+
+        _commandRegister.addCommand(ClientCommandRegister.AppCode.BATCH, new CmdBatch(_commandRegister));
+    }
+
+    @Test
+    public void testResponsesInOrder() throws Exception
+    {
+        final CompletableFuture<String[]> slowResponse = new CompletableFuture<>();
+
+        _commandRegister.addCommand("slow", new AsyncClientCommand()
+        {
+            @Override
+            CompletableFuture<String[]> executeAsync(ChannelHandlerContext ctx, String[] parameters)
+            {
+                return slowResponse;
+            }
+        });
+
+        _commandRegister.addCommand("echo", new ClientCommand()
+        {
+            @Override
+            public void execute(ChannelHandlerContext ctx, String[] parameters)
+            {
+                SmartServer.sendMessage(ctx, "echo", parameters[0]);
+            }
+        });
+
+        _commandRegister.execute(_ctx, new String[] { "#1", ClientCommandRegister.AppCode.BATCH,
+                "slow", "echo" + SEPARATOR + "hello", "unknown" + SEPARATOR + "param" });
+
+        // nothing is sent until all requests responded
+        verify(_ctx, never()).writeAndFlush(anyObject());
+        verify(_ctx, never()).write(anyObject());
+
+        slowResponse.complete(new String[] { "slow", "a", "b" });
+
+        // one message, with the correlation ID of the batch
+        verify(_ctx).write(MessageHandler.packetsToFullMessage("#1", ClientCommandRegister.AppCode.BATCH,
+                "slow" + SEPARATOR + "a" + SEPARATOR + "b", "echo" + SEPARATOR + "hello", "unknown"));
+    }
+
+    @Test
+    public void testRequestsWithoutResponse() throws Exception
+    {
+        _commandRegister.addCommand("silent", new ClientCommand()
+        {
+            @Override
+            public void execute(ChannelHandlerContext ctx, String[] parameters)
+            {
+                // i.e. StopScan: nothing sent back
+            }
+        });
+
+        _commandRegister.addCommand("quiet", new CmdQuietWhenInvalid());
+
+        // "quiet" is rejected (missing parameter) without response
+        _commandRegister.execute(_ctx, new String[] { ClientCommandRegister.AppCode.BATCH, "silent", "quiet" });
+
+        // answered at once, without waiting for a timeout
+        verify(_ctx).writeAndFlush(MessageHandler.packetsToFullMessage(ClientCommandRegister.AppCode.BATCH,
+                "silent", "quiet"));
+    }
+
+    @Test
+    public void testTooManyRequests() throws Exception
+    {
+        String[] request = new String[CmdBatch.MAX_REQUESTS + 2];
+        request[0] = ClientCommandRegister.AppCode.BATCH;
+
+        for(int i = 1; i < request.length; ++i)
+        {
+            request[i] = "unknown";
+        }
+
+        _commandRegister.execute(_ctx, request);
+
+        verify(_ctx).writeAndFlush(MessageHandler.packetsToFullMessage(ClientCommandRegister.AppCode.BATCH,
+                ClientCommand.FALSE));
+    }
+
+    @CommandContract(paramCount = 1, noResponseWhenInvalid = true)
+    private static class CmdQuietWhenInvalid extends ClientCommand
+    {
+        @Override
+        public void execute(ChannelHandlerContext ctx, String[] parameters)
+        {
+            SmartServer.sendMessage(ctx, "quiet", parameters[0]);
+        }
+    }
+}
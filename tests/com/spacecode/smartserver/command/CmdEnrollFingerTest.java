@@ -23,6 +23,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -181,6 +182,22 @@ public class CmdEnrollFingerTest
         Mockito.verify(_usersService).enrollFinger(_username, fi, oldTemplate);
     }
 
+    @Test
+    public void testEnrollAndPersistCancelled() throws TimeoutException
+    {
+        FingerIndex fi = FingerIndex.LEFT_INDEX;
+        boolean useMaster = true;
+        String oldTemplate = "old_tpl";
+
+        PowerMockito.doReturn(true).when(_usersService).enrollFinger(_username, fi, useMaster);
+
+        // cancelled while waiting for the finger: the new template is not kept
+        assertFalse(_command.enrollAndPersist(_user, fi, useMaster, oldTemplate, new AtomicBoolean(true)));
+
+        Mockito.verify(_command, Mockito.never()).persistTemplate(_user, fi, oldTemplate);
+        Mockito.verify(_usersService).enrollFinger(_username, fi, oldTemplate);
+    }
+
     @Test
     public void testPersistTemplate() throws Exception
     {
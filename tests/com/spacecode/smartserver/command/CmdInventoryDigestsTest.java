@@ -0,0 +1,43 @@
+package com.spacecode.smartserver.command;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * JUnit "CmdInventoryDigests" testing class.
+ */
+public class CmdInventoryDigestsTest
+{
+    @Test
+    public void testDigestOfIds() throws Exception
+    {
+        CmdInventoryDigests.Digest digest = new CmdInventoryDigests.Digest();
+        digest.add(3);
+        digest.add(300000);
+
+        // CRC32 of the IDs as 4-byte big-endian integers, in ascending order
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putInt(3).putInt(300000).array());
+
+        assertEquals(Long.toHexString(crc.getValue()), digest.getCrc());
+    }
+
+    @Test
+    public void testDigestDependsOnIds() throws Exception
+    {
+        CmdInventoryDigests.Digest digest1 = new CmdInventoryDigests.Digest();
+        digest1.add(1);
+        digest1.add(2);
+
+        CmdInventoryDigests.Digest digest2 = new CmdInventoryDigests.Digest();
+        digest2.add(1);
+        digest2.add(3);
+
+        assertNotEquals(digest1.getCrc(), digest2.getCrc());
+    }
+}
@@ -0,0 +1,143 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+/**
+ * JUnit "CommandExecutors" testing class (background tasks).
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ SmartServer.class, SmartLogger.class })
+public class CommandExecutorsTest
+{
+    private EmbeddedChannel _channel;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mockStatic(SmartServer.class);
+        mockStatic(SmartLogger.class);
+        doReturn(PowerMockito.mock(SmartLogger.class)).when(SmartLogger.class, "getLogger");
+
+        _channel = new EmbeddedChannel();
+        CommandExecutors.start();
+    }
+
+    @After
+    public void tearDown()
+    {
+        CommandExecutors.stop();
+        _channel.close();
+    }
+
+    @Test
+    public void testCancelledWhenClientLeaves() throws Exception
+    {
+        long cancelledBefore = SmartMetrics.getCounter(CommandExecutors.METRIC_BACKGROUND_CANCELLED);
+        BlockingTask task = new BlockingTask();
+
+        assertTrue(CommandExecutors.runInBackground(_channel, task, 1, TimeUnit.MINUTES));
+        assertTrue(task._started.await(2, TimeUnit.SECONDS));
+
+        _channel.close();
+
+        assertTrue(task._interrupted.await(2, TimeUnit.SECONDS));
+        assertEquals(cancelledBefore + 1, awaitCounter(CommandExecutors.METRIC_BACKGROUND_CANCELLED, cancelledBefore));
+    }
+
+    @Test
+    public void testCancelledAfterTimeout() throws Exception
+    {
+        long timeoutsBefore = SmartMetrics.getCounter(CommandExecutors.METRIC_BACKGROUND_TIMEOUTS);
+        BlockingTask task = new BlockingTask();
+
+        assertTrue(CommandExecutors.runInBackground(_channel, task, 50, TimeUnit.MILLISECONDS));
+
+        assertTrue(task._interrupted.await(2, TimeUnit.SECONDS));
+        assertEquals(timeoutsBefore + 1, awaitCounter(CommandExecutors.METRIC_BACKGROUND_TIMEOUTS, timeoutsBefore));
+    }
+
+    @Test
+    public void testCallbackWhenCancelled() throws Exception
+    {
+        BlockingTask task = new BlockingTask();
+        final CountDownLatch cancelled = new CountDownLatch(1);
+
+        assertTrue(CommandExecutors.runInBackground(_channel, task, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                cancelled.countDown();
+            }
+        }, 50, TimeUnit.MILLISECONDS));
+
+        assertTrue(cancelled.await(2, TimeUnit.SECONDS));
+        assertTrue(task._interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRejectedWhenFull() throws Exception
+    {
+        BlockingTask[] tasks = new BlockingTask[CommandExecutors.BACKGROUND_THREADS +
+                CommandExecutors.BACKGROUND_QUEUE_CAPACITY];
+
+        for(int i = 0; i < tasks.length; ++i)
+        {
+            tasks[i] = new BlockingTask();
+            assertTrue(CommandExecutors.runInBackground(_channel, tasks[i], 1, TimeUnit.MINUTES));
+        }
+
+        assertFalse(CommandExecutors.runInBackground(_channel, new BlockingTask(), 1, TimeUnit.MINUTES));
+    }
+
+    /** The counter is incremented once the task is cancelled (interrupted): wait for it (2 s max). */
+    private static long awaitCounter(String name, long previousValue) throws InterruptedException
+    {
+        for(int i = 0; i < 200 && SmartMetrics.getCounter(name) == previousValue; ++i)
+        {
+            Thread.sleep(10);
+        }
+
+        return SmartMetrics.getCounter(name);
+    }
+
+    /** Task waiting until it is interrupted. */
+    private static class BlockingTask implements Runnable
+    {
+        private final CountDownLatch _started = new CountDownLatch(1);
+        private final CountDownLatch _interrupted = new CountDownLatch(1);
+
+        @Override
+        public void run()
+        {
+            _started.countDown();
+
+            try
+            {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException ie)
+            {
+                _interrupted.countDown();
+            }
+        }
+    }
+}
@@ -1,22 +1,38 @@
 package com.spacecode.smartserver.command;
 
+import com.spacecode.sdk.network.communication.EventCode;
+import com.spacecode.sdk.network.communication.MessageHandler;
 import com.spacecode.sdk.network.communication.RequestCode;
 import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.DeviceHandler;
 import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
@@ -25,28 +41,34 @@ import static org.mockito.Mockito.*;
  * JUnit "ClientCommandRegister" testing class.
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({ ClientCommandRegister.class, SmartLogger.class, SmartServer.class})
+@PrepareForTest({ ClientCommandRegister.class, SmartLogger.class, SmartServer.class, DeviceHandler.class })
 public class CommandRegisterTest
 {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
     private ClientCommandRegister _commandRegister;
-    private Map<String, ClientCommand> _commands;
-    
     private ChannelHandlerContext _ctx;
     private Channel _channel;
 
     @Before
-    public void setUpbeforeTest()
+    public void setUpbeforeTest() throws Exception
     {
-        _commands = new HashMap<>();
-        
+        // SmartLogger is used by the interceptors
+        PowerMockito.mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        PowerMockito.doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
+        PowerMockito.mockStatic(SmartLogger.class);
+        PowerMockito.doReturn(PowerMockito.mock(SmartLogger.class)).when(SmartLogger.class, "getLogger");
+
         _commandRegister = PowerMockito.mock(ClientCommandRegister.class, CALLS_REAL_METHODS);
         _ctx = PowerMockito.mock(ChannelHandlerContext.class);
-        _channel = PowerMockito.mock(Channel.class);
+        _channel = new EmbeddedChannel();
 
         PowerMockito.doReturn(_channel).when(_ctx).channel();
         
-        Whitebox.setInternalState(_commandRegister, "_commands", _commands);
-        Whitebox.setInternalState(_commandRegister, "_lastExecPackets", new String[] { "" });
+        Whitebox.setInternalState(_commandRegister, "_commands", Collections.emptyMap());
+        Whitebox.setInternalState(_commandRegister, "_interceptors", CommandInterceptors.defaults());
     }
 
     @Test
@@ -59,7 +81,7 @@ public class CommandRegisterTest
     @Test
     public void testAddCommandAlreadyExistingFails()
     {
-        _commands.put(RequestCode.DISCONNECT, new CmdDisconnect());
+        _commandRegister.addCommand(RequestCode.DISCONNECT, new CmdDisconnect());
 
         // operation must fail as a previous entry already exist
         assertFalse(_commandRegister.addCommand(RequestCode.DISCONNECT, new CmdDisconnect()));
@@ -97,16 +119,170 @@ public class CommandRegisterTest
     }
 
     @Test
-    public void testExecuteAntiFloodNotPassing() throws ClientCommandException, InterruptedException
+    public void testExecutionTimed() throws ClientCommandException
+    {
+        ClientCommand command = PowerMockito.mock(ClientCommand.class);
+        String requestCode = "TimedRequest";
+        long countBefore = SmartMetrics.getTimerCount("commands." + requestCode);
+
+        _commandRegister.addCommand(requestCode, command);
+        _commandRegister.execute(_ctx, new String[] { requestCode });
+
+        assertEquals(countBefore + 1, SmartMetrics.getTimerCount("commands." + requestCode));
+    }
+
+    @Test
+    public void testInterceptorRejectsRequest() throws ClientCommandException
     {
-        // Required as SmartLogger is used in this test
-        PowerMockito.mockStatic(SmartServer.class);
-        PowerMockito.mockStatic(SmartLogger.class);
-        /*SmartLogger logger = PowerMockito.mock(SmartLogger.class);
-        doReturn(logger).when(SmartLogger.getLogger());*/
-        
         CmdAddAlert cmd = PowerMockito.mock(CmdAddAlert.class);
-        _commands.put(RequestCode.ADD_ALERT, cmd);
+        _commandRegister.addCommand(RequestCode.ADD_ALERT, cmd);
+
+        _commandRegister.addInterceptor(new CommandInterceptors.Check()
+        {
+            @Override
+            public Verdict before(RegisteredCommand command, ChannelHandlerContext ctx, String[] parameters)
+            {
+                return Verdict.REJECT;
+            }
+        });
+
+        _commandRegister.execute(_ctx, new String[]{RequestCode.ADD_ALERT, "fake_serialized_alert"});
+
+        verify(cmd, never()).execute(any(ChannelHandlerContext.class), any(String[].class));
+        PowerMockito.verifyStatic();
+        SmartServer.sendMessage(_ctx, RequestCode.ADD_ALERT, ClientCommand.FALSE);
+    }
+
+    @Test
+    public void testThrottledRequestAnsweredToClientOnly() throws ClientCommandException
+    {
+        // the response of an invalid Scan request is sent to all clients
+        CmdScan cmd = PowerMockito.mock(CmdScan.class);
+        _commandRegister.addCommand(RequestCode.SCAN, cmd);
+
+        Whitebox.setInternalState(_commandRegister, "_interceptors", new CommandInterceptor[]
+                {
+                        new CommandInterceptors.Check()
+                        {
+                            @Override
+                            public Verdict before(RegisteredCommand command, ChannelHandlerContext ctx,
+                                                  String[] parameters)
+                            {
+                                return Verdict.THROTTLE;
+                            }
+                        }
+                });
+
+        _commandRegister.execute(_ctx, new String[]{RequestCode.SCAN});
+
+        verify(cmd, never()).execute(any(ChannelHandlerContext.class), any(String[].class));
+        PowerMockito.verifyStatic();
+        SmartServer.sendMessage(_ctx, RequestCode.SCAN, EventCode.SCAN_FAILED);
+        PowerMockito.verifyStatic(never());
+        SmartServer.sendAllClients(Matchers.<String>anyVararg());
+    }
+
+    @Test
+    public void testAsyncCommandResponseSent() throws ClientCommandException
+    {
+        final CompletableFuture<String[]> response = new CompletableFuture<>();
+
+        _commandRegister.addCommand("AsyncRequest", new AsyncClientCommand()
+        {
+            @Override
+            CompletableFuture<String[]> executeAsync(ChannelHandlerContext ctx, String[] parameters)
+            {
+                return response;
+            }
+        });
+
+        _commandRegister.execute(_ctx, new String[] { "AsyncRequest" });
+
+        PowerMockito.verifyStatic(never());
+        SmartServer.sendMessage(any(ChannelHandlerContext.class), Matchers.<String>anyVararg());
+
+        response.complete(new String[] { "AsyncRequest", "result" });
+
+        PowerMockito.verifyStatic();
+        SmartServer.sendMessage(_ctx, "AsyncRequest", "result");
+    }
+
+    @Test
+    public void testAsyncCommandFailure() throws ClientCommandException
+    {
+        final CompletableFuture<String[]> response = new CompletableFuture<>();
+
+        _commandRegister.addCommand("AsyncRequest", new AsyncClientCommand()
+        {
+            @Override
+            CompletableFuture<String[]> executeAsync(ChannelHandlerContext ctx, String[] parameters)
+            {
+                return response;
+            }
+        });
+
+        _commandRegister.execute(_ctx, new String[] { "AsyncRequest" });
+        response.completeExceptionally(new IllegalStateException("Database not available"));
+
+        PowerMockito.verifyStatic();
+        SmartServer.sendMessage(_ctx, "AsyncRequest", ClientCommand.FALSE);
+    }
+
+    @Test
+    public void testCorrelationId() throws ClientCommandException
+    {
+        final String[] correlationId = new String[1];
+
+        _commandRegister.addCommand("FakeRequest", new ClientCommand()
+        {
+            @Override
+            public void execute(ChannelHandlerContext ctx, String[] parameters)
+            {
+                correlationId[0] = RequestContext.getCorrelationId(ctx);
+                assertArrayEquals(new String[] { "param1" }, parameters);
+            }
+        });
+
+        _commandRegister.execute(_ctx, new String[] { "#7", "FakeRequest", "param1" });
+
+        assertEquals("#7", correlationId[0]);
+        // only during the execution of the request
+        assertNull(RequestContext.getCorrelationId(_ctx));
+    }
+
+    @Test
+    public void testCachedResponse() throws Exception
+    {
+        // the cached response is recorded by SmartServer.sendMessage
+        PowerMockito.doCallRealMethod().when(SmartServer.class);
+        SmartServer.sendMessage(any(ChannelHandlerContext.class), Matchers.<String>anyVararg());
+
+        // a same request within a short delay would be ignored (duplicate)
+        Whitebox.setInternalState(_commandRegister, "_interceptors", new CommandInterceptor[0]);
+
+        FakeCachedCommand cachedCommand = new FakeCachedCommand();
+        _commandRegister.addCommand("CachedRequest", cachedCommand);
+        _commandRegister.addCommand("UpdateRequest", new FakeUpdateCommand());
+
+        _commandRegister.execute(_ctx, new String[] { "CachedRequest" });
+        _commandRegister.execute(_ctx, new String[] { "CachedRequest" });
+
+        assertEquals(1, cachedCommand._executions);
+        verify(_ctx, times(2)).writeAndFlush(MessageHandler.packetsToFullMessage("CachedRequest", "1"));
+
+        // invalidated by the update: executed again
+        _commandRegister.execute(_ctx, new String[] { "UpdateRequest" });
+        _commandRegister.execute(_ctx, new String[] { "CachedRequest" });
+
+        assertEquals(2, cachedCommand._executions);
+        verify(_ctx).writeAndFlush(MessageHandler.packetsToFullMessage("CachedRequest", "2"));
+    }
+
+    @Test
+    public void testExecuteAntiFloodNotPassing() throws Exception
+    {
+        CmdAddAlert cmd = PowerMockito.mock(CmdAddAlert.class);
+        _commandRegister.addCommand(RequestCode.ADD_ALERT, cmd);
 
         doNothing().when(cmd).execute(any(ChannelHandlerContext.class), any(String[].class));
 
@@ -129,7 +305,7 @@ public class CommandRegisterTest
 
         // repeat the same request twice, but wait for the anti-flood delay before
         _commandRegister.execute(_ctx, new String[]{RequestCode.ADD_ALERT, "1"});
-        Thread.sleep(ClientCommandRegister.DELAY_BETWEEN_EXEC);
+        Thread.sleep(RateLimitInterceptor.DEDUP_DELAY);
         _commandRegister.execute(_ctx, new String[]{RequestCode.ADD_ALERT, "1"});
         verify(cmd, times(2)).execute(_ctx, new String[]{"1"});
     }
@@ -165,4 +341,115 @@ public class CommandRegisterTest
         // verify the command has been executed
         verify(command, never()).execute(_ctx, new String[] { "param1", "param2"});
     }
+
+    @Test
+    public void testExecuteDatabaseCommandOffloaded() throws Exception
+    {
+        CmdAddAlert cmd = PowerMockito.mock(CmdAddAlert.class);
+        _commandRegister.addCommand(RequestCode.ADD_ALERT, cmd);
+
+        final String[] threadName = new String[1];
+
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                threadName[0] = Thread.currentThread().getName();
+                return null;
+            }
+        }).when(cmd).execute(any(ChannelHandlerContext.class), any(String[].class));
+
+        CommandExecutors.start();
+
+        try
+        {
+            _commandRegister.execute(_ctx, new String[]{RequestCode.ADD_ALERT, "fake_serialized_alert"});
+
+            // the command is executed by the "database" executor, not by the calling (I/O) thread
+            verify(cmd, timeout(2000)).execute(_ctx, new String[]{"fake_serialized_alert"});
+            assertTrue(threadName[0].startsWith("cmd-database"));
+        } finally
+        {
+            CommandExecutors.stop();
+        }
+    }
+
+    @Test
+    public void testExecuteDeviceCommandRejectedWhenOverloaded() throws Exception
+    {
+        PowerMockito.mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        PowerMockito.doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
+        PowerMockito.mockStatic(SmartLogger.class);
+        PowerMockito.doReturn(PowerMockito.mock(SmartLogger.class)).when(SmartLogger.class, "getLogger");
+
+        CmdRewriteUid cmd = PowerMockito.mock(CmdRewriteUid.class);
+        _commandRegister.addCommand(RequestCode.REWRITE_UID, cmd);
+
+        final CountDownLatch releaseDevice = new CountDownLatch(1);
+
+        // the device is busy with the first request
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                releaseDevice.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(cmd).execute(any(ChannelHandlerContext.class), any(String[].class));
+
+        // the "deviceRequired" clause is checked by the executor
+        PowerMockito.mockStatic(DeviceHandler.class);
+        PowerMockito.doReturn(true).when(DeviceHandler.class, "isAvailable");
+
+        CommandExecutors.start();
+
+        try
+        {
+            // one running + a full queue
+            for(int i = 0; i < CommandExecutors.DEVICE_QUEUE_CAPACITY + 1; ++i)
+            {
+                _commandRegister.execute(_ctx, new String[]{RequestCode.REWRITE_UID, "old" + i, "new" + i});
+            }
+
+            PowerMockito.verifyStatic(never());
+            SmartServer.sendMessage(_ctx, RequestCode.REWRITE_UID, "ERROR");
+
+            // no more room: rejected with the "responseIfInvalid" of the command
+            _commandRegister.execute(_ctx, new String[]{RequestCode.REWRITE_UID, "old", "new"});
+
+            PowerMockito.verifyStatic();
+            SmartServer.sendMessage(_ctx, RequestCode.REWRITE_UID, "ERROR");
+        } finally
+        {
+            releaseDevice.countDown();
+            CommandExecutors.stop();
+        }
+
+        verify(cmd, never()).execute(_ctx, new String[]{"old", "new"});
+    }
+
+    @CommandContract(cached = true)
+    private static class FakeCachedCommand extends ClientCommand
+    {
+        private int _executions = 0;
+
+        @Override
+        public void execute(ChannelHandlerContext ctx, String[] parameters)
+        {
+            ++_executions;
+            SmartServer.sendMessage(ctx, "CachedRequest", String.valueOf(_executions));
+        }
+    }
+
+    @CommandContract(invalidates = "CachedRequest")
+    private static class FakeUpdateCommand extends ClientCommand
+    {
+        @Override
+        public void execute(ChannelHandlerContext ctx, String[] parameters)
+        {
+        }
+    }
 }
@@ -0,0 +1,195 @@
+package com.spacecode.smartserver.command;
+
+import com.j256.ormlite.dao.CloseableIterator;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.database.entity.Entity;
+import com.spacecode.smartserver.helper.SmartLogger;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit "HistoryQuery" testing class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ SmartLogger.class, SmartServer.class })
+public class HistoryQueryTest
+{
+    private static final Date FROM = new Date(1000);
+    private static final Date TO = new Date(2000);
+
+    private ChannelHandlerContext _ctx;
+    private QueryBuilder<FakeEntity, Integer> _query;
+    private HistoryQuery<FakeEntity> _history;
+    private int _afterId;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception
+    {
+        PowerMockito.mockStatic(SmartServer.class);
+        PowerMockito.mockStatic(SmartLogger.class);
+        PowerMockito.doReturn(PowerMockito.mock(SmartLogger.class)).when(SmartLogger.class, "getLogger");
+
+        _ctx = PowerMockito.mock(ChannelHandlerContext.class);
+        PowerMockito.doReturn(new EmbeddedChannel()).when(_ctx).channel();
+
+        _query = mock(QueryBuilder.class);
+
+        _history = new HistoryQuery<FakeEntity>("history")
+        {
+            @Override
+            QueryBuilder<FakeEntity, Integer> getQuery(Date from, Date to, int afterId) throws SQLException
+            {
+                _afterId = afterId;
+                return _query;
+            }
+
+            @Override
+            void addPackets(FakeEntity entity, List<String> packets)
+            {
+                packets.add("e" + entity.getId());
+            }
+        };
+    }
+
+    @Test
+    public void testFullPageHasCursor() throws Exception
+    {
+        doReturn(entities(11, 2)).when(_query).query();
+
+        String[] page = _history.execute(_ctx, FROM, TO, new String[] { "1000", "2000", "2", "10" });
+
+        assertEquals(10, _afterId);
+        verify(_query).limit(2L);
+        assertArrayEquals(new String[] { "history", "12", "e11", "e12" }, page);
+    }
+
+    @Test
+    public void testLastPageHasEmptyCursor() throws Exception
+    {
+        doReturn(entities(1, 1)).when(_query).query();
+
+        String[] page = _history.execute(_ctx, FROM, TO, new String[] { "1000", "2000", "2" });
+
+        assertEquals(0, _afterId);
+        assertArrayEquals(new String[] { "history", "", "e1" }, page);
+    }
+
+    @Test
+    public void testInvalidPageSize() throws Exception
+    {
+        String[] page = _history.execute(_ctx, FROM, TO,
+                new String[] { "1000", "2000", String.valueOf(HistoryQuery.MAX_PAGE_SIZE + 1) });
+
+        assertArrayEquals(new String[] { "history" }, page);
+        verify(_query, never()).limit(anyLong());
+    }
+
+    @Test
+    public void testStreamSentByChunks() throws Exception
+    {
+        final Iterator<FakeEntity> entities = entities(1, HistoryQuery.CHUNK_SIZE + 2).iterator();
+        CloseableIterator<FakeEntity> cursor = new CloseableIterator<FakeEntity>()
+        {
+            @Override public boolean hasNext() { return entities.hasNext(); }
+            @Override public FakeEntity next() { return entities.next(); }
+            @Override public void remove() { }
+            @Override public void close() { }
+            @Override public void closeQuietly() { }
+            @Override public com.j256.ormlite.support.DatabaseResults getRawResults() { return null; }
+            @Override public void moveToNext() { }
+            @Override public FakeEntity first() { return null; }
+            @Override public FakeEntity previous() { return null; }
+            @Override public FakeEntity current() { return null; }
+            @Override public FakeEntity nextThrow() { return null; }
+            @Override public FakeEntity moveRelative(int offset) { return null; }
+        };
+        doReturn(cursor).when(_query).iterator();
+
+        final List<Object> sent = new ArrayList<>();
+        PowerMockito.doAnswer(new Answer<Object>()
+        {
+            @Override
+            public Object answer(InvocationOnMock invocation)
+            {
+                sent.addAll(Arrays.asList(invocation.getArguments()).subList(1, invocation.getArguments().length));
+                return null;
+            }
+        }).when(SmartServer.class);
+        SmartServer.sendMessage(any(ChannelHandlerContext.class), Matchers.<String>anyVararg());
+
+        String[] last = _history.execute(_ctx, FROM, TO, new String[] { "1000", "2000", HistoryQuery.STREAM });
+
+        // first chunk sent, with its cursor
+        assertEquals(HistoryQuery.CHUNK_SIZE + 2, sent.size());
+        assertEquals("history", sent.get(0));
+        assertEquals(String.valueOf(HistoryQuery.CHUNK_SIZE), sent.get(1));
+
+        // then the last one, with an empty cursor
+        assertArrayEquals(new String[] { "history", "", "e" + (HistoryQuery.CHUNK_SIZE + 1),
+                "e" + (HistoryQuery.CHUNK_SIZE + 2) }, last);
+    }
+
+    @Test
+    public void testStreamRefusedInBatch() throws Exception
+    {
+        // sub-request of a batch: only one response would reach the client
+        RequestContext previous = RequestContext.attach(
+                new RequestContext(_ctx, null, new CompletableFuture<String[]>()));
+
+        try
+        {
+            String[] response = _history.execute(_ctx, FROM, TO, new String[] { "1000", "2000", HistoryQuery.STREAM });
+
+            assertArrayEquals(new String[] { "history" }, response);
+            verify(_query, never()).iterator();
+        } finally
+        {
+            RequestContext.restore(previous);
+        }
+    }
+
+    private static List<FakeEntity> entities(int firstId, int count)
+    {
+        List<FakeEntity> entities = new ArrayList<>();
+
+        for(int i = 0; i < count; ++i)
+        {
+            entities.add(new FakeEntity(firstId + i));
+        }
+
+        return entities;
+    }
+
+    private static class FakeEntity extends Entity
+    {
+        private FakeEntity(int id)
+        {
+            _id = id;
+        }
+    }
+}
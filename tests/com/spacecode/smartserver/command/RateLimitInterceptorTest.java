@@ -0,0 +1,107 @@
+package com.spacecode.smartserver.command;
+
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.helper.ConfManager;
+import com.spacecode.smartserver.helper.SmartLogger;
+import com.spacecode.smartserver.helper.SmartMetrics;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+/**
+ * JUnit "RateLimitInterceptor" testing class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ SmartServer.class, SmartLogger.class, ConfManager.class })
+public class RateLimitInterceptorTest
+{
+    private RateLimitInterceptor _interceptor;
+    private RegisteredCommand _command;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mockStatic(SmartServer.class);
+        mockStatic(SmartLogger.class);
+        doReturn(PowerMockito.mock(SmartLogger.class)).when(SmartLogger.class, "getLogger");
+
+        // 1 request per second, 3 in a row
+        mockStatic(ConfManager.class);
+        doReturn(1).when(ConfManager.class, "getAppRateLimit", anyString());
+        doReturn(3).when(ConfManager.class, "getAppRateBurst", anyString());
+
+        _interceptor = new RateLimitInterceptor();
+        _command = new RegisteredCommand("fakerequest", PowerMockito.mock(ClientCommand.class));
+    }
+
+    @Test
+    public void testDuplicatesOfEachClient()
+    {
+        ChannelHandlerContext client1 = newClient();
+        ChannelHandlerContext client2 = newClient();
+        long duplicatesBefore = SmartMetrics.getCounter(RateLimitInterceptor.METRIC_DUPLICATES);
+
+        // interleaved requests of two clients: only the duplicates of a same client are ignored
+        assertEquals(CommandInterceptor.Verdict.PROCEED, before(client1, "a"));
+        assertEquals(CommandInterceptor.Verdict.PROCEED, before(client2, "a"));
+        assertEquals(CommandInterceptor.Verdict.IGNORE, before(client1, "a"));
+        assertEquals(CommandInterceptor.Verdict.PROCEED, before(client1, "b"));
+        assertEquals(CommandInterceptor.Verdict.IGNORE, before(client2, "a"));
+
+        assertEquals(duplicatesBefore + 2, SmartMetrics.getCounter(RateLimitInterceptor.METRIC_DUPLICATES));
+    }
+
+    @Test
+    public void testThrottledAfterBurst()
+    {
+        ChannelHandlerContext client1 = newClient();
+        ChannelHandlerContext client2 = newClient();
+        long throttledBefore = SmartMetrics.getCounter(RateLimitInterceptor.METRIC_THROTTLED);
+
+        assertEquals(CommandInterceptor.Verdict.PROCEED, before(client1, "1"));
+        assertEquals(CommandInterceptor.Verdict.PROCEED, before(client1, "2"));
+        assertEquals(CommandInterceptor.Verdict.PROCEED, before(client1, "3"));
+        assertEquals(CommandInterceptor.Verdict.THROTTLE, before(client1, "4"));
+
+        // not executed: not a duplicate, but still throttled
+        assertEquals(CommandInterceptor.Verdict.THROTTLE, before(client1, "4"));
+        assertEquals(throttledBefore + 2, SmartMetrics.getCounter(RateLimitInterceptor.METRIC_THROTTLED));
+
+        // each client has its own bucket
+        assertEquals(CommandInterceptor.Verdict.PROCEED, before(client2, "4"));
+    }
+
+    @Test
+    public void testNoLimit() throws Exception
+    {
+        doReturn(0).when(ConfManager.class, "getAppRateLimit", anyString());
+        ChannelHandlerContext client = newClient();
+
+        for(int i = 0; i < 100; ++i)
+        {
+            assertEquals(CommandInterceptor.Verdict.PROCEED, before(client, String.valueOf(i)));
+        }
+    }
+
+    private CommandInterceptor.Verdict before(ChannelHandlerContext ctx, String parameter)
+    {
+        return _interceptor.before(_command, ctx, new String[] { parameter });
+    }
+
+    private static ChannelHandlerContext newClient()
+    {
+        ChannelHandlerContext ctx = PowerMockito.mock(ChannelHandlerContext.class);
+        doReturn(new EmbeddedChannel()).when(ctx).channel();
+        return ctx;
+    }
+}
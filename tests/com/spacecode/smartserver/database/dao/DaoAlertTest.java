@@ -11,12 +11,15 @@ import com.spacecode.smartserver.database.entity.AlertTypeEntity;
 import com.spacecode.smartserver.database.entity.DeviceEntity;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -30,6 +33,9 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
 @PrepareForTest({ SmartServer.class, DbManager.class })
 public class DaoAlertTest
 {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
     private DeviceEntity _devEntity;
 
     @Before
@@ -37,6 +43,8 @@ public class DaoAlertTest
     {
         // required to avoid an initialization exception, as SmartServer has some static initialization
         mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
 
         _devEntity = new DeviceEntity("AA7770201");
         mockStatic(DbManager.class, Mockito.CALLS_REAL_METHODS);
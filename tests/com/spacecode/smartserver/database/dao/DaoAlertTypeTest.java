@@ -6,12 +6,16 @@ import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.database.entity.AlertTypeEntity;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
+
 import static org.junit.Assert.*;
 import static org.powermock.api.mockito.PowerMockito.doReturn;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -23,11 +27,16 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
 @PrepareForTest({ SmartServer.class, DbManager.class })
 public class DaoAlertTypeTest
 {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
     @Before
     public void setUp() throws Exception
     {
         // required to avoid an initialization exception, as SmartServer has some static initialization
         mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
 
         mockStatic(DbManager.class, Mockito.CALLS_REAL_METHODS);
     }
@@ -8,12 +8,15 @@ import com.spacecode.smartserver.database.entity.FingerprintEntity;
 import com.spacecode.smartserver.database.entity.UserEntity;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
 import java.util.Date;
 
 import static org.junit.Assert.*;
@@ -28,6 +31,9 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
 @PrepareForTest({ SmartServer.class, DbManager.class })
 public class DaoFingerprintTest
 {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
     private UserEntity _userEntity;
 
     @Before
@@ -35,6 +41,8 @@ public class DaoFingerprintTest
     {
         // required to avoid an initialization exception, as SmartServer has some static initialization
         mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
 
         mockStatic(DbManager.class, Mockito.CALLS_REAL_METHODS);
 
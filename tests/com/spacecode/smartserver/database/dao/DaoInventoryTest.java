@@ -9,17 +9,22 @@ import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.database.entity.AccessTypeEntity;
 import com.spacecode.smartserver.database.entity.DeviceEntity;
 import com.spacecode.smartserver.database.entity.InventoryEntity;
+import com.spacecode.smartserver.database.entity.InventoryRfidTag;
+import com.spacecode.smartserver.database.entity.RfidTagEntity;
 import com.spacecode.smartserver.database.entity.UserEntity;
 import com.spacecode.smartserver.helper.DeviceHandler;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -33,6 +38,9 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
 @PrepareForTest({ SmartServer.class, DbManager.class, DeviceEntity.class, Inventory.class, DeviceHandler.class})
 public class DaoInventoryTest
 {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
     private UserEntity _userEntity;
     private DeviceEntity _devEntity;
     private Device _device;
@@ -42,6 +50,8 @@ public class DaoInventoryTest
     {
         // required to avoid an initialization exception, as SmartServer has some static initialization
         mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
 
         _devEntity = new DeviceEntity("AA7770201");
         String username = "Vincent";
@@ -326,4 +336,62 @@ public class DaoInventoryTest
         assertEquals(lastInventory.getUsername(), _userEntity.getUsername());
         assertEquals(lastInventory.getAccessType(), AccessType.FINGERPRINT);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPersistLargeInventory() throws Exception
+    {
+        // create an in-memory db using H2, for the purpose of this test
+        doReturn("jdbc:h2:mem:persistLargeInventory").when(DbManager.class, "getConnectionString");
+        assertTrue(DbManager.initializeDatabase());
+
+        DaoInventory invRepo = (DaoInventory) DbManager.getDao(InventoryEntity.class);
+        Dao<RfidTagEntity, Integer> daoTag = DbManager.getDao(RfidTagEntity.class);
+        Dao<InventoryRfidTag, Integer> daoInvTag = DbManager.getDao(InventoryRfidTag.class);
+
+        // a full cabinet: 1500 tags, a third of them already known by the database
+        List<String> tagsAdded = new ArrayList<>();
+        List<String> tagsPresent = new ArrayList<>();
+        List<String> tagsRemoved = new ArrayList<>();
+        Map<String, Byte> tagToAxis = new HashMap<>();
+
+        for(int i = 0; i < 1500; ++i)
+        {
+            String uid = String.format("30%08d", i);
+            (i % 3 == 0 ? tagsPresent : tagsAdded).add(uid);
+            tagToAxis.put(uid, (byte) (i % 8));
+
+            if(i % 3 == 0)
+            {
+                daoTag.create(new RfidTagEntity(uid));
+            }
+        }
+
+        for(int i = 1500; i < 1550; ++i)
+        {
+            tagsRemoved.add(String.format("30%08d", i));
+        }
+
+        doReturn(tagToAxis).when(_device).getTagToDrawerNumber();
+
+        Inventory newInventory = new Inventory(0, tagsAdded, tagsPresent, tagsRemoved, "",
+                AccessType.UNDEFINED, (byte) -1, new Date());
+
+        assertTrue(invRepo.persist(newInventory));
+        assertEquals(daoTag.countOf(), 1550);
+        assertEquals(daoInvTag.countOf(), 1550);
+
+        Inventory lastInventory = invRepo.getLastInventory();
+        assertNotNull(lastInventory);
+        assertEquals(lastInventory.getNumberAdded(), tagsAdded.size());
+        assertEquals(lastInventory.getNumberPresent(), tagsPresent.size());
+        assertEquals(lastInventory.getNumberRemoved(), tagsRemoved.size());
+        assertTrue(lastInventory.getTagsAdded().containsAll(tagsAdded));
+
+        // shelve numbers are persisted with the movements
+        for(InventoryRfidTag irt : daoInvTag.queryForAll())
+        {
+            Byte axis = tagToAxis.get(irt.getRfidTag().getUid());
+            assertEquals(irt.getShelveNumber(), axis == null ? 0 : axis);
+        }
+    }
+}
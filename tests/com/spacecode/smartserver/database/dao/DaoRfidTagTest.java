@@ -6,12 +6,20 @@ import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.database.entity.RfidTagEntity;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.*;
 import static org.powermock.api.mockito.PowerMockito.doReturn;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -23,11 +31,16 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
 @PrepareForTest({ SmartServer.class, DbManager.class })
 public class DaoRfidTagTest
 {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
     @Before
     public void setUp() throws Exception
     {
         // required to avoid an initialization exception, as SmartServer has some static initialization
         mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
 
         mockStatic(DbManager.class, Mockito.CALLS_REAL_METHODS);
     }
@@ -95,4 +108,54 @@ public class DaoRfidTagTest
         assertNotNull(rte);
         assertEquals(rte.getUid(), uid);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCreateIfNotExistsCollection() throws Exception
+    {
+        // create an in-memory db using H2, for the purpose of this test
+        doReturn("jdbc:h2:mem:createTags").when(DbManager.class, "getConnectionString");
+        assertTrue(DbManager.initializeDatabase());
+
+        // get the dao
+        DaoRfidTag tagRepo = (DaoRfidTag) DbManager.getDao(RfidTagEntity.class);
+        Dao<RfidTagEntity, Integer> daoTag = DbManager.getDao(RfidTagEntity.class);
+
+        // check the defensive programming against invalid UID's
+        assertNull(tagRepo.createIfNotExists(Arrays.asList("123", null)));
+        assertNull(tagRepo.createIfNotExists(Arrays.asList("123", "  ")));
+        assertEquals(daoTag.countOf(), 0);
+
+        // some tags already exist
+        RfidTagEntity existing = new RfidTagEntity("0");
+        daoTag.create(existing);
+        daoTag.create(new RfidTagEntity("1"));
+
+        // more UID's than a chunk (and a duplicate) to go through many "IN" queries and multi-rows inserts
+        List<String> uids = new ArrayList<>();
+
+        for(int i = 0; i < DaoRfidTag.CHUNK_SIZE * 2 + 10; ++i)
+        {
+            uids.add(String.valueOf(i));
+        }
+
+        uids.add("1");
+
+        Map<String, RfidTagEntity> uidToEntity = tagRepo.createIfNotExists(uids);
+        assertNotNull(uidToEntity);
+        assertEquals(uidToEntity.size(), DaoRfidTag.CHUNK_SIZE * 2 + 10);
+        assertEquals(daoTag.countOf(), DaoRfidTag.CHUNK_SIZE * 2 + 10);
+        // existing tags are not created again
+        assertEquals(uidToEntity.get("0").getId(), existing.getId());
+
+        for(String uid : uids)
+        {
+            assertEquals(uidToEntity.get(uid).getUid(), uid);
+            assertTrue(uidToEntity.get(uid).getId() > 0);
+        }
+
+        // all tags exist now: nothing is inserted
+        uidToEntity = tagRepo.createIfNotExists(uids);
+        assertNotNull(uidToEntity);
+        assertEquals(daoTag.countOf(), DaoRfidTag.CHUNK_SIZE * 2 + 10);
+    }
+}
@@ -9,12 +9,15 @@ import com.spacecode.smartserver.database.DbManager;
 import com.spacecode.smartserver.database.entity.*;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -28,6 +31,9 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
 @PrepareForTest({ SmartServer.class, DbManager.class })
 public class DaoUserTest
 {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
     private UserEntity _userEntity;
     private DeviceEntity _devEntity;
     private String _badgeNumber;
@@ -37,6 +43,8 @@ public class DaoUserTest
     {
         // required to avoid an initialization exception, as SmartServer has some static initialization
         mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
 
         _devEntity = new DeviceEntity("AA7770201");
 
@@ -0,0 +1,93 @@
+package com.spacecode.smartserver.database.dao;
+
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.spacecode.sdk.device.data.Inventory;
+import com.spacecode.sdk.user.data.AccessType;
+import com.spacecode.smartserver.database.DbManager;
+import com.spacecode.smartserver.database.entity.DeviceEntity;
+import com.spacecode.smartserver.database.entity.InventoryEntity;
+import org.powermock.reflect.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time taken by {@link DaoInventory#persist(Inventory, Map)} for a cabinet full of tags, against an H2 in-memory
+ * database (no network round trip: the gain is larger against a remote DBMS).
+ *
+ * The first scan adds all the tags, then each scan replaces {@link #MOVED_PER_SCAN} of them with new ones.
+ * Not a unit test: run by hand, i.e. "java -cp [classes, tests and lib jars] [this class] [scans]".
+ */
+public final class InventoryPersistenceBenchmark
+{
+    static final int TAGS = 1500;
+    static final int MOVED_PER_SCAN = 100;
+    static final int DEFAULT_SCANS = 6;
+
+    /** Must not be instantiated. */
+    private InventoryPersistenceBenchmark()
+    {
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int scans = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SCANS;
+
+        JdbcPooledConnectionSource connectionSource =
+                new JdbcPooledConnectionSource("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+
+        // the configuration file is not read: the pool is given to DbManager, which creates the tables
+        Whitebox.setInternalState(DbManager.class, "_pooledConnectionSrc", connectionSource);
+        Whitebox.invokeMethod(DbManager.class, "createModelIfNotExists");
+
+        DeviceEntity device = new DeviceEntity("BENCHMARK");
+        DbManager.getDao(DeviceEntity.class).insert(device);
+        Whitebox.setInternalState(DbManager.class, "_deviceEntity", device);
+
+        DaoInventory daoInventory = (DaoInventory) DbManager.getDao(InventoryEntity.class);
+
+        List<String> present = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        int nextUid = 0;
+
+        for(int scan = 0; scan < scans; ++scan)
+        {
+            List<String> added = new ArrayList<>();
+
+            while(present.size() + added.size() < TAGS)
+            {
+                added.add(String.valueOf(3000000000L + nextUid++));
+            }
+
+            Inventory inventory = new Inventory(0, added, new ArrayList<>(present), removed, null,
+                    AccessType.UNDEFINED, (byte) -1, new Date());
+            Map<String, Byte> tagToAxis = new HashMap<>();
+
+            for(String uid : inventory.getTagsAll())
+            {
+                tagToAxis.put(uid, (byte) 1);
+            }
+
+            long startedAt = System.nanoTime();
+
+            if(!daoInventory.persist(inventory, tagToAxis))
+            {
+                throw new IllegalStateException("Inventory not persisted (scan " + (scan + 1) + ")");
+            }
+
+            long elapsedMs = (System.nanoTime() - startedAt) / 1000000;
+            System.out.println("Scan " + (scan + 1) + ": " + added.size() + " added, " + removed.size() +
+                    " removed, " + elapsedMs + " ms");
+
+            // next scan: the oldest tags leave, new ones come in
+            present.addAll(added);
+            removed = new ArrayList<>(present.subList(0, MOVED_PER_SCAN));
+            present.subList(0, MOVED_PER_SCAN).clear();
+        }
+
+        connectionSource.close();
+    }
+}
@@ -0,0 +1,160 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.Device;
+import com.spacecode.sdk.device.data.DeviceStatus;
+import com.spacecode.sdk.device.data.Inventory;
+import com.spacecode.sdk.device.data.ScanOption;
+import com.spacecode.sdk.user.data.AccessType;
+import com.spacecode.smartserver.SmartServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+/**
+ * JUnit "ContinuousScan" testing class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ SmartServer.class, DeviceHandler.class })
+public class ContinuousScanTest
+{
+    private Device _device;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mockStatic(SmartServer.class);
+        mockStatic(DeviceHandler.class);
+
+        _device = mock(Device.class);
+        when(_device.getStatus()).thenReturn(DeviceStatus.READY);
+        doReturn(_device).when(DeviceHandler.class, "getDevice");
+    }
+
+    @After
+    public void tearDown()
+    {
+        ContinuousScan.stop();
+    }
+
+    @Test
+    public void testCyclesChainedAndDeltasSent()
+    {
+        assertTrue(ContinuousScan.start(ScanOption.NO_KR));
+        assertTrue(ContinuousScan.cycleStarted());
+        assertFalse(ContinuousScan.cycleStarted());
+
+        // first cycle: all the tags are added
+        assertTrue(ContinuousScan.cycleCompleted(inventory("A", "B")));
+        verifyStatic();
+        SmartServer.sendAllClients(ContinuousScan.TAGS_DELTA, "2", "A", "B");
+
+        // unchanged: nothing sent, not to be recorded
+        assertFalse(ContinuousScan.cycleCompleted(inventory("B", "A")));
+
+        assertTrue(ContinuousScan.cycleCompleted(inventory("B", "C")));
+        verifyStatic();
+        SmartServer.sendAllClients(ContinuousScan.TAGS_DELTA, "1", "C", "A");
+
+        assertEquals(new HashSet<>(Arrays.asList("B", "C")), ContinuousScan.getLiveTags());
+        verifyStatic(times(2));
+        SmartServer.sendAllClients((String[]) anyVararg());
+        // first cycle, then one per completed cycle
+        verify(_device, times(4)).requestScan(ScanOption.NO_KR);
+    }
+
+    @Test
+    public void testNextCyclePostponedUntilReady()
+    {
+        when(_device.getStatus()).thenReturn(DeviceStatus.SCANNING);
+        assertFalse(ContinuousScan.start());
+
+        ContinuousScan.statusChanged(DeviceStatus.SCANNING);
+        verify(_device, never()).requestScan();
+
+        when(_device.getStatus()).thenReturn(DeviceStatus.READY);
+        ContinuousScan.statusChanged(DeviceStatus.READY);
+        // once only
+        ContinuousScan.statusChanged(DeviceStatus.READY);
+        verify(_device, times(1)).requestScan();
+    }
+
+    @Test
+    public void testNoCycleOnceStopped()
+    {
+        ContinuousScan.start();
+        ContinuousScan.stop();
+
+        assertFalse(ContinuousScan.isEnabled());
+        ContinuousScan.cycleCompleted(inventory("A"));
+        verify(_device, times(1)).requestScan();
+    }
+
+    @Test
+    public void testNextCycleAfterCancellation()
+    {
+        ContinuousScan.start();
+
+        // door opened: next cycle once the door is closed
+        when(_device.getStatus()).thenReturn(DeviceStatus.DOOR_OPEN);
+        ContinuousScan.cycleInterrupted(false);
+        verify(_device, times(1)).requestScan();
+
+        when(_device.getStatus()).thenReturn(DeviceStatus.READY);
+        ContinuousScan.statusChanged(DeviceStatus.READY);
+        verify(_device, times(2)).requestScan();
+        assertTrue(ContinuousScan.isEnabled());
+    }
+
+    @Test
+    public void testDisabledAfterFailedCycles()
+    {
+        ContinuousScan.start();
+
+        for(int i = 1; i < ContinuousScan.MAX_FAILED_CYCLES; ++i)
+        {
+            ContinuousScan.cycleInterrupted(true);
+        }
+
+        // a completed cycle resets the count
+        ContinuousScan.cycleCompleted(inventory());
+
+        for(int i = 1; i < ContinuousScan.MAX_FAILED_CYCLES; ++i)
+        {
+            ContinuousScan.cycleInterrupted(true);
+        }
+
+        assertTrue(ContinuousScan.isEnabled());
+        ContinuousScan.cycleInterrupted(true);
+        assertFalse(ContinuousScan.isEnabled());
+
+        verifyStatic();
+        SmartServer.sendAllClients(ContinuousScan.STOPPED);
+        // start, then each interrupted/completed cycle but the last one
+        verify(_device, times(2 * ContinuousScan.MAX_FAILED_CYCLES)).requestScan();
+    }
+
+    private static Inventory inventory(String... tags)
+    {
+        return new Inventory(1, Arrays.asList(tags), Collections.<String>emptyList(),
+                Collections.<String>emptyList(), "", AccessType.UNDEFINED, (byte) 0, new Date());
+    }
+}
@@ -0,0 +1,140 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.event.DoorEventHandler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * JUnit "DeviceEventBus" testing class.
+ */
+public class DeviceEventBusTest
+{
+    @After
+    public void tearDown()
+    {
+        DeviceEventBus.stop();
+        DeviceEventBus.unsubscribe("test");
+    }
+
+    @Test
+    public void testDeliveredByPublisherWhenNotStarted()
+    {
+        DoorEventHandler handler = mock(DoorEventHandler.class);
+        DeviceEventBus.subscribe("test", handler);
+
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.DOOR_OPENED));
+        // not a door event: ignored
+        DeviceEventBus.publish(DeviceEvent.tagAdded("3001"));
+
+        verify(handler).doorOpened();
+    }
+
+    @Test
+    public void testDeliveredInOrderBySubscriberThread() throws Exception
+    {
+        final int count = 1000;
+        final List<String> received = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(count);
+        final Thread publisher = Thread.currentThread();
+        final boolean[] onPublisherThread = { false };
+
+        DeviceEventBus.start();
+        DeviceEventBus.subscribe("test", new DeviceEventBus.Subscriber()
+        {
+            @Override
+            public void onEvent(DeviceEvent event)
+            {
+                onPublisherThread[0] |= Thread.currentThread() == publisher;
+                received.add(event.getText());
+                latch.countDown();
+            }
+        });
+
+        for(int i = 0; i < count; ++i)
+        {
+            DeviceEventBus.publish(DeviceEvent.tagAdded(String.valueOf(i)));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse(onPublisherThread[0]);
+
+        for(int i = 0; i < count; ++i)
+        {
+            assertEquals(String.valueOf(i), received.get(i));
+        }
+
+        assertTrue(SmartMetrics.getTimerCount("events.bus.test.latency") >= count);
+    }
+
+    @Test
+    public void testLosslessSubscriberNeverSkips() throws Exception
+    {
+        final int count = DeviceEventBus.RING_SIZE * 2;
+        final List<String> received = new ArrayList<>();
+        final CountDownLatch released = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(count);
+
+        DeviceEventBus.start();
+        DeviceEventBus.subscribe("test", new DeviceEventBus.Subscriber()
+        {
+            @Override
+            public void onEvent(DeviceEvent event)
+            {
+                try
+                {
+                    // stuck on the first event while the producer publishes more than the ring can hold
+                    released.await(5, TimeUnit.SECONDS);
+                } catch(InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                received.add(event.getText());
+                latch.countDown();
+            }
+        }, true);
+
+        long dropped = SmartMetrics.getCounter("events.bus.test.dropped");
+
+        for(int i = 0; i < count; ++i)
+        {
+            DeviceEventBus.publish(DeviceEvent.tagAdded(String.valueOf(i)));
+        }
+
+        released.countDown();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        for(int i = 0; i < count; ++i)
+        {
+            assertEquals(String.valueOf(i), received.get(i));
+        }
+
+        assertEquals(dropped, SmartMetrics.getCounter("events.bus.test.dropped"));
+    }
+
+    @Test
+    public void testSubscriberReplacedByName()
+    {
+        DoorEventHandler first = mock(DoorEventHandler.class);
+        DoorEventHandler second = mock(DoorEventHandler.class);
+        DeviceEventBus.subscribe("test", first);
+        DeviceEventBus.subscribe("test", second);
+
+        DeviceEventBus.publish(DeviceEvent.of(DeviceEvent.Type.DOOR_CLOSED));
+
+        verify(second).doorClosed();
+        verifyZeroInteractions(first);
+    }
+}
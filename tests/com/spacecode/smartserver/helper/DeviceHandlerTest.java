@@ -23,17 +23,21 @@ import com.spacecode.smartserver.database.entity.InventoryEntity;
 import com.spacecode.smartserver.database.entity.UserEntity;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
+import java.io.File;
 import java.util.*;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -51,6 +55,9 @@ import static org.powermock.api.mockito.PowerMockito.when;
         DbManager.class, Inventory.class, ConfManager.class, AuthenticationModule.class })
 public class DeviceHandlerTest
 {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
     private DeviceHandler.SmartEventHandler _eventHandler;
     private Device _device;
     private SmartLogger _smartLogger;
@@ -66,6 +73,8 @@ public class DeviceHandlerTest
     {
         mockStatic(DbManager.class);
         mockStatic(SmartServer.class);
+        // the configuration file (if any) is created in a temporary directory
+        doReturn(_folder.getRoot().getPath() + File.separator).when(SmartServer.class, "getWorkingDirectory");
         mockStatic(SmartLogger.class);
         _device = PowerMockito.mock(Device.class);
         _smartLogger = PowerMockito.mock(SmartLogger.class);
@@ -417,7 +426,7 @@ public class DeviceHandlerTest
         SmartServer.sendAllClients(EventCode.SCAN_COMPLETED);
 
         // make sure that no inventory is persisted, as "No Record" is enabled
-        verify(inventoryRepo, never()).persist(any(Inventory.class));
+        verify(inventoryRepo, never()).persistWithId(any(Inventory.class), anyMapOf(String.class, Byte.class));
     }
 
     @Test
@@ -442,7 +451,9 @@ public class DeviceHandlerTest
         SmartServer.sendAllClients(EventCode.SCAN_COMPLETED);
 
         // make sure that the inventory is not persisted, as it is empty / "blank"
-        verify(inventoryRepo, never()).persist(any(Inventory.class));
+        verify(inventoryRepo, never()).persistWithId(any(Inventory.class), anyMapOf(String.class, Byte.class));
+        // not recorded: the last recorded inventory is still the latest one
+        assertNotSame(newInventory, LatestInventory.get().getInventory());
     }
 
     @Test
@@ -476,7 +487,41 @@ public class DeviceHandlerTest
         SmartServer.sendAllClients(EventCode.SCAN_COMPLETED);
 
         // make sure that the inventory is not persisted, as it is empty / "blank"
-        verify(inventoryRepo).persist(newInventory);
+        verify(inventoryRepo).persistWithId(eq(newInventory), anyMapOf(String.class, Byte.class));
+    }
+
+    @Test
+    public void testEventScanCompletedRecordsPublishedDrawers() throws Exception
+    {
+        Inventory newInventory = new Inventory(0,
+                Arrays.asList("3000000001"),
+                null,
+                null,
+                null,
+                null,
+                (byte) -1,
+                new Date()
+            );
+
+        Map<String, Byte> tagToAxis = new HashMap<>();
+        tagToAxis.put("3000000001", (byte) 2);
+
+        Whitebox.setInternalState(DeviceHandler.class, "RECORD_INVENTORY", true);
+
+        DaoInventory inventoryRepo = PowerMockito.mock(DaoInventory.class);
+        doReturn(inventoryRepo).when(DbManager.class, "getDao", InventoryEntity.class);
+
+        DeviceEvent event = DeviceEvent.scanCompleted(newInventory, tagToAxis);
+
+        // the device has started a new scan before the event is handled: its drawers are not the ones of the scan
+        tagToAxis.clear();
+        doReturn(new HashMap<String, Byte>()).when(_device).getTagToDrawerNumber();
+
+        _eventHandler.onEvent(event);
+
+        Map<String, Byte> expectedTagToAxis = new HashMap<>();
+        expectedTagToAxis.put("3000000001", (byte) 2);
+        verify(inventoryRepo).persistWithId(newInventory, expectedTagToAxis);
     }
 
     @Test
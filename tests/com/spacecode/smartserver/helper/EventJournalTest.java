@@ -0,0 +1,106 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.network.communication.EventCode;
+import com.spacecode.sdk.network.communication.RequestCode;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.ChannelMatchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit "EventJournal" testing class.
+ */
+public class EventJournalTest
+{
+    private EmbeddedChannel _client;
+    private EmbeddedChannel _other;
+
+    @Before
+    public void setUp()
+    {
+        _client = new EmbeddedChannel();
+        _other = new EmbeddedChannel();
+    }
+
+    @After
+    public void tearDown()
+    {
+        _client.close();
+        _other.close();
+    }
+
+    @Test
+    public void testIsEvent()
+    {
+        assertTrue(EventJournal.isEvent(EventCode.DOOR_OPENED));
+        assertFalse(EventJournal.isEvent(RequestCode.LAST_INVENTORY));
+        assertFalse(EventJournal.isEvent(null));
+    }
+
+    @Test
+    public void testSequenceAppended()
+    {
+        long last = EventJournal.getLastSequence();
+        String[] sequenced = EventJournal.record(ChannelMatchers.all(), new String[] { EventCode.TAG_ADDED, "3001" });
+
+        assertArrayEquals(new String[] { EventCode.TAG_ADDED, "3001", String.valueOf(last + 1) }, sequenced);
+        assertEquals(last + 1, EventJournal.getLastSequence());
+    }
+
+    @Test
+    public void testMissedEventsReplayed()
+    {
+        long last = EventJournal.getLastSequence();
+
+        EventJournal.record(ChannelMatchers.all(), new String[] { EventCode.DOOR_OPENED });
+        // not sent to the client
+        EventJournal.record(ChannelMatchers.isNot(_client), new String[] { EventCode.DOOR_CLOSED });
+        EventJournal.record(ChannelMatchers.all(), new String[] { EventCode.SCAN_STARTED });
+
+        List<String[]> missed = EventJournal.since(last, _client);
+
+        assertEquals(2, missed.size());
+        assertArrayEquals(new String[] { EventCode.DOOR_OPENED, String.valueOf(last + 1) }, missed.get(0));
+        assertArrayEquals(new String[] { EventCode.SCAN_STARTED, String.valueOf(last + 3) }, missed.get(1));
+        assertEquals(3, EventJournal.since(last, _other).size());
+
+        // up to date
+        assertTrue(EventJournal.since(last + 3, _client).isEmpty());
+    }
+
+    @Test
+    public void testResyncWhenWrapped()
+    {
+        long last = EventJournal.getLastSequence();
+
+        for(int i = 0; i <= EventJournal.CAPACITY; ++i)
+        {
+            EventJournal.record(ChannelMatchers.all(), new String[] { EventCode.TAG_ADDED, String.valueOf(i) });
+        }
+
+        assertNull(EventJournal.since(last, _client));
+        assertEquals(EventJournal.CAPACITY, EventJournal.since(last + 1, _client).size());
+        // sequence of another run (or not given yet)
+        assertNull(EventJournal.since(EventJournal.getLastSequence() + 1, _client));
+    }
+
+    @Test
+    public void testSetSequenced()
+    {
+        assertFalse(EventJournal.isSequenced(_client));
+
+        assertTrue(EventJournal.setSequenced(_client, true));
+        assertFalse(EventJournal.setSequenced(_client, true));
+        assertTrue(EventJournal.SEQUENCED_CHANNELS.matches(_client));
+        assertTrue(EventJournal.PLAIN_CHANNELS.matches(_other));
+        assertTrue(EventJournal.hasSequencedChannels());
+
+        _client.close();
+        assertFalse(EventJournal.isSequenced(_client));
+    }
+}
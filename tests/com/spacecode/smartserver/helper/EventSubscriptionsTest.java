@@ -0,0 +1,136 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.network.communication.EventCode;
+import com.spacecode.sdk.network.communication.RequestCode;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.channel.group.ChannelMatchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit "EventSubscriptions" testing class.
+ */
+public class EventSubscriptionsTest
+{
+    private EmbeddedChannel _kiosk;
+    private EmbeddedChannel _other;
+
+    @Before
+    public void setUp()
+    {
+        _kiosk = new EmbeddedChannel();
+        _other = new EmbeddedChannel();
+    }
+
+    @After
+    public void tearDown()
+    {
+        _kiosk.close();
+        _other.close();
+    }
+
+    @Test
+    public void testNoSubscription()
+    {
+        ChannelMatcher all = ChannelMatchers.all();
+        assertSame(all, EventSubscriptions.filter(all, EventCode.TAG_ADDED));
+    }
+
+    @Test
+    public void testSubscribe()
+    {
+        EventSubscriptions.subscribe(_kiosk, Arrays.asList(EventCode.DOOR_OPENED, EventCode.DOOR_CLOSED));
+
+        ChannelMatcher doorOpened = EventSubscriptions.filter(ChannelMatchers.all(), EventCode.DOOR_OPENED);
+        assertTrue(doorOpened.matches(_kiosk));
+        assertTrue(doorOpened.matches(_other));
+
+        ChannelMatcher tagAdded = EventSubscriptions.filter(ChannelMatchers.all(), EventCode.TAG_ADDED);
+        assertFalse(tagAdded.matches(_kiosk));
+        assertTrue(tagAdded.matches(_other));
+
+        // the matcher given by the sender still applies
+        ChannelMatcher notOther = EventSubscriptions.filter(ChannelMatchers.isNot(_other), EventCode.DOOR_OPENED);
+        assertTrue(notOther.matches(_kiosk));
+        assertFalse(notOther.matches(_other));
+
+        // responses sent to all clients are not filtered
+        ChannelMatcher all = ChannelMatchers.all();
+        assertSame(all, EventSubscriptions.filter(all, RequestCode.SCAN));
+    }
+
+    @Test
+    public void testUnsubscribe()
+    {
+        assertFalse(EventSubscriptions.unsubscribe(_kiosk, Collections.singletonList(EventCode.TAG_ADDED)));
+
+        EventSubscriptions.subscribe(_kiosk, Arrays.asList(EventCode.DOOR_OPENED, EventCode.DOOR_CLOSED));
+        assertTrue(EventSubscriptions.unsubscribe(_kiosk, Collections.singletonList(EventCode.DOOR_CLOSED)));
+
+        assertTrue(EventSubscriptions.filter(ChannelMatchers.all(), EventCode.DOOR_OPENED).matches(_kiosk));
+        assertFalse(EventSubscriptions.filter(ChannelMatchers.all(), EventCode.DOOR_CLOSED).matches(_kiosk));
+
+        // unsubscribed from each event: still filtered
+        assertTrue(EventSubscriptions.unsubscribe(_kiosk, Collections.singletonList(EventCode.DOOR_OPENED)));
+        assertFalse(EventSubscriptions.filter(ChannelMatchers.all(), EventCode.DOOR_OPENED).matches(_kiosk));
+
+        EventSubscriptions.unsubscribeAll(_kiosk);
+        assertTrue(EventSubscriptions.filter(ChannelMatchers.all(), EventCode.DOOR_CLOSED).matches(_kiosk));
+    }
+
+    @Test
+    public void testSubscribeInvalidCode()
+    {
+        assertFalse(EventSubscriptions.subscribe(_kiosk, Arrays.asList(EventCode.DOOR_OPENED, "door_opened")));
+
+        // nothing subscribed: the client still receives all the events
+        ChannelMatcher all = ChannelMatchers.all();
+        assertSame(all, EventSubscriptions.filter(all, EventCode.TAG_ADDED));
+    }
+
+    @Test
+    public void testEventWithoutSubscriber()
+    {
+        EventSubscriptions.subscribe(_kiosk, Collections.singletonList(EventCode.DOOR_OPENED));
+
+        ChannelMatcher unknown = EventSubscriptions.filter(ChannelMatchers.all(), "event_unknown");
+        assertFalse(unknown.matches(_kiosk));
+        assertTrue(unknown.matches(_other));
+    }
+
+    @Test
+    public void testClosedChannel()
+    {
+        EventSubscriptions.subscribe(_kiosk, Collections.singletonList(EventCode.DOOR_OPENED));
+        _kiosk.close();
+
+        ChannelMatcher all = ChannelMatchers.all();
+        assertSame(all, EventSubscriptions.filter(all, EventCode.TAG_ADDED));
+    }
+
+    @Test
+    public void testCodesRemovedWithoutSubscriber()
+    {
+        int codesCount = EventSubscriptions.getSubscribedCodesCount();
+
+        EventSubscriptions.subscribe(_kiosk, Arrays.asList("event_random_1", "event_random_2"));
+        EventSubscriptions.subscribe(_other, Collections.singletonList("event_random_2"));
+        assertEquals(codesCount + 2, EventSubscriptions.getSubscribedCodesCount());
+
+        EventSubscriptions.unsubscribe(_kiosk, Arrays.asList("event_random_1", "event_random_2"));
+        assertEquals(codesCount + 1, EventSubscriptions.getSubscribedCodesCount());
+
+        // still wanted by the other client
+        assertTrue(EventSubscriptions.filter(ChannelMatchers.all(), "event_random_2").matches(_other));
+
+        _other.close();
+        assertEquals(codesCount, EventSubscriptions.getSubscribedCodesCount());
+    }
+}
@@ -0,0 +1,137 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.data.Inventory;
+import com.spacecode.smartserver.SmartServer;
+import com.spacecode.smartserver.database.DbManager;
+import com.spacecode.smartserver.database.dao.DaoInventory;
+import com.spacecode.smartserver.database.entity.InventoryEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+/**
+ * JUnit "InventoryRecorder" testing class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ SmartServer.class, DbManager.class, Inventory.class })
+public class InventoryRecorderTest
+{
+    private DaoInventory _daoInventory;
+    private Inventory _inventory;
+    private Map<String, Byte> _tagToAxis;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        // required to avoid an initialization exception, as SmartServer has some static initialization
+        mockStatic(SmartServer.class);
+
+        _daoInventory = PowerMockito.mock(DaoInventory.class);
+        _inventory = PowerMockito.mock(Inventory.class);
+
+        mockStatic(DbManager.class);
+        doReturn(_daoInventory).when(DbManager.class, "getDao", InventoryEntity.class);
+
+        _tagToAxis = new HashMap<>();
+        _tagToAxis.put("3000000001", (byte) 2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        InventoryRecorder.stop();
+    }
+
+    @Test
+    public void testSubmitNotStarted() throws Exception
+    {
+        doReturn(_inventory).when(_daoInventory).persistWithId(eq(_inventory), anyMapOf(String.class, Byte.class));
+
+        // not started: the inventory is persisted by the caller
+        assertTrue(InventoryRecorder.submit(_inventory, _tagToAxis));
+
+        verify(_daoInventory).persistWithId(_inventory, _tagToAxis);
+        assertNull(InventoryRecorder.getPendingInventory());
+    }
+
+    @Test
+    public void testSubmitPendingUntilCommitted() throws Exception
+    {
+        final CountDownLatch writeStarted = new CountDownLatch(1);
+        final CountDownLatch releaseWrite = new CountDownLatch(1);
+        Inventory dbInventory = PowerMockito.mock(Inventory.class);
+
+        // the "database" is slow: the write waits until the test releases it
+        PowerMockito.doAnswer(new Answer<Inventory>()
+        {
+            @Override
+            public Inventory answer(InvocationOnMock invocation) throws Throwable
+            {
+                writeStarted.countDown();
+                return releaseWrite.await(5, TimeUnit.SECONDS) ? _inventory : null;
+            }
+        }).when(_daoInventory).persistWithId(eq(_inventory), anyMapOf(String.class, Byte.class));
+        doReturn(dbInventory).when(_daoInventory).getLastInventory();
+
+        long commitsCount = SmartMetrics.getTimerCount(InventoryRecorder.METRIC_COMMIT_LATENCY);
+
+        InventoryRecorder.start();
+        assertTrue(InventoryRecorder.submit(_inventory, _tagToAxis));
+        assertTrue(writeStarted.await(5, TimeUnit.SECONDS));
+
+        // not committed yet: the last inventory is provided from memory
+        assertSame(_inventory, InventoryRecorder.getPendingInventory());
+        assertSame(_inventory, InventoryRecorder.getLastInventory());
+        verify(_daoInventory, never()).getLastInventory();
+
+        // the drawers of the tags were copied when the inventory was submitted
+        _tagToAxis.clear();
+        releaseWrite.countDown();
+
+        InventoryRecorder.stop();
+
+        assertEquals(0, InventoryRecorder.getQueueDepth());
+        assertNull(InventoryRecorder.getPendingInventory());
+        assertSame(dbInventory, InventoryRecorder.getLastInventory());
+        assertEquals(commitsCount + 1, SmartMetrics.getTimerCount(InventoryRecorder.METRIC_COMMIT_LATENCY));
+
+        Map<String, Byte> expectedTagToAxis = new HashMap<>();
+        expectedTagToAxis.put("3000000001", (byte) 2);
+        verify(_daoInventory).persistWithId(_inventory, expectedTagToAxis);
+    }
+
+    @Test
+    public void testFailedWriteIsNotPendingForever() throws Exception
+    {
+        doReturn(null).when(_daoInventory).persistWithId(any(Inventory.class), anyMapOf(String.class, Byte.class));
+
+        long failuresCount = SmartMetrics.getCounter(InventoryRecorder.METRIC_FAILURES);
+
+        InventoryRecorder.start();
+        assertTrue(InventoryRecorder.submit(_inventory, _tagToAxis));
+        InventoryRecorder.stop();
+
+        assertNull(InventoryRecorder.getPendingInventory());
+        assertEquals(failuresCount + 1, SmartMetrics.getCounter(InventoryRecorder.METRIC_FAILURES));
+    }
+}
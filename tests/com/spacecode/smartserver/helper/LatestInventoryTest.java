@@ -0,0 +1,160 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.device.data.Inventory;
+import com.spacecode.smartserver.database.DbManager;
+import com.spacecode.smartserver.database.dao.DaoInventory;
+import com.spacecode.smartserver.database.entity.InventoryEntity;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.mock;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+/**
+ * JUnit "LatestInventory" testing class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ DbManager.class, DaoInventory.class, Inventory.class })
+public class LatestInventoryTest
+{
+    private DaoInventory _daoInventory;
+    private Inventory _dbInventory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Whitebox.setInternalState(LatestInventory.class, "_snapshot", (Object) null);
+
+        _daoInventory = mock(DaoInventory.class);
+        _dbInventory = mock(Inventory.class);
+        doReturn("db_inventory").when(_dbInventory).serialize();
+        doReturn(_dbInventory).when(_daoInventory).getLastInventory();
+
+        mockStatic(DbManager.class);
+        doReturn(_daoInventory).when(DbManager.class, "getDao", InventoryEntity.class);
+    }
+
+    @Test
+    public void testDatabaseReadOnce()
+    {
+        LatestInventory.Snapshot first = LatestInventory.get();
+
+        assertSame(_dbInventory, first.getInventory());
+        assertEquals("db_inventory", first.getSerialized());
+        assertSame(first, LatestInventory.get());
+        verify(_daoInventory, times(1)).getLastInventory();
+    }
+
+    @Test
+    public void testNewVersionOnUpdate()
+    {
+        long initialVersion = LatestInventory.get().getVersion();
+
+        Inventory newInventory = mock(Inventory.class);
+        doReturn("new_inventory").when(newInventory).serialize();
+        LatestInventory.update(newInventory);
+
+        LatestInventory.Snapshot snapshot = LatestInventory.get();
+        assertTrue(snapshot.getVersion() > initialVersion);
+        assertEquals("new_inventory", snapshot.getSerialized());
+
+        // written in the database: replaced by the inventory with its ID, under a new version (to be downloaded again)
+        LatestInventory.recorded(newInventory, _dbInventory);
+        assertSame(_dbInventory, LatestInventory.get().getInventory());
+        assertTrue(LatestInventory.get().getVersion() > snapshot.getVersion());
+        verify(_daoInventory, times(1)).getLastInventory();
+
+        // same tags: nothing changed since the version given before being written
+        LatestInventory.Delta delta = LatestInventory.getDelta(LatestInventory.get(), snapshot.getVersion());
+        assertNotNull(delta);
+        assertTrue(delta.getAdded().isEmpty());
+        assertTrue(delta.getRemoved().isEmpty());
+    }
+
+    @Test
+    public void testRecordedOlderInventoryIgnored()
+    {
+        Inventory olderInventory = mock(Inventory.class);
+        Inventory newInventory = mock(Inventory.class);
+        LatestInventory.update(olderInventory);
+        LatestInventory.update(newInventory);
+
+        LatestInventory.Snapshot snapshot = LatestInventory.get();
+        LatestInventory.recorded(olderInventory, _dbInventory);
+
+        assertSame(snapshot, LatestInventory.get());
+        assertEquals("", snapshot.getSerialized());
+    }
+
+    @Test
+    public void testDeltaSinceKnownVersion()
+    {
+        LatestInventory.update(inventory("A", "B", "C"));
+        long baseVersion = LatestInventory.get().getVersion();
+        LatestInventory.update(inventory("B", "C", "D"));
+
+        LatestInventory.Snapshot current = LatestInventory.get();
+        LatestInventory.Delta delta = LatestInventory.getDelta(current, baseVersion);
+
+        assertEquals(Collections.singletonList("D"), delta.getAdded());
+        assertEquals(Collections.singletonList("A"), delta.getRemoved());
+        // computed once per base version
+        assertSame(delta, LatestInventory.getDelta(current, baseVersion));
+        assertEquals(LatestInventory.Snapshot.hash(new HashSet<>(Arrays.asList("D", "C", "B"))),
+                current.getTagsHash());
+    }
+
+    @Test
+    public void testNoDeltaSinceForgottenVersion()
+    {
+        LatestInventory.update(inventory("A"));
+        long baseVersion = LatestInventory.get().getVersion();
+
+        for(int i = 0; i < LatestInventory.HISTORY_SIZE; ++i)
+        {
+            LatestInventory.update(inventory("A", String.valueOf(i)));
+        }
+
+        assertNull(LatestInventory.getDelta(LatestInventory.get(), baseVersion));
+        assertNull(LatestInventory.getDelta(LatestInventory.get(), 0));
+    }
+
+    @Test
+    public void testDeltaSinceRecordedVersion()
+    {
+        Inventory written = inventory("A", "B");
+        LatestInventory.update(written);
+        long baseVersion = LatestInventory.get().getVersion();
+
+        // its ID does not take a place in the history
+        LatestInventory.recorded(written, inventory("A", "B"));
+
+        for(int i = 1; i < LatestInventory.HISTORY_SIZE; ++i)
+        {
+            LatestInventory.update(inventory("B", String.valueOf(i)));
+        }
+
+        LatestInventory.Delta delta = LatestInventory.getDelta(LatestInventory.get(), baseVersion);
+        assertNotNull(delta);
+        assertEquals(Collections.singletonList("A"), delta.getRemoved());
+    }
+
+    private static Inventory inventory(String... tags)
+    {
+        Inventory inventory = mock(Inventory.class);
+        doReturn(Arrays.asList(tags)).when(inventory).getTagsAll();
+        return inventory;
+    }
+}
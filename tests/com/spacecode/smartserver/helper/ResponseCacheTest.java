@@ -0,0 +1,62 @@
+package com.spacecode.smartserver.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * JUnit "ResponseCache" testing class.
+ */
+public class ResponseCacheTest
+{
+    private static final String REQUEST = "cachedrequest";
+
+    @Before
+    public void setUp()
+    {
+        ResponseCache.invalidateAll();
+    }
+
+    @Test
+    public void testResponseCachedByParameters()
+    {
+        ResponseCache.startRecording(REQUEST, new String[] { "a" }).record(new String[] { REQUEST, "response" });
+
+        assertArrayEquals(new String[] { REQUEST, "response" }, ResponseCache.get(REQUEST, new String[] { "a" }));
+        assertNull(ResponseCache.get(REQUEST, new String[] { "b" }));
+        assertNull(ResponseCache.get(REQUEST, new String[0]));
+    }
+
+    @Test
+    public void testInvalidResponseNotCached()
+    {
+        // not a response to the request (i.e. error)
+        ResponseCache.startRecording(REQUEST, new String[0]).record(new String[0]);
+        ResponseCache.startRecording(REQUEST, new String[0]).record(new String[] { "otherrequest" });
+
+        assertNull(ResponseCache.get(REQUEST, new String[0]));
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        ResponseCache.startRecording(REQUEST, new String[0]).record(new String[] { REQUEST, "response" });
+        ResponseCache.invalidate(REQUEST);
+
+        assertNull(ResponseCache.get(REQUEST, new String[0]));
+    }
+
+    @Test
+    public void testResponseBuiltDuringChangeNotCached()
+    {
+        ResponseCache.Recording recording = ResponseCache.startRecording(REQUEST, new String[0]);
+
+        // the data changed while the response was built: it may be stale
+        ResponseCache.invalidate(REQUEST);
+        recording.record(new String[] { REQUEST, "stale" });
+
+        assertNull(ResponseCache.get(REQUEST, new String[0]));
+    }
+}
@@ -0,0 +1,134 @@
+package com.spacecode.smartserver.helper;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JUnit "SocketIoOutbox" testing class.
+ */
+public class SocketIoOutboxTest
+{
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private FakeLink _link;
+    private File _spoolFile;
+    private SocketIoOutbox _outbox;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        _link = new FakeLink();
+        _spoolFile = new File(_folder.getRoot(), SocketIoOutbox.SPOOL_FILENAME);
+        // long delay: the batches are emitted when full or before another event
+        _outbox = new SocketIoOutbox(_link, _spoolFile, 60000);
+    }
+
+    @After
+    public void tearDown()
+    {
+        _outbox.stop();
+    }
+
+    @Test
+    public void testTagsBatchedBeforeNextEvent() throws Exception
+    {
+        _outbox.send(SocketIoOutbox.ADD_TAG, tag("1"));
+        _outbox.send(SocketIoOutbox.ADD_TAG, tag("2"));
+        _outbox.send(SocketIoOutbox.ADD_TAG, tag("3"));
+        _outbox.send("scanCompleted", new JSONObject());
+        _outbox.sync();
+
+        assertEquals(2, _link._events.size());
+        assertEquals(SocketIoOutbox.ADD_TAGS, _link._events.get(0));
+        assertEquals(3, ((JSONArray) _link._payloads.get(0)).length());
+        assertEquals("scanCompleted", _link._events.get(1));
+    }
+
+    @Test
+    public void testSpooledWhileDisconnectedThenReplayedInOrder() throws Exception
+    {
+        _link._connected = false;
+
+        _outbox.send("scanStarted", new JSONObject());
+        _outbox.send(SocketIoOutbox.ADD_TAG, tag("1"));
+        _outbox.send("scanCompleted", new JSONObject());
+        _outbox.sync();
+
+        assertTrue(_link._events.isEmpty());
+        assertTrue(_spoolFile.exists());
+
+        _link._connected = true;
+        _outbox.replay();
+        // queued after the replay: emitted after the spooled events
+        _outbox.send("scanStarted", new JSONObject());
+        _outbox.sync();
+
+        assertEquals(4, _link._events.size());
+        assertEquals("scanStarted", _link._events.get(0));
+        assertEquals(SocketIoOutbox.ADD_TAG, _link._events.get(1));
+        assertEquals("1", ((JSONObject) _link._payloads.get(1)).getString("str"));
+        assertEquals("scanCompleted", _link._events.get(2));
+        assertEquals("scanStarted", _link._events.get(3));
+        assertFalse(_spoolFile.exists());
+        assertTrue(SmartMetrics.getTimerCount(SocketIoOutbox.METRIC_REPLAY_LATENCY) > 0);
+    }
+
+    @Test
+    public void testSpoolKeptForNextRun() throws Exception
+    {
+        _link._connected = false;
+        _outbox.send("scanStarted", new JSONObject());
+        _outbox.sync();
+        _outbox.stop();
+
+        _link._connected = true;
+        _outbox = new SocketIoOutbox(_link, _spoolFile, 60000);
+        // not emitted before the spooled event
+        _outbox.send("scanCompleted", new JSONObject());
+        _outbox.replay();
+        _outbox.sync();
+
+        assertEquals(2, _link._events.size());
+        assertEquals("scanStarted", _link._events.get(0));
+        assertEquals("scanCompleted", _link._events.get(1));
+    }
+
+    private static JSONObject tag(String uid) throws Exception
+    {
+        return new JSONObject().put("str", uid);
+    }
+
+    private static class FakeLink implements SocketIoOutbox.Link
+    {
+        private volatile boolean _connected = true;
+        private final List<String> _events = new ArrayList<>();
+        private final List<Object> _payloads = new ArrayList<>();
+
+        @Override
+        public boolean isConnected()
+        {
+            return _connected;
+        }
+
+        @Override
+        public void emit(String event, Object payload)
+        {
+            _events.add(event);
+            _payloads.add(payload);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.spacecode.smartserver.helper;
+
+import com.spacecode.sdk.network.communication.EventCode;
+import com.spacecode.smartserver.SmartServer;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.ChannelMatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+/**
+ * JUnit "TagEventBatcher" testing class.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ SmartServer.class, ConfManager.class })
+public class TagEventBatcherTest
+{
+    private EmbeddedChannel _channel;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mockStatic(SmartServer.class);
+        mockStatic(ConfManager.class);
+        doReturn(3).when(ConfManager.class, "getAppTagBatchSize");
+        // long delay: the batches are sent when full or flushed
+        doReturn(60000).when(ConfManager.class, "getAppTagBatchDelay");
+
+        _channel = new EmbeddedChannel();
+    }
+
+    @After
+    public void tearDown()
+    {
+        TagEventBatcher.stop();
+        _channel.close();
+    }
+
+    @Test
+    public void testNoBatchingClient()
+    {
+        TagEventBatcher.tagAdded("3000000001");
+
+        verifyStatic();
+        SmartServer.sendAllClients(EventCode.TAG_ADDED, "3000000001");
+        verifyStatic(never());
+        SmartServer.sendAllClients(any(ChannelMatcher.class), (String[]) anyVararg());
+    }
+
+    @Test
+    public void testSetBatching()
+    {
+        assertFalse(TagEventBatcher.isBatching(_channel));
+        assertTrue(TagEventBatcher.setBatching(_channel, true));
+        assertFalse(TagEventBatcher.setBatching(_channel, true));
+        assertTrue(TagEventBatcher.isBatching(_channel));
+        assertTrue(TagEventBatcher.BATCHING_CHANNELS.matches(_channel));
+        assertFalse(TagEventBatcher.SINGLE_EVENT_CHANNELS.matches(_channel));
+
+        assertTrue(TagEventBatcher.setBatching(_channel, false));
+        assertFalse(TagEventBatcher.isBatching(_channel));
+    }
+
+    @Test
+    public void testBatchSentWhenFull()
+    {
+        TagEventBatcher.start();
+        TagEventBatcher.setBatching(_channel, true);
+
+        TagEventBatcher.tagAdded("3000000001");
+        TagEventBatcher.tagAdded("3000000002");
+
+        // the other clients receive one event per tag
+        verifyStatic();
+        SmartServer.sendAllClients(TagEventBatcher.SINGLE_EVENT_CHANNELS, EventCode.TAG_ADDED, "3000000002");
+        verifyStatic(never());
+        SmartServer.sendAllClients(eq(TagEventBatcher.BATCHING_CHANNELS), (String[]) anyVararg());
+
+        TagEventBatcher.tagAdded("3000000003");
+
+        verifyStatic();
+        SmartServer.sendAllClients(TagEventBatcher.BATCHING_CHANNELS,
+                TagEventBatcher.TAGS_ADDED, "3000000001", "3000000002", "3000000003");
+    }
+
+    @Test
+    public void testFlush()
+    {
+        TagEventBatcher.start();
+        TagEventBatcher.setBatching(_channel, true);
+
+        TagEventBatcher.tagAdded("3000000001");
+        TagEventBatcher.flush();
+        // nothing left to send
+        TagEventBatcher.flush();
+
+        verifyStatic(times(1));
+        SmartServer.sendAllClients(eq(TagEventBatcher.BATCHING_CHANNELS), (String[]) anyVararg());
+        verifyStatic();
+        SmartServer.sendAllClients(TagEventBatcher.BATCHING_CHANNELS, TagEventBatcher.TAGS_ADDED, "3000000001");
+    }
+
+    @Test
+    public void testClosedChannelStopsBatching()
+    {
+        TagEventBatcher.setBatching(_channel, true);
+        _channel.close();
+
+        TagEventBatcher.tagAdded("3000000001");
+
+        verifyStatic();
+        SmartServer.sendAllClients(EventCode.TAG_ADDED, "3000000001");
+    }
+}